@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.component;
+
+
+import java.util.Dictionary;
+import java.util.List;
+
+import org.osgi.service.component.ComponentException;
+import org.osgi.service.component.ComponentFactory;
+import org.osgi.service.component.ComponentInstance;
+
+
+/**
+ * The <code>ExtComponentFactory</code> is a custom extension of the
+ * standard ComponentFactory allowing to create a number of component
+ * configurations in a single call. The Component Factory services
+ * registered by the Apache Felix Service Component Runtime implement this
+ * interface.
+ *
+ * @since 1.2
+ */
+public interface ExtComponentFactory extends ComponentFactory
+{
+
+    /**
+     * Creates and activates a new component configuration for each of the
+     * given properties, in order, as if {@link #newInstance(Dictionary)} were
+     * called for each of them. The failure to activate one component
+     * configuration does not prevent the creation of the others.
+     *
+     * @param properties The additional properties of each component
+     *      configuration, which may contain <code>null</code> elements
+     * @return The result of creating each component configuration, in the
+     *      order of the <code>properties</code>
+     */
+    List<Result> newInstances( List<? extends Dictionary<String, ?>> properties );
+
+
+    /**
+     * The result of creating one component configuration by
+     * {@link ExtComponentFactory#newInstances(List)}.
+     */
+    interface Result
+    {
+
+        /**
+         * Returns the component instance of the new component configuration
+         * or <code>null</code> if it could not be activated.
+         */
+        ComponentInstance getComponentInstance();
+
+
+        /**
+         * Returns the exception which would have been thrown by
+         * {@link ComponentFactory#newInstance(Dictionary)} or
+         * <code>null</code> if the component configuration has been
+         * created and activated.
+         */
+        ComponentException getException();
+
+    }
+}
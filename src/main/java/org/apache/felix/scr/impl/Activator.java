@@ -28,12 +28,18 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.felix.scr.impl.config.ScrConfiguration;
+import org.apache.felix.scr.impl.helper.Annotations;
+import org.apache.felix.scr.impl.helper.ClassUtils;
+import org.apache.felix.scr.impl.helper.MethodCache;
 import org.apache.felix.scr.impl.runtime.ServiceComponentRuntimeImpl;
+import org.apache.felix.scr.info.ComponentStateEvents;
 import org.apache.felix.utils.extender.AbstractExtender;
 import org.apache.felix.utils.extender.Extension;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
 import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceFactory;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.framework.wiring.BundleRevision;
 import org.osgi.framework.wiring.BundleWire;
@@ -84,6 +90,8 @@ public class Activator extends AbstractExtender
 
     private ServiceRegistration<?> m_runtime_reg;
 
+    private ServiceRegistration<?> m_state_events_reg;
+
     private ScrCommand m_scrCommand;
 
     public Activator() {
@@ -151,11 +159,14 @@ public class Activator extends AbstractExtender
 
         // prepare component registry
         m_componentBundles = new HashMap<Long, BundleComponentActivator>();
-        m_componentRegistry = new ComponentRegistry( m_context );
+        m_componentRegistry = new ComponentRegistry( m_context, m_configuration );
 
         final ServiceComponentRuntime runtime = new ServiceComponentRuntimeImpl(m_context, m_componentRegistry);
         m_runtime_reg = m_context.registerService(ServiceComponentRuntime.class,
                 runtime, null);
+        // registered as service factory to close the subscriptions of a bundle releasing the service
+        m_state_events_reg = m_context.registerService(ComponentStateEvents.class,
+                (ServiceFactory<ComponentStateEvents>) m_componentRegistry.getComponentStateEvents(), null);
 
         // log SCR startup
         log( LogService.LOG_INFO, m_bundle, " Version = {0}",
@@ -169,7 +180,7 @@ public class Activator extends AbstractExtender
 
         super.doStart();
 
-        m_scrCommand = ScrCommand.register(m_context, runtime, m_configuration);
+        m_scrCommand = ScrCommand.register(m_context, runtime, m_configuration, m_componentActor);
         m_configuration.setScrCommand( m_scrCommand );
     }
 
@@ -203,6 +214,11 @@ public class Activator extends AbstractExtender
 			m_runtime_reg.unregister();
 			m_runtime_reg = null;
 		}
+    	if (m_state_events_reg != null)
+    	{
+    	    m_state_events_reg.unregister();
+    	    m_state_events_reg = null;
+    	}
 		// dispose component registry
     	if ( m_componentRegistry != null )
     	{
@@ -231,6 +247,13 @@ public class Activator extends AbstractExtender
             m_packageAdmin = null;
         }
 
+        // drop cached component method and class lookups
+        MethodCache.clear();
+        ClassUtils.clearClassCache( false );
+        Annotations.clearTypeCache();
+        TargetedPID.clearCache();
+        ScrMetrics.reset();
+
         // remove the reference to the component context
         m_context = null;
     }
@@ -285,6 +308,33 @@ public class Activator extends AbstractExtender
         }
     }
 
+    /**
+     * In addition to the extender handling of the base class, this drops
+     * cached information about the classes of bundles which are uninstalled
+     * or unresolved, since these classes will not be used any longer. Since
+     * resolving and unresolving bundles changes the class space, cached
+     * class lookups are dropped as well.
+     */
+    @Override
+    public void bundleChanged( BundleEvent event )
+    {
+        super.bundleChanged( event );
+
+        switch ( event.getType() )
+        {
+            case BundleEvent.UNINSTALLED:
+            case BundleEvent.UNRESOLVED:
+                MethodCache.clear( event.getBundle() );
+                ClassUtils.clearClassCache( false );
+                Annotations.clearTypeCache( event.getBundle() );
+                break;
+
+            case BundleEvent.RESOLVED:
+                ClassUtils.clearClassCache( true );
+                break;
+        }
+    }
+
     /**
      * Loads the components of the given bundle. If the bundle has no
      * <i>Service-Component</i> header, this method has no effect. The
@@ -692,6 +692,11 @@ public class BundleComponentActivator implements Logger, ExtendedServiceListener
         m_componentRegistry.unregisterComponentId(componentManager.getId());
     }
 
+    public void componentStateChanged(AbstractComponentManager<?> componentManager, int oldState, int newState, int reason)
+    {
+        m_componentRegistry.componentStateChanged(componentManager, oldState, newState, reason);
+    }
+
     //---------- Asynchronous Component Handling ------------------------------
 
     /**
@@ -737,6 +742,29 @@ public class BundleComponentActivator implements Logger, ExtendedServiceListener
         }
     }
 
+    /**
+     * Schedules the given <code>task</code> for asynchronous execution once
+     * the given delay has expired. If this instance is {@link #isActive() not
+     * active} or the thread is not running, the task is not executed.
+     *
+     * @param task The component task to execute
+     * @param delay The delay in milliseconds
+     */
+    public void schedule(Runnable task, long delay)
+    {
+        ComponentActorThread cat = m_componentActor;
+        if (isActive() && cat != null)
+        {
+            cat.schedule(task, delay);
+        }
+        else
+        {
+            log(LogService.LOG_DEBUG,
+                "Component Actor Thread not running; not scheduling {0}",
+                new Object[] { task }, null, null, null);
+        }
+    }
+
     /**
      * Returns <code>true</code> if logging for the given level is enabled.
      */
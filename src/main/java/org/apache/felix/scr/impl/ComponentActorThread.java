@@ -20,6 +20,7 @@ package org.apache.felix.scr.impl;
 
 
 import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
 
 import org.osgi.service.log.LogService;
 
@@ -48,6 +49,13 @@ class ComponentActorThread implements Runnable
     // the queue of Runnable instances  to be run
     private LinkedList<Runnable> tasks;
 
+    // the tasks to be queued once their delay has expired, ordered by due
+    // time, guarded by tasks
+    private final LinkedList<DelayedTask> delayedTasks = new LinkedList<DelayedTask>();
+
+    // the longest running task since the last call to takeLongestTask, guarded by tasks
+    private TaskTiming longestTask;
+
 
     ComponentActorThread()
     {
@@ -69,11 +77,16 @@ class ComponentActorThread implements Runnable
             final Runnable task;
             synchronized ( tasks )
             {
-                while ( tasks.isEmpty() )
+                for ( ;; )
                 {
+                    final long wait = queueDueTasks();
+                    if ( !tasks.isEmpty() )
+                    {
+                        break;
+                    }
                     try
                     {
-                        tasks.wait();
+                        tasks.wait( wait );
                     }
                     catch ( InterruptedException ie )
                     {
@@ -96,7 +109,15 @@ class ComponentActorThread implements Runnable
 
                 // otherwise execute the task, log any issues
                 Activator.log( LogService.LOG_DEBUG, null, "Running task: " + task, null );
-                task.run();
+                final long start = System.nanoTime();
+                try
+                {
+                    task.run();
+                }
+                finally
+                {
+                    taskCompleted( task, System.nanoTime() - start );
+                }
             }
             catch ( Throwable t )
             {
@@ -117,6 +138,11 @@ class ComponentActorThread implements Runnable
     // of the queue
     void terminate()
     {
+        synchronized ( tasks )
+        {
+            // delayed tasks are dropped
+            delayedTasks.clear();
+        }
         schedule( TERMINATION_TASK );
         synchronized ( tasks )
         {
@@ -136,6 +162,41 @@ class ComponentActorThread implements Runnable
     }
 
 
+    private void taskCompleted( final Runnable task, final long duration )
+    {
+        synchronized ( tasks )
+        {
+            if ( longestTask == null || duration > longestTask.duration )
+            {
+                longestTask = new TaskTiming( task.toString(), duration );
+            }
+        }
+    }
+
+
+    // returns the number of tasks waiting to be run
+    int getQueueSize()
+    {
+        synchronized ( tasks )
+        {
+            return tasks.size();
+        }
+    }
+
+
+    // returns the longest running task since the last call or null if no
+    // task has been run and starts a new measurement
+    TaskTiming takeLongestTask()
+    {
+        synchronized ( tasks )
+        {
+            final TaskTiming task = longestTask;
+            longestTask = null;
+            return task;
+        }
+    }
+
+
     // queue the given runnable to be run as soon as possible
     void schedule( Runnable task )
     {
@@ -151,4 +212,78 @@ class ComponentActorThread implements Runnable
             tasks.notifyAll();
         }
     }
+
+
+    // queue the given runnable to be run once the given delay in
+    // milliseconds has expired
+    void schedule( Runnable task, long delay )
+    {
+        final DelayedTask delayed = new DelayedTask( task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( delay ) );
+        synchronized ( tasks )
+        {
+            // keep the delayed tasks ordered by due time
+            int index = delayedTasks.size();
+            while ( index > 0 && delayedTasks.get( index - 1 ).due - delayed.due > 0 )
+            {
+                index--;
+            }
+            delayedTasks.add( index, delayed );
+
+            Activator.log( LogService.LOG_DEBUG, null, "Delaying task [{0}] by {1}ms"
+                    , new Object[] {task, delay}, null );
+
+            // notify the waiting thread to recompute its wait time
+            tasks.notifyAll();
+        }
+    }
+
+
+    // moves the delayed tasks whose delay has expired into the queue and
+    // returns the milliseconds to wait for the next delayed task or zero if
+    // there is none. Must be called holding the lock on tasks.
+    private long queueDueTasks()
+    {
+        final long now = System.nanoTime();
+        while ( !delayedTasks.isEmpty() )
+        {
+            final long remaining = delayedTasks.getFirst().due - now;
+            if ( remaining > 0 )
+            {
+                return Math.max( 1, TimeUnit.NANOSECONDS.toMillis( remaining ) );
+            }
+            tasks.add( delayedTasks.removeFirst().task );
+        }
+        return 0;
+    }
+
+
+    private static class DelayedTask
+    {
+        final Runnable task;
+
+        final long due;
+
+        DelayedTask( final Runnable task, final long due )
+        {
+            this.task = task;
+            this.due = due;
+        }
+    }
+
+
+    /**
+     * The description and duration in nanoseconds of a task run.
+     */
+    static final class TaskTiming
+    {
+        final String task;
+        final long duration;
+
+
+        TaskTiming( final String task, final long duration )
+        {
+            this.task = task;
+            this.duration = duration;
+        }
+    }
 }
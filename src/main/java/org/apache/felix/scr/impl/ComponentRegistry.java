@@ -21,18 +21,27 @@ package org.apache.felix.scr.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.felix.scr.impl.config.ComponentHolder;
+import org.apache.felix.scr.impl.config.ComponentManager;
 import org.apache.felix.scr.impl.config.ConfigurableComponentHolder;
 import org.apache.felix.scr.impl.config.ConfigurationSupport;
+import org.apache.felix.scr.impl.config.ScrConfiguration;
 import org.apache.felix.scr.impl.manager.AbstractComponentManager;
 import org.apache.felix.scr.impl.manager.DependencyManager;
 import org.apache.felix.scr.impl.metadata.ComponentMetadata;
+import org.apache.felix.scr.impl.metadata.ServiceMetadata;
+import org.apache.felix.scr.impl.runtime.ComponentStateEventsImpl;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
@@ -59,22 +68,66 @@ public class ComponentRegistry implements ServiceListener
     // the bundle context
     private BundleContext m_bundleContext;
 
+    // the SCR configuration
+    private final ScrConfiguration m_configuration;
+
     /**
      * The map of known components indexed by component name. The values are
-     * either null (for name reservations) or implementations
-     * of the {@link ComponentHolder} interface.
+     * implementations of the {@link ComponentHolder} interface. The map is
+     * read without locking; modifications are done while holding the lock
+     * of the map.
      * <p>
-     * The {@link #checkComponentName(String)} will first add an entry to this
-     * map with null value to reserve the name. After setting up
+     * The {@link #checkComponentName(String)} will first add the name to
+     * the {@link #m_reservedComponentNames} to reserve the name. After setting up
      * the component, the {@link #registerComponentHolder(String, ComponentHolder)}
-     * method replaces the value of the named entry with the actual
+     * method replaces the reservation by an entry of the actual
      * {@link ComponentHolder}.
      *
      * @see #checkComponentName(String)
      * @see #registerComponentHolder(String, ComponentHolder)
      * @see #unregisterComponentHolder(String)
      */
-    private final Map<ComponentRegistryKey, ComponentHolder<?>> m_componentHoldersByName;
+    private final ConcurrentMap<ComponentRegistryKey, ComponentHolder<?>> m_componentHoldersByName;
+
+    // names reserved but not registered yet, guarded by m_componentHoldersByName
+    private final Set<ComponentRegistryKey> m_reservedComponentNames;
+
+    /**
+     * The immutable list of the values of {@link #m_componentHoldersByName}
+     * returned by {@link #getComponentHolders()}, <code>null</code> if it
+     * has to be created again after a modification.
+     */
+    private volatile List<ComponentHolder<?>> m_componentHoldersSnapshot;
+
+    // incremented on each modification of m_componentHoldersByName
+    private volatile long m_componentHoldersVersion;
+
+    /**
+     * The registered component holders indexed by the id of the declaring
+     * bundle. The lists are immutable and replaced while holding the lock of
+     * {@link #m_componentHoldersByName}.
+     */
+    private final ConcurrentMap<Long, List<ComponentHolder<?>>> m_componentHoldersByBundle;
+
+    /**
+     * The registered component holders indexed by the service interfaces
+     * they provide. The lists are immutable and replaced while holding the
+     * lock of {@link #m_componentHoldersByName}.
+     */
+    private final ConcurrentMap<String, List<ComponentHolder<?>>> m_componentHoldersByService;
+
+    /**
+     * The enabled component managers indexed by their current state. Updated
+     * by {@link #componentStateChanged(AbstractComponentManager, int, int, int)}
+     * on each state transition of a component.
+     */
+    private final ConcurrentMap<Integer, ConcurrentMap<AbstractComponentManager<?>, Boolean>> m_componentManagersByState;
+
+    /**
+     * The subscriptions to the component state transitions, published by
+     * {@link #componentStateChanged(AbstractComponentManager, int, int, int)}.
+     */
+    private final ComponentStateEventsImpl m_componentStateEvents = new ComponentStateEventsImpl();
 
     /**
      * The map of known components indexed by component configuration pid. The values are
@@ -95,6 +148,19 @@ public class ComponentRegistry implements ServiceListener
      */
     private final Map<String, Set<ComponentHolder<?>>> m_componentHoldersByPid;
 
+    /**
+     * The map of known components indexed by the targeted forms of their
+     * configuration pids: <code>pid|bsn</code>, <code>pid|bsn|version</code>
+     * and <code>pid|bsn|version|location</code> of the bundle declaring the
+     * component. Such that a configuration event for a targeted pid resolves
+     * the matching components with a single lookup of the raw pid. This map
+     * is guarded by {@link #m_componentHoldersByPid}.
+     */
+    private final Map<String, Set<ComponentHolder<?>>> m_componentHoldersByTargetedPid;
+
+    // the keys of each holder in m_componentHoldersByTargetedPid, guarded by m_componentHoldersByPid
+    private final Map<ComponentHolder<?>, List<String>> m_targetedPidsByHolder;
+
     /**
      * Map of components by component ID. This map indexed by the component
      * ID number (<code>java.lang.Long</code>) contains the actual
@@ -103,14 +169,14 @@ public class ComponentRegistry implements ServiceListener
      * @see #registerComponentId(AbstractComponentManager)
      * @see #unregisterComponentId(long)
      */
-    private final Map<Long, AbstractComponentManager<?>> m_componentsById;
+    private final ConcurrentMap<Long, AbstractComponentManager<?>> m_componentsById;
 
     /**
      * Counter to setup the component IDs as issued by the
      * {@link #registerComponentId(AbstractComponentManager)} method. This
      * counter is only incremented.
      */
-    private long m_componentCounter = -1;
+    private final AtomicLong m_componentCounter = new AtomicLong( -1 );
 
     // ConfigurationAdmin support -- created on demand upon availability of
     // the ConfigurationAdmin service
@@ -118,12 +184,19 @@ public class ComponentRegistry implements ServiceListener
 
     private final Map<ServiceReference<?>, List<Entry<?, ?>>> m_missingDependencies = new HashMap<ServiceReference<?>, List<Entry<?, ?>>>( );
 
-    protected ComponentRegistry( final BundleContext context )
+    protected ComponentRegistry( final BundleContext context, final ScrConfiguration configuration )
     {
         m_bundleContext = context;
-        m_componentHoldersByName = new HashMap<ComponentRegistryKey, ComponentHolder<?>>();
+        m_configuration = configuration;
+        m_componentHoldersByName = new ConcurrentHashMap<ComponentRegistryKey, ComponentHolder<?>>();
+        m_reservedComponentNames = new HashSet<ComponentRegistryKey>();
+        m_componentHoldersByBundle = new ConcurrentHashMap<Long, List<ComponentHolder<?>>>();
+        m_componentHoldersByService = new ConcurrentHashMap<String, List<ComponentHolder<?>>>();
+        m_componentManagersByState = new ConcurrentHashMap<Integer, ConcurrentMap<AbstractComponentManager<?>, Boolean>>();
         m_componentHoldersByPid = new HashMap<String, Set<ComponentHolder<?>>>();
-        m_componentsById = new HashMap<Long, AbstractComponentManager<?>>();
+        m_componentHoldersByTargetedPid = new HashMap<String, Set<ComponentHolder<?>>>();
+        m_targetedPidsByHolder = new IdentityHashMap<ComponentHolder<?>, List<String>>();
+        m_componentsById = new ConcurrentHashMap<Long, AbstractComponentManager<?>>();
 
         // keep me informed on ConfigurationAdmin state changes
         try
@@ -152,6 +225,8 @@ public class ComponentRegistry implements ServiceListener
             configurationSupport.dispose();
             configurationSupport = null;
         }
+
+        m_componentStateEvents.dispose();
     }
 
 
@@ -169,14 +244,8 @@ public class ComponentRegistry implements ServiceListener
      */
     final long registerComponentId( final AbstractComponentManager<?> componentManager )
     {
-        long componentId;
-        synchronized ( m_componentsById )
-        {
-            componentId = ++m_componentCounter;
-
-            m_componentsById.put( componentId, componentManager );
-        }
-
+        final long componentId = m_componentCounter.incrementAndGet();
+        m_componentsById.put( componentId, componentManager );
         return componentId;
     }
 
@@ -191,10 +260,87 @@ public class ComponentRegistry implements ServiceListener
      */
     final void unregisterComponentId( final long componentId )
     {
-        synchronized ( m_componentsById )
+        m_componentsById.remove( componentId );
+    }
+
+
+    /**
+     * Returns the component registered under the given component ID or
+     * <code>null</code> if no such component is registered.
+     */
+    public final AbstractComponentManager<?> getComponentManager( final long componentId )
+    {
+        return m_componentsById.get( componentId );
+    }
+
+
+    //---------- ComponentManager index by state
+
+    /**
+     * Returns the service publishing the component state transitions.
+     */
+    public final ComponentStateEventsImpl getComponentStateEvents()
+    {
+        return m_componentStateEvents;
+    }
+
+
+    /**
+     * Records a state transition of the component manager and publishes it
+     * to the state event subscriptions. Disabled and disposed components are
+     * removed from the index.
+     */
+    final void componentStateChanged( final AbstractComponentManager<?> componentManager, final int oldState,
+        final int newState, final int reason )
+    {
+        if ( m_componentStateEvents.hasSubscriptions() )
+        {
+            final Bundle bundle = componentManager.getBundle();
+            m_componentStateEvents.publish( componentManager.getId(), componentManager.getComponentMetadata().getName(),
+                bundle == null ? -1 : bundle.getBundleId(), oldState, newState, reason );
+        }
+
+        final ConcurrentMap<AbstractComponentManager<?>, Boolean> old = m_componentManagersByState.get( oldState );
+        if ( old != null )
+        {
+            old.remove( componentManager );
+        }
+        if ( newState != ComponentManager.STATE_DISABLED && newState != ComponentManager.STATE_DISPOSED )
+        {
+            ConcurrentMap<AbstractComponentManager<?>, Boolean> managers = m_componentManagersByState.get( newState );
+            if ( managers == null )
+            {
+                managers = new ConcurrentHashMap<AbstractComponentManager<?>, Boolean>();
+                final ConcurrentMap<AbstractComponentManager<?>, Boolean> existing = m_componentManagersByState.putIfAbsent( newState, managers );
+                if ( existing != null )
+                {
+                    managers = existing;
+                }
+            }
+            managers.put( componentManager, Boolean.TRUE );
+        }
+    }
+
+
+    /**
+     * Returns the enabled component managers currently in the given state.
+     */
+    public final List<AbstractComponentManager<?>> getComponentManagers( final int state )
+    {
+        final List<AbstractComponentManager<?>> result = new ArrayList<AbstractComponentManager<?>>();
+        final ConcurrentMap<AbstractComponentManager<?>, Boolean> managers = m_componentManagersByState.get( state );
+        if ( managers != null )
         {
-            m_componentsById.remove( componentId );
+            for ( AbstractComponentManager<?> manager: managers.keySet() )
+            {
+                // the state may have changed since the last report
+                if ( manager.getState() == state )
+                {
+                    result.add( manager );
+                }
+            }
         }
+        return result;
     }
 
 
@@ -221,15 +367,8 @@ public class ComponentRegistry implements ServiceListener
         boolean present;
         synchronized ( m_componentHoldersByName )
         {
-            present = m_componentHoldersByName.containsKey( key );
-            if ( !present )
-            {
-                m_componentHoldersByName.put( key, null );
-            }
-            else
-            {
-                existingRegistration = m_componentHoldersByName.get( key );
-            }
+            existingRegistration = m_componentHoldersByName.get( key );
+            present = existingRegistration != null || !m_reservedComponentNames.add( key );
         }
 
         // there was a registration already, throw an exception and use the
@@ -288,6 +427,13 @@ public class ComponentRegistry implements ServiceListener
             }
 
             m_componentHoldersByName.put( key, componentHolder );
+            m_reservedComponentNames.remove( key );
+            addToList( m_componentHoldersByBundle, key.getBundleId(), componentHolder );
+            for ( String service: getServices( componentHolder ) )
+            {
+                addToList( m_componentHoldersByService, service, componentHolder );
+            }
+            componentHoldersChanged();
         }
 
         synchronized (m_componentHoldersByPid)
@@ -295,19 +441,17 @@ public class ComponentRegistry implements ServiceListener
             // See if the component declares a specific configuration pid (112.4.4 configuration-pid)
             List<String> configurationPids = componentHolder.getComponentMetadata().getConfigurationPid();
 
+            final List<String> targetedPids = new ArrayList<String>();
             for ( String configurationPid: configurationPids )
             {
-                // Since several components may refer to the same configuration pid, we have to
-                // store the component holder in a Set, in order to be able to lookup every
-                // components from a given pid.
-                Set<ComponentHolder<?>> set = m_componentHoldersByPid.get( configurationPid );
-                if ( set == null )
+                addToIndex( m_componentHoldersByPid, configurationPid, componentHolder );
+                for ( String targetedPid: getTargetedPids( configurationPid, componentHolder ) )
                 {
-                    set = new HashSet<ComponentHolder<?>>();
-                    m_componentHoldersByPid.put( configurationPid, set );
+                    addToIndex( m_componentHoldersByTargetedPid, targetedPid, componentHolder );
+                    targetedPids.add( targetedPid );
                 }
-                set.add( componentHolder );
             }
+            m_targetedPidsByHolder.put( componentHolder, targetedPids );
         }
 
         if (configurationSupport != null)
@@ -323,10 +467,7 @@ public class ComponentRegistry implements ServiceListener
      */
     public final ComponentHolder<?> getComponentHolder( final Bundle bundle, final String name )
     {
-        synchronized ( m_componentHoldersByName )
-        {
-            return m_componentHoldersByName.get( new ComponentRegistryKey( bundle, name ) );
-        }
+        return m_componentHoldersByName.get( new ComponentRegistryKey( bundle, name ) );
     }
 
     /**
@@ -337,17 +478,20 @@ public class ComponentRegistry implements ServiceListener
      */
     public final Collection<ComponentHolder<?>> getComponentHoldersByPid(TargetedPID targetedPid)
     {
-        String pid = targetedPid.getServicePid();
         Set<ComponentHolder<?>> componentHoldersUsingPid = new HashSet<ComponentHolder<?>>();
         synchronized (m_componentHoldersByPid)
         {
-            Set<ComponentHolder<?>> set = m_componentHoldersByPid.get(pid);
+            // targeted pids are indexed by their raw form
+            Set<ComponentHolder<?>> set = targetedPid.isTargeted()
+                ? m_componentHoldersByTargetedPid.get( targetedPid.getRawPid() )
+                : m_componentHoldersByPid.get( targetedPid.getServicePid() );
             // only return the entry if non-null and not a reservation
             if (set != null)
             {
                 for (ComponentHolder<?> holder: set)
                 {
-                    if (targetedPid.matchesTarget(holder))
+                    // skip holders of bundles concurrently stopped
+                    if (getBundle( holder ) != null)
                     {
                         componentHoldersUsingPid.add( holder );
                     }
@@ -357,44 +501,161 @@ public class ComponentRegistry implements ServiceListener
         return componentHoldersUsingPid;
     }
 
+    private static void addToIndex( Map<String, Set<ComponentHolder<?>>> index, String key, ComponentHolder<?> componentHolder )
+    {
+        // Since several components may refer to the same configuration pid, we have to
+        // store the component holder in a Set, in order to be able to lookup every
+        // components from a given pid.
+        Set<ComponentHolder<?>> set = index.get( key );
+        if ( set == null )
+        {
+            set = new HashSet<ComponentHolder<?>>();
+            index.put( key, set );
+        }
+        set.add( componentHolder );
+    }
+
+    private static void removeFromIndex( Map<String, Set<ComponentHolder<?>>> index, String key, ComponentHolder<?> componentHolder )
+    {
+        Set<ComponentHolder<?>> set = index.get( key );
+        if ( set != null )
+        {
+            set.remove( componentHolder );
+            if ( set.isEmpty() )
+            {
+                index.remove( key );
+            }
+        }
+    }
+
+    /**
+     * Returns the targeted pids by which a configuration may target the
+     * given configuration pid of the component: the pid followed by the
+     * symbolic name, the version and the location of the bundle declaring
+     * the component, as matched by {@link TargetedPID#matchesTarget(ComponentHolder)}.
+     */
+    private static String[] getTargetedPids( String configurationPid, ComponentHolder<?> componentHolder )
+    {
+        final Bundle bundle = getBundle( componentHolder );
+        if ( bundle == null || bundle.getSymbolicName() == null )
+        {
+            return new String[0];
+        }
+        final String bsn = configurationPid + '|' + bundle.getSymbolicName();
+        final String version = bsn + '|' + TargetedPID.getBundleVersion( bundle );
+        return new String[] { bsn, version, version + '|' + bundle.getLocation() };
+    }
+
+    private static Bundle getBundle( ComponentHolder<?> componentHolder )
+    {
+        final BundleComponentActivator activator = componentHolder.getActivator();
+        final BundleContext context = ( activator == null ) ? null : activator.getBundleContext();
+        return ( context == null ) ? null : context.getBundle();
+    }
+
     /**
-     * Returns an array of all values currently stored in the component holders
-     * map. The entries in the array are either String types for component
-     * name reservations or {@link ComponentHolder} instances for actual
-     * holders of components.
+     * Returns an immutable list of the registered {@link ComponentHolder}
+     * instances. The list is shared by all callers until the registered
+     * holders are modified; reserved component names are not included.
      */
     public final List<ComponentHolder<?>> getComponentHolders()
     {
-    	List<ComponentHolder<?>> all = new ArrayList<ComponentHolder<?>>();
-        synchronized ( m_componentHoldersByName )
+        List<ComponentHolder<?>> all = m_componentHoldersSnapshot;
+        if ( all == null )
         {
-        	all.addAll(m_componentHoldersByName.values());
+            synchronized ( m_componentHoldersByName )
+            {
+                all = m_componentHoldersSnapshot;
+                if ( all == null )
+                {
+                    all = Collections.unmodifiableList( new ArrayList<ComponentHolder<?>>( m_componentHoldersByName.values() ) );
+                    m_componentHoldersSnapshot = all;
+                }
+            }
         }
         return all;
     }
 
+    /**
+     * Returns the version of the registered component holders, which is
+     * incremented each time a holder is registered or unregistered.
+     * Callers may use it to detect whether a result derived from
+     * {@link #getComponentHolders()} is still current.
+     */
+    public final long getComponentHoldersVersion()
+    {
+        return m_componentHoldersVersion;
+    }
+
+    // must be called holding the lock of m_componentHoldersByName
+    private void componentHoldersChanged()
+    {
+        m_componentHoldersSnapshot = null;
+        m_componentHoldersVersion++;
+    }
+
+    /**
+     * Returns the registered component holders declared by the given
+     * bundles.
+     */
     public final List<ComponentHolder<?>> getComponentHolders(Bundle...bundles)
     {
-    	List<ComponentHolder<?>> all =getComponentHolders();
         List<ComponentHolder<?>> holders = new ArrayList<ComponentHolder<?>>();
-        for ( ComponentHolder<?> holder: all)
-        {
-        	BundleComponentActivator activator = holder.getActivator();
-        	if (activator != null)
-        	{
-        		Bundle holderBundle = activator.getBundleContext().getBundle();
-        		for (Bundle b: bundles)
-        		{
-        			if (b == holderBundle)
-        			{
-        				holders.add(holder);
-        			}
-        		}
-        	}
+        for (Bundle b: bundles)
+        {
+            List<ComponentHolder<?>> bundleHolders = m_componentHoldersByBundle.get( b.getBundleId() );
+            if ( bundleHolders != null )
+            {
+                holders.addAll( bundleHolders );
+            }
         }
         return holders;
     }
 
+    /**
+     * Returns the registered component holders providing the given service
+     * interface.
+     */
+    public final List<ComponentHolder<?>> getComponentHoldersByService( final String serviceInterface )
+    {
+        List<ComponentHolder<?>> holders = m_componentHoldersByService.get( serviceInterface );
+        return ( holders == null ) ? Collections.<ComponentHolder<?>>emptyList() : holders;
+    }
+
+    // copy on write, must be called holding the lock of m_componentHoldersByName
+    private static <K> void addToList( ConcurrentMap<K, List<ComponentHolder<?>>> index, K key, ComponentHolder<?> componentHolder )
+    {
+        final List<ComponentHolder<?>> holders = index.get( key );
+        final List<ComponentHolder<?>> newHolders = ( holders == null ) ? new ArrayList<ComponentHolder<?>>() : new ArrayList<ComponentHolder<?>>( holders );
+        newHolders.add( componentHolder );
+        index.put( key, Collections.unmodifiableList( newHolders ) );
+    }
+
+    // copy on write, must be called holding the lock of m_componentHoldersByName
+    private static <K> void removeFromList( ConcurrentMap<K, List<ComponentHolder<?>>> index, K key, ComponentHolder<?> componentHolder )
+    {
+        final List<ComponentHolder<?>> holders = index.get( key );
+        if ( holders != null )
+        {
+            final List<ComponentHolder<?>> newHolders = new ArrayList<ComponentHolder<?>>( holders );
+            newHolders.remove( componentHolder );
+            if ( newHolders.isEmpty() )
+            {
+                index.remove( key );
+            }
+            else
+            {
+                index.put( key, Collections.unmodifiableList( newHolders ) );
+            }
+        }
+    }
+
+    private static String[] getServices( ComponentHolder<?> componentHolder )
+    {
+        final ServiceMetadata serviceMetadata = componentHolder.getComponentMetadata().getServiceMetadata();
+        return ( serviceMetadata == null || serviceMetadata.getProvides() == null ) ? new String[0] : serviceMetadata.getProvides();
+    }
+
 
     /**
      * Removes the component registered under that name. If no component is
@@ -419,7 +680,17 @@ public class ComponentRegistry implements ServiceListener
         ComponentHolder<?> component;
         synchronized ( m_componentHoldersByName )
         {
+            m_reservedComponentNames.remove( key );
             component = m_componentHoldersByName.remove( key );
+            if ( component != null )
+            {
+                removeFromList( m_componentHoldersByBundle, key.getBundleId(), component );
+                for ( String service: getServices( component ) )
+                {
+                    removeFromList( m_componentHoldersByService, service, component );
+                }
+                componentHoldersChanged();
+            }
         }
 
         if (component != null) {
@@ -431,14 +702,15 @@ public class ComponentRegistry implements ServiceListener
                 List<String> configurationPids = component.getComponentMetadata().getConfigurationPid();
                 for ( String configurationPid: configurationPids )
                 {
-                    Set<ComponentHolder<?>> componentsForPid = m_componentHoldersByPid.get( configurationPid );
-                    if ( componentsForPid != null )
+                    removeFromIndex( m_componentHoldersByPid, configurationPid, component );
+                }
+                // the bundle may not be accessible anymore, use the pids indexed on registration
+                final List<String> targetedPids = m_targetedPidsByHolder.remove( component );
+                if ( targetedPids != null )
+                {
+                    for ( String targetedPid: targetedPids )
                     {
-                        componentsForPid.remove( component );
-                        if ( componentsForPid.size() == 0 )
-                        {
-                            m_componentHoldersByPid.remove( configurationPid );
-                        }
+                        removeFromIndex( m_componentHoldersByTargetedPid, targetedPid, component );
                     }
                 }
             }
@@ -541,7 +813,7 @@ public class ComponentRegistry implements ServiceListener
     {
         if (configurationSupport == null)
         {
-            configurationSupport = new ConfigurationSupport(m_bundleContext, this);
+            configurationSupport = new ConfigurationSupport(m_bundleContext, this, m_configuration);
         }
         return configurationSupport;
     }
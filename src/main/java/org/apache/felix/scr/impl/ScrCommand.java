@@ -18,6 +18,7 @@
  */
 package org.apache.felix.scr.impl;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
@@ -26,6 +27,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
@@ -34,6 +36,11 @@ import java.util.TreeMap;
 import java.util.regex.Pattern;
 
 import org.apache.felix.scr.impl.config.ScrConfiguration;
+import org.apache.felix.scr.impl.manager.AbstractComponentManager;
+import org.apache.felix.scr.impl.manager.ComponentStatistics;
+import org.apache.felix.scr.impl.runtime.ComponentGraph;
+import org.apache.felix.scr.impl.runtime.RuntimeStateWriter;
+import org.apache.felix.scr.impl.runtime.ServiceComponentRuntimeImpl;
 import org.apache.felix.scr.info.ScrInfo;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -91,17 +98,24 @@ public class ScrCommand implements ScrInfo
         }
     };
 
+    private static final Pattern COMPONENT_ID = Pattern.compile("\\d{1,18}");
+
     private final BundleContext bundleContext;
     private final ServiceComponentRuntime scrService;
     private final ScrConfiguration scrConfiguration;
 
+    // the actor thread sampled by the top command, null if not known
+    private volatile ComponentActorThread componentActor;
+
     private ServiceRegistration<ScrInfo> reg;
     private ServiceRegistration<?> gogoReg;
     private ServiceRegistration<?> shellReg;
 
-    static ScrCommand register(BundleContext bundleContext, ServiceComponentRuntime scrService, ScrConfiguration scrConfiguration)
+    static ScrCommand register(BundleContext bundleContext, ServiceComponentRuntime scrService, ScrConfiguration scrConfiguration,
+        ComponentActorThread componentActor)
     {
         final ScrCommand cmd = new ScrCommand(bundleContext, scrService, scrConfiguration);
+        cmd.componentActor = componentActor;
 
         cmd.registerCommands(bundleContext, scrService);
         return cmd;
@@ -127,7 +141,7 @@ public class ScrCommand implements ScrInfo
             final Hashtable<String, Object> props = new Hashtable<String, Object>();
             props.put("osgi.command.scope", "scr");
             props.put("osgi.command.function", new String[]
-                { "config", "disable", "enable", "info", "list" });
+                { "config", "disable", "enable", "export", "graph", "info", "list", "metrics", "stats", "top" });
             props.put(Constants.SERVICE_DESCRIPTION, "SCR Gogo Shell Support");
             props.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
             gogoReg = bundleContext.registerService(ScrGogoCommand.class, gogoCmd, props);
@@ -204,30 +218,7 @@ public class ScrCommand implements ScrInfo
 
         if (bundleIdentifier != null)
         {
-            Bundle bundle = null;
-            try
-            {
-                final long bundleId = Long.parseLong(bundleIdentifier);
-                bundle = bundleContext.getBundle(bundleId);
-            }
-            catch (final NumberFormatException nfe)
-            {
-                // might be a bundle symbolic name
-                final Bundle[] bundles = bundleContext.getBundles();
-                for (int i = 0; i < bundles.length; i++)
-                {
-                    if (bundleIdentifier.equals(bundles[i].getSymbolicName()))
-                    {
-                        bundle = bundles[i];
-                        break;
-                    }
-                }
-            }
-
-            if (bundle == null)
-            {
-                throw new IllegalArgumentException("Missing bundle with ID " + bundleIdentifier);
-            }
+            final Bundle bundle = getBundle(bundleIdentifier);
             if (ComponentRegistry.isBundleActive(bundle))
             {
                 descriptions.addAll(scrService.getComponentDescriptionDTOs(bundle));
@@ -408,6 +399,254 @@ public class ScrCommand implements ScrInfo
         out.flush();
     }
 
+    /**
+     * @see org.apache.felix.scr.info.ScrInfo#export(java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.io.PrintWriter)
+     */
+    public void export(final String format, final String bundleIdentifier, final String state, final String serviceInterface,
+        final String namePattern, final PrintWriter out)
+    {
+        final boolean json;
+        if ( format == null || "line".equals(format) )
+        {
+            json = false;
+        }
+        else if ( "json".equals(format) )
+        {
+            json = true;
+        }
+        else
+        {
+            throw new IllegalArgumentException("Unknown export format " + format + ", expected json or line");
+        }
+        if ( !(scrService instanceof ServiceComponentRuntimeImpl) )
+        {
+            throw new IllegalArgumentException("Export is not supported by this Service Component Runtime");
+        }
+        final Bundle bundle = bundleIdentifier == null ? null : getBundle(bundleIdentifier);
+        final Pattern pattern = namePattern == null ? null : Pattern.compile(namePattern);
+        try
+        {
+            ((ServiceComponentRuntimeImpl) scrService).writeRuntimeState(out, json, bundle,
+                RuntimeStateWriter.toState(state), serviceInterface, pattern);
+        }
+        catch ( final IOException ioe )
+        {
+            // not expected from a PrintWriter
+            throw new IllegalStateException("Failed writing runtime state: " + ioe);
+        }
+    }
+
+    /**
+     * @see org.apache.felix.scr.info.ScrInfo#stats(java.lang.String, java.lang.String, java.io.PrintWriter)
+     */
+    public void stats(final String namePattern, final String sortColumn, final PrintWriter out)
+    {
+        final int column = sortColumn == null ? 0 : Arrays.asList(STATS_COLUMNS).indexOf(sortColumn);
+        if ( column < 0 )
+        {
+            throw new IllegalArgumentException("Unknown column " + sortColumn + ", expected one of " + Arrays.asList(STATS_COLUMNS));
+        }
+        if ( !(scrService instanceof ServiceComponentRuntimeImpl) )
+        {
+            throw new IllegalArgumentException("Statistics are not supported by this Service Component Runtime");
+        }
+        final Pattern pattern = namePattern == null ? null : Pattern.compile(namePattern);
+        final List<StatsRow> rows = new ArrayList<StatsRow>();
+        for ( final AbstractComponentManager<?> manager : ((ServiceComponentRuntimeImpl) scrService).getComponentManagers(pattern) )
+        {
+            rows.add(new StatsRow(manager));
+        }
+        if ( rows.isEmpty() )
+        {
+            out.println("No components registered");
+            out.flush();
+            return;
+        }
+        Collections.sort(rows, new Comparator<StatsRow>()
+        {
+            public int compare(final StatsRow r1, final StatsRow r2)
+            {
+                if ( column == 1 )
+                {
+                    return r1.name.compareTo(r2.name);
+                }
+                final int result = column == 0 ? compareLongs(r1.values[0], r2.values[0]) : compareLongs(r2.values[column], r1.values[column]);
+                return result != 0 ? result : compareLongs(r1.values[0], r2.values[0]);
+            }
+        });
+
+        out.println("    Id Activations  Total ms    Avg ms    Max ms   Binds Unbinds Unsatisfied ms Reactivations Name");
+        for ( final StatsRow row : rows )
+        {
+            out.println(String.format("%1$6d %2$11d %3$9d %4$9d %5$9d %6$7d %7$7d %8$14d %9$13d %10$s",
+                row.values[0], row.values[2], row.values[3], row.values[4], row.values[5], row.values[6],
+                row.values[7], row.values[8], row.values[9], row.name));
+        }
+        out.flush();
+    }
+
+    /**
+     * @see org.apache.felix.scr.info.ScrInfo#metrics(java.io.PrintWriter)
+     */
+    public void metrics(final PrintWriter out)
+    {
+        for ( final Map.Entry<String, Long> counter : ScrMetrics.getCounters().entrySet() )
+        {
+            out.println(String.format("%1$-36s %2$d", counter.getKey(), counter.getValue()));
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the dependency graph of the component configurations as a
+     * Graphviz DOT digraph or as JSON, each component configuration annotated
+     * with the time from enabling until active, or writes the critical path
+     * of each top-level component configuration as text.
+     *
+     * @param format <code>dot</code> or null, <code>json</code> or
+     *      <code>path</code>
+     */
+    void graph(final String format, final PrintWriter out)
+    {
+        if ( !(scrService instanceof ServiceComponentRuntimeImpl) )
+        {
+            throw new IllegalArgumentException("The dependency graph is not supported by this Service Component Runtime");
+        }
+        final ComponentGraph graph = new ComponentGraph(((ServiceComponentRuntimeImpl) scrService).getComponentManagers(null));
+        try
+        {
+            if ( format == null || "dot".equals(format) )
+            {
+                graph.writeDot(out);
+            }
+            else if ( "json".equals(format) )
+            {
+                graph.writeJson(out);
+            }
+            else if ( "path".equals(format) )
+            {
+                graph.writeCriticalPaths(out);
+            }
+            else
+            {
+                throw new IllegalArgumentException("Unknown graph format " + format + ", expected dot, json or path");
+            }
+        }
+        catch ( final IOException ioe )
+        {
+            // not expected from a PrintWriter
+            throw new IllegalStateException("Failed writing dependency graph: " + ioe);
+        }
+    }
+
+    /**
+     * Prints the lifecycle activity of the components every interval: the
+     * components activating, deactivating, binding or unbinding most, the
+     * actor queue depth, the configuration events per second and the task
+     * which held the component actor longest.
+     *
+     * @param iterations number of samples to print, or 0 to print samples
+     *      until the thread is interrupted
+     * @param interval milliseconds between samples
+     * @param rows maximum number of components to list per sample
+     */
+    void top(final int iterations, final long interval, final int rows, final PrintWriter out)
+    {
+        if ( interval <= 0 || rows <= 0 )
+        {
+            throw new IllegalArgumentException("Interval and rows must be positive");
+        }
+        if ( !(scrService instanceof ServiceComponentRuntimeImpl) )
+        {
+            throw new IllegalArgumentException("Activity sampling is not supported by this Service Component Runtime");
+        }
+        final ServiceComponentRuntimeImpl runtime = (ServiceComponentRuntimeImpl) scrService;
+        final ComponentActorThread actor = componentActor;
+        if ( actor != null )
+        {
+            // start measuring with this sample
+            actor.takeLongestTask();
+        }
+        Map<AbstractComponentManager<?>, long[]> previous = sampleActivity(runtime);
+        long previousConfigEvents = ScrMetrics.get(ScrMetrics.Counter.CONFIG_EVENTS);
+        long previousTime = System.nanoTime();
+        for ( int i = 0; iterations <= 0 || i < iterations; i++ )
+        {
+            try
+            {
+                Thread.sleep(interval);
+            }
+            catch ( final InterruptedException ie )
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            final Map<AbstractComponentManager<?>, long[]> current = sampleActivity(runtime);
+            final long configEvents = ScrMetrics.get(ScrMetrics.Counter.CONFIG_EVENTS);
+            final long time = System.nanoTime();
+
+            final List<ActivityRow> activity = new ArrayList<ActivityRow>();
+            for ( final Map.Entry<AbstractComponentManager<?>, long[]> entry : current.entrySet() )
+            {
+                final long[] before = previous.get(entry.getKey());
+                final long[] delta = new long[ACTIVITY_COLUMNS];
+                long total = 0;
+                for ( int c = 0; c < ACTIVITY_COLUMNS; c++ )
+                {
+                    delta[c] = entry.getValue()[c] - (before == null ? 0 : before[c]);
+                    total += delta[c];
+                }
+                if ( total > 0 )
+                {
+                    activity.add(new ActivityRow(entry.getKey(), delta, total));
+                }
+            }
+            Collections.sort(activity);
+
+            final ComponentActorThread.TaskTiming longest = actor == null ? null : actor.takeLongestTask();
+            final double seconds = (time - previousTime) / 1000000000d;
+            out.println(String.format("SCR activity at %1$tT, actor queue: %2$s, config events/s: %3$.1f",
+                System.currentTimeMillis(), actor == null ? "-" : String.valueOf(actor.getQueueSize()),
+                (configEvents - previousConfigEvents) / seconds));
+            out.println("Longest actor task: " + (longest == null ? "-"
+                : longest.task + " (" + ComponentStatistics.toMillis(longest.duration) + " ms)"));
+            out.println("    Id Activations Deactivations   Binds Unbinds State                     Name");
+            for ( int r = 0; r < activity.size() && r < rows; r++ )
+            {
+                final ActivityRow row = activity.get(r);
+                out.println(String.format("%1$6d %2$11d %3$13d %4$7d %5$7d %6$-25s %7$s", row.manager.getId(),
+                    row.delta[0], row.delta[1], row.delta[2], row.delta[3],
+                    RuntimeStateWriter.toStateName(row.manager.getState()), row.manager.getComponentMetadata().getName()));
+            }
+            out.println();
+            out.flush();
+
+            previous = current;
+            previousConfigEvents = configEvents;
+            previousTime = time;
+        }
+        out.flush();
+    }
+
+    private static final int ACTIVITY_COLUMNS = 4;
+
+    private static Map<AbstractComponentManager<?>, long[]> sampleActivity(final ServiceComponentRuntimeImpl runtime)
+    {
+        final Map<AbstractComponentManager<?>, long[]> sample = new HashMap<AbstractComponentManager<?>, long[]>();
+        for ( final AbstractComponentManager<?> manager : runtime.getComponentManagers(null) )
+        {
+            final ComponentStatistics stats = manager.getStatistics();
+            sample.put(manager, new long[] { stats.getActivationCount(), stats.getDeactivationCount(),
+                stats.getBindCount(), stats.getUnbindCount() });
+        }
+        return sample;
+    }
+
+    private static int compareLongs(final long l1, final long l2)
+    {
+        return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+    }
+
     void propertyInfo(Map<String, Object> props, PrintWriter out, String prefix)
     {
         if ( props != null )
@@ -574,6 +813,82 @@ public class ScrCommand implements ScrInfo
         }
     }
 
+    private Bundle getBundle(final String bundleIdentifier)
+    {
+        Bundle bundle = null;
+        try
+        {
+            final long bundleId = Long.parseLong(bundleIdentifier);
+            bundle = bundleContext.getBundle(bundleId);
+        }
+        catch (final NumberFormatException nfe)
+        {
+            // might be a bundle symbolic name
+            final Bundle[] bundles = bundleContext.getBundles();
+            for (int i = 0; i < bundles.length; i++)
+            {
+                if (bundleIdentifier.equals(bundles[i].getSymbolicName()))
+                {
+                    bundle = bundles[i];
+                    break;
+                }
+            }
+        }
+
+        if (bundle == null)
+        {
+            throw new IllegalArgumentException("Missing bundle with ID " + bundleIdentifier);
+        }
+        return bundle;
+    }
+
+    private static final String[] STATS_COLUMNS = { "id", "name", "activations", "total", "avg", "max", "binds",
+        "unbinds", "unsatisfied", "reactivations" };
+
+    /**
+     * The statistics of a component configuration in the order of the
+     * {@link #STATS_COLUMNS}, with durations in milliseconds. The name column
+     * is held separately.
+     */
+    private static final class StatsRow {
+        final String name;
+        final long[] values;
+
+        StatsRow(final AbstractComponentManager<?> manager)
+        {
+            final ComponentStatistics stats = manager.getStatistics();
+            name = manager.getComponentMetadata().getName();
+            values = new long[] { manager.getId(), 0, stats.getActivationCount(),
+                ComponentStatistics.toMillis(stats.getTotalActivationTime()),
+                ComponentStatistics.toMillis(stats.getAverageActivationTime()),
+                ComponentStatistics.toMillis(stats.getMaxActivationTime()), stats.getBindCount(), stats.getUnbindCount(),
+                ComponentStatistics.toMillis(stats.getUnsatisfiedTime()), stats.getStaticReactivationCount() };
+        }
+    }
+
+    /**
+     * The activity of a component between two samples, ordered by
+     * decreasing total activity.
+     */
+    private static final class ActivityRow implements Comparable<ActivityRow> {
+        final AbstractComponentManager<?> manager;
+        final long[] delta;
+        final long total;
+
+        ActivityRow(final AbstractComponentManager<?> manager, final long[] delta, final long total)
+        {
+            this.manager = manager;
+            this.delta = delta;
+            this.total = total;
+        }
+
+        public int compareTo(final ActivityRow other)
+        {
+            final int result = compareLongs(other.total, total);
+            return result != 0 ? result : compareLongs(manager.getId(), other.manager.getId());
+        }
+    }
+
     private static final class Result {
         public List<ComponentDescriptionDTO> components = new ArrayList<ComponentDescriptionDTO>();
         public ComponentConfigurationDTO configuration;
@@ -584,6 +899,20 @@ public class ScrCommand implements ScrInfo
         final Pattern p = (componentIdentifier == null ? null : Pattern.compile(componentIdentifier));
         final Result result = new Result();
 
+        // a component id is looked up directly instead of scanning all components
+        if ( !nameMatch && componentIdentifier != null && scrService instanceof ServiceComponentRuntimeImpl
+            && COMPONENT_ID.matcher(componentIdentifier).matches() )
+        {
+            final ComponentConfigurationDTO cfg = ((ServiceComponentRuntimeImpl) scrService).getComponentConfigurationDTO(
+                Long.parseLong(componentIdentifier));
+            if ( cfg != null )
+            {
+                result.components.add(cfg.description);
+                result.configuration = cfg;
+                return result;
+            }
+        }
+
         for(final ComponentDescriptionDTO cmp : scrService.getComponentDescriptionDTOs())
         {
             if (componentIdentifier != null)
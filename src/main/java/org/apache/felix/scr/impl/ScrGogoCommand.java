@@ -21,6 +21,7 @@ package org.apache.felix.scr.impl;
 import java.io.PrintWriter;
 
 import org.apache.felix.service.command.Descriptor;
+import org.apache.felix.service.command.Parameter;
 
 /**
  * The <code>ScrGogoCommand</code> implements the Apache Felix Gogo Shell
@@ -35,6 +36,16 @@ import org.apache.felix.service.command.Descriptor;
  * <dd>Enable a component</dd>
  * <dt><code>scr:disable</code></dt>
  * <dd>Disable a component</dd>
+ * <dt><code>scr:export</code></dt>
+ * <dd>Export the state of the component configurations as JSON or lines</dd>
+ * <dt><code>scr:stats</code></dt>
+ * <dd>Print performance statistics of the component configurations</dd>
+ * <dt><code>scr:metrics</code></dt>
+ * <dd>Print the runtime wide counters of the Service Component Runtime</dd>
+ * <dt><code>scr:graph</code></dt>
+ * <dd>Export the dependency graph of the component configurations</dd>
+ * <dt><code>scr:top</code></dt>
+ * <dd>Print the lifecycle activity of the components every second</dd>
  * <dt><code>scr:config</code></dt>
  * <dd>Print configuration of the Apache Felix Declarative Services bundle</dd>
  * </dl>
@@ -121,6 +132,81 @@ class ScrGogoCommand
         }
     }
 
+    @Descriptor("Export the state of the component configurations")
+    public void export(
+        @Descriptor("Output format, json or line") @Parameter(names = { "-f", "--format" }, absentValue = "line") final String format,
+        @Descriptor("Symbolic name or ID of the bundle") @Parameter(names = { "-b", "--bundle" }, absentValue = "") final String bundleIdentifier,
+        @Descriptor("State of the component configurations, for example active or unsatisfied-reference") @Parameter(names = { "-s", "--state" }, absentValue = "") final String state,
+        @Descriptor("Name of a service interface provided by the components") @Parameter(names = { "-i", "--service" }, absentValue = "") final String serviceInterface,
+        @Descriptor("Regular expression matching the component names") @Parameter(names = { "-n", "--name" }, absentValue = "") final String namePattern)
+    {
+        try
+        {
+            scrCommand.export(format, emptyToNull(bundleIdentifier), emptyToNull(state), emptyToNull(serviceInterface),
+                emptyToNull(namePattern), new PrintWriter(System.out));
+        }
+        catch ( IllegalArgumentException e )
+        {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    @Descriptor("Show the performance statistics of the component configurations")
+    public void stats(
+        @Descriptor("Column to sort by: id, name, activations, total, avg, max, binds, unbinds, unsatisfied or reactivations") @Parameter(names = { "-s", "--sort" }, absentValue = "id") final String sortColumn,
+        @Descriptor("Regular expression matching the component names") @Parameter(names = { "-n", "--name" }, absentValue = "") final String namePattern)
+    {
+        try
+        {
+            scrCommand.stats(emptyToNull(namePattern), sortColumn, new PrintWriter(System.out));
+        }
+        catch ( IllegalArgumentException e )
+        {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    @Descriptor("Show the runtime wide counters of the Service Component Runtime")
+    public void metrics()
+    {
+        scrCommand.metrics(new PrintWriter(System.out));
+    }
+
+    @Descriptor("Export the dependency graph of the component configurations with the time to active")
+    public void graph(
+        @Descriptor("Output format, dot, json or path for the critical paths") @Parameter(names = { "-f", "--format" }, absentValue = "dot") final String format)
+    {
+        try
+        {
+            scrCommand.graph(format, new PrintWriter(System.out));
+        }
+        catch ( IllegalArgumentException e )
+        {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    @Descriptor("Show the lifecycle activity of the components every interval until interrupted")
+    public void top(
+        @Descriptor("Number of samples, 0 to sample until interrupted") @Parameter(names = { "-n", "--iterations" }, absentValue = "0") final int iterations,
+        @Descriptor("Milliseconds between samples") @Parameter(names = { "-d", "--delay" }, absentValue = "1000") final long interval,
+        @Descriptor("Maximum number of components listed per sample") @Parameter(names = { "-r", "--rows" }, absentValue = "20") final int rows)
+    {
+        try
+        {
+            scrCommand.top(iterations, interval, rows, new PrintWriter(System.out));
+        }
+        catch ( IllegalArgumentException e )
+        {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    private static String emptyToNull(final String value)
+    {
+        return value == null || value.length() == 0 ? null : value;
+    }
+
     @Descriptor("Show the current SCR configuration")
     public void config()
     {
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl;
+
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * The <code>ScrMetrics</code> class holds the runtime wide counters of the
+ * Service Component Runtime. The counters are incremented without locking
+ * and are reset when the SCR bundle is stopped.
+ */
+public class ScrMetrics
+{
+
+    /**
+     * The counters maintained.
+     */
+    public enum Counter
+    {
+        /** Reference class lookups answered from the class lookup cache */
+        CLASS_LOOKUP_CACHE_HITS("classLookup.cacheHits"),
+
+        /** Reference class lookups not found in the class lookup cache */
+        CLASS_LOOKUP_CACHE_MISSES("classLookup.cacheMisses"),
+
+        /** Configuration update events superseded by a later event of the same configuration */
+        CONFIG_UPDATES_COALESCED("config.updatesCoalesced"),
+
+        /** Component reconfigurations skipped because the configuration content did not change */
+        RECONFIGURATIONS_SKIPPED("component.reconfigurationsSkipped"),
+
+        /** Configuration events received from the Configuration Admin Service */
+        CONFIG_EVENTS("config.events"),
+
+        /** Component instances created and activated */
+        COMPONENT_ACTIVATIONS("component.activations"),
+
+        /** Component instances deactivated and disposed */
+        COMPONENT_DEACTIVATIONS("component.deactivations"),
+
+        /** Active components deactivated for reactivation because of a static reference */
+        STATIC_REACTIVATIONS("component.staticReactivations"),
+
+        /** Bind method calls and field updates binding a service */
+        REFERENCE_BINDS("reference.binds"),
+
+        /** Unbind method calls and field updates unbinding a service */
+        REFERENCE_UNBINDS("reference.unbinds"),
+
+        /** Factory instances created by reusing a pooled component instance */
+        FACTORY_INSTANCES_REUSED("factory.instancesReused");
+
+        private final String m_name;
+
+
+        private Counter( final String name )
+        {
+            m_name = name;
+        }
+
+
+        public String getName()
+        {
+            return m_name;
+        }
+    }
+
+    private static final AtomicLong[] m_counters;
+
+    static
+    {
+        m_counters = new AtomicLong[Counter.values().length];
+        for ( int i = 0; i < m_counters.length; i++ )
+        {
+            m_counters[i] = new AtomicLong();
+        }
+    }
+
+
+    public static void increment( final Counter counter )
+    {
+        m_counters[counter.ordinal()].incrementAndGet();
+    }
+
+
+    public static long get( final Counter counter )
+    {
+        return m_counters[counter.ordinal()].get();
+    }
+
+
+    /**
+     * Returns a snapshot of all counters keyed by counter name in the
+     * declaration order of the counters.
+     */
+    public static Map<String, Long> getCounters()
+    {
+        final Map<String, Long> counters = new LinkedHashMap<String, Long>();
+        for ( Counter counter : Counter.values() )
+        {
+            counters.put( counter.getName(), get( counter ) );
+        }
+        return counters;
+    }
+
+
+    public static void reset()
+    {
+        for ( AtomicLong counter : m_counters )
+        {
+            counter.set( 0 );
+        }
+    }
+}
@@ -37,6 +37,11 @@ class ScrShellCommand implements Command
     private static final String ENABLE_CMD = "enable";
     private static final String DISABLE_CMD = "disable";
     private static final String CONFIG_CMD = "config";
+    private static final String EXPORT_CMD = "export";
+    private static final String STATS_CMD = "stats";
+    private static final String METRICS_CMD = "metrics";
+    private static final String TOP_CMD = "top";
+    private static final String GRAPH_CMD = "graph";
 
     private final ScrCommand scrCommand;
 
@@ -99,6 +104,26 @@ class ScrShellCommand implements Command
                 {
                     scrCommand.config(pw);
                 }
+                else if (command.equals(EXPORT_CMD))
+                {
+                    export(st, pw);
+                }
+                else if (command.equals(STATS_CMD))
+                {
+                    stats(st, pw);
+                }
+                else if (command.equals(METRICS_CMD))
+                {
+                    scrCommand.metrics(pw);
+                }
+                else if (command.equals(TOP_CMD))
+                {
+                    top(st, pw);
+                }
+                else if (command.equals(GRAPH_CMD))
+                {
+                    graph(st, pw);
+                }
                 else
                 {
                     err.println("Unknown command: " + command);
@@ -111,6 +136,137 @@ class ScrShellCommand implements Command
         }
     }
 
+    private void export(String[] st, PrintWriter pw)
+    {
+        String format = null;
+        String bundleIdentifier = null;
+        String state = null;
+        String serviceInterface = null;
+        String namePattern = null;
+        for (int i = 2; i < st.length; i++)
+        {
+            if (i + 1 >= st.length)
+            {
+                throw new IllegalArgumentException("Missing value of option " + st[i]);
+            }
+            if ("-f".equals(st[i]))
+            {
+                format = st[++i];
+            }
+            else if ("-b".equals(st[i]))
+            {
+                bundleIdentifier = st[++i];
+            }
+            else if ("-s".equals(st[i]))
+            {
+                state = st[++i];
+            }
+            else if ("-i".equals(st[i]))
+            {
+                serviceInterface = st[++i];
+            }
+            else if ("-n".equals(st[i]))
+            {
+                namePattern = st[++i];
+            }
+            else
+            {
+                throw new IllegalArgumentException("Unknown option " + st[i]);
+            }
+        }
+        scrCommand.export(format, bundleIdentifier, state, serviceInterface, namePattern, pw);
+    }
+
+    private void stats(String[] st, PrintWriter pw)
+    {
+        String sortColumn = null;
+        String namePattern = null;
+        for (int i = 2; i < st.length; i++)
+        {
+            if (i + 1 >= st.length)
+            {
+                throw new IllegalArgumentException("Missing value of option " + st[i]);
+            }
+            if ("-s".equals(st[i]))
+            {
+                sortColumn = st[++i];
+            }
+            else if ("-n".equals(st[i]))
+            {
+                namePattern = st[++i];
+            }
+            else
+            {
+                throw new IllegalArgumentException("Unknown option " + st[i]);
+            }
+        }
+        scrCommand.stats(namePattern, sortColumn, pw);
+    }
+
+    private void top(String[] st, PrintWriter pw)
+    {
+        // the legacy shell cannot interrupt a command, so sample a limited number of times
+        int iterations = 10;
+        long interval = 1000;
+        int rows = 20;
+        try
+        {
+            for (int i = 2; i < st.length; i++)
+            {
+                if (i + 1 >= st.length)
+                {
+                    throw new IllegalArgumentException("Missing value of option " + st[i]);
+                }
+                if ("-n".equals(st[i]))
+                {
+                    iterations = Integer.parseInt(st[++i]);
+                }
+                else if ("-d".equals(st[i]))
+                {
+                    interval = Long.parseLong(st[++i]);
+                }
+                else if ("-r".equals(st[i]))
+                {
+                    rows = Integer.parseInt(st[++i]);
+                }
+                else
+                {
+                    throw new IllegalArgumentException("Unknown option " + st[i]);
+                }
+            }
+        }
+        catch (NumberFormatException nfe)
+        {
+            throw new IllegalArgumentException("Invalid number: " + nfe.getMessage());
+        }
+        if (iterations <= 0)
+        {
+            throw new IllegalArgumentException("Number of samples must be positive");
+        }
+        scrCommand.top(iterations, interval, rows, pw);
+    }
+
+    private void graph(String[] st, PrintWriter pw)
+    {
+        String format = null;
+        for (int i = 2; i < st.length; i++)
+        {
+            if (i + 1 >= st.length)
+            {
+                throw new IllegalArgumentException("Missing value of option " + st[i]);
+            }
+            if ("-f".equals(st[i]))
+            {
+                format = st[++i];
+            }
+            else
+            {
+                throw new IllegalArgumentException("Unknown option " + st[i]);
+            }
+        }
+        scrCommand.graph(format, pw);
+    }
+
     private void help(PrintStream out, String command)
     {
         if (LIST_CMD.equals( command ))
@@ -155,6 +311,62 @@ class ScrShellCommand implements Command
             out.println("This command lists the current SCR configuration.");
             out.println("");
         }
+        else if (EXPORT_CMD.equals( command ))
+        {
+            out.println("");
+            out.println("scr " + EXPORT_CMD + " [ -f json|line ] [ -b <bundleId> ] [ -s <state> ] [ -i <service> ] [ -n <namePattern> ]");
+            out.println("");
+            out.println("This command writes the state of the component configurations as JSON or as\n"
+                + "one line per component configuration. The component configurations may be\n"
+                + "selected by bundle, by state, such as active or unsatisfied-reference, by a\n"
+                + "service interface the component provides and by a regular expression matching\n"
+                + "the component name.");
+            out.println("");
+        }
+        else if (STATS_CMD.equals( command ))
+        {
+            out.println("");
+            out.println("scr " + STATS_CMD + " [ -s <column> ] [ -n <namePattern> ]");
+            out.println("");
+            out.println("This command lists the activation counts and times, the bind and unbind\n"
+                + "counts, the time spent unsatisfied and the static reactivations of the component\n"
+                + "configurations, sorted by id, name, activations, total, avg, max, binds,\n"
+                + "unbinds, unsatisfied or reactivations.");
+            out.println("");
+        }
+        else if (METRICS_CMD.equals( command ))
+        {
+            out.println("");
+            out.println("scr " + METRICS_CMD);
+            out.println("");
+            out.println("This command lists the runtime wide counters of the Service Component Runtime,\n"
+                + "such as the class lookup cache hits and misses, the coalesced configuration\n"
+                + "updates and the reconfigurations skipped because the configuration did not change.");
+            out.println("");
+        }
+        else if (TOP_CMD.equals( command ))
+        {
+            out.println("");
+            out.println("scr " + TOP_CMD + " [ -n <samples> ] [ -d <delayMillis> ] [ -r <rows> ]");
+            out.println("");
+            out.println("This command samples the lifecycle activity every second, or the given delay,\n"
+                + "and lists the components activating, deactivating, binding and unbinding most,\n"
+                + "the actor queue depth, the configuration events per second and the task which\n"
+                + "held the component actor longest. By default 10 samples are printed.");
+            out.println("");
+        }
+        else if (GRAPH_CMD.equals( command ))
+        {
+            out.println("");
+            out.println("scr " + GRAPH_CMD + " [ -f dot|json|path ]");
+            out.println("");
+            out.println("This command writes the dependency graph of the component configurations as a\n"
+                + "Graphviz DOT digraph or as JSON. Each component configuration is annotated with\n"
+                + "the time from enabling until active and the critical path of each top-level\n"
+                + "component configuration is highlighted. The path format lists the critical\n"
+                + "paths only.");
+            out.println("");
+        }
         else
         {
             out.println("scr " + HELP_CMD + " [" + LIST_CMD + "]");
@@ -163,6 +375,11 @@ class ScrShellCommand implements Command
             out.println("scr " + ENABLE_CMD + " <componentName>");
             out.println("scr " + DISABLE_CMD + " <componentName>");
             out.println("scr " + CONFIG_CMD);
+            out.println("scr " + EXPORT_CMD + " [ -f json|line ] [ -b <bundleId> ] [ -s <state> ] [ -i <service> ] [ -n <namePattern> ]");
+            out.println("scr " + STATS_CMD + " [ -s <column> ] [ -n <namePattern> ]");
+            out.println("scr " + METRICS_CMD);
+            out.println("scr " + TOP_CMD + " [ -n <samples> ] [ -d <delayMillis> ] [ -r <rows> ]");
+            out.println("scr " + GRAPH_CMD + " [ -f dot|json|path ]");
         }
     }
 }
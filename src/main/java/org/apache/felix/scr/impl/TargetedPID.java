@@ -18,6 +18,9 @@
  */
 package org.apache.felix.scr.impl;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.felix.scr.impl.config.ComponentHolder;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.Constants;
@@ -36,6 +39,15 @@ import org.osgi.framework.Version;
 public class TargetedPID
 {
 
+    /**
+     * The maximum number of parsed instances kept by {@link #valueOf(String)}.
+     * Once reached the cache is cleared, since factory configurations may
+     * create an unbounded number of distinct PIDs.
+     */
+    private static final int CACHE_SIZE = 1024;
+
+    private static final ConcurrentMap<String, TargetedPID> cache = new ConcurrentHashMap<String, TargetedPID>();
+
     private final String rawPid;
 
     private final String servicePid;
@@ -76,6 +88,36 @@ public class TargetedPID
     }
 
 
+    /**
+     * Returns the <code>TargetedPID</code> for the raw PID. Instances are
+     * immutable and cached, such that repeated events of the same
+     * configuration do not parse the PID again.
+     */
+    public static TargetedPID valueOf( final String rawPid )
+    {
+        TargetedPID pid = cache.get( rawPid );
+        if ( pid == null )
+        {
+            if ( cache.size() >= CACHE_SIZE )
+            {
+                cache.clear();
+            }
+            pid = new TargetedPID( rawPid );
+            cache.put( rawPid, pid );
+        }
+        return pid;
+    }
+
+
+    /**
+     * Clears the cache of {@link #valueOf(String)}.
+     */
+    public static void clearCache()
+    {
+        cache.clear();
+    }
+
+
     public TargetedPID( final String rawPid )
     {
         this.rawPid = rawPid;
@@ -207,6 +249,16 @@ public class TargetedPID
     }
 
 
+    /**
+     * Returns <code>true</code> if this PID targets bundles by symbolic
+     * name, version or location.
+     */
+    public boolean isTargeted()
+    {
+        return bindingLevel > 0;
+    }
+
+
     /**
      * Returns <code>true</code> if this targeted PID binds stronger than
      * the <code>other</code> {@link TargetedPID}.
@@ -25,14 +25,16 @@ import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.felix.scr.impl.Activator;
 import org.apache.felix.scr.impl.BundleComponentActivator;
 import org.apache.felix.scr.impl.TargetedPID;
 import org.apache.felix.scr.impl.helper.ComponentMethods;
+import org.apache.felix.scr.impl.helper.LayeredProperties;
 import org.apache.felix.scr.impl.helper.SimpleLogger;
 import org.apache.felix.scr.impl.manager.AbstractComponentManager;
 import org.apache.felix.scr.impl.manager.ComponentFactoryImpl;
@@ -85,8 +87,6 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
 
     private final Long[] m_changeCount;
 
-    private final Map<String, Long> m_factoryChangeCount = new HashMap<String, Long>();
-
     /**
      * the index in metadata.getConfigurationPid() of the base factory pid, if any.  Each component created from a factory configuration
      * might have a different targeted pid.
@@ -99,22 +99,33 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
     private final Dictionary<String, Object>[] m_configurations;
 
     /**
-     * the factory configurations indexed by pid (which cannot be a TargetedPID since it's generated by CA).  We have to track these since
-     * other required configs may not yet be present so we can't create the component manager yet.
+     * The properties shared by all components of this holder: the component
+     * metadata properties merged with the non-factory configurations. This
+     * is replaced whenever a non-factory configuration changes.
+     */
+    private volatile BaseProperties m_baseProperties;
+
+    /**
+     * the factory configurations and the components created for them indexed by pid (which cannot be a TargetedPID since
+     * it's generated by CA).  We have to track the configurations since other required configs may not yet be present so
+     * we can't create the component manager yet.
+     * <p>
+     * Each entry is also the lock serializing the updates of its configuration, such that updates of different factory
+     * configurations proceed in parallel. Components are only added to or removed from entries while holding the
+     * {@link #m_lock holder lock}; the holder lock is never acquired before an entry lock is released.
      */
-    private final Map<String, Dictionary<String, Object>> m_factoryConfigurations = new HashMap<String, Dictionary<String, Object>>();
+    private final ConcurrentMap<String, FactoryInstance<S>> m_factoryInstances = new ConcurrentHashMap<String, FactoryInstance<S>>();
 
     /**
-     * Each factory config may be from a different TargetedPID (sharing the same base service pid, but with different level of detail)
+     * The number of {@link #m_factoryInstances} with a component. Guarded by {@link #m_lock}.
      */
-    private final Map<String, TargetedPID> m_factoryTargetedPids = new HashMap<String, TargetedPID>();
+    private int m_componentCount;
+
     /**
-     * A map of components configured with factory configuration. The indices
-     * are the PIDs (<code>service.pid</code>) of the configuration objects.
-     * The values are the {@link SingleComponentManager<S> component instances}
-     * created on behalf of the configurations.
+     * The lock guarding the structure of this holder: the non-factory configurations, the single component and the
+     * assignment of components to factory configurations.
      */
-    private final Map<String, AbstractComponentManager<S>> m_components;
+    private final Object m_lock = new Object();
 
     /**
      * The special component used if there is no configuration or a singleton
@@ -128,8 +139,8 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
      * <ul>
      * <li>This field is only <code>null</code> after disposal of all held
      * components</li>
-     * <li>The {@link #m_components} map is empty or the component pointed to
-     * by this field is also contained in the map</li>
+     * <li>No factory configuration has a component or the component pointed to
+     * by this field is also assigned to a factory configuration</li>
      * <ul>
      */
     private volatile AbstractComponentManager<S> m_singleComponent;
@@ -156,7 +167,7 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
         this.m_targetedPids = new TargetedPID[pidCount];
         this.m_configurations = new Dictionary[pidCount];
         this.m_changeCount = new Long[pidCount];
-        this.m_components = new HashMap<String, AbstractComponentManager<S>>();
+        this.m_baseProperties = new BaseProperties( metadata, m_configurations, null );
         this.m_componentMethods = new ComponentMethods();
         this.m_enabled = false;
     }
@@ -243,36 +254,36 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
             new Object[] {pid}, null);
 
         // component to deconfigure or dispose of
-        final Map<AbstractComponentManager<S>, Map<String, Object>> scms = new HashMap<AbstractComponentManager<S>, Map<String, Object>>();
+        final Map<AbstractComponentManager<S>, String> scms = new HashMap<AbstractComponentManager<S>, String>();
         boolean reconfigure = false;
 
-        synchronized ( m_components )
+        synchronized ( m_lock )
         {
             if (factoryPid != null) {
                 checkFactoryPidIndex(factoryPid);
                 String servicePid = pid.getServicePid();
-                m_factoryTargetedPids.remove(servicePid);
-                m_factoryChangeCount.remove(servicePid);
-                m_factoryConfigurations.remove(servicePid);
-                AbstractComponentManager<S> scm = m_components.remove(servicePid);
-                if ( m_factoryConfigurations.isEmpty() )
+                FactoryInstance<S> instance = m_factoryInstances.remove(servicePid);
+                AbstractComponentManager<S> scm = null;
+                if ( instance != null && instance.m_component != null )
                 {
-                    m_factoryPidIndex = null;
+                    scm = instance.m_component;
+                    instance.m_component = null;
+                    m_componentCount--;
+                }
+                if ( m_factoryInstances.isEmpty() )
+                {
+                    setFactoryPidIndex( null );
                 }
                 if ( !m_enabled || scm == null )
                 {
                     return;
                 }
-                reconfigure = m_componentMetadata.isConfigurationOptional() && m_components.isEmpty();
+                reconfigure = m_componentMetadata.isConfigurationOptional() && m_componentCount == 0;
                 if ( reconfigure )
                 {
                     m_singleComponent = scm;
-                    scms.put( scm, mergeProperties(null) );
-                }
-                else
-                {
-                    scms.put( scm,  null );
                 }
+                scms.put( scm, null );
             }
             else
             {
@@ -281,6 +292,7 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
                 m_targetedPids[index] = null;
                 m_changeCount[index] = null;
                 m_configurations[index] = null;
+                updateBaseProperties();
                 if ( !m_enabled )
                 {
                     return;
@@ -290,37 +302,37 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
                 if ( m_factoryPidIndex == null)
                 {
                     if ( m_singleComponent != null ) {
-                        if (reconfigure) {
-                            scms.put(m_singleComponent, mergeProperties(null));
-                        } else {
-                            scms.put(m_singleComponent, null);
+                        scms.put(m_singleComponent, null);
+                        if (!reconfigure) {
                             m_singleComponent = null;
                         }
                     }
                 }
                 else
                 {
-                    if (reconfigure) {
-                        for (Map.Entry<String, AbstractComponentManager<S>> entry : m_components.entrySet()) {
-                            scms.put(entry.getValue(), mergeProperties(entry.getKey()));
+                    for (FactoryInstance<S> instance : m_factoryInstances.values()) {
+                        if ( instance.m_component != null )
+                        {
+                            scms.put(instance.m_component, instance.m_pid);
+                            if ( !reconfigure )
+                            {
+                                instance.m_component = null;
+                            }
                         }
                     }
-                    else
+                    if ( !reconfigure )
                     {
-                        for (Map.Entry<String, AbstractComponentManager<S>> entry : m_components.entrySet()) {
-                            scms.put(entry.getValue(), null );
-                        }
-                        m_components.clear();
+                        m_componentCount = 0;
                     }
                 }
 
             }
         }
 
-        for ( Map.Entry<AbstractComponentManager<S>,Map<String, Object>> entry: scms.entrySet())
+        for ( Map.Entry<AbstractComponentManager<S>, String> entry: scms.entrySet())
         {
             if ( reconfigure ) {
-                entry.getKey().reconfigure( entry.getValue(), true);
+                reconfigure( entry.getKey(), entry.getValue(), true );
             } else {
                 entry.getKey().dispose(ComponentConstants.DEACTIVATION_REASON_CONFIGURATION_DELETED);
             }
@@ -340,6 +352,11 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
      * <li>The configuration is a factory configuration but not the first. In
      * this case a new component is created, configured and stored in the map</li>
      * </ul>
+     * Updates of a factory configuration which already has a component only
+     * lock the entry of the configuration, such that different factory
+     * configurations can be updated concurrently. The component is called
+     * after releasing all locks.
+     *
      * @return true if a new configuration was created, false otherwise. //TODO there are now 3 states..... still not satisfied, existing, and new
      */
     public boolean configurationUpdated( TargetedPID pid, TargetedPID factoryPid, final Dictionary<String, Object> props, long changeCount )
@@ -347,138 +364,263 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
         log( LogService.LOG_DEBUG, "ConfigurableComponentHolder configuration updated for pid {0} with properties {1}",
             new Object[] {pid, props}, null);
 
+        if ( factoryPid != null )
+        {
+            return factoryConfigurationUpdated( pid, factoryPid, props, changeCount );
+        }
+
         // component to update or create
-        final Map<AbstractComponentManager<S>, Map<String, Object>> scms = new HashMap< AbstractComponentManager<S>, Map<String, Object>>();
+        final Map<AbstractComponentManager<S>, String> scms = new HashMap< AbstractComponentManager<S>, String>();
         boolean created = false;
 
         //TODO better change count tracking
-        synchronized (m_components) {
-            //Find or create the component manager, or return if not satisfied.
-            if (factoryPid != null) {
-                checkFactoryPidIndex(factoryPid);
-                m_factoryConfigurations.put(pid.getServicePid(), props);
-                m_factoryTargetedPids.put(pid.getServicePid(), factoryPid);
-                m_factoryChangeCount.put(pid.getServicePid(), changeCount);
-                if (m_enabled && isSatisfied()) {
-                    if (m_singleComponent != null && !m_componentMetadata.isObsoleteFactoryComponentFactory()) {
-                        AbstractComponentManager<S> scm = m_singleComponent;
-                        scms.put( scm, mergeProperties( pid.getServicePid() ) );
-                        m_singleComponent = null;
-                        m_components.put(pid.getServicePid(), scm);
-                    } else if (m_components.containsKey(pid.getServicePid())) {
-                        scms.put( m_components.get(pid.getServicePid()), mergeProperties( pid.getServicePid())  );
-                    } else {
-                        AbstractComponentManager<S> scm = createComponentManager(true);
-                        m_components.put(pid.getServicePid(), scm);
-                        scms.put( scm, mergeProperties( pid.getServicePid())  );
-                        created = true;
+        synchronized (m_lock) {
+            //singleton pid
+            int index = getSingletonPidIndex(pid);
+            m_targetedPids[index] = pid;
+            m_changeCount[index] = changeCount;
+            m_configurations[index] = props;
+            updateBaseProperties();
+            if (m_enabled && isSatisfied()) {
+                if (m_singleComponent != null) {
+                    scms.put( m_singleComponent, pid.getServicePid() );
+                }
+                else if ( m_factoryPidIndex != null)
+                {
+                    for (FactoryInstance<S> instance: m_factoryInstances.values())
+                    {
+                        if ( instance.m_component != null )
+                        {
+                            scms.put(instance.m_component, instance.m_pid);
+                        }
                     }
-                } else {
-                    return false;
                 }
-
+                else
+                {
+                    m_singleComponent = createComponentManager(false);
+                    scms.put( m_singleComponent, pid.getServicePid() );
+                    created = true;
+                }
             } else {
-                //singleton pid
-                int index = getSingletonPidIndex(pid);
-                m_targetedPids[index] = pid;
-                m_changeCount[index] = changeCount;
-                m_configurations[index] = props;
-                if (m_enabled && isSatisfied()) {
-                    if (m_singleComponent != null) {
-                        scms.put( m_singleComponent, mergeProperties( pid.getServicePid() ) );
+                return false;
+            }
+        }
+
+
+        // we have the icm.
+        //properties is all the configs merged together (without any possible component factory info.
+
+        for ( Map.Entry<AbstractComponentManager<S>, String> entry: scms.entrySet())
+        {
+            configure( entry.getKey(), entry.getValue(), created, pid );
+        }
+        return created;
+    }
+
+    private boolean factoryConfigurationUpdated( TargetedPID pid, TargetedPID factoryPid, final Dictionary<String, Object> props, long changeCount )
+    {
+        final String servicePid = pid.getServicePid();
+        final FactoryConfiguration configuration = new FactoryConfiguration( props, factoryPid, changeCount );
+        FactoryInstance<S> instance = m_factoryInstances.get( servicePid );
+        if ( instance == null )
+        {
+            final FactoryInstance<S> newInstance = new FactoryInstance<S>( servicePid );
+            instance = m_factoryInstances.putIfAbsent( servicePid, newInstance );
+            if ( instance == null )
+            {
+                instance = newInstance;
+            }
+        }
+
+        AbstractComponentManager<S> scm;
+        boolean created = false;
+        boolean apply;
+        synchronized ( instance )
+        {
+            scm = instance.m_component;
+            final Integer factoryPidIndex = m_factoryPidIndex;
+            if ( scm != null && m_enabled && factoryPidIndex != null
+                && factoryPidIndex.intValue() == m_componentMetadata.getPidIndex( factoryPid ) )
+            {
+                // fast path: just update the existing component
+                instance.m_configuration = configuration;
+            }
+            else
+            {
+                synchronized ( m_lock )
+                {
+                    try
+                    {
+                        checkFactoryPidIndex(factoryPid);
                     }
-                    else if ( m_factoryPidIndex != null)
+                    catch ( RuntimeException re )
                     {
-                        for (Map.Entry<String, AbstractComponentManager<S>> entry: m_components.entrySet())
+                        if ( instance.m_configuration == null )
                         {
-                            scms.put(entry.getValue(), mergeProperties( entry.getKey()));
+                            m_factoryInstances.remove( servicePid, instance );
                         }
+                        throw re;
                     }
-                    else
+                    if ( m_factoryInstances.get( servicePid ) != instance )
                     {
-                        m_singleComponent = createComponentManager(false);
-                        scms.put( m_singleComponent, mergeProperties( pid.getServicePid() ) );
-                        created = true;
+                        // the configuration has been deleted concurrently, the update wins
+                        m_factoryInstances.put( servicePid, instance );
+                    }
+                    instance.m_configuration = configuration;
+                    if (!m_enabled || !isSatisfied()) {
+                        return false;
                     }
-                } else {
-                    return false;
+                    if ( instance.m_component == null )
+                    {
+                        if (m_singleComponent != null && !m_componentMetadata.isObsoleteFactoryComponentFactory()) {
+                            instance.m_component = m_singleComponent;
+                            m_singleComponent = null;
+                        } else {
+                            instance.m_component = createComponentManager(true);
+                            created = true;
+                        }
+                        m_componentCount++;
+                    }
+                    scm = instance.m_component;
                 }
-
             }
-
+            apply = instance.recordChange( false );
         }
 
+        // configure and possibly enable the component without holding any lock
+        if ( apply )
+        {
+            applyChanges( instance, scm );
+        }
+        enable( scm, created, pid );
+        return created;
+    }
 
-        // we have the icm.
-        //properties is all the configs merged together (without any possible component factory info.
+    private void configure( AbstractComponentManager<S> scm, String servicePid, boolean created, TargetedPID pid )
+    {
+        // configure the component
+        reconfigure( scm, servicePid, false );
+        enable( scm, created, pid );
+    }
 
+    private void enable( AbstractComponentManager<S> scm, boolean created, TargetedPID pid )
+    {
         final boolean enable = created && m_enabled;// TODO WTF?? && getComponentMetadata().isEnabled();
-        for ( Map.Entry<AbstractComponentManager<S>,Map<String, Object>> entry: scms.entrySet())
-        {
-            // configure the component
-            entry.getKey().reconfigure(entry.getValue(), false);
+        log(LogService.LOG_DEBUG,
+            "ImmediateComponentHolder Finished configuring the dependency managers for component for pid {0} ",
+            new Object[] { pid }, null);
+        if (enable) {
+            scm.enable(false);
             log(LogService.LOG_DEBUG,
-                "ImmediateComponentHolder Finished configuring the dependency managers for component for pid {0} ",
+                "ImmediateComponentHolder Finished enabling component for pid {0} ",
                 new Object[] { pid }, null);
-            if (enable) {
-                entry.getKey().enable(false);
-                log(LogService.LOG_DEBUG,
-                    "ImmediateComponentHolder Finished enabling component for pid {0} ",
-                    new Object[] { pid }, null);
-            } else {
-                log(LogService.LOG_DEBUG,
-                    "ImmediateComponentHolder Will not enable component for pid {0}: holder enabled state: {1}, metadata enabled: {2} ",
-                    new Object[] { pid, m_enabled,
-                    m_componentMetadata.isEnabled() }, null);
-            }
+        } else {
+            log(LogService.LOG_DEBUG,
+                "ImmediateComponentHolder Will not enable component for pid {0}: holder enabled state: {1}, metadata enabled: {2} ",
+                new Object[] { pid, m_enabled,
+                m_componentMetadata.isEnabled() }, null);
         }
-        return created;
     }
 
-    private Map<String, Object> mergeProperties(String servicePid) {
-        Map<String, Object> properties = new HashMap<String, Object>(m_componentMetadata.getProperties());
-        List<String> pids = null;
-        boolean isDS13 = m_componentMetadata.getDSVersion().isDS13();
-        if (isDS13)
+    /**
+     * Reconfigures the component with the properties for the given
+     * configuration pid. No lock is held while calling into the component.
+     * Changes of factory configuration entries are recorded with a sequence
+     * number in the entry and applied by {@link #applyChanges(FactoryInstance, AbstractComponentManager)}.
+     */
+    private void reconfigure( AbstractComponentManager<S> scm, String servicePid, boolean configurationDeleted )
+    {
+        final FactoryInstance<S> instance = ( servicePid == null ) ? null : m_factoryInstances.get( servicePid );
+        if ( instance == null )
         {
-            pids = new ArrayList<String>();
-            if (properties.get(Constants.SERVICE_PID) instanceof String)
-            {
-                pids.add((String) properties.get(Constants.SERVICE_PID));
-            }
+            scm.reconfigure( mergeProperties( servicePid ), configurationDeleted );
+            return;
+        }
+        final boolean apply;
+        synchronized ( instance )
+        {
+            apply = instance.recordChange( configurationDeleted );
         }
-        for (int i = 0; i < m_configurations.length; i++)
+        if ( apply )
         {
-            if ( m_factoryPidIndex != null && i == m_factoryPidIndex
-                && !( m_componentMetadata.isObsoleteFactoryComponentFactory() && servicePid == null)) //obsolete special case
+            applyChanges( instance, scm );
+        }
+    }
+
+    /**
+     * Applies the changes recorded in the factory configuration entry to the
+     * component until no newer change has been recorded. Only one thread at
+     * a time applies the changes of an entry; changes recorded meanwhile are
+     * applied by that thread from the latest configuration, so a stale update
+     * never overwrites a newer one.
+     */
+    private void applyChanges( FactoryInstance<S> instance, AbstractComponentManager<S> scm )
+    {
+        boolean done = false;
+        try
+        {
+            while ( !done )
             {
-                copyTo(properties, m_factoryConfigurations.get(servicePid));
-                if (isDS13)
+                final long sequence;
+                final boolean configurationDeleted;
+                synchronized ( instance )
+                {
+                    sequence = instance.m_sequence;
+                    configurationDeleted = instance.m_deleted;
+                    instance.m_deleted = false;
+                }
+                scm.reconfigure( mergeProperties( instance.m_pid ), configurationDeleted );
+                synchronized ( instance )
                 {
-                    pids.add((String) m_factoryConfigurations.get(servicePid).get(Constants.SERVICE_PID));
+                    done = ( sequence == instance.m_sequence );
+                    if ( done )
+                    {
+                        instance.m_applying = false;
+                    }
                 }
             }
-            else if ( m_configurations[i] != null )
+        }
+        finally
+        {
+            if ( !done )
             {
-                copyTo(properties, m_configurations[i]);
-                if (isDS13)
+                synchronized ( instance )
                 {
-                    pids.add((String) m_configurations[i].get(Constants.SERVICE_PID));
+                    instance.m_applying = false;
                 }
             }
         }
-        if (isDS13 && !pids.isEmpty())
+    }
+
+    private Map<String, Object> mergeProperties(String servicePid) {
+        Map<String, ?> factoryConfiguration = null;
+        boolean withFactoryConfiguration = !( m_componentMetadata.isObsoleteFactoryComponentFactory() && servicePid == null); //obsolete special case
+        if ( servicePid != null && withFactoryConfiguration )
         {
-        	if ( pids.size() == 1 )
-        	{
-        		properties.put(Constants.SERVICE_PID, pids.get(0));
-        	}
-        	else
-        	{
-        		properties.put(Constants.SERVICE_PID, pids);
-        	}
+            FactoryInstance<S> instance = m_factoryInstances.get( servicePid );
+            FactoryConfiguration configuration = ( instance == null ) ? null : instance.m_configuration;
+            if ( configuration != null )
+            {
+                factoryConfiguration = configuration.m_properties;
+            }
         }
-        return properties;
+        return m_baseProperties.merge( factoryConfiguration, withFactoryConfiguration );
+    }
+
+    /**
+     * Replaces the shared base properties after a change of the non-factory
+     * configurations or the factory pid index. Must be called holding the
+     * holder lock.
+     */
+    private void updateBaseProperties()
+    {
+        m_baseProperties = new BaseProperties( m_componentMetadata, m_configurations, m_factoryPidIndex );
+    }
+
+    private void setFactoryPidIndex( Integer factoryPidIndex )
+    {
+        m_factoryPidIndex = factoryPidIndex;
+        updateBaseProperties();
     }
 
     private int getSingletonPidIndex(TargetedPID pid) {
@@ -524,7 +666,7 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
                     + factoryPid);
         }
         if (m_factoryPidIndex == null) {
-            m_factoryPidIndex = index;
+            setFactoryPidIndex( index );
         } else if (index != m_factoryPidIndex) {
             log(LogService.LOG_ERROR,
                 "factory pid {0} supplied for index {1}, but a factory pid previously supplied at index {2}",
@@ -585,7 +727,9 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
         }
         if ( m_factoryPidIndex != null && index == m_factoryPidIndex )
         {
-            result = m_factoryChangeCount.get(pid.getServicePid());
+            FactoryInstance<S> instance = m_factoryInstances.get(pid.getServicePid());
+            FactoryConfiguration configuration = ( instance == null ) ? null : instance.m_configuration;
+            result = ( configuration == null ) ? null : configuration.m_changeCount;
         }
         else
         {
@@ -597,7 +741,7 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
 
     public List<? extends ComponentManager<?>> getComponents()
         {
-        synchronized ( m_components )
+        synchronized ( m_lock )
         {
             return getComponentManagers( );
         }
@@ -647,7 +791,7 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
 
 
             List<AbstractComponentManager<S>> cms = new ArrayList<AbstractComponentManager<S>>();
-            synchronized ( m_components )
+            synchronized ( m_lock )
             {
                 if ( isSatisfied() )
                 {
@@ -660,10 +804,16 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
                     }
                     if ( m_factoryPidIndex != null)
                     {
-                        for (String pid: m_factoryConfigurations.keySet()) {
+                        for (FactoryInstance<S> instance: m_factoryInstances.values()) {
+                            if ( instance.m_configuration == null )
+                            {
+                                // entry of an update not yet recorded
+                                continue;
+                            }
                             AbstractComponentManager<S> scm = createComponentManager(true);
-                            m_components.put(pid, scm);
-                            scm.reconfigure( mergeProperties( pid ), false);
+                            instance.m_component = scm;
+                            m_componentCount++;
+                            scm.reconfigure( mergeProperties( instance.m_pid ), false);
                             cms.add( scm );
                         }
                     }
@@ -693,7 +843,7 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
             wait( m_enablePromise );
 
             List<AbstractComponentManager<S>> cms;
-            synchronized ( m_components )
+            synchronized ( m_lock )
             {
                 m_enabled = false;
 
@@ -715,7 +865,7 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
     public void disposeComponents( final int reason )
     {
         List<AbstractComponentManager<S>> cms;
-        synchronized ( m_components )
+        synchronized ( m_lock )
         {
             cms = getDirectComponentManagers( );
             clearComponents();
@@ -730,15 +880,16 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
     public void disposed( SingleComponentManager<S> component )
     {
         // ensure the component is removed from the components map
-        synchronized ( m_components )
+        synchronized ( m_lock )
         {
-            if ( !m_components.isEmpty() )
+            if ( m_componentCount > 0 )
             {
-                for ( Iterator<AbstractComponentManager<S>> vi = m_components.values().iterator(); vi.hasNext(); )
+                for ( FactoryInstance<S> instance: m_factoryInstances.values() )
                 {
-                    if ( component == vi.next() )
+                    if ( component == instance.m_component )
                     {
-                        vi.remove();
+                        instance.m_component = null;
+                        m_componentCount--;
                         break;
                     }
                 }
@@ -804,7 +955,7 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
     /**
      * Returns all component managers from the map and the single component manager, optionally also removing them
      * from the map. If there are no component managers, <code>null</code>
-     * is returned.  Must be called synchronized on m_components.
+     * is returned.  Must be called synchronized on m_lock.
      */
     List<AbstractComponentManager<S>> getComponentManagers( )
     {
@@ -814,9 +965,13 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
             m_singleComponent.getComponentManagers(cms);
         }
 
-        for (AbstractComponentManager<S> cm: m_components.values())
+        for (FactoryInstance<S> instance: m_factoryInstances.values())
         {
-            cm.getComponentManagers(cms);
+            AbstractComponentManager<S> cm = instance.m_component;
+            if ( cm != null )
+            {
+                cm.getComponentManagers(cms);
+            }
         }
         return cms;
     }
@@ -828,13 +983,23 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
         {
             cms.add(m_singleComponent);
         }
-        cms.addAll(m_components.values());
+        for (FactoryInstance<S> instance: m_factoryInstances.values())
+        {
+            if ( instance.m_component != null )
+            {
+                cms.add(instance.m_component);
+            }
+        }
         return cms;
     }
 
     void clearComponents()
     {
-        m_components.clear();
+        for (FactoryInstance<S> instance: m_factoryInstances.values())
+        {
+            instance.m_component = null;
+        }
+        m_componentCount = 0;
         m_singleComponent = null;
     }
 
@@ -873,9 +1038,164 @@ public class ConfigurableComponentHolder<S> implements ComponentHolder<S>, Compo
             return null;
         }
         //each factory configured component may have a different factory targeted pid.
-        synchronized (m_components)
+        FactoryInstance<S> instance = m_factoryInstances.get(pid.getServicePid());
+        FactoryConfiguration configuration = ( instance == null ) ? null : instance.m_configuration;
+        return ( configuration == null ) ? null : configuration.m_targetedPid;
+    }
+
+    /**
+     * A factory configuration as last updated. Instances are immutable and
+     * replaced on each update.
+     */
+    private static final class FactoryConfiguration
+    {
+        private final Map<String, ?> m_properties;
+        private final TargetedPID m_targetedPid;
+        private final long m_changeCount;
+
+        FactoryConfiguration( Dictionary<String, Object> properties, TargetedPID targetedPid, long changeCount )
+        {
+            m_properties = LayeredProperties.toMap( properties );
+            m_targetedPid = targetedPid;
+            m_changeCount = changeCount;
+        }
+    }
+
+    /**
+     * The entry of a factory configuration: its latest configuration and the
+     * component created for it, if any.
+     */
+    private static final class FactoryInstance<S>
+    {
+        private final String m_pid;
+
+        // null until the first update is recorded
+        private volatile FactoryConfiguration m_configuration;
+
+        // written while holding the holder lock
+        private volatile AbstractComponentManager<S> m_component;
+
+        // sequence of the latest change to apply to the component, guarded by this entry
+        private long m_sequence;
+
+        // whether a thread is applying the changes to the component, guarded by this entry
+        private boolean m_applying;
+
+        // whether a change not yet applied deletes a configuration, guarded by this entry
+        private boolean m_deleted;
+
+        FactoryInstance( String pid )
+        {
+            m_pid = pid;
+        }
+
+        /**
+         * Records a change to apply to the component. Must be called holding
+         * the lock of this entry.
+         *
+         * @return <code>true</code> if the caller has to apply the changes,
+         *      <code>false</code> if another thread is applying them
+         */
+        boolean recordChange( boolean configurationDeleted )
+        {
+            m_sequence++;
+            m_deleted |= configurationDeleted;
+            if ( m_applying )
+            {
+                return false;
+            }
+            m_applying = true;
+            return true;
+        }
+    }
+
+    /**
+     * The properties shared by all components of a holder: the component
+     * properties and the non-factory configurations layered in configuration
+     * pid order. Instances are immutable; the properties of a component are
+     * derived by {@link #merge(Map, boolean)} without copying.
+     */
+    private static final class BaseProperties
+    {
+        private final LayeredProperties m_properties;
+        private final Map<String, ?>[] m_configurations;
+        private final Integer m_factoryPidIndex;
+        private final boolean m_isDS13;
+        private final Object m_metadataPid;
+
+        @SuppressWarnings("unchecked")
+        BaseProperties( ComponentMetadata metadata, Dictionary<String, Object>[] configurations, Integer factoryPidIndex )
+        {
+            m_configurations = new Map[configurations.length];
+            m_factoryPidIndex = factoryPidIndex;
+            m_isDS13 = metadata.getDSVersion().isDS13();
+            m_metadataPid = metadata.getProperties().get( Constants.SERVICE_PID );
+            LayeredProperties properties = new LayeredProperties( metadata.getProperties() );
+            for ( int i = 0; i < m_configurations.length; i++ )
+            {
+                m_configurations[i] = LayeredProperties.toMap( configurations[i] );
+                if ( !isFactoryPidIndex( i ) )
+                {
+                    properties = properties.with( m_configurations[i] );
+                }
+            }
+            m_properties = properties;
+        }
+
+        private boolean isFactoryPidIndex( int i )
+        {
+            return m_factoryPidIndex != null && i == m_factoryPidIndex;
+        }
+
+        /**
+         * Returns the base properties with the factory configuration, if
+         * any, layered at the position of the factory pid.
+         */
+        Map<String, Object> merge( Map<String, ?> factoryConfiguration, boolean withFactoryConfiguration )
         {
-            return m_factoryTargetedPids.get(pid.getServicePid());
+            LayeredProperties properties = m_properties;
+            final boolean applyFactory = withFactoryConfiguration && m_factoryPidIndex != null && factoryConfiguration != null;
+            if ( applyFactory )
+            {
+                properties = properties.with( factoryConfiguration );
+                // configurations following the factory pid take precedence
+                for ( int i = m_factoryPidIndex + 1; i < m_configurations.length; i++ )
+                {
+                    properties = properties.with( m_configurations[i] );
+                }
+            }
+
+            if ( m_isDS13 )
+            {
+                List<String> pids = new ArrayList<String>();
+                if ( m_metadataPid instanceof String )
+                {
+                    pids.add( ( String ) m_metadataPid );
+                }
+                for ( int i = 0; i < m_configurations.length; i++ )
+                {
+                    if ( isFactoryPidIndex( i ) )
+                    {
+                        if ( applyFactory )
+                        {
+                            pids.add( ( String ) factoryConfiguration.get( Constants.SERVICE_PID ) );
+                        }
+                    }
+                    else if ( m_configurations[i] != null )
+                    {
+                        pids.add( ( String ) m_configurations[i].get( Constants.SERVICE_PID ) );
+                    }
+                }
+                if ( pids.size() == 1 )
+                {
+                    properties = properties.with( Constants.SERVICE_PID, pids.get( 0 ) );
+                }
+                else if ( !pids.isEmpty() )
+                {
+                    properties = properties.with( Constants.SERVICE_PID, pids );
+                }
+            }
+            return properties;
         }
     }
 
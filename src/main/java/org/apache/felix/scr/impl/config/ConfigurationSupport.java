@@ -19,6 +19,7 @@
 package org.apache.felix.scr.impl.config;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Dictionary;
@@ -26,10 +27,13 @@ import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
 
 import org.apache.felix.scr.impl.Activator;
 import org.apache.felix.scr.impl.BundleComponentActivator;
 import org.apache.felix.scr.impl.ComponentRegistry;
+import org.apache.felix.scr.impl.ScrMetrics;
 import org.apache.felix.scr.impl.TargetedPID;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -71,12 +75,25 @@ public class ConfigurationSupport implements ConfigurationListener
     // the registry of components to be configured
     private final ComponentRegistry m_registry;
 
+    // the SCR configuration providing the coalescing delay
+    private final ScrConfiguration m_configuration;
+
+    // the latest pending configuration update events by pid and factory pid
+    private final Map<String, ConfigurationEvent> m_pendingUpdates = new HashMap<String, ConfigurationEvent>();
+
+    // serializes handling of configuration events while coalescing updates
+    private final Object m_eventLock = new Object();
+
+    // the timer applying coalesced configuration updates, created on demand
+    private Timer m_coalesceTimer;
+
     // the service m_registration of the ConfigurationListener service
     private ServiceRegistration<?> m_registration;
 
-    public ConfigurationSupport(final BundleContext bundleContext, final ComponentRegistry registry)
+    public ConfigurationSupport(final BundleContext bundleContext, final ComponentRegistry registry, final ScrConfiguration configuration)
     {
         this.m_registry = registry;
+        this.m_configuration = configuration;
 
         // register as listener for configurations
         Dictionary<String, Object> props = new Hashtable<String, Object>();
@@ -93,6 +110,16 @@ public class ConfigurationSupport implements ConfigurationListener
             this.m_registration.unregister();
             this.m_registration = null;
         }
+
+        synchronized ( m_pendingUpdates )
+        {
+            m_pendingUpdates.clear();
+            if ( m_coalesceTimer != null )
+            {
+                m_coalesceTimer.cancel();
+                m_coalesceTimer = null;
+            }
+        }
     }
 
     /**
@@ -100,6 +127,18 @@ public class ConfigurationSupport implements ConfigurationListener
      * in the case of a deleted configuration which is not a factory configuration!
      */
     public boolean configureComponentHolder(final ComponentHolder<?> holder)
+    {
+        return configureComponentHolder( holder, null );
+    }
+
+    /**
+     * Configures the holder either by querying the Configuration Admin
+     * service or, if <code>index</code> is not <code>null</code>, from the
+     * configurations listed in the index. In the latter case configurations
+     * are only fetched from the Configuration Admin service of the component
+     * bundle if they still have to be bound to the bundle.
+     */
+    private boolean configureComponentHolder(final ComponentHolder<?> holder, final ConfigurationIndex index)
     {
 
         // 112.7 configure unless configuration not required
@@ -125,8 +164,10 @@ public class ConfigurationSupport implements ConfigurationListener
                             final ConfigurationAdmin ca = ( ConfigurationAdmin ) cao;
                             for (final String confPid : confPids )
                             {
-                                final Collection<Configuration> factory = findFactoryConfigurations( ca, confPid,
-                                        bundleContext.getBundle() );
+                                final Collection<Configuration> factory = ( index == null )
+                                        ? findFactoryConfigurations( ca, confPid, bundleContext.getBundle() )
+                                        : selectFactoryConfigurations( index.getFactoryConfigurations( confPid, bundleContext.getBundle() ),
+                                                bundleContext.getBundle() );
                                 if ( !factory.isEmpty() )
                                 {
                                     boolean created = false;
@@ -135,12 +176,12 @@ public class ConfigurationSupport implements ConfigurationListener
                                         Activator.log( LogService.LOG_DEBUG, null,
                                                 "Configuring holder {0} with factory configuration {1}", new Object[] {
                                                         holder, config }, null );
-                                        config = getConfiguration( ca, config.getPid() );
+                                        config = getConfiguration( ca, config, index );
                                         if ( checkBundleLocation( config, bundleContext.getBundle() ) )
                                         {
                                             long changeCount = changeCounter.getChangeCount( config, false, -1 );
-                                            created |= holder.configurationUpdated( new TargetedPID( config.getPid() ),
-                                            		new TargetedPID( config.getFactoryPid() ),
+                                            created |= holder.configurationUpdated( TargetedPID.valueOf( config.getPid() ),
+                                            		TargetedPID.valueOf( config.getFactoryPid() ),
                                                     config.getProperties(),
                                                     changeCount );
                                         }
@@ -153,11 +194,13 @@ public class ConfigurationSupport implements ConfigurationListener
                                 else
                                 {
                                     // check for configuration and configure the holder
-                                    Configuration singleton = findSingletonConfiguration( ca, confPid,
-                                            bundleContext.getBundle() );
+                                    Configuration singleton = ( index == null )
+                                            ? findSingletonConfiguration( ca, confPid, bundleContext.getBundle() )
+                                            : selectSingletonConfiguration( index.getConfigurations( confPid, bundleContext.getBundle() ),
+                                                    bundleContext.getBundle() );
                                     if ( singleton != null )
                                     {
-                                        singleton = getConfiguration( ca, singleton.getPid() );
+                                        singleton = getConfiguration( ca, singleton, index );
                                         Activator.log( LogService.LOG_DEBUG, null,
                                                 "Configuring holder {0} with configuration {1}", new Object[] { holder,
                                                         singleton }, null );
@@ -165,7 +208,7 @@ public class ConfigurationSupport implements ConfigurationListener
                                                 && checkBundleLocation( singleton, bundleContext.getBundle() ) )
                                         {
                                             long changeCount = changeCounter.getChangeCount( singleton, false, -1 );
-                                            holder.configurationUpdated( new TargetedPID( singleton.getPid() ), null,
+                                            holder.configurationUpdated( TargetedPID.valueOf( singleton.getPid() ), null,
                                                     singleton.getProperties(), changeCount );
                                         }
                                         else
@@ -217,14 +260,18 @@ public class ConfigurationSupport implements ConfigurationListener
     {
         if (configurationAdmin instanceof ConfigurationAdmin)
         {
+            // list all configurations once and configure all holders from there
             Configuration[] configs = findConfigurations((ConfigurationAdmin) configurationAdmin, null);
-            if (configs != null)
+            if (configs != null && configs.length > 0)
             {
-                for (int i = 0; i < configs.length; i++)
+                final ConfigurationIndex index = new ConfigurationIndex( configs );
+                for ( ComponentHolder<?> holder: m_registry.getComponentHolders() )
                 {
-                    ConfigurationEvent cfgEvent = new ConfigurationEvent(configurationAdminReference,
-                        ConfigurationEvent.CM_UPDATED, configs[i].getFactoryPid(), configs[i].getPid());
-                    configurationEvent(cfgEvent);
+                    // skip name reservations
+                    if ( holder != null )
+                    {
+                        configureComponentHolder( holder, index );
+                    }
                 }
             }
         }
@@ -240,17 +287,108 @@ public class ConfigurationSupport implements ConfigurationListener
      * called for existing configurations upon startup of the Configuration
      * Admin service. To bridge this gap, the
      * {@link ComponentRegistry#serviceChanged(org.osgi.framework.ServiceEvent)} method called when the
-     * Configuration Admin service is registered calls #configureComponentHolders which calls this method for all
-     * existing configurations to be able to forward existing configurations to
-     * components.
+     * Configuration Admin service is registered calls #configureComponentHolders which configures all
+     * components from the existing configurations.
+     * <p>
+     * If coalescing is configured (see {@link ScrConfiguration#configCoalesce()}),
+     * update events are delayed and further updates of the same configuration
+     * received in the meantime replace the pending event. Since the current
+     * configuration is read when the event is handled, only the latest change
+     * is applied to the components.
      *
      * @param event The configuration change event
      */
     public void configurationEvent(ConfigurationEvent event)
     {
-        final TargetedPID pid = new TargetedPID( event.getPid());
+        ScrMetrics.increment( ScrMetrics.Counter.CONFIG_EVENTS );
+        final long delay = m_configuration.configCoalesce();
+        if ( delay <= 0 )
+        {
+            handleConfigurationEvent( event );
+            return;
+        }
+
+        final String key = event.getFactoryPid() + "/" + event.getPid();
+        final ConfigurationEvent pending;
+        synchronized ( m_pendingUpdates )
+        {
+            if ( event.getType() == ConfigurationEvent.CM_UPDATED )
+            {
+                if ( m_pendingUpdates.put( key, event ) != null )
+                {
+                    ScrMetrics.increment( ScrMetrics.Counter.CONFIG_UPDATES_COALESCED );
+                }
+                else
+                {
+                    scheduleUpdate( key, delay );
+                }
+                return;
+            }
+            pending = m_pendingUpdates.remove( key );
+        }
+
+        synchronized ( m_eventLock )
+        {
+            if ( pending != null )
+            {
+                if ( event.getType() == ConfigurationEvent.CM_DELETED )
+                {
+                    // the pending update is superseded by the deletion
+                    ScrMetrics.increment( ScrMetrics.Counter.CONFIG_UPDATES_COALESCED );
+                }
+                else
+                {
+                    handleConfigurationEvent( pending );
+                }
+            }
+            handleConfigurationEvent( event );
+        }
+    }
+
+    /**
+     * Schedules handling the pending update event of the given key after
+     * the delay. Must be called while synchronized on the pending updates.
+     */
+    private void scheduleUpdate( final String key, final long delay )
+    {
+        if ( m_coalesceTimer == null )
+        {
+            m_coalesceTimer = new Timer( "SCR Configuration Coalescer", true );
+        }
+        m_coalesceTimer.schedule( new TimerTask()
+        {
+            @Override
+            public void run()
+            {
+                synchronized ( m_eventLock )
+                {
+                    final ConfigurationEvent event;
+                    synchronized ( m_pendingUpdates )
+                    {
+                        event = m_pendingUpdates.remove( key );
+                    }
+                    if ( event != null )
+                    {
+                        try
+                        {
+                            handleConfigurationEvent( event );
+                        }
+                        catch ( RuntimeException re )
+                        {
+                            Activator.log( LogService.LOG_ERROR, null, "Failed handling configuration update of {0}",
+                                new Object[] { event.getPid() }, re );
+                        }
+                    }
+                }
+            }
+        }, delay );
+    }
+
+    void handleConfigurationEvent(ConfigurationEvent event)
+    {
+        final TargetedPID pid = TargetedPID.valueOf( event.getPid());
         String rawFactoryPid = event.getFactoryPid();
-        final TargetedPID factoryPid = rawFactoryPid == null? null: new TargetedPID( rawFactoryPid);
+        final TargetedPID factoryPid = rawFactoryPid == null? null: TargetedPID.valueOf( rawFactoryPid);
 
         // iterate over all components which must be configured with this pid
         // (since DS 1.2, components may specify a specific configuration PID (112.4.4 configuration-pid)
@@ -516,6 +654,22 @@ public class ConfigurationSupport implements ConfigurationListener
         return null;
     }
 
+    /**
+     * Returns the configuration to configure a component with. Without an
+     * index the configuration is fetched again from the Configuration Admin
+     * service of the component bundle. With an index, this is only done if
+     * the configuration is not bound yet such that it is bound to the
+     * component bundle; otherwise the listed configuration is used as is.
+     */
+    private Configuration getConfiguration(final ConfigurationAdmin ca, final Configuration config, final ConfigurationIndex index)
+    {
+        if ( index != null && config.getBundleLocation() != null )
+        {
+            return config;
+        }
+        return getConfiguration( ca, config.getPid() );
+    }
+
     private Configuration getConfiguration(final ConfigurationAdmin ca, final String pid)
     {
         try
@@ -542,7 +696,16 @@ public class ConfigurationSupport implements ConfigurationListener
     public Configuration findSingletonConfiguration(final ConfigurationAdmin ca, final String pid, Bundle bundle)
     {
         final String filter = getTargetedPidFilter( pid, bundle, Constants.SERVICE_PID );
-        final Configuration[] cfg = findConfigurations(ca, filter);
+        return selectSingletonConfiguration( findConfigurations(ca, filter), bundle );
+    }
+
+    /**
+     * Returns the configuration with the longest, that is most specifically
+     * targeted, PID of the given configurations which may be used by the
+     * bundle or <code>null</code> if there is none.
+     */
+    private Configuration selectSingletonConfiguration(final Configuration[] cfg, final Bundle bundle)
+    {
         if (cfg == null)
         {
             return null;
@@ -577,7 +740,16 @@ public class ConfigurationSupport implements ConfigurationListener
     private Collection<Configuration> findFactoryConfigurations(final ConfigurationAdmin ca, final String factoryPid, Bundle bundle)
     {
         final String filter = getTargetedPidFilter( factoryPid, bundle, ConfigurationAdmin.SERVICE_FACTORYPID );
-        Configuration[] configs = findConfigurations(ca, filter);
+        return selectFactoryConfigurations( findConfigurations(ca, filter), bundle );
+    }
+
+    /**
+     * Returns the factory configurations of the given configurations which
+     * may be used by the bundle. For configurations with the same PID the one
+     * with the most specifically targeted factory PID is returned.
+     */
+    private Collection<Configuration> selectFactoryConfigurations(final Configuration[] configs, final Bundle bundle)
+    {
         if (configs == null)
         {
             return Collections.emptyList();
@@ -671,6 +843,85 @@ public class ConfigurationSupport implements ConfigurationListener
     }
 
 
+    /**
+     * The <code>ConfigurationIndex</code> holds a list of configurations
+     * indexed by PID and by factory PID. The PIDs are indexed as is such
+     * that a lookup has to check all targeted PID variants, see
+     * {@link #getConfigurations(String, Bundle)}.
+     */
+    static class ConfigurationIndex
+    {
+        private final Map<String, List<Configuration>> m_byPid = new HashMap<String, List<Configuration>>();
+
+        private final Map<String, List<Configuration>> m_byFactoryPid = new HashMap<String, List<Configuration>>();
+
+        ConfigurationIndex(final Configuration[] configs)
+        {
+            for ( Configuration config: configs )
+            {
+                add( m_byPid, config.getPid(), config );
+                if ( config.getFactoryPid() != null )
+                {
+                    add( m_byFactoryPid, config.getFactoryPid(), config );
+                }
+            }
+        }
+
+        /**
+         * Returns the configurations whose PID is the given PID or one of
+         * its variants targeted at the bundle or <code>null</code> if there
+         * are none.
+         */
+        Configuration[] getConfigurations(final String pid, final Bundle bundle)
+        {
+            return get( m_byPid, pid, bundle );
+        }
+
+        /**
+         * Returns the configurations whose factory PID is the given factory
+         * PID or one of its variants targeted at the bundle or
+         * <code>null</code> if there are none.
+         */
+        Configuration[] getFactoryConfigurations(final String factoryPid, final Bundle bundle)
+        {
+            return get( m_byFactoryPid, factoryPid, bundle );
+        }
+
+        private static void add(final Map<String, List<Configuration>> index, final String key, final Configuration config)
+        {
+            List<Configuration> configs = index.get( key );
+            if ( configs == null )
+            {
+                configs = new ArrayList<Configuration>( 1 );
+                index.put( key, configs );
+            }
+            configs.add( config );
+        }
+
+        private static Configuration[] get(final Map<String, List<Configuration>> index, final String pid, final Bundle bundle)
+        {
+            // same variants as matched by getTargetedPidFilter
+            final String bsn = pid + '|' + bundle.getSymbolicName();
+            final String version = bsn + '|' + bundle.getVersion();
+            final String location = version + '|' + bundle.getLocation();
+            List<Configuration> result = null;
+            for ( String key: new String[] { pid, bsn, version, location } )
+            {
+                final List<Configuration> configs = index.get( key );
+                if ( configs != null )
+                {
+                    if ( result == null )
+                    {
+                        result = new ArrayList<Configuration>();
+                    }
+                    result.addAll( configs );
+                }
+            }
+            return ( result == null ) ? null : result.toArray( new Configuration[result.size()] );
+        }
+    }
+
+
     private interface ChangeCount {
         long getChangeCount( Configuration configuration, boolean fromEvent, long previous );
     }
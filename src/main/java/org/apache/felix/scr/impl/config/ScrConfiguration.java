@@ -70,6 +70,8 @@ public class ScrConfiguration
 
     public static final String PROP_STOP_TIMEOUT = "ds.stop.timeout.milliseconds";
 
+    public static final String PROP_CONFIG_COALESCE = "ds.config.coalesce.milliseconds";
+
     public static final long DEFAULT_LOCK_TIMEOUT_MILLISECONDS = 5000;
 
     public static final long DEFAULT_STOP_TIMEOUT_MILLISECONDS = 60000;
@@ -104,6 +106,8 @@ public class ScrConfiguration
 
     private long stopTimeout = DEFAULT_STOP_TIMEOUT_MILLISECONDS;
 
+    private long configCoalesce;
+
     private Boolean globalExtender;
 
     private BundleContext bundleContext;
@@ -173,6 +177,7 @@ public class ScrConfiguration
                         infoAsService = false;
                         lockTimeout = DEFAULT_LOCK_TIMEOUT_MILLISECONDS;
                         stopTimeout = DEFAULT_STOP_TIMEOUT_MILLISECONDS;
+                        configCoalesce = 0;
                         newGlobalExtender = false;
                     }
                     else
@@ -183,6 +188,7 @@ public class ScrConfiguration
                         infoAsService = getDefaultInfoAsService();
                         lockTimeout = getDefaultLockTimeout();
                         stopTimeout = getDefaultStopTimeout();
+                        configCoalesce = getDefaultConfigCoalesce();
                         newGlobalExtender = getDefaultGlobalExtender();
                     }
                 }
@@ -201,6 +207,8 @@ public class ScrConfiguration
                 lockTimeout = timeout == null? DEFAULT_LOCK_TIMEOUT_MILLISECONDS: timeout;
                 timeout = ( Long ) config.get( PROP_STOP_TIMEOUT );
                 stopTimeout = timeout == null? DEFAULT_STOP_TIMEOUT_MILLISECONDS: timeout;
+                timeout = ( Long ) config.get( PROP_CONFIG_COALESCE );
+                configCoalesce = timeout == null? 0: timeout;
                 newGlobalExtender = VALUE_TRUE.equalsIgnoreCase( String.valueOf( config.get( PROP_GLOBAL_EXTENDER) ) );
             }
             if ( scrCommand != null )
@@ -252,6 +260,16 @@ public class ScrConfiguration
         return stopTimeout;
     }
 
+    /**
+     * Returns the time in milliseconds configuration updates are delayed to
+     * coalesce them with further updates of the same configuration. A value
+     * of zero or less disables coalescing.
+     */
+    public long configCoalesce()
+    {
+        return configCoalesce;
+    }
+
     public boolean globalExtender()
     {
         return globalExtender;
@@ -289,6 +307,16 @@ public class ScrConfiguration
         return Long.parseLong( val );
     }
 
+    private long getDefaultConfigCoalesce()
+    {
+        String val = bundleContext.getProperty( PROP_CONFIG_COALESCE );
+        if ( val == null)
+        {
+            return 0;
+        }
+        return Long.parseLong( val );
+    }
+
     private long getDefaultStopTimeout()
     {
         String val = bundleContext.getProperty( PROP_STOP_TIMEOUT);
@@ -117,6 +117,15 @@ class ScrManagedServiceMetaTypeProvider extends ScrManagedService
                 new String[] { String.valueOf(this.getScrConfiguration().stopTimeout())},
                 0, null, null) );
 
+        adList.add( new AttributeDefinitionImpl(
+                ScrConfiguration.PROP_CONFIG_COALESCE,
+                "Configuration coalesce milliseconds",
+                "How long configuration updates are delayed to apply only the latest of several rapid updates "
+                    + "of the same configuration. The default of 0 applies each update immediately.",
+                AttributeDefinition.LONG,
+                new String[] { String.valueOf(this.getScrConfiguration().configCoalesce())},
+                0, null, null) );
+
         adList.add( new AttributeDefinitionImpl(
                 ScrConfiguration.PROP_GLOBAL_EXTENDER,
                 "Global Extender",
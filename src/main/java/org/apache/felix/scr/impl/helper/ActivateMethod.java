@@ -42,6 +42,8 @@ public class ActivateMethod extends BaseMethod<ActivatorParameter>
 
     protected final boolean m_supportsInterfaces;
 
+    private volatile boolean m_lazyCoercion;
+
 
     public ActivateMethod( final String methodName,
             final boolean methodRequired,
@@ -55,6 +57,16 @@ public class ActivateMethod extends BaseMethod<ActivatorParameter>
     }
 
 
+    /**
+     * Sets whether the members of component property type parameters are
+     * coerced only when they are first called.
+     */
+    public void setLazyCoercion( boolean lazyCoercion )
+    {
+        m_lazyCoercion = lazyCoercion;
+    }
+
+
     @Override
     protected Method doFindMethod( Class<?> targetClass, boolean acceptPrivate, boolean acceptPackage, SimpleLogger logger )
         throws SuitableMethodNotAccessibleException, InvocationTargetException
@@ -273,7 +285,7 @@ public class ActivateMethod extends BaseMethod<ActivatorParameter>
             {
                 param[i] = Annotations.toObject(parameterTypes[i],
                     (Map<String, Object>) ap.getComponentContext().getProperties(),
-                    ap.getComponentContext().getBundleContext().getBundle(), m_supportsInterfaces);
+                    ap.getComponentContext().getBundleContext().getBundle(), m_supportsInterfaces, m_lazyCoercion);
             }
         }
 
@@ -287,6 +299,13 @@ public class ActivateMethod extends BaseMethod<ActivatorParameter>
         return "activate";
     }
 
+
+    @Override
+    protected String getMethodSpec()
+    {
+        return super.getMethodSpec() + ":" + m_supportsInterfaces;
+    }
+
     @Override
     public MethodResult invoke( Object componentInstance, ActivatorParameter rawParameter, final MethodResult methodCallFailureResult, SimpleLogger logger )
     {
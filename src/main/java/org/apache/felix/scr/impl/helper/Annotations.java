@@ -19,121 +19,149 @@
 package org.apache.felix.scr.impl.helper;
 
 import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.osgi.framework.Bundle;
+import org.osgi.framework.FrameworkUtil;
 import org.osgi.service.component.ComponentException;
 
 public class Annotations
 {
+
+    /**
+     * The {@link TypeInfo} of the component property types used so far. The
+     * entries for the types of a bundle are removed when the bundle is
+     * uninstalled or unresolved, see {@link #clearTypeCache(Bundle)}, and
+     * all entries are removed when SCR is stopped.
+     */
+    private static final Map<Class<?>, TypeInfo> m_types = new HashMap<Class<?>, TypeInfo>();
+    
+    /**
+     * Marks a member value of a lazily coerced configuration object which
+     * has not been accessed yet.
+     */
+    private static final Object NOT_COERCED = new Object();
     
     static public <T> T toObject(Class<T> clazz, Map<String, Object> props, Bundle b, boolean supportsInterfaces )
     {     
-        Map<String, Object> m = new HashMap<String, Object>();
-        
-        Method[] methods = clazz.getMethods();
-        Map<String, Method> complexFields = new HashMap<String, Method>();
-        for ( Method method: methods )
+        return toObject(clazz, props, b, supportsInterfaces, false);
+    }
+
+    /**
+     * Returns a configuration object of the component property type
+     * <code>clazz</code> backed by the <code>props</code>.
+     * <p>
+     * If <code>lazy</code> is <code>true</code> the member values, including
+     * nested configuration objects, are only coerced when the member is first
+     * called and the result is kept for further calls. Coercion errors are
+     * reported as a <code>ComponentException</code> on each call of the
+     * member in both modes. Lazy configuration objects refer to the
+     * <code>props</code> until all members have been called, so they must
+     * not be modified afterwards.
+     */
+    static public <T> T toObject(Class<T> clazz, Map<String, Object> props, Bundle b, boolean supportsInterfaces, boolean lazy )
+    {     
+        TypeInfo info = getTypeInfo(clazz);
+        return (T) info.newInstance(new Handler(info, props, b, supportsInterfaces, lazy));
+    }
+
+    private static Object coerce(Member member, Object raw, Bundle b)
+    {
+        try
         {
-            String name = method.getName();
-            String key = fixup(name);
-            Object raw = props.get(key);
-            Class<?> returnType = method.getReturnType();
-            Object cooked;
-            if ( returnType.isInterface() || returnType.isAnnotation())
-            {
-                complexFields.put(key, method);
-                continue;
-            }
-            try
+            if (member.componentType != null)
             {
-                if (returnType.isArray())
-                {
-                    Class<?> componentType = returnType.getComponentType();
-                    if (componentType.isInterface() || componentType.isAnnotation())
-                    {
-                        complexFields.put(key, method);
-                        continue;
-                    }
-                    cooked = coerceToArray(componentType, raw, b);
-                }
-                else
-                {
-                    cooked = Coercions.coerce(returnType, raw, b);
-                }
+                return member.converter.convertArray(raw, b);
             }
-            catch (ComponentException e)
+            return member.converter.convert(raw, b);
+        }
+        catch (ComponentException e)
+        {
+            return new Invalid(e);
+        }
+    }
+
+    private static Object toComplex(Member member, List<Map<String, Object>> proplist, Bundle b, boolean supportsInterfaces, boolean lazy)
+    {
+        if (member.componentType != null)
+        {
+            int size = (proplist == null) ? 0 : proplist.size();
+            Object result = Array.newInstance(member.componentType, size);
+            for (int i = 0; i < size; i++)
             {
-                cooked = new Invalid(e);
+                Map<String, Object> rawElement = proplist.get(i);
+                Object cooked = toObject(member.componentType, rawElement, b, supportsInterfaces, lazy);
+                Array.set(result, i, cooked);
             }
-            m.put( name, cooked );
+            return result;
+        }
+        if (proplist != null && !proplist.isEmpty())
+        {
+            return toObject(member.returnType, proplist.get(0), b, supportsInterfaces, lazy);
         }
-        if (!complexFields.isEmpty())
-        { 
-            if (supportsInterfaces )
+        return null;
+    }
+
+    private static TypeInfo getTypeInfo(Class<?> clazz)
+    {
+        synchronized ( m_types )
+        {
+            TypeInfo info = m_types.get(clazz);
+            if (info == null)
             {
-                Map<String, List<Map<String, Object>>> nested = extractSubMaps(complexFields.keySet(), props);
-                for (Map.Entry<String, Method> entry: complexFields.entrySet())
-                {
-                    List<Map<String, Object>> proplist = nested.get(entry.getKey());
-                    Method method = entry.getValue();
-                    Class<?> returnType  = method.getReturnType();
-                    if (returnType.isArray())
-                    {
-                        Class<?> componentType = returnType.getComponentType();
-                        Object result = Array.newInstance(componentType, proplist.size());
-                        for (int i = 0; i < proplist.size(); i++)
-                        {
-                            Map<String, Object> rawElement = proplist.get(i);
-                            Object cooked = toObject(componentType, rawElement, b, supportsInterfaces);
-                            Array.set(result, i, cooked);
-                        }
-                        m.put(method.getName(), result);
-                    }
-                    else
-                    {
-                        if (!proplist.isEmpty())
-                        {
-                            Object cooked = toObject(returnType, proplist.get(0), b, supportsInterfaces);
-                            m.put(method.getName(), cooked);
-                        }
-                    }
-                }
+                info = new TypeInfo(clazz);
+                m_types.put(clazz, info);
             }
-            else
+            return info;
+        }
+    }
+
+    /**
+     * Removes the cached information on component property types provided
+     * by the given bundle.
+     */
+    public static void clearTypeCache(Bundle bundle)
+    {
+        synchronized ( m_types )
+        {
+            for ( Iterator<Class<?>> ci = m_types.keySet().iterator(); ci.hasNext(); )
             {
-                for (Method method: complexFields.values())
+                Class<?> clazz = ci.next();
+                Bundle provider = ( clazz == null ) ? null : FrameworkUtil.getBundle( clazz );
+                if ( provider == null || provider.getBundleId() == bundle.getBundleId() )
                 {
-                    m.put(method.getName(), new Invalid("Invalid annotation member type" + method.getReturnType().getName() + " for member: " + method.getName()));
+                    ci.remove();
                 }
             }
         }
-        
-        InvocationHandler h = new Handler(m);
-        return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[] { clazz }, h);
     }
-    
-    private static Map<String, List<Map<String, Object>>> extractSubMaps(Collection<String> keys, Map<String, Object> map) 
+
+    /**
+     * Removes all cached information on component property types.
+     */
+    public static void clearTypeCache()
     {
-        Map<String, List<Map<String, Object>>> result = new HashMap<String, List<Map<String, Object>>>();
-        //Form a regexp to recognize all the keys as prefixes in the map keys.
-        StringBuilder b = new StringBuilder("(");
-        for (String key: keys)
+        synchronized ( m_types )
         {
-            b.append(key).append("|");
+            m_types.clear();
         }
-        b.deleteCharAt(b.length() -1);
-        b.append(")\\.([0-9]*)\\.(.*)");
-        Pattern p = Pattern.compile(b.toString());
+    }
+    
+    private static Map<String, List<Map<String, Object>>> extractSubMaps(Pattern p, Map<String, Object> map) 
+    {
+        Map<String, List<Map<String, Object>>> result = new HashMap<String, List<Map<String, Object>>>();
         for (Map.Entry<String, Object> entry: map.entrySet())
         {
             String longKey = entry.getKey();
@@ -161,45 +189,6 @@ public class Annotations
         return result;
     }
 
-    private static Object coerceToArray(Class<?> componentType, Object raw, Bundle bundle)
-    {
-        if (raw == null)
-        {
-            return null;
-        }
-        if (raw.getClass().isArray())
-        {
-            int size = Array.getLength(raw);
-            Object result = Array.newInstance(componentType, size);
-            for (int i = 0; i < size; i++)
-            {
-                Object rawElement = Array.get(raw, i);
-                Object cooked = Coercions.coerce(componentType, rawElement, bundle);
-                Array.set(result, i, cooked);
-            }
-            return result;
-        }
-        if (raw instanceof Collection)
-        {
-            Collection raws = (Collection) raw;
-            int size = raws.size();
-            Object result = Array.newInstance(componentType, size);
-            int i = 0;
-            for (Object rawElement: raws)
-            {
-                Object cooked = Coercions.coerce(componentType, rawElement, bundle);
-                Array.set(result, i++, cooked);
-            }
-            return result;
-
-        }
-        Object cooked = Coercions.coerce(componentType, raw, bundle);
-        Object result = Array.newInstance(componentType, 1);
-        Array.set(result, 0, cooked);
-        return result;
-
-    }
-    
     private static final Pattern p = Pattern.compile("(\\$\\$)|(\\$)|(__)|(_)");
     
     static String fixup(String name)
@@ -222,24 +211,225 @@ public class Annotations
 
     private final static class Handler implements InvocationHandler 
     {
-        private final Map<String, Object> values;
+        private final TypeInfo info;
+
+        private final Object[] values;
+
+        private final boolean lazy;
+
+        // the source of the values, released once all values are coerced
+        private Map<String, Object> props;
+
+        private Bundle bundle;
+
+        private boolean supportsInterfaces;
+
+        private Map<String, List<Map<String, Object>>> nested;
+
+        // the number of members not coerced yet
+        private int uncoerced;
        
-        public Handler(Map<String, Object> values)
+        public Handler(TypeInfo info, Map<String, Object> props, Bundle bundle, boolean supportsInterfaces, boolean lazy)
         {
-            this.values = values;
+            this.info = info;
+            this.values = new Object[info.members.length];
+            this.lazy = lazy;
+            this.props = props;
+            this.bundle = bundle;
+            this.supportsInterfaces = supportsInterfaces;
+            if (lazy)
+            {
+                Arrays.fill(values, NOT_COERCED);
+                this.uncoerced = values.length;
+            }
+            else
+            {
+                for (int i = 0; i < values.length; i++)
+                {
+                    values[i] = coerce(i);
+                }
+            }
+            if (uncoerced == 0)
+            {
+                release();
+            }
         }
 
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
         {
-            Object value = values.get(method.getName());
+            int index = info.indexOf(method);
+            if (index < 0)
+            {
+                return null;
+            }
+            Object value = lazy ? getLazily(index) : values[index];
             if (value instanceof Invalid)
             {
                 throw new ComponentException(((Invalid)value).getMessage());
             }
             return value;
         }
+
+        private synchronized Object getLazily(int index)
+        {
+            if (values[index] == NOT_COERCED)
+            {
+                values[index] = coerce(index);
+                if (--uncoerced == 0)
+                {
+                    release();
+                }
+            }
+            return values[index];
+        }
+
+        private void release()
+        {
+            this.props = null;
+            this.bundle = null;
+            this.nested = null;
+        }
+
+        private Object coerce(int index)
+        {
+            Member member = info.members[index];
+            if ( member.complex )
+            {
+                if ( !supportsInterfaces )
+                {
+                    return new Invalid("Invalid annotation member type" + member.returnType.getName() + " for member: " + member.name);
+                }
+                if ( nested == null )
+                {
+                    nested = extractSubMaps(info.complexKeys, props);
+                }
+                return toComplex(member, nested.get(member.key), bundle, supportsInterfaces, lazy);
+            }
+            return Annotations.coerce(member, props.get(member.key), bundle);
+        }
         
     }
+
+    /**
+     * The information on a component property type computed once per type:
+     * the members with their property keys and return types and the
+     * constructor of the proxy class implementing the type. Configuration
+     * objects of the type just provide the array of member values.
+     */
+    private final static class TypeInfo
+    {
+        private final Member[] members;
+
+        private final Map<String, Integer> indices = new HashMap<String, Integer>();
+
+        /**
+         * The member indices by the methods called on the proxies. The proxy
+         * class passes the same method instances on each call, so the indices
+         * are only looked up by name once per method. The map is replaced
+         * instead of modified such that it can be read without locking.
+         */
+        private volatile Map<Method, Integer> methodIndices = new IdentityHashMap<Method, Integer>();
+
+        private final Pattern complexKeys;
+
+        private final Constructor<?> constructor;
+
+        TypeInfo(Class<?> clazz)
+        {
+            Method[] methods = clazz.getMethods();
+            members = new Member[methods.length];
+            StringBuilder b = null;
+            for ( int i = 0; i < methods.length; i++ )
+            {
+                members[i] = new Member(methods[i]);
+                indices.put(members[i].name, i);
+                if (members[i].complex)
+                {
+                    //Form a regexp to recognize all the keys as prefixes in the map keys.
+                    b = (b == null) ? new StringBuilder("(") : b.append("|");
+                    b.append(members[i].key);
+                }
+            }
+            complexKeys = (b == null) ? null : Pattern.compile(b.append(")\\.([0-9]*)\\.(.*)").toString());
+
+            try
+            {
+                constructor = Proxy.getProxyClass(clazz.getClassLoader(), new Class<?>[] { clazz }).getConstructor(new Class<?>[] { InvocationHandler.class });
+            }
+            catch (NoSuchMethodException e)
+            {
+                throw new IllegalArgumentException(e.toString());
+            }
+        }
+
+        /**
+         * Returns the index of the member called by the method or -1 if the
+         * method is not a member.
+         */
+        int indexOf(Method method)
+        {
+            Integer index = methodIndices.get(method);
+            if (index == null)
+            {
+                index = indices.get(method.getName());
+                if (index == null)
+                {
+                    index = -1;
+                }
+                synchronized ( this )
+                {
+                    Map<Method, Integer> copy = new IdentityHashMap<Method, Integer>(methodIndices);
+                    copy.put(method, index);
+                    methodIndices = copy;
+                }
+            }
+            return index.intValue();
+        }
+
+        Object newInstance(InvocationHandler h)
+        {
+            try
+            {
+                return constructor.newInstance(new Object[] { h });
+            }
+            catch (Exception e)
+            {
+                throw new IllegalStateException(e.toString());
+            }
+        }
+    }
+
+    /**
+     * A single member of a component property type.
+     */
+    private final static class Member
+    {
+        private final String name;
+
+        private final String key;
+
+        private final Class<?> returnType;
+
+        /** The component type of array members, <code>null</code> otherwise */
+        private final Class<?> componentType;
+
+        /** Whether the member is of a nested interface or annotation type */
+        private final boolean complex;
+
+        /** The converter of raw values, <code>null</code> for complex members */
+        private final Coercions.Converter converter;
+
+        Member(Method method)
+        {
+            name = method.getName();
+            key = fixup(name);
+            returnType = method.getReturnType();
+            componentType = returnType.getComponentType();
+            Class<?> type = (componentType == null) ? returnType : componentType;
+            complex = type.isInterface() || type.isAnnotation();
+            converter = complex ? null : Coercions.getConverter(type);
+        }
+    }
     
     private final static class Invalid 
     {
@@ -45,8 +45,14 @@ public abstract class BaseMethod<P>
 
     private volatile Method m_method;
 
+    private volatile Class<?> m_declaringClass;
+
+    private volatile Class<?>[] m_parameterTypes;
+
     private final boolean m_methodRequired;
 
+    private volatile ComponentAccessor<Object> m_accessor;
+
     private volatile State m_state;
 
     protected BaseMethod( final String methodName,
@@ -102,9 +108,21 @@ public abstract class BaseMethod<P>
     }
 
 
+    /**
+     * Sets the accessor used to call the method instead of reflection.
+     */
+    @SuppressWarnings("unchecked")
+    void setAccessor( final ComponentAccessor<?> accessor )
+    {
+        this.m_accessor = ( ComponentAccessor<Object> ) accessor;
+    }
+
+
     void setMethod( Method method, SimpleLogger logger )
     {
         this.m_method = method;
+        this.m_declaringClass = ( method != null ) ? method.getDeclaringClass() : null;
+        this.m_parameterTypes = ( method != null ) ? method.getParameterTypes() : null;
 
         if ( method != null )
         {
@@ -216,13 +234,41 @@ public abstract class BaseMethod<P>
         {
             if ( componentInstance != null )
             {
-                final Object[] params = getParameters(m_method, rawParameter);
-                logger.log( LogService.LOG_DEBUG, "invoking {0}: {1}: parameters {2}", new Object[]
-                        { getMethodNamePrefix(), getMethodName(), Arrays.asList( params ) }, null );
-                Object result = m_method.invoke(componentInstance, params);
-                logger.log( LogService.LOG_DEBUG, "invoked {0}: {1}", new Object[]
-                    { getMethodNamePrefix(), getMethodName() }, null );
-                return new MethodResult((m_method.getReturnType() != Void.TYPE), (Map<String, Object>) result);
+                final Method method = m_method;
+                final Object[] params = getParameters(method, rawParameter);
+                final boolean debug = logger.isLogEnabled( LogService.LOG_DEBUG );
+                if ( debug )
+                {
+                    logger.log( LogService.LOG_DEBUG, "invoking {0}: {1}: parameters {2}", new Object[]
+                            { getMethodNamePrefix(), getMethodName(), Arrays.asList( params ) }, null );
+                }
+                final ComponentAccessor<Object> accessor = m_accessor;
+                final Object result;
+                if ( accessor != null )
+                {
+                    try
+                    {
+                        result = accessor.invoke( componentInstance, m_declaringClass, getMethodName(), m_parameterTypes, params );
+                    }
+                    catch ( Exception e )
+                    {
+                        throw new InvocationTargetException( e );
+                    }
+                }
+                else
+                {
+                    result = method.invoke(componentInstance, params);
+                }
+                if ( debug )
+                {
+                    logger.log( LogService.LOG_DEBUG, "invoked {0}: {1}", new Object[]
+                        { getMethodNamePrefix(), getMethodName() }, null );
+                }
+                if ( method.getReturnType() == Void.TYPE )
+                {
+                    return MethodResult.VOID;
+                }
+                return new MethodResult(true, (Map<String, Object>) result);
             }
             else
             {
@@ -281,6 +327,41 @@ public abstract class BaseMethod<P>
     }
 
 
+    /**
+     * Returns the specification of this method used as the key into the
+     * {@link MethodCache} for the component class. The specification must
+     * contain all information which influences the method lookup.
+     * Implementations with additional lookup parameters must extend this
+     * specification.
+     */
+    protected String getMethodSpec()
+    {
+        return getClass().getName() + ":" + getMethodName() + ":" + getDSVersion() + ":" + isDS12Felix();
+    }
+
+
+    /**
+     * Returns additional state established while looking up the method,
+     * which must be restored when the method is taken from the
+     * {@link MethodCache}. This default implementation returns
+     * <code>null</code>.
+     */
+    protected Object getResolutionState()
+    {
+        return null;
+    }
+
+
+    /**
+     * Restores the state returned from {@link #getResolutionState()} when
+     * the method is taken from the {@link MethodCache}. This default
+     * implementation does nothing.
+     */
+    protected void setResolutionState( Object state )
+    {
+    }
+
+
     //---------- Helpers
 
     /**
@@ -551,11 +632,28 @@ public abstract class BaseMethod<P>
             logger.log( LogService.LOG_DEBUG, "getting {0}: {1}", new Object[]
                     {baseMethod.getMethodNamePrefix(), baseMethod.getMethodName()}, null );
 
+            // check whether the method has already been resolved for
+            // the component class by another component
+            final Class<?> componentClass = baseMethod.getComponentClass();
+            final String spec = baseMethod.getMethodSpec();
+            final MethodCache.Entry entry = MethodCache.get( componentClass, spec );
+            if ( entry != null )
+            {
+                final Method method = ( Method ) entry.getMember();
+                if ( method != null || entry.isNegative() )
+                {
+                    baseMethod.setResolutionState( entry.getState() );
+                    baseMethod.setMethod( method, logger );
+                    return;
+                }
+            }
+
             // resolve the method
             Method method = null;
             try
             {
                 method = baseMethod.findMethod( logger );
+                MethodCache.put( componentClass, spec, method, baseMethod.getResolutionState() );
             }
             catch ( InvocationTargetException ex )
             {
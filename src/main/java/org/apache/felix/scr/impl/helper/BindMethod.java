@@ -22,7 +22,6 @@ package org.apache.felix.scr.impl.helper;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -50,8 +49,11 @@ implements org.apache.felix.scr.impl.helper.ReferenceMethod
         map
     }
 
-    //initialized for cases where there is no method.
-    private volatile List<ParamType> m_paramTypes = Collections.emptyList();
+    private static final ParamType[] NO_PARAMS = new ParamType[0];
+
+    // the parameter plan of the method: the kind of object to supply for
+    // each parameter, initialized for cases where there is no method.
+    private volatile ParamType[] m_paramTypes = NO_PARAMS;
 
 
     public BindMethod( final String methodName,
@@ -117,7 +119,7 @@ implements org.apache.felix.scr.impl.helper.ReferenceMethod
                 {
                     logger.log( LogService.LOG_DEBUG, "doFindMethod: Found Method " + method, null );
                 }
-                m_paramTypes = Collections.singletonList(ParamType.serviceReference);
+                m_paramTypes = new ParamType[] {ParamType.serviceReference};
                 return method;
             }
         }
@@ -138,7 +140,7 @@ implements org.apache.felix.scr.impl.helper.ReferenceMethod
 	                {
 	                    logger.log( LogService.LOG_DEBUG, "doFindMethod: Found Method " + method, null );
 	                }
-	                m_paramTypes = Collections.singletonList(ParamType.serviceObjects);
+	                m_paramTypes = new ParamType[] {ParamType.serviceObjects};
 	                return method;
 	            }
 	        }
@@ -171,7 +173,7 @@ implements org.apache.felix.scr.impl.helper.ReferenceMethod
 	                {
 	                    logger.log( LogService.LOG_DEBUG, "doFindMethod: Found Method " + method, null );
 	                }
-	                m_paramTypes = Collections.singletonList(ParamType.serviceType);
+	                m_paramTypes = new ParamType[] {ParamType.serviceType};
                     return method;
                 }
             }
@@ -190,7 +192,7 @@ implements org.apache.felix.scr.impl.helper.ReferenceMethod
 	                {
 	                    logger.log( LogService.LOG_DEBUG, "doFindMethod: Found Method " + method, null );
 	                }
-                    m_paramTypes = Collections.singletonList(ParamType.serviceType);
+                    m_paramTypes = new ParamType[] {ParamType.serviceType};
                     return method;
                 }
             }
@@ -211,7 +213,7 @@ implements org.apache.felix.scr.impl.helper.ReferenceMethod
     	                {
     	                    logger.log( LogService.LOG_DEBUG, "doFindMethod: Found Method " + method, null );
     	                }
-                        m_paramTypes = Collections.singletonList(ParamType.map);
+                        m_paramTypes = new ParamType[] {ParamType.map};
                         return method;
                     }
                 }
@@ -238,7 +240,7 @@ implements org.apache.felix.scr.impl.helper.ReferenceMethod
                         List<ParamType> paramTypes = new ArrayList<ParamType>(2);
                         paramTypes.add(ParamType.serviceType);
                         paramTypes.add(ParamType.map);
-                        m_paramTypes = paramTypes;
+                        m_paramTypes = paramTypes.toArray( new ParamType[paramTypes.size()] );
                         return method;
                     }
                 }
@@ -261,7 +263,7 @@ implements org.apache.felix.scr.impl.helper.ReferenceMethod
                         List<ParamType> paramTypes = new ArrayList<ParamType>(2);
                         paramTypes.add(ParamType.serviceType);
                         paramTypes.add(ParamType.map);
-                        m_paramTypes = paramTypes;
+                        m_paramTypes = paramTypes.toArray( new ParamType[paramTypes.size()] );
                         return method;
                     }
                 }
@@ -336,7 +338,7 @@ implements org.apache.felix.scr.impl.helper.ReferenceMethod
             	                {
             	                    logger.log( LogService.LOG_DEBUG, "doFindMethod: Found Method " + m, null );
             	                }
-                                m_paramTypes = paramTypes;
+                                m_paramTypes = paramTypes.toArray( new ParamType[paramTypes.size()] );
                                 return m;
                             }
                             suitableMethodNotAccessible = true;
@@ -642,8 +644,12 @@ implements org.apache.felix.scr.impl.helper.ReferenceMethod
         //??? this resolves which we need.... better way?
         if ( refPair.getServiceObject(key) == null && methodExists( logger ) )
         {
-            if ( m_paramTypes.contains(ParamType.serviceType) ) {
-                return refPair.getServiceObject(key, context, logger);
+            for ( ParamType pt: m_paramTypes )
+            {
+                if ( pt == ParamType.serviceType )
+                {
+                    return refPair.getServiceObject(key, context, logger);
+                }
             }
         }
         return true;
@@ -652,29 +658,32 @@ implements org.apache.felix.scr.impl.helper.ReferenceMethod
     @Override
     protected Object[] getParameters( Method method, BindParameters bp )
     {
-        ComponentContextImpl key = bp.getComponentContext();
-        Object[] result = new Object[ m_paramTypes.size()];
-        RefPair<?, ?> refPair = bp.getRefPair();
-        int i = 0;
-        for ( ParamType pt: m_paramTypes ) {
-            switch (pt) {
+        final ParamType[] paramTypes = m_paramTypes;
+        final ComponentContextImpl key = bp.getComponentContext();
+        final RefPair<?, ?> refPair = bp.getRefPair();
+        final Object[] result = new Object[paramTypes.length];
+        for ( int i = 0; i < paramTypes.length; i++ )
+        {
+            switch ( paramTypes[i] )
+            {
                 case serviceReference:
-                    result[i++] = refPair.getRef();
+                    result[i] = refPair.getRef();
                     break;
 
                 case serviceObjects:
-                    result[i++] = ((ComponentServiceObjectsHelper)bp.getComponentContext().getComponentServiceObjectsHelper()).getServiceObjects(refPair.getRef());
+                    result[i] = ((ComponentServiceObjectsHelper)key.getComponentServiceObjectsHelper()).getServiceObjects(refPair.getRef());
                     break;
 
                 case map:
-                    result[i++] = new ReadOnlyDictionary<String, Object>( refPair.getRef() );
+                    // the component may keep the map, hand out the shared copy
+                    result[i] = refPair.getPropertiesSnapshot();
                     break;
 
                 case serviceType:
-                    result[i++] = refPair.getServiceObject(key);
+                    result[i] = refPair.getServiceObject(key);
                     break;
 
-                default: throw new IllegalStateException("unexpected ParamType: " + pt);
+                default: throw new IllegalStateException("unexpected ParamType: " + paramTypes[i]);
 
             }
         }
@@ -688,4 +697,28 @@ implements org.apache.felix.scr.impl.helper.ReferenceMethod
         return "bind";
     }
 
+
+    @Override
+    protected String getMethodSpec()
+    {
+        return super.getMethodSpec() + ":" + m_referenceClassName;
+    }
+
+
+    @Override
+    protected Object getResolutionState()
+    {
+        return m_paramTypes;
+    }
+
+
+    @Override
+    protected void setResolutionState( Object state )
+    {
+        if ( state != null )
+        {
+            m_paramTypes = ( ParamType[] ) state;
+        }
+    }
+
 }
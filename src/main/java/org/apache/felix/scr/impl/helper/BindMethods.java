@@ -34,26 +34,32 @@ public class BindMethods implements ReferenceMethods
     private final ReferenceMethod m_unbind;
 
     public BindMethods( ReferenceMetadata m_dependencyMetadata, Class<?> instanceClass,
-            final DSVersion dsVersion, final boolean configurableServiceProperties )
+            final DSVersion dsVersion, final boolean configurableServiceProperties, final ComponentAccessor<?> accessor )
     {
-        m_bind = new org.apache.felix.scr.impl.helper.BindMethod(
+        final BindMethod bind = new org.apache.felix.scr.impl.helper.BindMethod(
                 m_dependencyMetadata.getBind(),
                 instanceClass,
                 m_dependencyMetadata.getInterface(),
                 dsVersion, configurableServiceProperties
         );
-        m_updated = new org.apache.felix.scr.impl.helper.UpdatedMethod(
+        final BindMethod updated = new org.apache.felix.scr.impl.helper.UpdatedMethod(
                 m_dependencyMetadata.getUpdated(),
                 instanceClass,
                 m_dependencyMetadata.getInterface(),
                 dsVersion, configurableServiceProperties
         );
-        m_unbind = new org.apache.felix.scr.impl.helper.UnbindMethod(
+        final BindMethod unbind = new org.apache.felix.scr.impl.helper.UnbindMethod(
                 m_dependencyMetadata.getUnbind(),
                 instanceClass,
                 m_dependencyMetadata.getInterface(),
                 dsVersion, configurableServiceProperties
         );
+        bind.setAccessor( accessor );
+        updated.setAccessor( accessor );
+        unbind.setAccessor( accessor );
+        m_bind = bind;
+        m_updated = updated;
+        m_unbind = unbind;
     }
 
     public ReferenceMethod getBind()
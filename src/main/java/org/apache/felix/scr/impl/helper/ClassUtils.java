@@ -19,11 +19,17 @@
 package org.apache.felix.scr.impl.helper;
 
 
+import java.lang.ref.WeakReference;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.felix.scr.impl.Activator;
+import org.apache.felix.scr.impl.ScrMetrics;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.component.ComponentServiceObjects;
 import org.osgi.service.log.LogService;
@@ -49,6 +55,15 @@ public class ClassUtils
     public static final Class<?> COLLECTION_CLASS = Collection.class;
     public static final Class<?> LIST_CLASS = List.class;
 
+    /**
+     * Cache of classes found by {@link #getClassFromComponentClassLoader(Class, String, SimpleLogger)}
+     * per class loader of the component class, that is per bundle. Classes
+     * not found are cached as <code>Object.class</code>. The classes are only
+     * weakly referenced since they may have been loaded by the class loader
+     * used as the key, which would otherwise never be released.
+     */
+    private static final Map<ClassLoader, ConcurrentMap<String, WeakReference<Class<?>>>> m_classCache = new WeakHashMap<ClassLoader, ConcurrentMap<String, WeakReference<Class<?>>>>();
+
     /**
      * Returns the class object representing the class of the field reference
      * The class loader of the component class is used to load the service class.
@@ -65,6 +80,80 @@ public class ClassUtils
             final Class<?> componentClass,
             final String className,
             final SimpleLogger logger )
+    {
+        // need the class loader of the target class, which may be the
+        // system classloader, which case getClassLoader may retur null
+        ClassLoader loader = componentClass.getClassLoader();
+        if ( loader == null )
+        {
+            loader = ClassLoader.getSystemClassLoader();
+        }
+
+        ConcurrentMap<String, WeakReference<Class<?>>> classes;
+        synchronized ( m_classCache )
+        {
+            classes = m_classCache.get( loader );
+            if ( classes == null )
+            {
+                classes = new ConcurrentHashMap<String, WeakReference<Class<?>>>();
+                m_classCache.put( loader, classes );
+            }
+        }
+
+        final WeakReference<Class<?>> ref = classes.get( className );
+        Class<?> referenceClass = ( ref == null ) ? null : ref.get();
+        if ( referenceClass != null )
+        {
+            ScrMetrics.increment( ScrMetrics.Counter.CLASS_LOOKUP_CACHE_HITS );
+            return referenceClass;
+        }
+
+        ScrMetrics.increment( ScrMetrics.Counter.CLASS_LOOKUP_CACHE_MISSES );
+        referenceClass = loadReferenceClass( componentClass, loader, className, logger );
+        classes.put( className, new WeakReference<Class<?>>( referenceClass ) );
+        return referenceClass;
+    }
+
+
+    /**
+     * Clears the class lookup cache. This must be called when bundles are
+     * resolved, unresolved or uninstalled since this may change the
+     * visibility of classes.
+     *
+     * @param negativeOnly <code>true</code> to only drop the entries of
+     *      classes which could not be found. This is sufficient when a
+     *      bundle has been resolved, since this only adds classes.
+     */
+    public static void clearClassCache( final boolean negativeOnly )
+    {
+        synchronized ( m_classCache )
+        {
+            if ( !negativeOnly )
+            {
+                m_classCache.clear();
+                return;
+            }
+
+            for ( ConcurrentMap<String, WeakReference<Class<?>>> classes : m_classCache.values() )
+            {
+                for ( Iterator<WeakReference<Class<?>>> ci = classes.values().iterator(); ci.hasNext(); )
+                {
+                    final Class<?> referenceClass = ci.next().get();
+                    if ( referenceClass == null || referenceClass == OBJECT_CLASS )
+                    {
+                        ci.remove();
+                    }
+                }
+            }
+        }
+    }
+
+
+    private static Class<?> loadReferenceClass(
+            final Class<?> componentClass,
+            final ClassLoader loader,
+            final String className,
+            final SimpleLogger logger )
     {
         if ( logger.isLogEnabled( LogService.LOG_DEBUG ) )
         {
@@ -76,14 +165,6 @@ public class ClassUtils
 
         try
         {
-            // need the class loader of the target class, which may be the
-            // system classloader, which case getClassLoader may retur null
-            ClassLoader loader = componentClass.getClassLoader();
-            if ( loader == null )
-            {
-                loader = ClassLoader.getSystemClassLoader();
-            }
-
             final Class<?> referenceClass = loader.loadClass( className );
             if ( logger.isLogEnabled( LogService.LOG_DEBUG ) )
             {
@@ -20,6 +20,8 @@ package org.apache.felix.scr.impl.helper;
 
 import java.lang.reflect.Array;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.osgi.framework.Bundle;
 import org.osgi.service.component.ComponentException;
@@ -44,54 +46,352 @@ public class Coercions
     private static final long long0 = 0;
     private static final short short0 = 0;
     
-    public static Object coerce(Class<?> type, Object raw, Bundle bundle )
+    /**
+     * The converters for the fixed target types keyed by the target type.
+     * This map is only written while this class is initialized.
+     */
+    private static final Map<Class<?>, Converter> CONVERTERS = new HashMap<Class<?>, Converter>();
+
+    static
     {
-        if (type == Byte.class || type == byte.class)
+        register(new Converter(byte.class)
         {
-            return coerceToByte(raw);
-        }
-        if (type == Boolean.class || type == boolean.class)
+            @Override
+            public Object convert(Object raw, Bundle bundle)
+            {
+                return coerceToByte(raw);
+            }
+
+            @Override
+            protected Object newArray(int size)
+            {
+                return new byte[size];
+            }
+
+            @Override
+            protected void set(Object array, int index, Object raw, Bundle bundle)
+            {
+                ((byte[]) array)[index] = coerceToByte(raw);
+            }
+        });
+        register(new Converter(boolean.class)
         {
-            return coerceToBoolean(raw);
-        }
-        if (type == Character.class || type == char.class)
+            @Override
+            public Object convert(Object raw, Bundle bundle)
+            {
+                return coerceToBoolean(raw);
+            }
+
+            @Override
+            protected Object newArray(int size)
+            {
+                return new boolean[size];
+            }
+
+            @Override
+            protected void set(Object array, int index, Object raw, Bundle bundle)
+            {
+                ((boolean[]) array)[index] = coerceToBoolean(raw);
+            }
+        });
+        register(new Converter(char.class)
         {
-            return coerceToChar(raw);
-        }
-        if (type == Class.class)
+            @Override
+            public Object convert(Object raw, Bundle bundle)
+            {
+                return coerceToChar(raw);
+            }
+
+            @Override
+            protected Object newArray(int size)
+            {
+                return new char[size];
+            }
+
+            @Override
+            protected void set(Object array, int index, Object raw, Bundle bundle)
+            {
+                ((char[]) array)[index] = coerceToChar(raw);
+            }
+        });
+        register(new Converter(double.class)
         {
-            return coerceToClass(raw, bundle);
+            @Override
+            public Object convert(Object raw, Bundle bundle)
+            {
+                return coerceToDouble(raw);
+            }
+
+            @Override
+            protected Object newArray(int size)
+            {
+                return new double[size];
+            }
+
+            @Override
+            protected void set(Object array, int index, Object raw, Bundle bundle)
+            {
+                ((double[]) array)[index] = coerceToDouble(raw);
+            }
+        });
+        register(new Converter(float.class)
+        {
+            @Override
+            public Object convert(Object raw, Bundle bundle)
+            {
+                return coerceToFloat(raw);
+            }
+
+            @Override
+            protected Object newArray(int size)
+            {
+                return new float[size];
+            }
+
+            @Override
+            protected void set(Object array, int index, Object raw, Bundle bundle)
+            {
+                ((float[]) array)[index] = coerceToFloat(raw);
+            }
+        });
+        register(new Converter(int.class)
+        {
+            @Override
+            public Object convert(Object raw, Bundle bundle)
+            {
+                return coerceToInteger(raw);
+            }
+
+            @Override
+            protected Object newArray(int size)
+            {
+                return new int[size];
+            }
+
+            @Override
+            protected void set(Object array, int index, Object raw, Bundle bundle)
+            {
+                ((int[]) array)[index] = coerceToInteger(raw);
+            }
+        });
+        register(new Converter(long.class)
+        {
+            @Override
+            public Object convert(Object raw, Bundle bundle)
+            {
+                return coerceToLong(raw);
+            }
+
+            @Override
+            protected Object newArray(int size)
+            {
+                return new long[size];
+            }
+
+            @Override
+            protected void set(Object array, int index, Object raw, Bundle bundle)
+            {
+                ((long[]) array)[index] = coerceToLong(raw);
+            }
+        });
+        register(new Converter(short.class)
+        {
+            @Override
+            public Object convert(Object raw, Bundle bundle)
+            {
+                return coerceToShort(raw);
+            }
+
+            @Override
+            protected Object newArray(int size)
+            {
+                return new short[size];
+            }
+
+            @Override
+            protected void set(Object array, int index, Object raw, Bundle bundle)
+            {
+                ((short[]) array)[index] = coerceToShort(raw);
+            }
+        });
+        for (Class<?>[] types: new Class<?>[][] {
+            { Byte.class, byte.class }, { Boolean.class, boolean.class }, { Character.class, char.class },
+            { Double.class, double.class }, { Float.class, float.class }, { Integer.class, int.class },
+            { Long.class, long.class }, { Short.class, short.class } })
+        {
+            register(new BoxingConverter(types[0], CONVERTERS.get(types[1])));
         }
-        if (type == Double.class || type == double.class)
+        register(new Converter(String.class)
         {
-            return coerceToDouble(raw);
+            @Override
+            public Object convert(Object raw, Bundle bundle)
+            {
+                return coerceToString(raw);
+            }
+        });
+        register(new Converter(Class.class)
+        {
+            @Override
+            public Object convert(Object raw, Bundle bundle)
+            {
+                return coerceToClass(raw, bundle);
+            }
+        });
+    }
+
+    private static void register(Converter converter)
+    {
+        CONVERTERS.put(converter.getType(), converter);
+    }
+
+    /**
+     * Returns the converter to the given type. The converter is expected to
+     * be kept by the caller for repeated conversions to the type. If the
+     * type is not supported, the converter throws a
+     * <code>ComponentException</code> when used.
+     */
+    public static Converter getConverter(final Class<?> type)
+    {
+        Converter converter = CONVERTERS.get(type);
+        if (converter != null)
+        {
+            return converter;
         }
         if (type.isEnum())
         {
-            Class clazz = type; //TODO is there a better way to do ? enum creation?
-            return coerceToEnum(raw, clazz);
+            return new Converter(type)
+            {
+                @Override
+                public Object convert(Object raw, Bundle bundle)
+                {
+                    Class clazz = type;
+                    return coerceToEnum(raw, clazz);
+                }
+            };
+        }
+        return new Converter(type)
+        {
+            @Override
+            public Object convert(Object raw, Bundle bundle)
+            {
+                throw new ComponentException ("unexpected output type " + type);
+            }
+        };
+    }
+    
+    public static Object coerce(Class<?> type, Object raw, Bundle bundle )
+    {
+        return getConverter(type).convert(raw, bundle);
+    }
+
+    /**
+     * Converts raw values to a single target type. Converters to primitive
+     * types build primitive arrays directly without boxing the converted
+     * elements.
+     */
+    public static abstract class Converter
+    {
+        private final Class<?> type;
+
+        Converter(Class<?> type)
+        {
+            this.type = type;
         }
-        if (type == Float.class || type == float.class)
+
+        public Class<?> getType()
         {
-            return coerceToFloat(raw);
+            return type;
         }
-        if (type == Integer.class || type == int.class)
+
+        /**
+         * Converts the raw value to the target type. If the raw value is an
+         * array or collection its first element is converted.
+         */
+        public abstract Object convert(Object raw, Bundle bundle);
+
+        /**
+         * Converts the raw value to an array of the target type. Each element
+         * of a raw array or collection is converted, a single raw value
+         * results in an array of one element and <code>null</code> is
+         * returned if the raw value is <code>null</code>.
+         */
+        public Object convertArray(Object raw, Bundle bundle)
+        {
+            if (raw == null)
+            {
+                return null;
+            }
+            if (raw instanceof Object[])
+            {
+                Object[] raws = (Object[]) raw;
+                Object result = newArray(raws.length);
+                for (int i = 0; i < raws.length; i++)
+                {
+                    set(result, i, raws[i], bundle);
+                }
+                return result;
+            }
+            if (raw.getClass().isArray())
+            {
+                int size = Array.getLength(raw);
+                Object result = newArray(size);
+                if (raw.getClass().getComponentType() == type)
+                {
+                    // primitive array of the target type
+                    System.arraycopy(raw, 0, result, 0, size);
+                    return result;
+                }
+                for (int i = 0; i < size; i++)
+                {
+                    set(result, i, Array.get(raw, i), bundle);
+                }
+                return result;
+            }
+            if (raw instanceof Collection)
+            {
+                Collection<?> raws = (Collection<?>) raw;
+                Object result = newArray(raws.size());
+                int i = 0;
+                for (Object rawElement: raws)
+                {
+                    set(result, i++, rawElement, bundle);
+                }
+                return result;
+            }
+            Object result = newArray(1);
+            set(result, 0, raw, bundle);
+            return result;
+        }
+
+        protected Object newArray(int size)
         {
-            return coerceToInteger(raw);
+            return Array.newInstance(type, size);
         }
-        if (type == Long.class || type == long.class)
+
+        protected void set(Object array, int index, Object raw, Bundle bundle)
         {
-            return coerceToLong(raw);
+            ((Object[]) array)[index] = convert(raw, bundle);
         }
-        if (type == Short.class || type == short.class)
+    }
+
+    /**
+     * Converts to a wrapper type using the converter of the primitive type.
+     */
+    private static final class BoxingConverter extends Converter
+    {
+        private final Converter primitive;
+
+        BoxingConverter(Class<?> type, Converter primitive)
         {
-            return coerceToShort(raw);
+            super(type);
+            this.primitive = primitive;
         }
-        if (type == String.class)
+
+        @Override
+        public Object convert(Object raw, Bundle bundle)
         {
-            return coerceToString(raw);
+            return primitive.convert(raw, bundle);
         }
-        throw new ComponentException ("unexpected output type " + type);
     }
     
     public static byte coerceToByte(Object o)
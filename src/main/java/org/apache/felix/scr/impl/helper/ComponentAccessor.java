@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.helper;
+
+
+/**
+ * The <code>ComponentAccessor</code> is an optional, build-time generated,
+ * companion of a component implementation class which allows the Service
+ * Component Runtime to create component instances, call component methods
+ * and access reference fields without using reflection.
+ * <p>
+ * This interface is internal and not exported until a generator producing
+ * accessor classes is available, so the contract may still change. Until
+ * then component bundles cannot provide accessors, since they cannot see
+ * this package, and components are handled using reflection. The lookup of
+ * accessors is only exercised by the unit tests.
+ * <p>
+ * The accessor for an implementation class is looked up by loading the class
+ * whose name is the implementation class name with the
+ * {@link #ACCESSOR_CLASS_SUFFIX} appended through the class loader of the
+ * implementation class. The accessor class must implement this interface and
+ * provide a public constructor without arguments. If no such class exists
+ * the component is handled using reflection.
+ * <p>
+ * Method signatures are still selected according to the rules of the
+ * Declarative Services specification; the accessor is only used to call the
+ * selected method with the parameters prepared by the Service Component
+ * Runtime. Since the same name may be declared on several levels of the
+ * class hierarchy and overloaded, a method is identified by its declaring
+ * class, name and parameter types and a field by its declaring class and
+ * name.
+ * <p>
+ * Note that the accessor does not replace looking up the methods and fields:
+ * to apply the selection rules the Service Component Runtime still finds
+ * them by reflection, including making non-public members accessible, once
+ * per implementation class. The accessor avoids reflection for creating
+ * instances and for each call and field access.
+ */
+public interface ComponentAccessor<S>
+{
+
+    /**
+     * The suffix appended to the name of the component implementation class
+     * to get the name of the accessor class.
+     */
+    String ACCESSOR_CLASS_SUFFIX = "_ScrAccessor";
+
+
+    /**
+     * Creates a new instance of the component implementation class.
+     *
+     * @throws Exception If the instance cannot be created. This is handled
+     *      like a failure of the public default constructor.
+     */
+    S newInstance() throws Exception;
+
+
+    /**
+     * Calls the named activate, deactivate, modified, bind, updated or unbind
+     * method of the component instance.
+     *
+     * @param instance The component instance
+     * @param declaringClass The class declaring the selected method, which
+     *      may be a super class of the implementation class
+     * @param methodName The name of the method as declared in the component
+     *      description
+     * @param parameterTypes The parameter types of the method selected by
+     *      the Service Component Runtime
+     * @param parameters The method parameters, matching the
+     *      <code>parameterTypes</code>
+     * @return The value returned from the method or <code>null</code> if the
+     *      method is declared <code>void</code>
+     * @throws Exception Any exception thrown by the method
+     */
+    Object invoke( S instance, Class<?> declaringClass, String methodName, Class<?>[] parameterTypes, Object[] parameters )
+        throws Exception;
+
+
+    /**
+     * Sets the named reference field declared by the given class of the
+     * component instance.
+     */
+    void setField( S instance, Class<?> declaringClass, String fieldName, Object value );
+
+
+    /**
+     * Returns the value of the named reference field declared by the given
+     * class of the component instance.
+     */
+    Object getField( S instance, Class<?> declaringClass, String fieldName );
+
+}
@@ -26,6 +26,7 @@ import java.util.Map;
 import org.apache.felix.scr.impl.metadata.ComponentMetadata;
 import org.apache.felix.scr.impl.metadata.DSVersion;
 import org.apache.felix.scr.impl.metadata.ReferenceMetadata;
+import org.osgi.service.log.LogService;
 
 /**
  * @version $Rev$ $Date$
@@ -35,15 +36,17 @@ public class ComponentMethods
     private ActivateMethod m_activateMethod;
     private ModifiedMethod m_modifiedMethod;
     private DeactivateMethod m_deactivateMethod;
+    private ComponentAccessor<?> m_accessor;
 
     private final Map<String, ReferenceMethods> bindMethodMap = new HashMap<String, ReferenceMethods>();
 
-    public synchronized void initComponentMethods( ComponentMetadata componentMetadata, Class<?> implementationObjectClass )
+    public synchronized void initComponentMethods( ComponentMetadata componentMetadata, Class<?> implementationObjectClass, SimpleLogger logger )
     {
         if (m_activateMethod != null)
         {
             return;
         }
+        m_accessor = loadAccessor( implementationObjectClass, logger );
         DSVersion dsVersion = componentMetadata.getDSVersion();
         boolean configurableServiceProperties = componentMetadata.isConfigurableServiceProperties();
         boolean supportsInterfaces = componentMetadata.isConfigureWithInterfaces();
@@ -53,6 +56,13 @@ public class ComponentMethods
                 componentMetadata.isDeactivateDeclared(), implementationObjectClass, dsVersion, configurableServiceProperties, supportsInterfaces );
 
         m_modifiedMethod = new ModifiedMethod( componentMetadata.getModified(), implementationObjectClass, dsVersion, configurableServiceProperties, supportsInterfaces );
+        m_activateMethod.setAccessor( m_accessor );
+        m_deactivateMethod.setAccessor( m_accessor );
+        m_modifiedMethod.setAccessor( m_accessor );
+        boolean lazyCoercion = componentMetadata.isLazyCoercion();
+        m_activateMethod.setLazyCoercion( lazyCoercion );
+        m_deactivateMethod.setLazyCoercion( lazyCoercion );
+        m_modifiedMethod.setLazyCoercion( lazyCoercion );
 
         for ( ReferenceMetadata referenceMetadata: componentMetadata.getDependencies() )
         {
@@ -61,21 +71,30 @@ public class ComponentMethods
             if ( referenceMetadata.getField() != null && referenceMetadata.getBind() != null)
             {
                 methods = new DuplexReferenceMethods(
-                        new FieldMethods( referenceMetadata, implementationObjectClass, dsVersion, configurableServiceProperties),
-                        new BindMethods( referenceMetadata, implementationObjectClass, dsVersion, configurableServiceProperties));
+                        new FieldMethods( referenceMetadata, implementationObjectClass, dsVersion, configurableServiceProperties, m_accessor),
+                        new BindMethods( referenceMetadata, implementationObjectClass, dsVersion, configurableServiceProperties, m_accessor));
             }
             else if ( referenceMetadata.getField() != null )
             {
-                methods = new FieldMethods( referenceMetadata, implementationObjectClass, dsVersion, configurableServiceProperties);
+                methods = new FieldMethods( referenceMetadata, implementationObjectClass, dsVersion, configurableServiceProperties, m_accessor);
             }
             else
             {
-                methods = new BindMethods( referenceMetadata, implementationObjectClass, dsVersion, configurableServiceProperties);
+                methods = new BindMethods( referenceMetadata, implementationObjectClass, dsVersion, configurableServiceProperties, m_accessor);
             }
             bindMethodMap.put( refName, methods );
         }
     }
 
+    /**
+     * Returns the {@link ComponentAccessor} provided with the implementation
+     * class or <code>null</code> if there is none and reflection is used.
+     */
+    public synchronized ComponentAccessor<?> getAccessor()
+    {
+        return m_accessor;
+    }
+
     public ActivateMethod getActivateMethod()
     {
         return m_activateMethod;
@@ -96,4 +115,57 @@ public class ComponentMethods
         return bindMethodMap.get( refName );
     }
 
+    /**
+     * Loads and instantiates the optional accessor class generated for the
+     * implementation class. Returns <code>null</code> if there is no such
+     * class or it cannot be used.
+     */
+    private static ComponentAccessor<?> loadAccessor( final Class<?> implementationObjectClass, final SimpleLogger logger )
+    {
+        final ClassLoader loader = implementationObjectClass.getClassLoader();
+        if ( loader == null )
+        {
+            return null;
+        }
+
+        final String accessorClassName = implementationObjectClass.getName() + ComponentAccessor.ACCESSOR_CLASS_SUFFIX;
+        final Class<?> accessorClass;
+        try
+        {
+            accessorClass = loader.loadClass( accessorClassName );
+        }
+        catch ( ClassNotFoundException cnfe )
+        {
+            // no accessor, use reflection
+            return null;
+        }
+        catch ( LinkageError le )
+        {
+            logger.log( LogService.LOG_WARNING, "Cannot load component accessor {0}, using reflection", new Object[]
+                { accessorClassName }, le );
+            return null;
+        }
+
+        if ( !ComponentAccessor.class.isAssignableFrom( accessorClass ) )
+        {
+            logger.log( LogService.LOG_WARNING, "Component accessor {0} does not implement {1}, using reflection", new Object[]
+                { accessorClassName, ComponentAccessor.class.getName() }, null );
+            return null;
+        }
+
+        try
+        {
+            final ComponentAccessor<?> accessor = ( ComponentAccessor<?> ) accessorClass.newInstance();
+            logger.log( LogService.LOG_DEBUG, "Using component accessor {0}", new Object[]
+                { accessorClassName }, null );
+            return accessor;
+        }
+        catch ( Throwable t )
+        {
+            logger.log( LogService.LOG_WARNING, "Cannot instantiate component accessor {0}, using reflection", new Object[]
+                { accessorClassName }, t );
+            return null;
+        }
+    }
+
 }
@@ -24,12 +24,8 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Comparator;
-import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
 
@@ -69,16 +65,11 @@ public class FieldHandler
     /** State handling. */
     private volatile State state;
 
-    /** Mapping of ref pairs to value bound */
-    private final Map<RefPair<?, ?>, Object> boundValues = new TreeMap<RefPair<?,?>, Object>(
-        new Comparator<RefPair<?, ?>>()
-        {
+    /** Optional accessor used instead of reflection. */
+    private volatile ComponentAccessor<Object> accessor;
 
-            public int compare(final RefPair<?, ?> o1, final RefPair<?, ?> o2)
-            {
-                return o1.getRef().compareTo(o2.getRef());
-            }
-        });
+    /** Values bound, ordered by their service references */
+    private final RankedValues boundValues = new RankedValues();
 
     /**
      * Create a new field handler
@@ -94,6 +85,16 @@ public class FieldHandler
         this.state = NotResolved.INSTANCE;
     }
 
+    /**
+     * Set the accessor used to read and write the field instead of reflection.
+     * @param accessor The accessor
+     */
+    @SuppressWarnings("unchecked")
+    void setAccessor( final ComponentAccessor<?> accessor )
+    {
+        this.accessor = ( ComponentAccessor<Object> ) accessor;
+    }
+
     /**
      * Set the field.
      * If the field is found, the state transitions to resolved, if the field is
@@ -464,8 +465,8 @@ public class FieldHandler
             case serviceType : obj = refPair.getServiceObject(key); break;
             case serviceReference : obj = refPair.getRef(); break;
             case serviceObjects : obj = key.getComponentServiceObjectsHelper().getServiceObjects(refPair.getRef()); break;
-            case map : obj = new ReadOnlyDictionary<String, Object>( refPair.getRef() ); break;
-            case tuple : final Object tupleKey = new ReadOnlyDictionary<String, Object>( refPair.getRef() );
+            case map : obj = refPair.getPropertiesSnapshot(); break;
+            case tuple : final Object tupleKey = refPair.getPropertiesSnapshot();
                          final Object tupleValue = refPair.getServiceObject(key);
                          obj = new MapEntryImpl(tupleKey, tupleValue, refPair.getRef());
                          break;
@@ -548,12 +549,7 @@ public class FieldHandler
 
     private Collection<Object> getReplaceCollection()
     {
-        final List<Object> objects = new ArrayList<Object>();
-        for(final Object val : this.boundValues.values())
-        {
-            objects.add(val);
-        }
-        return objects;
+        return this.boundValues.toList();
     }
 
     private MethodResult updateField( final METHOD_TYPE mType,
@@ -681,6 +677,19 @@ public class FieldHandler
     private void setFieldValue(final Object componentInstance, final Object value)
     throws InvocationTargetException
     {
+        final ComponentAccessor<Object> accessor = this.accessor;
+        if ( accessor != null )
+        {
+            try
+            {
+                accessor.setField(componentInstance, field.getDeclaringClass(), metadata.getField(), value);
+            }
+            catch ( final RuntimeException re )
+            {
+                throw new InvocationTargetException(re);
+            }
+            return;
+        }
         try
         {
             field.set(componentInstance, value);
@@ -698,6 +707,18 @@ public class FieldHandler
     private Object getFieldValue(final Object componentInstance)
     throws InvocationTargetException
     {
+        final ComponentAccessor<Object> accessor = this.accessor;
+        if ( accessor != null )
+        {
+            try
+            {
+                return accessor.getField(componentInstance, field.getDeclaringClass(), metadata.getField());
+            }
+            catch ( final RuntimeException re )
+            {
+                throw new InvocationTargetException(re);
+            }
+        }
         try
         {
             return field.get(componentInstance);
@@ -798,6 +819,18 @@ public class FieldHandler
         return ( dot > 0 ) ? name.substring( 0, dot ) : "";
     }
 
+    /**
+     * Returns the specification of this field used as the key into the
+     * {@link MethodCache}. Besides the field name this contains the
+     * reference properties checked while validating the field.
+     */
+    private String getFieldSpec()
+    {
+        return "field:" + metadata.getField() + ":" + metadata.getInterface()
+            + ":" + metadata.getCardinality() + ":" + metadata.getPolicy()
+            + ":" + metadata.getFieldOption() + ":" + metadata.getFieldCollectionType();
+    }
+
     /**
      * Internal state interface.
      */
@@ -826,12 +859,28 @@ public class FieldHandler
             logger.log( LogService.LOG_DEBUG, "getting field: {0}", new Object[]
                     {handler.metadata.getField()}, null );
 
+            // check whether the field has already been resolved for
+            // the component class by another component
+            final String spec = handler.getFieldSpec();
+            final MethodCache.Entry entry = MethodCache.get( handler.componentClass, spec );
+            if ( entry != null )
+            {
+                final Field field = ( Field ) entry.getMember();
+                if ( field != null || entry.isNegative() )
+                {
+                    handler.valueType = ( ParamType ) entry.getState();
+                    handler.setField( field, logger );
+                    return;
+                }
+            }
+
             // resolve the field
             Field field = null;
             try
             {
                 field = handler.findField( logger );
                 field = handler.validateField( field, logger );
+                MethodCache.put( handler.componentClass, spec, field, handler.valueType );
             }
             catch ( final InvocationTargetException ex )
             {
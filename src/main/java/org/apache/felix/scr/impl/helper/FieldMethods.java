@@ -35,12 +35,14 @@ public class FieldMethods implements ReferenceMethods
     public FieldMethods( final ReferenceMetadata m_dependencyMetadata,
             final Class<?> instanceClass,
             final DSVersion dsVersion,
-            final boolean configurableServiceProperties )
+            final boolean configurableServiceProperties,
+            final ComponentAccessor<?> accessor )
     {
         final FieldHandler handler = new FieldHandler(
                 m_dependencyMetadata,
                 instanceClass
         );
+        handler.setAccessor( accessor );
         bind = handler.getBind();
         unbind = handler.getUnbind();
         updated = handler.getUpdated();
@@ -0,0 +1,347 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.helper;
+
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * The <code>LayeredProperties</code> is an immutable, read-only map of
+ * component properties composed of a stack of layers, for example the
+ * properties from the component description, the configurations and the
+ * runtime overrides. A property of a higher layer hides the same property of
+ * the lower layers.
+ * <p>
+ * Creating an instance does not copy any properties: lookups walk the layers
+ * from the top, and the merged view required for iteration is only built
+ * once on first use. The layers must not be modified after they have been
+ * added; they may however be shared by any number of instances.
+ * <p>
+ * As in a <code>Hashtable</code>, <code>null</code> values are not
+ * supported: a layer mapping a key to <code>null</code> does not hide the
+ * key in the lower layers.
+ */
+public final class LayeredProperties extends AbstractMap<String, Object>
+{
+
+    private static final Map<String, ?>[] NO_LAYERS = newLayers( 0 );
+
+    /** The layers, lowest precedence first */
+    private final Map<String, ?>[] m_layers;
+
+    /** The merged properties, built on first iteration */
+    private volatile Map<String, Object> m_merged;
+
+    /** The content fingerprint, zero if not computed yet */
+    private volatile int m_fingerprint;
+
+
+    /**
+     * Creates properties without any layer.
+     */
+    public LayeredProperties()
+    {
+        this( NO_LAYERS );
+    }
+
+
+    /**
+     * Creates properties with the given map as the lowest layer. If the map
+     * is itself a <code>LayeredProperties</code> its layers are reused.
+     */
+    public LayeredProperties( final Map<String, ?> base )
+    {
+        this( NO_LAYERS, base );
+    }
+
+
+    private LayeredProperties( final Map<String, ?>[] layers )
+    {
+        m_layers = layers;
+    }
+
+
+    private LayeredProperties( final Map<String, ?>[] below, final Map<String, ?> layer )
+    {
+        if ( layer == null || layer.isEmpty() )
+        {
+            m_layers = below;
+        }
+        else if ( layer instanceof LayeredProperties )
+        {
+            final Map<String, ?>[] above = ( ( LayeredProperties ) layer ).m_layers;
+            m_layers = newLayers( below.length + above.length );
+            System.arraycopy( below, 0, m_layers, 0, below.length );
+            System.arraycopy( above, 0, m_layers, below.length, above.length );
+        }
+        else
+        {
+            m_layers = newLayers( below.length + 1 );
+            System.arraycopy( below, 0, m_layers, 0, below.length );
+            m_layers[below.length] = layer;
+        }
+    }
+
+
+    /**
+     * Returns properties with the given map added as the top layer. This
+     * instance is returned if the map is <code>null</code> or empty.
+     */
+    public LayeredProperties with( final Map<String, ?> layer )
+    {
+        if ( layer == null || layer.isEmpty() )
+        {
+            return this;
+        }
+        return new LayeredProperties( m_layers, layer );
+    }
+
+
+    /**
+     * Returns properties overriding the single given property.
+     */
+    public LayeredProperties with( final String key, final Object value )
+    {
+        return new LayeredProperties( m_layers, Collections.singletonMap( key, value ) );
+    }
+
+
+    /**
+     * Returns a map providing the properties of the given dictionary, which
+     * is the dictionary itself if it is a <code>Map</code> such as a
+     * <code>Hashtable</code> or a copy otherwise. Returns <code>null</code>
+     * if the dictionary is <code>null</code>.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, ?> toMap( final Dictionary<String, ?> dictionary )
+    {
+        if ( dictionary == null || dictionary instanceof Map )
+        {
+            return ( Map<String, ?> ) dictionary;
+        }
+        final Map<String, Object> map = new HashMap<String, Object>();
+        for ( Enumeration<String> keys = dictionary.keys(); keys.hasMoreElements(); )
+        {
+            final String key = keys.nextElement();
+            map.put( key, dictionary.get( key ) );
+        }
+        return map;
+    }
+
+
+    //---------- Map API
+
+    @Override
+    public Object get( final Object key )
+    {
+        final Map<String, Object> merged = m_merged;
+        if ( merged != null )
+        {
+            return merged.get( key );
+        }
+        for ( int i = m_layers.length - 1; i >= 0; i-- )
+        {
+            final Object value = m_layers[i].get( key );
+            if ( value != null )
+            {
+                return value;
+            }
+        }
+        return null;
+    }
+
+
+    @Override
+    public boolean containsKey( final Object key )
+    {
+        return get( key ) != null;
+    }
+
+
+    @Override
+    public boolean isEmpty()
+    {
+        return m_layers.length == 0 || getMerged().isEmpty();
+    }
+
+
+    @Override
+    public int size()
+    {
+        return getMerged().size();
+    }
+
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet()
+    {
+        return getMerged().entrySet();
+    }
+
+
+    @Override
+    public Set<String> keySet()
+    {
+        return getMerged().keySet();
+    }
+
+
+    /**
+     * Returns the content fingerprint of these properties, which is computed
+     * once. See {@link #fingerprint(Map)}.
+     */
+    public int fingerprint()
+    {
+        int fingerprint = m_fingerprint;
+        if ( fingerprint == 0 )
+        {
+            fingerprint = fingerprint( getMerged() );
+            // zero marks the fingerprint as not computed
+            fingerprint = ( fingerprint == 0 ) ? 1 : fingerprint;
+            m_fingerprint = fingerprint;
+        }
+        return fingerprint;
+    }
+
+
+    //---------- content comparison
+
+    /**
+     * Returns a hash of the keys and values of the given properties which,
+     * unlike <code>Map.hashCode()</code>, takes the contents of array values
+     * into account. Properties with equal contents as defined by
+     * {@link #contentEquals(Map, Map)} have the same fingerprint.
+     */
+    public static int fingerprint( final Map<String, ?> properties )
+    {
+        if ( properties instanceof LayeredProperties )
+        {
+            return ( ( LayeredProperties ) properties ).fingerprint();
+        }
+        int fingerprint = 0;
+        for ( Map.Entry<String, ?> entry: properties.entrySet() )
+        {
+            if ( entry.getValue() != null )
+            {
+                fingerprint += entry.getKey().hashCode() ^ valueHashCode( entry.getValue() );
+            }
+        }
+        return ( fingerprint == 0 ) ? 1 : fingerprint;
+    }
+
+
+    /**
+     * Returns <code>true</code> if both properties have the same keys and
+     * equal values, comparing array values by their contents. The
+     * fingerprints are compared first such that differing properties are
+     * rejected cheaply.
+     */
+    public static boolean contentEquals( final Map<String, ?> properties, final Map<String, ?> other )
+    {
+        if ( properties == other )
+        {
+            return true;
+        }
+        if ( properties == null || other == null || properties.size() != other.size()
+            || fingerprint( properties ) != fingerprint( other ) )
+        {
+            return false;
+        }
+        for ( Map.Entry<String, ?> entry: properties.entrySet() )
+        {
+            if ( !valueEquals( entry.getValue(), other.get( entry.getKey() ) ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Returns <code>true</code> if both property values are equal, comparing
+     * arrays by their contents.
+     */
+    public static boolean valueEquals( final Object value, final Object other )
+    {
+        if ( value == other )
+        {
+            return true;
+        }
+        if ( value == null || other == null )
+        {
+            return false;
+        }
+        if ( value.getClass().isArray() )
+        {
+            return Arrays.deepEquals( new Object[] { value }, new Object[] { other } );
+        }
+        return value.equals( other );
+    }
+
+
+    private static int valueHashCode( final Object value )
+    {
+        if ( value.getClass().isArray() )
+        {
+            return Arrays.deepHashCode( new Object[] { value } );
+        }
+        return value.hashCode();
+    }
+
+
+    private Map<String, Object> getMerged()
+    {
+        Map<String, Object> merged = m_merged;
+        if ( merged == null )
+        {
+            final Map<String, Object> map = new HashMap<String, Object>();
+            for ( Map<String, ?> layer: m_layers )
+            {
+                for ( Map.Entry<String, ?> entry: layer.entrySet() )
+                {
+                    if ( entry.getValue() != null )
+                    {
+                        map.put( entry.getKey(), entry.getValue() );
+                    }
+                }
+            }
+            // concurrent initialization builds equal maps, no locking needed
+            merged = Collections.unmodifiableMap( map );
+            m_merged = merged;
+        }
+        return merged;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, ?>[] newLayers( final int length )
+    {
+        return new Map[length];
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.helper;
+
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Member;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.FrameworkUtil;
+
+
+/**
+ * The <code>MethodCache</code> keeps the outcome of resolving component
+ * methods and fields shared across all component holders. Entries are keyed
+ * by the implementation class and a method specification string which
+ * captures the kind of method, its name, the DS version and any other
+ * parameter influencing the lookup. Negative results (no such method) are
+ * cached as well.
+ * <p>
+ * The implementation class is weakly referenced and the resolved member is
+ * only weakly held, such that the cache does not prevent class unloading.
+ * In addition all entries for the classes of a bundle are dropped when the
+ * bundle is uninstalled or unresolved, see {@link #clear(Bundle)}.
+ */
+public class MethodCache
+{
+
+    private static final Map<Class<?>, ConcurrentMap<String, Entry>> m_cache = new WeakHashMap<Class<?>, ConcurrentMap<String, Entry>>();
+
+
+    /**
+     * Returns the cached resolution for the given class and method
+     * specification or <code>null</code> if there is no (more) such entry.
+     */
+    static Entry get( final Class<?> componentClass, final String spec )
+    {
+        final ConcurrentMap<String, Entry> entries;
+        synchronized ( m_cache )
+        {
+            entries = m_cache.get( componentClass );
+        }
+        if ( entries == null )
+        {
+            return null;
+        }
+
+        final Entry entry = entries.get( spec );
+        if ( entry != null && !entry.isNegative() && entry.getMember() == null )
+        {
+            // the member has been garbage collected meanwhile
+            entries.remove( spec, entry );
+            return null;
+        }
+        return entry;
+    }
+
+
+    /**
+     * Stores the resolution of the method specification for the given class.
+     *
+     * @param member The resolved method or field, <code>null</code> if none
+     *      could be found.
+     * @param state Additional resolution state of the method or field
+     *      handler, such as the parameter types. This must not refer to
+     *      the component class.
+     */
+    static void put( final Class<?> componentClass, final String spec, final Member member, final Object state )
+    {
+        ConcurrentMap<String, Entry> entries;
+        synchronized ( m_cache )
+        {
+            entries = m_cache.get( componentClass );
+            if ( entries == null )
+            {
+                entries = new ConcurrentHashMap<String, Entry>();
+                m_cache.put( componentClass, entries );
+            }
+        }
+        entries.put( spec, new Entry( member, state ) );
+    }
+
+
+    /**
+     * Removes all entries for classes provided by the given bundle.
+     */
+    public static void clear( final Bundle bundle )
+    {
+        synchronized ( m_cache )
+        {
+            for ( Iterator<Class<?>> ci = m_cache.keySet().iterator(); ci.hasNext(); )
+            {
+                final Class<?> clazz = ci.next();
+                final Bundle provider = ( clazz == null ) ? null : FrameworkUtil.getBundle( clazz );
+                if ( provider == null || provider.getBundleId() == bundle.getBundleId() )
+                {
+                    ci.remove();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public static void clear()
+    {
+        synchronized ( m_cache )
+        {
+            m_cache.clear();
+        }
+    }
+
+
+    /**
+     * A single resolution result.
+     */
+    static final class Entry
+    {
+        private final WeakReference<Member> m_member;
+        private final Object m_state;
+
+
+        private Entry( final Member member, final Object state )
+        {
+            m_member = ( member == null ) ? null : new WeakReference<Member>( member );
+            m_state = state;
+        }
+
+
+        /**
+         * Returns the resolved method or field or <code>null</code> for a
+         * negative entry or if the member has been garbage collected.
+         */
+        Member getMember()
+        {
+            return ( m_member == null ) ? null : m_member.get();
+        }
+
+
+        Object getState()
+        {
+            return m_state;
+        }
+
+
+        /**
+         * Returns <code>true</code> if this entry records that no method or
+         * field could be found.
+         */
+        boolean isNegative()
+        {
+            return m_member == null;
+        }
+    }
+}
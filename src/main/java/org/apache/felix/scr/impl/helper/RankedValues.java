@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.helper;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.felix.scr.impl.manager.RefPair;
+
+
+/**
+ * The <code>RankedValues</code> keeps the values bound for a field reference
+ * in the order of their service references. The values are held in an array
+ * which is kept sorted on each change, such that adding or removing a value
+ * is a binary search and a single array copy. The arrays are never modified
+ * once published, so readers need no locking.
+ */
+class RankedValues
+{
+
+    private static final Object[] EMPTY = new Object[0];
+
+    private volatile RefPair<?, ?>[] m_refPairs = new RefPair<?, ?>[0];
+
+    private volatile Object[] m_values = EMPTY;
+
+
+    int size()
+    {
+        return m_values.length;
+    }
+
+
+    /**
+     * Returns a new list of the values ordered by their service references.
+     */
+    List<Object> toList()
+    {
+        return new ArrayList<Object>( Arrays.asList( m_values ) );
+    }
+
+
+    /**
+     * Sets the value for the given ref pair and returns the value previously
+     * bound for the ref pair or <code>null</code> if none.
+     */
+    synchronized Object put( final RefPair<?, ?> refPair, final Object value )
+    {
+        Object old = null;
+        int index = indexOf( refPair );
+        if ( index >= 0 )
+        {
+            if ( m_refPairs[index] == refPair && isOrdered( index ) )
+            {
+                // same position, just replace the value
+                final Object[] values = m_values.clone();
+                old = values[index];
+                values[index] = value;
+                m_values = values;
+                return old;
+            }
+            old = m_values[index];
+            removeAt( index );
+        }
+        else
+        {
+            // the service ranking may have changed since the value was bound
+            index = scan( refPair );
+            if ( index >= 0 )
+            {
+                old = m_values[index];
+                removeAt( index );
+            }
+        }
+
+        final int insert = -( search( refPair ) + 1 );
+        final RefPair<?, ?>[] refPairs = m_refPairs;
+        final Object[] values = m_values;
+        final RefPair<?, ?>[] newRefPairs = new RefPair<?, ?>[refPairs.length + 1];
+        final Object[] newValues = new Object[values.length + 1];
+        System.arraycopy( refPairs, 0, newRefPairs, 0, insert );
+        System.arraycopy( values, 0, newValues, 0, insert );
+        newRefPairs[insert] = refPair;
+        newValues[insert] = value;
+        System.arraycopy( refPairs, insert, newRefPairs, insert + 1, refPairs.length - insert );
+        System.arraycopy( values, insert, newValues, insert + 1, values.length - insert );
+        m_refPairs = newRefPairs;
+        m_values = newValues;
+        return old;
+    }
+
+
+    /**
+     * Removes the value bound for the given ref pair and returns it or
+     * <code>null</code> if no value is bound.
+     */
+    synchronized Object remove( final RefPair<?, ?> refPair )
+    {
+        int index = indexOf( refPair );
+        if ( index < 0 )
+        {
+            index = scan( refPair );
+        }
+        if ( index < 0 )
+        {
+            return null;
+        }
+        final Object old = m_values[index];
+        removeAt( index );
+        return old;
+    }
+
+
+    private int indexOf( final RefPair<?, ?> refPair )
+    {
+        final int index = search( refPair );
+        return ( index >= 0 && m_refPairs[index].getRef().equals( refPair.getRef() ) ) ? index : -1;
+    }
+
+
+    /**
+     * Returns <code>true</code> if the entry at the index is still ordered
+     * with respect to its neighbours, that is the service ranking has not
+     * been changed such that the entry has to be moved.
+     */
+    private boolean isOrdered( final int index )
+    {
+        final RefPair<?, ?>[] refPairs = m_refPairs;
+        final RefPair<?, ?> refPair = refPairs[index];
+        return ( index == 0 || refPairs[index - 1].getRef().compareTo( refPair.getRef() ) < 0 )
+            && ( index == refPairs.length - 1 || refPairs[index + 1].getRef().compareTo( refPair.getRef() ) > 0 );
+    }
+
+
+    private int search( final RefPair<?, ?> refPair )
+    {
+        final RefPair<?, ?>[] refPairs = m_refPairs;
+        int low = 0;
+        int high = refPairs.length - 1;
+        while ( low <= high )
+        {
+            final int mid = ( low + high ) >>> 1;
+            final int cmp = refPairs[mid].getRef().compareTo( refPair.getRef() );
+            if ( cmp < 0 )
+            {
+                low = mid + 1;
+            }
+            else if ( cmp > 0 )
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -( low + 1 );
+    }
+
+
+    private int scan( final RefPair<?, ?> refPair )
+    {
+        final RefPair<?, ?>[] refPairs = m_refPairs;
+        for ( int i = 0; i < refPairs.length; i++ )
+        {
+            if ( refPairs[i] == refPair || refPairs[i].getRef().equals( refPair.getRef() ) )
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    private void removeAt( final int index )
+    {
+        final RefPair<?, ?>[] refPairs = m_refPairs;
+        final Object[] values = m_values;
+        final RefPair<?, ?>[] newRefPairs = new RefPair<?, ?>[refPairs.length - 1];
+        final Object[] newValues = new Object[values.length - 1];
+        System.arraycopy( refPairs, 0, newRefPairs, 0, index );
+        System.arraycopy( values, 0, newValues, 0, index );
+        System.arraycopy( refPairs, index + 1, newRefPairs, index, refPairs.length - index - 1 );
+        System.arraycopy( values, index + 1, newValues, index, values.length - index - 1 );
+        m_refPairs = newRefPairs;
+        m_values = newValues;
+    }
+}
@@ -23,7 +23,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -34,55 +34,120 @@ import org.osgi.framework.ServiceReference;
  * The <code>ReadOnlyDictionary</code> is both a <code>Dictionary</code> and
  * a <code>Map</code> whose modification methods (like {@link #put(Object, Object)},
  * {@link #remove(Object)}, etc.) throw an {@link UnsupportedOperationException}.
+ * <p>
+ * The dictionary is a view: it does not copy the properties but reads through
+ * to the underlying map or service reference. For a service reference,
+ * {@link #get(Object)}, {@link #containsKey(Object)} and {@link #size()} ask
+ * the reference directly, while the methods iterating the properties read
+ * them as collected on first iteration until {@link #reset()} is called once
+ * the service properties have been modified. Callers which keep the
+ * properties use a {@link #snapshot()} instead, which is not affected by a
+ * reset.
  */
 public class ReadOnlyDictionary<S, T> extends Dictionary<S, T>
     implements Map<S, T>, Comparable<ReadOnlyDictionary<S, T>>
 {
 
-    private final Hashtable<S, T> m_delegate;
+    // the properties, null for a view of the service reference properties
+    private final Map<S, T> m_delegate;
 
     private final ServiceReference<?> m_serviceReference;
 
+    // whether m_delegate is known not to change
+    private final boolean m_stable;
+
+    // the service reference properties collected on first iteration
+    private volatile Map<S, T> m_properties;
+
     /**
-     * Creates a wrapper for the given delegate dictionary providing read
-     * only access to the data.
+     * Creates a read only view of the given delegate map.
      */
     public ReadOnlyDictionary( final Map<S, T> delegate )
     {
-        if ( delegate instanceof Hashtable )
+        this( delegate, null, delegate instanceof LayeredProperties );
+    }
+
+
+    /**
+     * Creates a read only view of the service reference properties.
+     */
+    public ReadOnlyDictionary( final ServiceReference<?> serviceReference )
+    {
+        this( null, serviceReference, false );
+    }
+
+
+    private ReadOnlyDictionary( final Map<S, T> delegate, final ServiceReference<?> serviceReference, final boolean stable )
+    {
+        m_delegate = delegate;
+        m_serviceReference = serviceReference;
+        m_stable = stable;
+    }
+
+
+    /**
+     * Returns a dictionary with a copy of the current properties, which is
+     * not affected by later changes of the service properties. Returns this
+     * dictionary if it is already stable.
+     */
+    public ReadOnlyDictionary<S, T> snapshot()
+    {
+        if ( m_stable )
+        {
+            return this;
+        }
+        final Map<S, T> properties = ( m_delegate != null ) ? new HashMap<S, T>( m_delegate ) : collect();
+        return new ReadOnlyDictionary<S, T>( properties, m_serviceReference, true );
+    }
+
+
+    /**
+     * Drops the service reference properties collected for iteration. This
+     * must be called when the service properties have been modified.
+     */
+    public void reset()
+    {
+        m_properties = null;
+    }
+
+
+    /**
+     * Returns the properties to iterate: the delegate map or the collected
+     * service reference properties.
+     */
+    private Map<S, T> properties()
+    {
+        if ( m_delegate != null )
         {
-            this.m_delegate = ( Hashtable<S, T> ) delegate;
+            return m_delegate;
         }
-        else
+        Map<S, T> collected = m_properties;
+        if ( collected == null )
         {
-            this.m_delegate = new Hashtable<S, T>();
-            for ( Map.Entry<S, T> entry: delegate.entrySet() )
-            {
-                this.m_delegate.put( entry.getKey(), entry.getValue() );
-            }
+            collected = collect();
+            m_properties = collected;
         }
-        m_serviceReference = null;
+        return collected;
     }
 
 
     /**
-     * Creates a wrapper for the given service reference providing read only
-     * access to the reference properties.
+     * Copies the current service reference properties into a new map.
      */
-    public ReadOnlyDictionary( final ServiceReference<?> serviceReference )
+    @SuppressWarnings("unchecked")
+    private Map<S, T> collect()
     {
-        Hashtable properties = new Hashtable();
-        final String[] keys = serviceReference.getPropertyKeys();
+        final String[] keys = m_serviceReference.getPropertyKeys();
+        final Map<S, T> properties = new HashMap<S, T>( keys == null ? 0 : keys.length * 2 );
         if ( keys != null )
         {
             for ( int j = 0; j < keys.length; j++ )
             {
                 final String key = keys[j];
-                properties.put( key, serviceReference.getProperty( key ) );
+                properties.put( ( S ) key, ( T ) m_serviceReference.getProperty( key ) );
             }
         }
-        m_delegate = properties;
-        m_serviceReference = serviceReference;
+        return properties;
     }
 
 
@@ -91,27 +156,32 @@ public class ReadOnlyDictionary<S, T> extends Dictionary<S, T>
     @Override
     public Enumeration<T> elements()
     {
-        return m_delegate.elements();
+        return Collections.enumeration( properties().values() );
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public T get( final Object key )
     {
-        return m_delegate.get( key );
+        if ( m_delegate != null )
+        {
+            return m_delegate.get( key );
+        }
+        return ( key instanceof String ) ? ( T ) m_serviceReference.getProperty( ( String ) key ) : null;
     }
 
 
     @Override
     public boolean isEmpty()
     {
-        return m_delegate.isEmpty();
+        return size() == 0;
     }
 
 
     @Override
     public Enumeration<S> keys()
     {
-        return m_delegate.keys();
+        return Collections.enumeration( keySet() );
     }
 
 
@@ -140,14 +210,19 @@ public class ReadOnlyDictionary<S, T> extends Dictionary<S, T>
     @Override
     public int size()
     {
-        return m_delegate.size();
+        if ( m_delegate != null )
+        {
+            return m_delegate.size();
+        }
+        final String[] keys = m_serviceReference.getPropertyKeys();
+        return ( keys == null ) ? 0 : keys.length;
     }
 
 
     @Override
     public String toString()
     {
-        return m_delegate.toString();
+        return properties().toString();
     }
 
 
@@ -161,25 +236,29 @@ public class ReadOnlyDictionary<S, T> extends Dictionary<S, T>
 
     public boolean containsKey( Object key )
     {
-        return m_delegate.containsKey( key );
+        if ( m_delegate != null )
+        {
+            return m_delegate.containsKey( key );
+        }
+        return get( key ) != null;
     }
 
 
     public boolean containsValue( Object value )
     {
-        return m_delegate.containsValue( value );
+        return properties().containsValue( value );
     }
 
 
     public Set<Entry<S, T>> entrySet()
     {
-        return Collections.unmodifiableSet( m_delegate.entrySet() );
+        return Collections.unmodifiableSet( properties().entrySet() );
     }
 
 
     public Set<S> keySet()
     {
-        return Collections.unmodifiableSet( m_delegate.keySet() );
+        return Collections.unmodifiableSet( properties().keySet() );
     }
 
 
@@ -191,7 +270,7 @@ public class ReadOnlyDictionary<S, T> extends Dictionary<S, T>
 
     public Collection<T> values()
     {
-        return Collections.unmodifiableCollection( m_delegate.values() );
+        return Collections.unmodifiableCollection( properties().values() );
     }
 
 
@@ -52,6 +52,7 @@ import org.apache.felix.scr.impl.helper.SimpleLogger;
 import org.apache.felix.scr.impl.metadata.ComponentMetadata;
 import org.apache.felix.scr.impl.metadata.ReferenceMetadata;
 import org.apache.felix.scr.impl.metadata.ServiceMetadata;
+import org.apache.felix.scr.info.ComponentStateEvent;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceException;
@@ -110,6 +111,17 @@ public abstract class AbstractComponentManager<S> implements SimpleLogger, Compo
 
 	private volatile boolean m_satisfied;
 
+    // serializes reporting the state changes, see stateChanged(int)
+    private final Object m_stateReportLock = new Object();
+
+    // the state last reported by stateChanged(int), guarded by m_stateReportLock
+    private int m_reportedState = STATE_DISABLED;
+
+    // incremented on each change visible in the runtime DTOs
+    private final AtomicLong m_changeCount = new AtomicLong();
+
+    private final ComponentStatistics m_statistics = new ComponentStatistics();
+
     protected volatile boolean m_disposed;
 
     //service event tracking
@@ -298,6 +310,7 @@ public abstract class AbstractComponentManager<S> implements SimpleLogger, Compo
         {
             m_missingLock.unlock();
         }
+        changed();
     }
 
     /**
@@ -636,11 +649,13 @@ public abstract class AbstractComponentManager<S> implements SimpleLogger, Compo
             return;
         }
 
+        m_statistics.enabled();
         registerComponentId();
         log( LogService.LOG_DEBUG, "Updating target filters", null );
         updateTargets( getProperties() );
 
         m_internalEnabled = true;
+        stateChanged( ComponentStateEvent.REASON_ENABLED );
         log( LogService.LOG_DEBUG, "Component enabled", null );
     }
 
@@ -727,6 +742,7 @@ public abstract class AbstractComponentManager<S> implements SimpleLogger, Compo
         finally
         {
             releaseActivationReadLock(  );
+            stateChanged( ComponentStateEvent.REASON_ACTIVATION );
         }
     }
 
@@ -765,6 +781,7 @@ public abstract class AbstractComponentManager<S> implements SimpleLogger, Compo
             log( LogService.LOG_DEBUG, "Disposing component (reason: " + reason + ")", null );
             clear();
         }
+        stateChanged( reason );
     }
 
     private void doDeactivate( int reason, boolean disable )
@@ -806,6 +823,7 @@ public abstract class AbstractComponentManager<S> implements SimpleLogger, Compo
             throw new IllegalStateException( "Cannot disable a disposed component " + getName() );
         }
         unregisterComponentId();
+        stateChanged( ComponentStateEvent.REASON_DISABLED );
     }
 
     final ServiceReference<S> getServiceReference()
@@ -965,7 +983,7 @@ public abstract class AbstractComponentManager<S> implements SimpleLogger, Compo
             throw new IllegalStateException("Could not load implementation object class "
                     + getComponentMetadata().getImplementationClassName());
         }
-        m_componentMethods.initComponentMethods( getComponentMetadata(), implementationObjectClass );
+        m_componentMethods.initComponentMethods( getComponentMetadata(), implementationObjectClass, this );
 
         for ( DependencyManager dependencyManager : m_dependencyManagers )
         {
@@ -1166,6 +1184,7 @@ public abstract class AbstractComponentManager<S> implements SimpleLogger, Compo
         }
 
         m_satisfied = satisfied;
+        stateChanged( ComponentStateEvent.REASON_REFERENCE );
         return satisfied;
     }
 
@@ -1378,6 +1397,73 @@ public abstract class AbstractComponentManager<S> implements SimpleLogger, Compo
 
     abstract boolean hasInstance();
 
+    /**
+     * Reports a change of the state returned by {@link #getState()} to the
+     * component registry. Called after each change of the fields the state
+     * is derived from; calls not changing the state are ignored.
+     *
+     * @param reason the cause of the change, one of the
+     *      <code>ComponentStateEvent.REASON_</code> constants
+     */
+    final void stateChanged( int reason )
+    {
+        changed();
+        // reading the state, swapping the reported state and updating the
+        // registry index are serialized, such that concurrent transitions
+        // are reported in order and the last report has the current state
+        synchronized ( m_stateReportLock )
+        {
+            final int newState = getState();
+            final int oldState = m_reportedState;
+            if ( oldState != newState )
+            {
+                m_reportedState = newState;
+                m_statistics.unsatisfied( newState == STATE_UNSATISFIED_REFERENCE || newState == STATE_UNSATISFIED_CONFIGURATION );
+                if ( newState == STATE_SATISFIED || newState == STATE_ACTIVE )
+                {
+                    m_statistics.satisfied();
+                }
+                if ( newState == STATE_ACTIVE )
+                {
+                    m_statistics.active();
+                }
+                final BundleComponentActivator activator = getActivator();
+                if ( activator != null )
+                {
+                    activator.componentStateChanged( this, oldState, newState, reason );
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a change of the state, the properties or the reference
+     * bindings of this component, as returned by {@link #getChangeCount()}.
+     */
+    final void changed()
+    {
+        m_changeCount.incrementAndGet();
+    }
+
+    /**
+     * Returns a counter incremented whenever the state, the properties or the
+     * reference bindings of this component change. Clients caching
+     * information derived from this component may compare the count to
+     * detect whether their information is still current.
+     */
+    public final long getChangeCount()
+    {
+        return m_changeCount.get();
+    }
+
+    /**
+     * Returns the performance statistics of this component.
+     */
+    public final ComponentStatistics getStatistics()
+    {
+        return m_statistics;
+    }
+
     public void setServiceProperties( MethodResult methodResult )
     {
         if ( methodResult.hasResult() )
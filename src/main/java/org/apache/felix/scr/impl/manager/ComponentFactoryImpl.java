@@ -20,17 +20,26 @@ package org.apache.felix.scr.impl.manager;
 
 import java.util.ArrayList;
 import java.util.Dictionary;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.felix.scr.component.ExtComponentFactory;
 import org.apache.felix.scr.component.ExtFactoryComponentInstance;
 import org.apache.felix.scr.impl.BundleComponentActivator;
+import org.apache.felix.scr.impl.ScrMetrics;
 import org.apache.felix.scr.impl.TargetedPID;
 import org.apache.felix.scr.impl.config.ComponentContainer;
 import org.apache.felix.scr.impl.helper.ComponentMethods;
+import org.apache.felix.scr.impl.helper.LayeredProperties;
 import org.apache.felix.scr.impl.metadata.ComponentMetadata;
 import org.apache.felix.scr.impl.metadata.ReferenceMetadata;
 import org.osgi.framework.Constants;
@@ -48,14 +57,21 @@ import org.osgi.service.log.LogService;
  * <p>
  * In addition the {@link ComponentHolder} interface is implemented to use this
  * class directly as the holder for component instances created by the
- * {@link #newInstance(Dictionary)} method.
+ * {@link #newInstance(Dictionary)} and {@link #newInstances(List)} methods.
  * <p>
  * This class implements spec-compliant component factories and the felix 
  * "persistent" component factory, where the factory is always registered whether or
  * not all dependencies are present and the created components also persist whether or 
  * not the dependencies are present to allow the component instance to exist.
+ * <p>
+ * If the component declares the felix <code>factoryInstancePoolSize</code>
+ * extension, disposed factory instances are kept active, with their service
+ * unregistered, and reused for new instances with the same target properties
+ * by calling the modified method with the new properties. Pooled instances
+ * idle longer than the <code>factoryInstancePoolIdleTimeout</code> are
+ * disposed on the component actor thread.
  */
-public class ComponentFactoryImpl<S> extends AbstractComponentManager<S> implements ComponentFactory, ComponentContainer<S>
+public class ComponentFactoryImpl<S> extends AbstractComponentManager<S> implements ExtComponentFactory, ComponentContainer<S>
 {
 
     /**
@@ -70,12 +86,39 @@ public class ComponentFactoryImpl<S> extends AbstractComponentManager<S> impleme
      */
     private final Map<SingleComponentManager<S>, SingleComponentManager<S>> m_componentInstances;
 
+    /**
+     * The active component managers of disposed factory instances kept for
+     * reuse by new instances if the component declares a factory instance
+     * pool size. The most recently pooled manager is last. Pooled managers
+     * remain in {@link #m_componentInstances} to be reconfigured and disposed
+     * with the factory and to be reported as active components.
+     */
+    private final LinkedList<PooledManager<S>> m_pool = new LinkedList<PooledManager<S>>();
+
+    /**
+     * Set once the factory is disposed, after which no component manager is
+     * added to the pool anymore. Guarded by {@link #m_pool}.
+     */
+    private boolean m_poolClosed;
+
+    /**
+     * Whether a task evicting idle pooled component managers is scheduled.
+     * Guarded by {@link #m_pool}.
+     */
+    private boolean m_evictionScheduled;
+
     /**
      * The configuration for the component factory. This configuration is
      * supplied as the base configuration for each component instance created
      * by the {@link #newInstance(Dictionary)} method.
      */
     private volatile Map<String, Object> m_configuration;
+
+    /**
+     * The target properties derived from the configuration, see
+     * {@link #getProperties()}. Reset on reconfiguration.
+     */
+    private volatile Map<String, Object> m_targetProperties;
     
     /**
      * Flag telling if our component factory is currently configured from config admin.
@@ -119,13 +162,78 @@ public class ComponentFactoryImpl<S> extends AbstractComponentManager<S> impleme
     */
     public ComponentInstance newInstance( Dictionary<String, ?> dictionary )
     {
+        final ComponentInstance reused = reuseInstance( dictionary );
+        if ( reused != null )
+        {
+            return reused;
+        }
+
         final SingleComponentManager<S> cm = createComponentManager();
         log( LogService.LOG_DEBUG, "Creating new instance from component factory {0} with configuration {1}",
                 new Object[] {getComponentMetadata().getName(), dictionary}, null );
 
+        final ComponentInstance instance = createInstance( cm, dictionary, m_configuration );
+
+        synchronized ( m_componentInstances )
+        {
+            m_componentInstances.put( cm, cm );
+        }
+        
+        return instance;
+    }
+
+
+    /* (non-Javadoc)
+     * @see org.apache.felix.scr.component.ExtComponentFactory#newInstances(java.util.List)
+     */
+    public List<Result> newInstances( List<? extends Dictionary<String, ?>> dictionaries )
+    {
+        log( LogService.LOG_DEBUG, "Creating {0} new instances from component factory {1}",
+                new Object[] {dictionaries.size(), getComponentMetadata().getName()}, null );
+
+        final List<Result> results = new ArrayList<Result>( dictionaries.size() );
+        for ( Dictionary<String, ?> dictionary: dictionaries )
+        {
+            final ComponentInstance reused = reuseInstance( dictionary );
+            if ( reused != null )
+            {
+                results.add( new InstanceResult( reused, null ) );
+                continue;
+            }
+
+            final SingleComponentManager<S> cm = createComponentManager();
+            try
+            {
+                final ComponentInstance instance = createInstance( cm, dictionary, m_configuration );
+                // keep the instance right away to have it reconfigured and disposed with the factory
+                synchronized ( m_componentInstances )
+                {
+                    m_componentInstances.put( cm, cm );
+                }
+                results.add( new InstanceResult( instance, null ) );
+            }
+            catch ( ComponentException ce )
+            {
+                results.add( new InstanceResult( null, ce ) );
+            }
+        }
+        return results;
+    }
+
+
+    /**
+     * Configures, enables and activates the component manager for a new
+     * instance. The component manager is not yet kept in the internal set
+     * of created components.
+     *
+     * @throws ComponentException if the component cannot be activated, in
+     *      which case the component manager has been disposed off
+     */
+    private ComponentInstance createInstance( SingleComponentManager<S> cm, Dictionary<String, ?> dictionary, Map<String, Object> configuration )
+    {
         cm.setFactoryProperties( dictionary );
         //configure the properties
-        cm.reconfigure( m_configuration, false );
+        cm.reconfigure( configuration, false );
         // enable
         cm.enableInternal();
         //activate immediately
@@ -145,16 +253,315 @@ public class ComponentFactoryImpl<S> extends AbstractComponentManager<S> impleme
         		cm.dispose( ComponentConstants.DEACTIVATION_REASON_DISPOSED );
         		throw new ComponentException( "Failed activating component" );
         	}
+        	if ( getComponentMetadata().getFactoryInstancePoolSize() > 0 )
+        	{
+        	    instance = new PooledComponentInstance( cm, getTargetProperties( dictionary ) );
+        	}
         }
+        return instance;
+    }
+
 
+    /**
+     * Reuses a pooled component manager whose factory properties had the
+     * same target properties as the given properties. The pooled component
+     * instance is provided with the new properties through its modified
+     * method and its service is registered again.
+     *
+     * @return The component instance or <code>null</code> if no pooled
+     *      component manager could be reused
+     */
+    private ComponentInstance reuseInstance( Dictionary<String, ?> dictionary )
+    {
+        if ( getComponentMetadata().getFactoryInstancePoolSize() <= 0 )
+        {
+            return null;
+        }
+
+        final Map<String, Object> targets = getTargetProperties( dictionary );
+        while ( true )
+        {
+            SingleComponentManager<S> cm = null;
+            final List<SingleComponentManager<S>> evicted = new ArrayList<SingleComponentManager<S>>();
+            synchronized ( m_pool )
+            {
+                evictIdle( evicted );
+                for ( ListIterator<PooledManager<S>> pi = m_pool.listIterator( m_pool.size() ); pi.hasPrevious(); )
+                {
+                    final PooledManager<S> pooled = pi.previous();
+                    if ( pooled.m_targets.equals( targets ) )
+                    {
+                        pi.remove();
+                        cm = pooled.m_manager;
+                        break;
+                    }
+                }
+            }
+            disposePooled( evicted, ComponentConstants.DEACTIVATION_REASON_DISPOSED );
+            if ( cm == null )
+            {
+                return null;
+            }
+
+            log( LogService.LOG_DEBUG, "Reusing pooled instance of component factory {0} with configuration {1}",
+                    new Object[] {getComponentMetadata().getName(), dictionary}, null );
+            cm.setFactoryProperties( dictionary );
+            // calls the modified method, disposes the component if it cannot be modified
+            cm.reconfigure( false );
+            if ( cm.getComponentInstance() != null && cm.registerService() )
+            {
+                ScrMetrics.increment( ScrMetrics.Counter.FACTORY_INSTANCES_REUSED );
+                return new PooledComponentInstance( cm, targets );
+            }
+            // try the next pooled component manager
+            cm.dispose( ComponentConstants.DEACTIVATION_REASON_DISPOSED );
+        }
+    }
+
+
+    /**
+     * Keeps the component manager of a disposed factory instance for reuse
+     * if it is still active and the pool is not full, otherwise disposes it.
+     * The service of a pooled component is unregistered.
+     */
+    private void release( SingleComponentManager<S> cm, Map<String, Object> targets )
+    {
+        final long timeout = getComponentMetadata().getFactoryInstancePoolIdleTimeout();
+        boolean pooled = false;
+        boolean scheduleEviction = false;
+        final List<SingleComponentManager<S>> evicted = new ArrayList<SingleComponentManager<S>>();
+        if ( cm.getComponentInstance() != null && cm.unregisterService() )
+        {
+            synchronized ( m_pool )
+            {
+                evictIdle( evicted );
+                // a component manager disposed meanwhile has already been
+                // removed from the instances and must not be pooled
+                if ( !m_poolClosed && isInstance( cm )
+                    && m_pool.size() < getComponentMetadata().getFactoryInstancePoolSize() )
+                {
+                    m_pool.addLast( new PooledManager<S>( cm, targets ) );
+                    pooled = true;
+                    scheduleEviction = timeout > 0 && !m_evictionScheduled;
+                    m_evictionScheduled |= scheduleEviction;
+                }
+            }
+        }
+        if ( !pooled )
+        {
+            evicted.add( cm );
+        }
+        disposePooled( evicted, ComponentConstants.DEACTIVATION_REASON_DISPOSED );
+        if ( scheduleEviction )
+        {
+            scheduleEviction( timeout );
+        }
+    }
+
+
+    private boolean isInstance( SingleComponentManager<S> cm )
+    {
         synchronized ( m_componentInstances )
         {
-            m_componentInstances.put( cm, cm );
+            return m_componentInstances.containsKey( cm );
+        }
+    }
+
+
+    /**
+     * Removes the pooled component managers idle longer than the idle
+     * timeout of the component into the <code>evicted</code> list. Must be
+     * called holding the lock on the pool.
+     */
+    private void evictIdle( List<SingleComponentManager<S>> evicted )
+    {
+        final long timeout = getComponentMetadata().getFactoryInstancePoolIdleTimeout();
+        if ( timeout > 0 )
+        {
+            final long now = System.nanoTime();
+            for ( Iterator<PooledManager<S>> pi = m_pool.iterator(); pi.hasNext(); )
+            {
+                final PooledManager<S> pooled = pi.next();
+                if ( now - pooled.m_pooledAt < TimeUnit.MILLISECONDS.toNanos( timeout ) )
+                {
+                    // the remaining component managers have been pooled later
+                    break;
+                }
+                pi.remove();
+                evicted.add( pooled.m_manager );
+            }
+        }
+    }
+
+
+    /**
+     * Schedules disposing the pooled component managers which are idle
+     * after the given delay on the component actor thread.
+     */
+    private void scheduleEviction( long delay )
+    {
+        getActivator().schedule( new Runnable()
+        {
+            public void run()
+            {
+                evictIdleInstances();
+            }
+
+
+            public String toString()
+            {
+                return "Evict idle instances of component factory " + getComponentMetadata().getName();
+            }
+        }, delay );
+    }
+
+
+    /**
+     * Disposes the idle pooled component managers and schedules the next
+     * eviction for the oldest remaining pooled component manager.
+     */
+    void evictIdleInstances()
+    {
+        final long timeout = getComponentMetadata().getFactoryInstancePoolIdleTimeout();
+        final List<SingleComponentManager<S>> evicted = new ArrayList<SingleComponentManager<S>>();
+        long next = -1;
+        synchronized ( m_pool )
+        {
+            evictIdle( evicted );
+            if ( m_poolClosed || m_pool.isEmpty() )
+            {
+                m_evictionScheduled = false;
+            }
+            else
+            {
+                final long idle = System.nanoTime() - m_pool.getFirst().m_pooledAt;
+                next = Math.max( 1, timeout - TimeUnit.NANOSECONDS.toMillis( idle ) );
+            }
+        }
+        disposePooled( evicted, ComponentConstants.DEACTIVATION_REASON_DISPOSED );
+        if ( next > 0 )
+        {
+            scheduleEviction( next );
         }
-        
-        return instance;
+    }
+
+
+    /**
+     * Closes the pool, the pooled component managers are disposed with the
+     * other factory instances.
+     */
+    private void closePool()
+    {
+        synchronized ( m_pool )
+        {
+            m_poolClosed = true;
+            m_pool.clear();
+        }
+    }
+
+
+    private void disposePooled( List<SingleComponentManager<S>> evicted, int reason )
+    {
+        for ( SingleComponentManager<S> cm: evicted )
+        {
+            cm.dispose( reason );
+        }
+    }
+
+
+    /**
+     * Returns the target properties of the given factory properties, which
+     * determine the services bound to a factory instance.
+     */
+    private static Map<String, Object> getTargetProperties( Dictionary<String, ?> dictionary )
+    {
+        final Map<String, Object> targets = new HashMap<String, Object>();
+        if ( dictionary != null )
+        {
+            for ( Enumeration<String> keys = dictionary.keys(); keys.hasMoreElements(); )
+            {
+                final String key = keys.nextElement();
+                if ( key.endsWith( ".target" ) )
+                {
+                    targets.put( key, dictionary.get( key ) );
+                }
+            }
+        }
+        return targets;
     }
     
+    /**
+     * The component instance of a pooled factory instance. Disposing it
+     * returns the component manager to the pool; the component instance is
+     * not available through this object afterwards.
+     */
+    private class PooledComponentInstance implements ComponentInstance
+    {
+        private final SingleComponentManager<S> cm;
+
+        private final Map<String, Object> targets;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        public PooledComponentInstance(SingleComponentManager<S> cm, Map<String, Object> targets)
+        {
+            this.cm = cm;
+            this.targets = targets;
+        }
+
+        public void dispose()
+        {
+            if ( released.compareAndSet( false, true ) )
+            {
+                release( cm, targets );
+            }
+        }
+
+        public Object getInstance()
+        {
+            final ComponentInstance componentInstance = released.get()? null: cm.getComponentInstance();
+            return componentInstance == null? null: componentInstance.getInstance();
+        }
+    }
+
+    private static class PooledManager<S>
+    {
+        final SingleComponentManager<S> m_manager;
+
+        final Map<String, Object> m_targets;
+
+        final long m_pooledAt = System.nanoTime();
+
+        PooledManager(SingleComponentManager<S> manager, Map<String, Object> targets)
+        {
+            m_manager = manager;
+            m_targets = targets;
+        }
+    }
+
+    private static class InstanceResult implements Result
+    {
+        private final ComponentInstance instance;
+
+        private final ComponentException exception;
+
+        public InstanceResult(ComponentInstance instance, ComponentException exception)
+        {
+            this.instance = instance;
+            this.exception = exception;
+        }
+
+        public ComponentInstance getComponentInstance()
+        {
+            return instance;
+        }
+
+        public ComponentException getException()
+        {
+            return exception;
+        }
+    }
+
     private static class ModifyComponentInstance<S> implements ExtFactoryComponentInstance
     {
         private final SingleComponentManager<S> cm;
@@ -243,13 +650,19 @@ public class ComponentFactoryImpl<S> extends AbstractComponentManager<S> impleme
 
     /** 
      * For ComponentFactoryImpl, this is used only for updating targets on the dependency managers, so we don't need any other 
-     * properties.
+     * properties. The target properties of the configuration are layered over those of the references and kept until the
+     * next reconfiguration.
      */
     public Map<String, Object> getProperties()
     {
-        Map<String, Object> props = new HashMap<String, Object>();
+        Map<String, Object> properties = m_targetProperties;
+        if ( properties != null )
+        {
+            return properties;
+        }
 
         // add target properties of references
+        Map<String, Object> props = new HashMap<String, Object>();
         List<ReferenceMetadata> depMetaData = getComponentMetadata().getDependencies();
         for ( ReferenceMetadata rm : depMetaData )
         {
@@ -260,15 +673,22 @@ public class ComponentFactoryImpl<S> extends AbstractComponentManager<S> impleme
         }
 
         // add target properties from configuration (if we have one)        
-        for ( String key :  m_configuration.keySet() )
+        final Map<String, Object> configuration = m_configuration;
+        Map<String, Object> configurationTargets = new HashMap<String, Object>();
+        for ( Map.Entry<String, Object> entry :  configuration.entrySet() )
         {
-            if ( key.endsWith( ".target" ) )
+            if ( entry.getKey().endsWith( ".target" ) )
             {
-                props.put( key, m_configuration.get( key ) );
+                configurationTargets.put( entry.getKey(), entry.getValue() );
             }
         }
 
-        return props;
+        properties = new LayeredProperties( props ).with( configurationTargets );
+        if ( configuration == m_configuration )
+        {
+            m_targetProperties = properties;
+        }
+        return properties;
     }
     
     public void setServiceProperties( Dictionary<String, ?> serviceProperties )
@@ -336,6 +756,7 @@ public class ComponentFactoryImpl<S> extends AbstractComponentManager<S> impleme
      */
     public void dispose( int reason )
     {
+        closePool();
         List<AbstractComponentManager<S>> cms = new ArrayList<AbstractComponentManager<S>>( );
         getComponentManagers( m_componentInstances, cms );
         for ( AbstractComponentManager<S> acm: cms )
@@ -359,6 +780,16 @@ public class ComponentFactoryImpl<S> extends AbstractComponentManager<S> impleme
         {
             m_componentInstances.remove( component );
         }
+        synchronized ( m_pool )
+        {
+            for ( Iterator<PooledManager<S>> pi = m_pool.iterator(); pi.hasNext(); )
+            {
+                if ( pi.next().m_manager == component )
+                {
+                    pi.remove();
+                }
+            }
+        }
     }
 
 
@@ -397,6 +828,9 @@ public class ComponentFactoryImpl<S> extends AbstractComponentManager<S> impleme
 	@Override
 	public void reconfigure(Map<String, Object> configuration, boolean configurationDeleted) {
 		m_configuration = configuration;
+		m_targetProperties = null;
+		changed();
+		// pooled instances are reconfigured like the other instances
 		List<SingleComponentManager<S>> cms;
 		synchronized (m_componentInstances)
         {
@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.manager;
+
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.felix.scr.impl.ScrMetrics;
+
+
+/**
+ * The <code>ComponentStatistics</code> collects the performance figures of
+ * a single component configuration: activations and their duration,
+ * deactivations, the time from enabling until first active, bind and unbind
+ * method calls, the time spent unsatisfied and the reactivations caused by
+ * static references. The figures are updated without locking and also
+ * counted in the runtime wide {@link ScrMetrics}. Durations are measured in
+ * nanoseconds.
+ */
+public final class ComponentStatistics
+{
+
+    private static final long SATISFIED = Long.MIN_VALUE;
+
+    private static final long UNSET = Long.MIN_VALUE;
+
+    private final AtomicLong m_activations = new AtomicLong();
+
+    private final AtomicLong m_activationTime = new AtomicLong();
+
+    private final AtomicLong m_maxActivationTime = new AtomicLong();
+
+    private final AtomicLong m_deactivations = new AtomicLong();
+
+    private final AtomicLong m_binds = new AtomicLong();
+
+    private final AtomicLong m_unbinds = new AtomicLong();
+
+    private final AtomicLong m_staticReactivations = new AtomicLong();
+
+    private final AtomicLong m_unsatisfiedTime = new AtomicLong();
+
+    // time the component was last enabled, UNSET if never enabled
+    private volatile long m_enabledAt = UNSET;
+
+    // time the component first became satisfied or active after being enabled, UNSET if not since
+    private final AtomicLong m_satisfiedAt = new AtomicLong( UNSET );
+
+    // time the component first became active after being enabled, UNSET if not active since
+    private final AtomicLong m_activeAt = new AtomicLong( UNSET );
+
+    // start of the current unsatisfied period, SATISFIED if satisfied
+    private final AtomicLong m_unsatisfiedSince = new AtomicLong( SATISFIED );
+
+
+    void enabled()
+    {
+        m_satisfiedAt.set( UNSET );
+        m_activeAt.set( UNSET );
+        m_enabledAt = System.nanoTime();
+    }
+
+
+    void satisfied()
+    {
+        m_satisfiedAt.compareAndSet( UNSET, System.nanoTime() );
+    }
+
+
+    void active()
+    {
+        m_activeAt.compareAndSet( UNSET, System.nanoTime() );
+    }
+
+
+    void activated( final long duration )
+    {
+        m_activations.incrementAndGet();
+        m_activationTime.addAndGet( duration );
+        long max = m_maxActivationTime.get();
+        while ( duration > max && !m_maxActivationTime.compareAndSet( max, duration ) )
+        {
+            max = m_maxActivationTime.get();
+        }
+        ScrMetrics.increment( ScrMetrics.Counter.COMPONENT_ACTIVATIONS );
+    }
+
+
+    void deactivated()
+    {
+        m_deactivations.incrementAndGet();
+        ScrMetrics.increment( ScrMetrics.Counter.COMPONENT_DEACTIVATIONS );
+    }
+
+
+    void bound()
+    {
+        m_binds.incrementAndGet();
+        ScrMetrics.increment( ScrMetrics.Counter.REFERENCE_BINDS );
+    }
+
+
+    void unbound()
+    {
+        m_unbinds.incrementAndGet();
+        ScrMetrics.increment( ScrMetrics.Counter.REFERENCE_UNBINDS );
+    }
+
+
+    void staticReactivation()
+    {
+        m_staticReactivations.incrementAndGet();
+        ScrMetrics.increment( ScrMetrics.Counter.STATIC_REACTIVATIONS );
+    }
+
+
+    /**
+     * Records whether the component is unsatisfied from now on.
+     */
+    void unsatisfied( final boolean unsatisfied )
+    {
+        if ( unsatisfied )
+        {
+            m_unsatisfiedSince.compareAndSet( SATISFIED, System.nanoTime() );
+        }
+        else
+        {
+            final long since = m_unsatisfiedSince.getAndSet( SATISFIED );
+            if ( since != SATISFIED )
+            {
+                m_unsatisfiedTime.addAndGet( System.nanoTime() - since );
+            }
+        }
+    }
+
+
+    public long getActivationCount()
+    {
+        return m_activations.get();
+    }
+
+
+    public long getTotalActivationTime()
+    {
+        return m_activationTime.get();
+    }
+
+
+    public long getAverageActivationTime()
+    {
+        final long activations = m_activations.get();
+        return activations == 0 ? 0 : m_activationTime.get() / activations;
+    }
+
+
+    public long getMaxActivationTime()
+    {
+        return m_maxActivationTime.get();
+    }
+
+
+    public long getDeactivationCount()
+    {
+        return m_deactivations.get();
+    }
+
+
+    public long getBindCount()
+    {
+        return m_binds.get();
+    }
+
+
+    public long getUnbindCount()
+    {
+        return m_unbinds.get();
+    }
+
+
+    public long getStaticReactivationCount()
+    {
+        return m_staticReactivations.get();
+    }
+
+
+    /**
+     * Returns the time spent unsatisfied including the current unsatisfied
+     * period, if any.
+     */
+    public long getUnsatisfiedTime()
+    {
+        final long since = m_unsatisfiedSince.get();
+        final long current = since == SATISFIED ? 0 : System.nanoTime() - since;
+        return m_unsatisfiedTime.get() + current;
+    }
+
+
+    /**
+     * Returns the <code>System.nanoTime()</code> at which the component was
+     * last enabled or <code>-1</code> if it has never been enabled.
+     */
+    public long getEnabledTimestamp()
+    {
+        final long enabledAt = m_enabledAt;
+        return enabledAt == UNSET ? -1 : enabledAt;
+    }
+
+
+    /**
+     * Returns the <code>System.nanoTime()</code> at which the component first
+     * became satisfied, registering its service if any, or active after it
+     * was last enabled or <code>-1</code> if it has not been satisfied since.
+     */
+    public long getSatisfiedTimestamp()
+    {
+        final long satisfiedAt = m_satisfiedAt.get();
+        return satisfiedAt == UNSET ? -1 : satisfiedAt;
+    }
+
+
+    /**
+     * Returns the <code>System.nanoTime()</code> at which the component first
+     * became active after it was last enabled or <code>-1</code> if it has not
+     * been active since.
+     */
+    public long getActiveTimestamp()
+    {
+        final long activeAt = m_activeAt.get();
+        return activeAt == UNSET ? -1 : activeAt;
+    }
+
+
+    /**
+     * Returns the time from enabling the component until it first became
+     * active or <code>-1</code> if it has not been active since enabled.
+     */
+    public long getEnableToActiveTime()
+    {
+        final long enabledAt = m_enabledAt;
+        final long activeAt = m_activeAt.get();
+        return enabledAt == UNSET || activeAt == UNSET ? -1 : activeAt - enabledAt;
+    }
+
+
+    /**
+     * Converts a duration of these statistics to milliseconds.
+     */
+    public static long toMillis( final long duration )
+    {
+        return TimeUnit.NANOSECONDS.toMillis( duration );
+    }
+}
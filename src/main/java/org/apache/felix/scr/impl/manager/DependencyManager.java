@@ -32,6 +32,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.felix.scr.impl.BundleComponentActivator;
+import org.apache.felix.scr.impl.config.ComponentManager;
 import org.apache.felix.scr.impl.config.ReferenceManager;
 import org.apache.felix.scr.impl.helper.BindParameters;
 import org.apache.felix.scr.impl.helper.Coercions;
@@ -344,6 +345,7 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
         public void modifiedService( ServiceReference<T> serviceReference, RefPair<S, T> refPair, int trackingCount, ExtendedServiceEvent event )
         {
             m_componentManager.log( LogService.LOG_DEBUG, "dm {0} tracking {1} MultipleDynamic modified {2} (enter)", new Object[] {getName(), trackingCount, serviceReference}, null );
+            refPair.resetProperties();
             if (isActive())
             {
                 m_componentManager.invokeUpdatedMethod( DependencyManager.this, refPair, trackingCount );
@@ -454,7 +456,7 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
                 m_componentManager.log( LogService.LOG_DEBUG,
                         "Dependency Manager: Static dependency on {0}/{1} is broken", new Object[]
                         {getName(), m_dependencyMetadata.getInterface()}, null );
-                m_componentManager.deactivateInternal( ComponentConstants.DEACTIVATION_REASON_REFERENCE, false, false );
+                deactivateForStaticReference();
                 //event may be null during initial operations.
                 if (event != null)
                 {
@@ -472,6 +474,7 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
         public void modifiedService( ServiceReference<T> serviceReference, RefPair<S, T> refPair, int trackingCount, ExtendedServiceEvent event )
         {
             m_componentManager.log( LogService.LOG_DEBUG, "dm {0} tracking {1} MultipleStaticGreedy modified {2} (enter)", new Object[] {getName(), trackingCount, serviceReference}, null );
+            refPair.resetProperties();
             boolean reactivate = false;
             if (isActive())
             {
@@ -480,7 +483,7 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
             tracked( trackingCount );
             if ( reactivate )
             {
-                m_componentManager.deactivateInternal( ComponentConstants.DEACTIVATION_REASON_REFERENCE, false, false );
+                deactivateForStaticReference();
                 if (event != null)
                 {
                     event.addComponentManager(m_componentManager);
@@ -500,7 +503,7 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
                 m_componentManager.log( LogService.LOG_DEBUG,
                         "Dependency Manager: Static dependency on {0}/{1} is broken", new Object[]
                         {getName(), m_dependencyMetadata.getInterface()}, null );
-                m_componentManager.deactivateInternal( ComponentConstants.DEACTIVATION_REASON_REFERENCE, false, false );
+                deactivateForStaticReference();
                 //try to reactivate after ref is no longer tracked.
                 if (event != null)
                 {
@@ -512,7 +515,7 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
                 m_componentManager.log( LogService.LOG_DEBUG,
                         "Dependency Manager: Static dependency on {0}/{1} is broken", new Object[]
                         {getName(), m_dependencyMetadata.getInterface()}, null );
-                m_componentManager.deactivateInternal( ComponentConstants.DEACTIVATION_REASON_REFERENCE, false, false );
+                deactivateForStaticReference();
             }
             //This is unlikely
             ungetService( refPair );
@@ -580,6 +583,7 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
         public void modifiedService( ServiceReference<T> serviceReference, RefPair<S, T> refPair, int trackingCount, ExtendedServiceEvent event )
         {
             m_componentManager.log( LogService.LOG_DEBUG, "dm {0} tracking {1} MultipleStaticReluctant modified {2} (enter)", new Object[] {getName(), trackingCount, serviceReference}, null );
+            refPair.resetProperties();
             boolean reactivate = false;
             Collection<RefPair<S, T>> refs = this.refs.get();
             if (isActive() && refs.contains( refPair ))
@@ -589,7 +593,7 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
             tracked( trackingCount );
             if ( reactivate )
             {
-                m_componentManager.deactivateInternal( ComponentConstants.DEACTIVATION_REASON_REFERENCE, false, false );
+                deactivateForStaticReference();
                 if (event != null)
                 {
                     event.addComponentManager(m_componentManager);
@@ -612,7 +616,7 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
                     m_componentManager.log( LogService.LOG_DEBUG,
                         "Dependency Manager: Static dependency on {0}/{1} is broken", new Object[]
                             { getName(), m_dependencyMetadata.getInterface() }, null );
-                    m_componentManager.deactivateInternal( ComponentConstants.DEACTIVATION_REASON_REFERENCE, false, false );
+                    deactivateForStaticReference();
 
                     // FELIX-2368: immediately try to reactivate
                     if (event != null)
@@ -627,7 +631,7 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
                 m_componentManager.log( LogService.LOG_DEBUG,
                         "Dependency Manager: Static dependency on {0}/{1} is broken", new Object[]
                         {getName(), m_dependencyMetadata.getInterface()}, null );
-                m_componentManager.deactivateInternal( ComponentConstants.DEACTIVATION_REASON_REFERENCE, false, false );
+                deactivateForStaticReference();
             }
             ungetService( refPair );
             m_componentManager.log( LogService.LOG_DEBUG, "dm {0} tracking {1} MultipleStaticReluctant removed {2} (exit)", new Object[] {getName(), trackingCount, serviceReference}, null );
@@ -764,6 +768,7 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
         public void modifiedService( ServiceReference<T> serviceReference, RefPair<S, T> refPair, int trackingCount, ExtendedServiceEvent event )
         {
             m_componentManager.log( LogService.LOG_DEBUG, "dm {0} tracking {1} SingleDynamic modified {2} (enter)", new Object[] {getName(), trackingCount, serviceReference}, null );
+            refPair.resetProperties();
             boolean invokeUpdated;
             synchronized (getTracker().tracked())
             {
@@ -938,7 +943,7 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
                 }
                 if ( reactivate )
                 {
-                    m_componentManager.deactivateInternal( ComponentConstants.DEACTIVATION_REASON_REFERENCE, false, false );
+                    deactivateForStaticReference();
                     if (event != null)
                     {
                         event.addComponentManager(m_componentManager);
@@ -963,6 +968,7 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
         public void modifiedService( ServiceReference<T> serviceReference, RefPair<S, T> refPair, int trackingCount, ExtendedServiceEvent event )
         {
             m_componentManager.log( LogService.LOG_DEBUG, "dm {0} tracking {1} SingleStatic modified {2} (enter)", new Object[] {getName(), trackingCount, serviceReference}, null );
+            refPair.resetProperties();
             boolean invokeUpdated;
             final Object sync = getTracker().tracked();
             synchronized (sync)
@@ -978,7 +984,7 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
             tracked( trackingCount );
             if ( reactivate )
             {
-                m_componentManager.deactivateInternal( ComponentConstants.DEACTIVATION_REASON_REFERENCE, false, false );
+                deactivateForStaticReference();
                 synchronized ( sync )
                 {
                     if (refPair == this.refPair)
@@ -1011,7 +1017,7 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
             }
             if ( reactivate )
             {
-                m_componentManager.deactivateInternal( ComponentConstants.DEACTIVATION_REASON_REFERENCE, false, false );
+                deactivateForStaticReference();
                 synchronized ( sync )
                 {
                     if (refPair == this.refPair)
@@ -1093,6 +1099,21 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
         }
     }
 
+    /**
+     * Deactivates the component because a service bound to this static
+     * reference went away or a better service appeared, which causes a
+     * reactivation of an active component.
+     */
+    private void deactivateForStaticReference()
+    {
+        if ( m_componentManager.getState() == ComponentManager.STATE_ACTIVE )
+        {
+            m_componentManager.getStatistics().staticReactivation();
+        }
+        m_componentManager.deactivateInternal( ComponentConstants.DEACTIVATION_REASON_REFERENCE, false, false );
+    }
+
+
     private class NoPermissionsCustomizer implements Customizer<S, T>
     {
 
@@ -1662,6 +1683,7 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
         {
             return false;
         }
+        m_componentManager.getStatistics().bound();
         m_componentManager.setServiceProperties( result );
         return true;
     }
@@ -1774,6 +1796,7 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
             MethodResult methodResult = m_bindMethods.getUnbind().invoke( componentContext.getImplementationObject( false ), bp, MethodResult.VOID, m_componentManager );
             if ( methodResult != null )
             {
+                m_componentManager.getStatistics().unbound();
                 m_componentManager.setServiceProperties( methodResult );
             }
             componentContext.getComponentServiceObjectsHelper().closeServiceObjects(refPair.getRef());
@@ -1934,6 +1957,7 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
             }
         }
         m_target = target;
+        m_componentManager.changed();
         final boolean multipleExpr = m_target != null || m_dependencyMetadata.getScope() == ReferenceScope.prototype_required;
         final boolean allExpr = m_target != null && m_dependencyMetadata.getScope() == ReferenceScope.prototype_required;
         final StringBuilder initialReferenceFilterSB = new StringBuilder();
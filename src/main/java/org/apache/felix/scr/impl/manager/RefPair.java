@@ -20,6 +20,7 @@
 
 package org.apache.felix.scr.impl.manager;
 
+import org.apache.felix.scr.impl.helper.ReadOnlyDictionary;
 import org.apache.felix.scr.impl.helper.SimpleLogger;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceObjects;
@@ -35,6 +36,10 @@ public abstract class RefPair<S, T>
     boolean failed;
     volatile boolean deleted;
 
+    private volatile ReadOnlyDictionary<String, Object> properties;
+
+    private volatile ReadOnlyDictionary<String, Object> snapshot;
+
     public RefPair( ServiceReference<T> ref )
     {
         this.ref = ref;
@@ -45,6 +50,52 @@ public abstract class RefPair<S, T>
         return ref;
     }
 
+    /**
+     * Returns a read only view of the service reference properties. The view
+     * reads through to the service reference and is shared by all callers.
+     */
+    public ReadOnlyDictionary<String, Object> getProperties()
+    {
+        ReadOnlyDictionary<String, Object> props = this.properties;
+        if ( props == null )
+        {
+            props = new ReadOnlyDictionary<String, Object>( ref );
+            this.properties = props;
+        }
+        return props;
+    }
+
+    /**
+     * Returns a copy of the service reference properties for callers which
+     * keep the properties. The copy is created on first access and shared by
+     * all callers until the service properties are modified.
+     */
+    public ReadOnlyDictionary<String, Object> getPropertiesSnapshot()
+    {
+        ReadOnlyDictionary<String, Object> snapshot = this.snapshot;
+        if ( snapshot == null )
+        {
+            snapshot = getProperties().snapshot();
+            this.snapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Drops the properties copy returned by {@link #getPropertiesSnapshot()}
+     * and the properties collected by the view. This must be called when the
+     * service properties have been modified.
+     */
+    public void resetProperties()
+    {
+        this.snapshot = null;
+        final ReadOnlyDictionary<String, Object> props = this.properties;
+        if ( props != null )
+        {
+            props.reset();
+        }
+    }
+
     public ServiceObjects<T> getServiceObjects()
     {
         return null;
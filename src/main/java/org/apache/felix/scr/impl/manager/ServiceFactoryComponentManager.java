@@ -29,6 +29,7 @@ import org.apache.felix.scr.impl.helper.ActivatorParameter;
 import org.apache.felix.scr.impl.helper.ComponentMethods;
 import org.apache.felix.scr.impl.helper.MethodResult;
 import org.apache.felix.scr.impl.helper.ModifiedMethod;
+import org.apache.felix.scr.info.ComponentStateEvent;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.ComponentConstants;
@@ -142,6 +143,7 @@ public class ServiceFactoryComponentManager<S> extends SingleComponentManager<S>
         else 
         {
             m_activated = true;
+            stateChanged( ComponentStateEvent.REASON_ACTIVATION );
         }
 
         return service;
@@ -163,6 +165,7 @@ public class ServiceFactoryComponentManager<S> extends SingleComponentManager<S>
             serviceContext = serviceContexts.get( service );
         }
         disposeImplementationObject( serviceContext, ComponentConstants.DEACTIVATION_REASON_DISPOSED );
+        getStatistics().deactivated();
         synchronized ( serviceContexts )
         {
             serviceContexts.remove( service );
@@ -172,6 +175,7 @@ public class ServiceFactoryComponentManager<S> extends SingleComponentManager<S>
                 m_activated = false;
             }
         }
+        stateChanged( ComponentStateEvent.REASON_UNSPECIFIED );
     }
 
     private Collection<ComponentContextImpl<S>> getComponentContexts()
@@ -20,23 +20,30 @@ package org.apache.felix.scr.impl.manager;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.HashMap;
-import java.util.Hashtable;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.felix.scr.impl.BundleComponentActivator;
+import org.apache.felix.scr.impl.ScrMetrics;
 import org.apache.felix.scr.impl.config.ComponentContainer;
 import org.apache.felix.scr.impl.config.ReferenceManager;
 import org.apache.felix.scr.impl.helper.ActivatorParameter;
+import org.apache.felix.scr.impl.helper.ComponentAccessor;
 import org.apache.felix.scr.impl.helper.ComponentMethods;
+import org.apache.felix.scr.impl.helper.LayeredProperties;
 import org.apache.felix.scr.impl.helper.MethodResult;
 import org.apache.felix.scr.impl.helper.ModifiedMethod;
+import org.apache.felix.scr.info.ComponentStateEvent;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceFactory;
+import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.ComponentConstants;
 import org.osgi.service.component.ComponentInstance;
@@ -51,6 +58,10 @@ import org.osgi.util.promise.Deferred;
 public class SingleComponentManager<S> extends AbstractComponentManager<S> implements ServiceFactory<S>
 {
 
+    // service properties set by the framework on registration
+    private static final Set<String> FRAMEWORK_SERVICE_PROPERTIES = new HashSet<String>( Arrays.asList(
+        Constants.OBJECTCLASS, Constants.SERVICE_ID, Constants.SERVICE_BUNDLEID, Constants.SERVICE_SCOPE ) );
+
     // keep the using bundles as reference "counters" for instance deactivation
     private final AtomicInteger m_useCount = new AtomicInteger( );
 
@@ -58,13 +69,13 @@ public class SingleComponentManager<S> extends AbstractComponentManager<S> imple
     private volatile ComponentContextImpl<S> m_componentContext;
 
     // Merged properties from xml descriptor and all configurations
-    private Map<String, Object> m_configurationProperties;
+    private volatile Map<String, Object> m_configurationProperties;
 
     // optional properties provided in the ComponentFactory.newInstance method
     private Map<String, Object> m_factoryProperties;
 
     // the component properties, also used as service properties
-    private Map<String, Object> m_properties;
+    private volatile Map<String, Object> m_properties;
 
     // properties supplied ot ExtComponentContext.updateProperties
     // null if properties are not to be overwritten
@@ -139,6 +150,7 @@ public class SingleComponentManager<S> extends AbstractComponentManager<S> imple
             {
                 activator.missingServicePresent( getServiceReference() );
             }
+            stateChanged( ComponentStateEvent.REASON_ACTIVATION );
         }
         return true;
     }
@@ -157,6 +169,8 @@ public class SingleComponentManager<S> extends AbstractComponentManager<S> imple
             disposeImplementationObject( m_componentContext, reason );
             m_componentContext.cleanup();
             m_componentContext = null;
+            getStatistics().deactivated();
+            stateChanged( reason );
             log( LogService.LOG_DEBUG, "Unset and deconfigured implementation object for component {0} in deleteComponent for reason {1}", new Object[] { getName(), REASONS[ reason ] },  null );
             clearServiceProperties();
         }
@@ -165,6 +179,7 @@ public class SingleComponentManager<S> extends AbstractComponentManager<S> imple
     void clearServiceProperties()
     {
         m_properties = null;
+        changed();
         m_serviceProperties = null;
     }
 
@@ -218,6 +233,7 @@ public class SingleComponentManager<S> extends AbstractComponentManager<S> imple
 
     protected S createImplementationObject( Bundle usingBundle, SetImplementationObject<S> setter, ComponentContextImpl<S> componentContext )
     {
+        final long start = System.nanoTime();
         final Class<S> implementationObjectClass;
         final S implementationObject;
 
@@ -238,7 +254,16 @@ public class SingleComponentManager<S> extends AbstractComponentManager<S> imple
 
             // 112.4.4 The class must be public and have a public constructor without arguments so component instances
             // may be created by the SCR with the newInstance method on Class
-            implementationObject = implementationObjectClass.newInstance();
+            // unless an accessor has been generated for the class
+            final ComponentAccessor<?> accessor = getComponentMethods().getAccessor();
+            if ( accessor != null )
+            {
+                implementationObject = (S) accessor.newInstance();
+            }
+            else
+            {
+                implementationObject = implementationObjectClass.newInstance();
+            }
         }
         catch ( Throwable t )
         {
@@ -323,6 +348,7 @@ public class SingleComponentManager<S> extends AbstractComponentManager<S> imple
             setServiceProperties( result );
         }
 
+        getStatistics().activated( System.nanoTime() - start );
         return implementationObject;
     }
 
@@ -397,6 +423,7 @@ public class SingleComponentManager<S> extends AbstractComponentManager<S> imple
     protected void setFactoryProperties( Dictionary<String, ?> dictionary )
     {
         m_factoryProperties = copyToMap( dictionary, true );
+        changed();
     }
 
 
@@ -405,6 +432,7 @@ public class SingleComponentManager<S> extends AbstractComponentManager<S> imple
     {
         super.registerComponentId();
         this.m_properties = null;
+        changed();
     }
 
 
@@ -413,35 +441,35 @@ public class SingleComponentManager<S> extends AbstractComponentManager<S> imple
     {
         super.unregisterComponentId();
         this.m_properties = null;
+        changed();
     }
 
 
     /**
-     * Returns the (private copy) of the Component properties to be used
-     * for the ComponentContext as well as eventual service registration.
+     * Returns the Component properties to be used for the ComponentContext
+     * as well as eventual service registration. The properties are an
+     * immutable view layering the factory properties and the component
+     * name and id over the configuration properties.
      * <p/>
      * Method implements the Component Properties provisioning as described
      * in 112.6, Component Properties.
      *
-     * @return a private map of component properties
+     * @return a read-only map of component properties
      */
     @Override
     public Map<String, Object> getProperties()
     {
 
-        if ( m_properties == null )
+        Map<String, Object> properties = m_properties;
+        if ( properties == null )
         {
 
 
-            // 1. Merge all the config properties
-            Map<String, Object> props = new HashMap<String, Object>();
-            if ( m_configurationProperties != null )
-            {
-                props.putAll(m_configurationProperties);
-            }
+            // 1. Layer all the config properties
+            LayeredProperties props = new LayeredProperties( m_configurationProperties );
             if ( m_factoryProperties != null)
             {
-                props.putAll(m_factoryProperties);
+                props = props.with( m_factoryProperties );
                 if (getComponentMetadata().getDSVersion().isDS13() && m_factoryProperties.containsKey(Constants.SERVICE_PID))
                 {
                 	final List<String> servicePids = new ArrayList<String>();
@@ -461,23 +489,25 @@ public class SingleComponentManager<S> extends AbstractComponentManager<S> imple
 
                 	if ( servicePids.size() == 1 )
                 	{
-                		props.put(Constants.SERVICE_PID, servicePids.get(0));
+                		props = props.with(Constants.SERVICE_PID, servicePids.get(0));
                 	}
                 	else
                 	{
-                		props.put(Constants.SERVICE_PID, servicePids);
+                		props = props.with(Constants.SERVICE_PID, servicePids);
                 	}
                 }
             }
 
             // 2. set component.name and component.id
-            props.put( ComponentConstants.COMPONENT_NAME, getComponentMetadata().getName() );
-            props.put( ComponentConstants.COMPONENT_ID, getId() );
+            final Map<String, Object> identity = new HashMap<String, Object>( 4 );
+            identity.put( ComponentConstants.COMPONENT_NAME, getComponentMetadata().getName() );
+            identity.put( ComponentConstants.COMPONENT_ID, getId() );
 
-            m_properties = props;
+            properties = props.with( identity );
+            m_properties = properties;
         }
 
-        return m_properties;
+        return properties;
     }
 
     @Override
@@ -526,7 +556,7 @@ public class SingleComponentManager<S> extends AbstractComponentManager<S> imple
             {
                 // Don't propagate if service properties did not change.
                 final Dictionary<String, Object> regProps = getServiceProperties();
-                if ( !servicePropertiesMatches( sr, regProps ) )
+                if ( !servicePropertiesMatches( sr.getReference(), regProps ) )
                 {
                     sr.setProperties( regProps );
                 }
@@ -577,12 +607,43 @@ public class SingleComponentManager<S> extends AbstractComponentManager<S> imple
     @Override
     public void reconfigure( Map<String, Object> configuration, boolean configurationDeleted )
     {
-        // store the properties
-        m_configurationProperties = configuration;
+        obtainStateLock();
+        try
+        {
+            // skip updates not changing the effective properties of a satisfied component,
+            // such as a configuration saved again without modification
+            if ( !configurationDeleted && isConfigurationUnchanged( configuration ) )
+            {
+                ScrMetrics.increment( ScrMetrics.Counter.RECONFIGURATIONS_SKIPPED );
+                log( LogService.LOG_DEBUG, "Configuration properties unchanged, skipping reconfiguration", null );
+                return;
+            }
+
+            // store the properties
+            m_configurationProperties = configuration;
+        }
+        finally
+        {
+            releaseStateLock();
+        }
 
         reconfigure(configurationDeleted);
     }
 
+    /**
+     * Returns <code>true</code> if the component is enabled and satisfied and
+     * the configuration has the same contents as the current configuration,
+     * in which case reconfiguring the component would have no effect. Must
+     * be called holding the state lock, which guards storing the
+     * configuration.
+     */
+    private boolean isConfigurationUnchanged( Map<String, Object> configuration )
+    {
+        final Map<String, Object> current = m_configurationProperties;
+        return current != null && configuration != null && !m_disposed && m_internalEnabled && isSatisfied()
+            && LayeredProperties.contentEquals( current, configuration );
+    }
+
     void reconfigure(boolean configurationDeleted)
     {
         Deferred<Void> enableLatch = enableLatchWait();
@@ -590,6 +651,7 @@ public class SingleComponentManager<S> extends AbstractComponentManager<S> imple
         {
             // clear the current properties to force using the configuration data
             m_properties = null;
+            changed();
 
 
             // reactivate the component to ensure it is provided with the
@@ -751,28 +813,43 @@ public class SingleComponentManager<S> extends AbstractComponentManager<S> imple
 
     /**
      * Checks if the given service registration properties matches another set
-     * of properties.
+     * of properties. The registration properties are read in place and array
+     * values are compared by their contents. The properties set by the
+     * framework, such as <code>service.id</code>, are not compared.
      *
-     * @param reg   the service registration whose service properties will be
-     *              compared to the props parameter
+     * @param ref   the reference of the service registration whose service
+     *              properties will be compared to the props parameter
      * @param props the properties to be compared with the registration
      *              service properties.
      * @return <code>true</code> if the registration service properties equals
      *         the prop properties, false if not.
      */
-    private boolean servicePropertiesMatches( ServiceRegistration<S> reg, Dictionary<String, Object> props )
+    static boolean servicePropertiesMatches( ServiceReference<?> ref, Dictionary<String, Object> props )
     {
-        Dictionary<String, Object> regProps = new Hashtable<String, Object>();
-        String[] keys = reg.getReference().getPropertyKeys();
+        final String[] keys = ref.getPropertyKeys();
+        int count = 0;
         for ( int i = 0; keys != null && i < keys.length; i++ )
         {
-            if ( !keys[i].equals( org.osgi.framework.Constants.OBJECTCLASS )
-                    && !keys[i].equals( org.osgi.framework.Constants.SERVICE_ID ) )
+            if ( !FRAMEWORK_SERVICE_PROPERTIES.contains( keys[i] ) )
+            {
+                if ( !LayeredProperties.valueEquals( ref.getProperty( keys[i] ), props.get( keys[i] ) ) )
+                {
+                    return false;
+                }
+                count++;
+            }
+        }
+
+        // framework properties given by the component are overwritten on registration
+        int expected = props.size();
+        for ( String key: FRAMEWORK_SERVICE_PROPERTIES )
+        {
+            if ( props.get( key ) != null )
             {
-                regProps.put( keys[i], reg.getReference().getProperty( keys[i] ) );
+                expected--;
             }
         }
-        return regProps.equals( props );
+        return count == expected;
     }
 
     public S getService( Bundle bundle, ServiceRegistration<S> serviceRegistration )
@@ -48,6 +48,9 @@ public class ComponentMetadata
     // Configuration optional (default) (since DS 1.1)
     public static final String CONFIGURATION_POLICY_OPTIONAL = "optional";
 
+    // Milliseconds after which idle pooled factory instances are disposed by default
+    public static final long DEFAULT_FACTORY_INSTANCE_POOL_IDLE_TIMEOUT = 60000L;
+
     // set of valid configuration policy settings
     private static final Set<String> CONFIGURATION_POLICY_VALID;
 
@@ -120,6 +123,11 @@ public class ComponentMetadata
     private Boolean m_obsoleteFactoryComponentFactory;
     private boolean m_configureWithInterfaces;
     private boolean m_delayedKeepInstances;
+    private boolean m_lazyCoercion;
+    // maximum number of idle factory instances kept for reuse, 0 to not pool factory instances
+    private int m_factoryInstancePoolSize;
+    // milliseconds after which idle pooled factory instances are disposed, 0 to keep them
+    private long m_factoryInstancePoolIdleTimeout = DEFAULT_FACTORY_INSTANCE_POOL_IDLE_TIMEOUT;
 
     // Flag that is set once the component is verified (its properties cannot be changed)
     private boolean m_validated = false;
@@ -407,6 +415,30 @@ public class ComponentMetadata
 		this.m_delayedKeepInstances = delayedKeepInstances;
 	}
 
+	public void setLazyCoercion(boolean lazyCoercion) {
+        if ( m_validated )
+        {
+            return;
+        }
+		this.m_lazyCoercion = lazyCoercion;
+	}
+
+	public void setFactoryInstancePoolSize(int factoryInstancePoolSize) {
+        if ( m_validated )
+        {
+            return;
+        }
+		this.m_factoryInstancePoolSize = factoryInstancePoolSize;
+	}
+
+	public void setFactoryInstancePoolIdleTimeout(long factoryInstancePoolIdleTimeout) {
+        if ( m_validated )
+        {
+            return;
+        }
+		this.m_factoryInstancePoolIdleTimeout = factoryInstancePoolIdleTimeout;
+	}
+
 
 
     /////////////////////////////////////////// GETTERS //////////////////////////////////////
@@ -737,6 +769,27 @@ public class ComponentMetadata
 		return m_delayedKeepInstances;
 	}
 
+	public boolean isLazyCoercion() {
+		return m_lazyCoercion;
+	}
+
+	/**
+	 * Returns the maximum number of disposed factory instances kept for
+	 * reuse by new instances or <code>0</code> if factory instances are
+	 * not pooled.
+	 */
+	public int getFactoryInstancePoolSize() {
+		return m_factoryInstancePoolSize;
+	}
+
+	/**
+	 * Returns the milliseconds after which a pooled factory instance not
+	 * reused is disposed or <code>0</code> if pooled instances are kept.
+	 */
+	public long getFactoryInstancePoolIdleTimeout() {
+		return m_factoryInstancePoolIdleTimeout;
+	}
+
 	/**
      * Method used to verify if the semantics of this metadata are correct
      */
@@ -936,6 +989,21 @@ public class ComponentMetadata
         {
         	throw validationFailure("Only a factory component can be a persistent factory component");
         }
+        if ( m_factoryInstancePoolSize < 0 || m_factoryInstancePoolIdleTimeout < 0 )
+        {
+        	throw validationFailure("Factory instance pool size and idle timeout must not be negative");
+        }
+        if ( m_factoryInstancePoolSize > 0 )
+        {
+        	if ( !isFactory() || m_persistentFactoryComponent )
+        	{
+        		throw validationFailure("Only a non-persistent factory component can pool its factory instances");
+        	}
+        	if ( m_modified == null )
+        	{
+        		throw validationFailure("Pooled factory instances require a modified method to be reused");
+        	}
+        }
 
 
         m_validated = true;
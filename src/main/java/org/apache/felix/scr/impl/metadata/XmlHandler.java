@@ -80,6 +80,12 @@ public class XmlHandler implements KXml2SAXHandler
 
     public static final String DELAYED_KEEP_INSTANCES = "delayedKeepInstances";
 
+    public static final String LAZY_COERCION = "lazyCoercion";
+
+    public static final String FACTORY_INSTANCE_POOL_SIZE = "factoryInstancePoolSize";
+
+    public static final String FACTORY_INSTANCE_POOL_IDLE_TIMEOUT = "factoryInstancePoolIdleTimeout";
+
     // namespace code for non-DS namespace
     public static final int DS_VERSION_NONE = -1;
 
@@ -290,6 +296,15 @@ public class XmlHandler implements KXml2SAXHandler
                     }
                     m_currentComponent.setConfigureWithInterfaces("true".equals(attributes.getAttribute(NAMESPACE_URI_1_0_FELIX_EXTENSIONS, CONFIGURE_WITH_INTERFACES)));
                     m_currentComponent.setDelayedKeepInstances(m_globalDelayedKeepInstances || "true".equals(attributes.getAttribute(NAMESPACE_URI_1_0_FELIX_EXTENSIONS, DELAYED_KEEP_INSTANCES)));
+                    m_currentComponent.setLazyCoercion("true".equals(attributes.getAttribute(NAMESPACE_URI_1_0_FELIX_EXTENSIONS, LAZY_COERCION)));
+                    if ( attributes.getAttribute(NAMESPACE_URI_1_0_FELIX_EXTENSIONS, FACTORY_INSTANCE_POOL_SIZE) != null )
+                    {
+                        m_currentComponent.setFactoryInstancePoolSize( ( int ) parseNumber( attributes, FACTORY_INSTANCE_POOL_SIZE, Integer.MIN_VALUE, Integer.MAX_VALUE ) );
+                    }
+                    if ( attributes.getAttribute(NAMESPACE_URI_1_0_FELIX_EXTENSIONS, FACTORY_INSTANCE_POOL_IDLE_TIMEOUT) != null )
+                    {
+                        m_currentComponent.setFactoryInstancePoolIdleTimeout( parseNumber( attributes, FACTORY_INSTANCE_POOL_IDLE_TIMEOUT, Long.MIN_VALUE, Long.MAX_VALUE ) );
+                    }
 
                     // Add this component to the list
                     m_components.add( m_currentComponent );
@@ -429,6 +444,10 @@ public class XmlHandler implements KXml2SAXHandler
                         { localName, m_bundle.getLocation() }, null, null, null );
                 }
             }
+            catch ( ParseException pe )
+            {
+                throw pe;
+            }
             catch ( Exception ex )
             {
                 throw new ParseException( "Exception during parsing", ex );
@@ -522,6 +541,34 @@ public class XmlHandler implements KXml2SAXHandler
     }
 
 
+    /**
+     * Reads a numeric attribute of the Felix extensions namespace from the
+     * current component element.
+     *
+     * @throws ParseException If the attribute value is not a number or is
+     *      outside of the given range.
+     */
+    private long parseNumber( Attributes attributes, String name, long min, long max ) throws ParseException
+    {
+        final String value = attributes.getAttribute( NAMESPACE_URI_1_0_FELIX_EXTENSIONS, name );
+        try
+        {
+            final long number = Long.parseLong( value.trim() );
+            if ( number >= min && number <= max )
+            {
+                return number;
+            }
+        }
+        catch ( NumberFormatException nfe )
+        {
+            throw new ParseException( "Invalid value " + value + " of attribute " + name + " of component "
+                + m_currentComponent.getName(), nfe );
+        }
+        throw new ParseException( "Value " + value + " of attribute " + name + " of component "
+            + m_currentComponent.getName() + " is out of range", null );
+    }
+
+
     /**
      * Reads the name property file from the bundle owning this descriptor. All
      * properties read from the properties file are added to the current
@@ -0,0 +1,381 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.runtime;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.felix.scr.impl.config.ReferenceManager;
+import org.apache.felix.scr.impl.manager.AbstractComponentManager;
+import org.apache.felix.scr.impl.manager.ComponentStatistics;
+import org.apache.felix.scr.impl.metadata.ReferenceMetadata;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.component.ComponentConstants;
+
+/**
+ * The <code>ComponentGraph</code> is the dependency graph of the enabled
+ * component configurations. Each reference leads to the component
+ * configurations providing the bound services, identified by the
+ * <code>component.id</code> service property, or to the referenced service
+ * interface if no bound service is provided by a component.
+ * <p>
+ * Each component configuration is annotated with the time from enabling it
+ * until it first became active. For each top-level component configuration,
+ * which no other component configuration depends on, the critical path
+ * follows the dependencies which became satisfied last, registering their
+ * services: these determined when the top-level component configuration
+ * could become satisfied. Delayed dependencies only become active while
+ * their dependent is activated, so their activation is not considered.
+ */
+public class ComponentGraph
+{
+
+    private final Map<Long, Node> m_nodes = new LinkedHashMap<Long, Node>();
+
+
+    public ComponentGraph( final List<AbstractComponentManager<?>> managers )
+    {
+        for ( AbstractComponentManager<?> manager : managers )
+        {
+            if ( manager.getId() >= 0 )
+            {
+                m_nodes.put( manager.getId(), new Node( manager ) );
+            }
+        }
+        for ( Node node : m_nodes.values() )
+        {
+            node.resolve( m_nodes );
+        }
+    }
+
+
+    /**
+     * Returns the critical paths of the top-level component configurations,
+     * each starting with the top-level component configuration and ending
+     * with the earliest dependency determining its activation. Only active
+     * component configurations have a critical path.
+     */
+    public List<List<Node>> getCriticalPaths()
+    {
+        final List<List<Node>> paths = new ArrayList<List<Node>>();
+        for ( Node node : m_nodes.values() )
+        {
+            if ( node.m_dependents == 0 && node.m_activeAt != -1 )
+            {
+                final List<Node> path = new ArrayList<Node>();
+                final Set<Node> visited = new HashSet<Node>();
+                for ( Node current = node; current != null && visited.add( current ); current = current.getCriticalDependency() )
+                {
+                    path.add( current );
+                }
+                paths.add( path );
+            }
+        }
+        return paths;
+    }
+
+
+    public void writeDot( final Writer out ) throws IOException
+    {
+        final Set<String> criticalEdges = new HashSet<String>();
+        for ( List<Node> path : getCriticalPaths() )
+        {
+            for ( int i = 1; i < path.size(); i++ )
+            {
+                criticalEdges.add( path.get( i - 1 ).m_id + "->" + path.get( i ).m_id );
+            }
+        }
+        out.write( "digraph scr {\n" );
+        out.write( "  node [shape=box];\n" );
+        final Set<String> services = new HashSet<String>();
+        for ( Node node : m_nodes.values() )
+        {
+            out.write( "  c" + node.m_id + " [label=" );
+            writeDotString( out, node.m_name + "\n#" + node.m_id + " " + RuntimeStateWriter.toStateName( node.m_state )
+                + ( node.m_enableToActive == -1 ? "" : "\n" + ComponentStatistics.toMillis( node.m_enableToActive ) + " ms to active" ) );
+            out.write( "];\n" );
+        }
+        for ( Node node : m_nodes.values() )
+        {
+            for ( Edge edge : node.m_edges )
+            {
+                if ( edge.m_target != null )
+                {
+                    out.write( "  c" + node.m_id + " -> c" + edge.m_target.m_id + " [label=" );
+                    writeDotString( out, edge.m_reference );
+                    if ( criticalEdges.contains( node.m_id + "->" + edge.m_target.m_id ) )
+                    {
+                        out.write( ", color=red, penwidth=2" );
+                    }
+                    out.write( "];\n" );
+                }
+                else
+                {
+                    if ( services.add( edge.m_interface ) )
+                    {
+                        out.write( "  " );
+                        writeDotString( out, edge.m_interface );
+                        out.write( " [shape=ellipse];\n" );
+                    }
+                    out.write( "  c" + node.m_id + " -> " );
+                    writeDotString( out, edge.m_interface );
+                    out.write( " [label=" );
+                    writeDotString( out, edge.m_reference );
+                    out.write( edge.m_satisfied ? "" : ", style=dashed" );
+                    out.write( "];\n" );
+                }
+            }
+        }
+        out.write( "}\n" );
+        out.flush();
+    }
+
+
+    public void writeJson( final Writer out ) throws IOException
+    {
+        out.write( "{\"components\":[" );
+        boolean first = true;
+        for ( Node node : m_nodes.values() )
+        {
+            out.write( first ? "\n" : ",\n" );
+            first = false;
+            out.write( "{\"id\":" + node.m_id + ",\"name\":" );
+            RuntimeStateWriter.writeJsonString( out, node.m_name );
+            out.write( ",\"state\":" );
+            RuntimeStateWriter.writeJsonString( out, RuntimeStateWriter.toStateName( node.m_state ) );
+            out.write( ",\"enableToActiveMillis\":"
+                + ( node.m_enableToActive == -1 ? "null" : String.valueOf( ComponentStatistics.toMillis( node.m_enableToActive ) ) ) );
+            out.write( ",\"references\":[" );
+            for ( int i = 0; i < node.m_edges.size(); i++ )
+            {
+                final Edge edge = node.m_edges.get( i );
+                out.write( i == 0 ? "{\"name\":" : ",{\"name\":" );
+                RuntimeStateWriter.writeJsonString( out, edge.m_reference );
+                out.write( ",\"interface\":" );
+                RuntimeStateWriter.writeJsonString( out, edge.m_interface );
+                out.write( ",\"satisfied\":" + edge.m_satisfied );
+                out.write( ",\"component\":" + ( edge.m_target == null ? "null" : String.valueOf( edge.m_target.m_id ) ) );
+                out.write( '}' );
+            }
+            out.write( "]}" );
+        }
+        out.write( "],\n\"criticalPaths\":[" );
+        first = true;
+        for ( List<Node> path : getCriticalPaths() )
+        {
+            out.write( first ? "\n" : ",\n" );
+            first = false;
+            final Node root = path.get( 0 );
+            final Node start = path.get( path.size() - 1 );
+            out.write( "{\"component\":" + root.m_id + ",\"millis\":"
+                + ComponentStatistics.toMillis( root.m_activeAt - start.m_enabledAt ) + ",\"path\":[" );
+            for ( int i = 0; i < path.size(); i++ )
+            {
+                out.write( ( i == 0 ? "" : "," ) + path.get( i ).m_id );
+            }
+            out.write( "]}" );
+        }
+        out.write( "]}\n" );
+        out.flush();
+    }
+
+
+    /**
+     * Writes the critical paths as text, one path per top-level component
+     * configuration with the time to active of each component configuration.
+     */
+    public void writeCriticalPaths( final Writer out ) throws IOException
+    {
+        for ( List<Node> path : getCriticalPaths() )
+        {
+            final Node root = path.get( 0 );
+            final Node start = path.get( path.size() - 1 );
+            out.write( root.m_name + " (" + root.m_id + ") active after "
+                + ComponentStatistics.toMillis( root.m_activeAt - start.m_enabledAt ) + " ms:\n" );
+            for ( Node node : path )
+            {
+                out.write( String.format( "  %1$6d %2$8d ms  %3$s%n", node.m_id,
+                    ComponentStatistics.toMillis( node.m_enableToActive ), node.m_name ) );
+            }
+        }
+        out.flush();
+    }
+
+
+    private static void writeDotString( final Writer out, final String value ) throws IOException
+    {
+        out.write( '"' );
+        out.write( value.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ).replace( "\n", "\\n" ) );
+        out.write( '"' );
+    }
+
+
+    /**
+     * A component configuration of the graph.
+     */
+    public static final class Node
+    {
+
+        private final AbstractComponentManager<?> m_manager;
+
+        final long m_id;
+
+        final String m_name;
+
+        final int m_state;
+
+        final long m_enabledAt;
+
+        final long m_satisfiedAt;
+
+        final long m_activeAt;
+
+        final long m_enableToActive;
+
+        final List<Edge> m_edges = new ArrayList<Edge>();
+
+        // the number of component configurations depending on this one
+        int m_dependents;
+
+
+        Node( final AbstractComponentManager<?> manager )
+        {
+            final ComponentStatistics statistics = manager.getStatistics();
+            m_manager = manager;
+            m_id = manager.getId();
+            m_name = manager.getComponentMetadata().getName();
+            m_state = manager.getState();
+            m_enabledAt = statistics.getEnabledTimestamp();
+            m_satisfiedAt = statistics.getSatisfiedTimestamp();
+            m_activeAt = statistics.getActiveTimestamp();
+            m_enableToActive = statistics.getEnableToActiveTime();
+        }
+
+
+        public long getId()
+        {
+            return m_id;
+        }
+
+
+        public String getName()
+        {
+            return m_name;
+        }
+
+
+        /**
+         * Returns the time from enabling until first active or
+         * <code>-1</code> if not active since enabled.
+         */
+        public long getEnableToActiveTime()
+        {
+            return m_enableToActive;
+        }
+
+
+        void resolve( final Map<Long, Node> nodes )
+        {
+            for ( ReferenceManager<?, ?> ref : m_manager.getReferenceManagers() )
+            {
+                final String serviceInterface = getInterface( ref.getName() );
+                boolean provided = false;
+                for ( ServiceReference<?> serviceRef : ref.getServiceReferences() )
+                {
+                    final Object componentId = serviceRef.getProperty( ComponentConstants.COMPONENT_ID );
+                    final Node target = ( componentId instanceof Long ) ? nodes.get( componentId ) : null;
+                    if ( target != null && target != this )
+                    {
+                        m_edges.add( new Edge( ref.getName(), serviceInterface, ref.isSatisfied(), target ) );
+                        target.m_dependents++;
+                        provided = true;
+                    }
+                }
+                if ( !provided )
+                {
+                    m_edges.add( new Edge( ref.getName(), serviceInterface, ref.isSatisfied(), null ) );
+                }
+            }
+        }
+
+
+        private String getInterface( final String referenceName )
+        {
+            for ( ReferenceMetadata reference : m_manager.getComponentMetadata().getDependencies() )
+            {
+                if ( reference.getName().equals( referenceName ) )
+                {
+                    return reference.getInterface();
+                }
+            }
+            return referenceName;
+        }
+
+
+        /**
+         * Returns the dependency which became satisfied last before this
+         * component configuration became satisfied, or <code>null</code>.
+         */
+        Node getCriticalDependency()
+        {
+            Node critical = null;
+            for ( Edge edge : m_edges )
+            {
+                final Node target = edge.m_target;
+                if ( target != null && target.m_satisfiedAt != -1 && target.m_satisfiedAt - m_satisfiedAt <= 0
+                    && ( critical == null || target.m_satisfiedAt - critical.m_satisfiedAt > 0 ) )
+                {
+                    critical = target;
+                }
+            }
+            return critical;
+        }
+    }
+
+
+    /**
+     * A reference of a component configuration to a component configuration
+     * providing a bound service or, if none, to the service interface.
+     */
+    static final class Edge
+    {
+        final String m_reference;
+
+        final String m_interface;
+
+        final boolean m_satisfied;
+
+        final Node m_target;
+
+
+        Edge( final String reference, final String serviceInterface, final boolean satisfied, final Node target )
+        {
+            m_reference = reference;
+            m_interface = serviceInterface;
+            m_satisfied = satisfied;
+            m_target = target;
+        }
+    }
+}
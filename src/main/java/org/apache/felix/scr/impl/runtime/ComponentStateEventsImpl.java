@@ -0,0 +1,286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.runtime;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.felix.scr.info.ComponentStateEvent;
+import org.apache.felix.scr.info.ComponentStateEvents;
+import org.apache.felix.scr.info.ComponentStateSubscription;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceFactory;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * The <code>ComponentStateEventsImpl</code> distributes the component state
+ * transitions reported by the component registry to the subscriptions. No
+ * event is created while there is no subscription and publishing never
+ * blocks: each subscription has a bounded buffer dropping events when full.
+ * <p>
+ * The service is registered as a service factory: the subscriptions made
+ * through the service object of a bundle are closed when the bundle
+ * releases the service, for example when it stops.
+ */
+public class ComponentStateEventsImpl implements ComponentStateEvents, ServiceFactory<ComponentStateEvents>
+{
+
+    // wakes up callers waiting for an event on a closed subscription
+    private static final ComponentStateEvent CLOSED = new ComponentStateEvent( -1, null, -1, 0, 0, 0, 0 );
+
+    private final CopyOnWriteArrayList<Subscription> m_subscriptions = new CopyOnWriteArrayList<Subscription>();
+
+    private volatile boolean m_disposed;
+
+
+    public ComponentStateSubscription subscribe( final int bufferSize )
+    {
+        return subscribe( bufferSize, null );
+    }
+
+
+    private Subscription subscribe( final int bufferSize, final BundleStateEvents owner )
+    {
+        if ( bufferSize <= 0 )
+        {
+            throw new IllegalArgumentException( "Buffer size must be positive: " + bufferSize );
+        }
+        final Subscription subscription = new Subscription( bufferSize, owner );
+        m_subscriptions.add( subscription );
+        if ( m_disposed )
+        {
+            // the runtime stopped meanwhile
+            subscription.close();
+        }
+        return subscription;
+    }
+
+
+    public ComponentStateEvents getService( final Bundle bundle,
+        final ServiceRegistration<ComponentStateEvents> registration )
+    {
+        return new BundleStateEvents();
+    }
+
+
+    public void ungetService( final Bundle bundle, final ServiceRegistration<ComponentStateEvents> registration,
+        final ComponentStateEvents service )
+    {
+        ( ( BundleStateEvents ) service ).release();
+    }
+
+
+    /**
+     * Returns <code>true</code> if there is at least one subscription, in
+     * which case the state transitions should be {@link #publish published}.
+     */
+    public boolean hasSubscriptions()
+    {
+        return !m_subscriptions.isEmpty();
+    }
+
+
+    public void publish( final long componentId, final String componentName, final long bundleId,
+        final int oldState, final int newState, final int reason )
+    {
+        if ( m_subscriptions.isEmpty() )
+        {
+            return;
+        }
+        final ComponentStateEvent event = new ComponentStateEvent( componentId, componentName, bundleId, oldState,
+            newState, reason, System.currentTimeMillis() );
+        for ( Subscription subscription : m_subscriptions )
+        {
+            subscription.offer( event );
+        }
+    }
+
+
+    /**
+     * Closes all subscriptions, called when the runtime stops. Callers
+     * waiting for events return and find their subscription closed.
+     */
+    public void dispose()
+    {
+        m_disposed = true;
+        for ( Subscription subscription : m_subscriptions )
+        {
+            subscription.close();
+        }
+    }
+
+
+    /**
+     * The service object of a bundle keeping track of the subscriptions made
+     * by the bundle.
+     */
+    private class BundleStateEvents implements ComponentStateEvents
+    {
+
+        private final List<Subscription> m_bundleSubscriptions = new ArrayList<Subscription>();
+
+        private boolean m_released;
+
+
+        public ComponentStateSubscription subscribe( final int bufferSize )
+        {
+            final Subscription subscription = ComponentStateEventsImpl.this.subscribe( bufferSize, this );
+            final boolean released;
+            synchronized ( this )
+            {
+                released = m_released;
+                if ( !released )
+                {
+                    m_bundleSubscriptions.add( subscription );
+                }
+            }
+            if ( released )
+            {
+                subscription.close();
+            }
+            return subscription;
+        }
+
+
+        synchronized void removed( final Subscription subscription )
+        {
+            m_bundleSubscriptions.remove( subscription );
+        }
+
+
+        void release()
+        {
+            final List<Subscription> subscriptions;
+            synchronized ( this )
+            {
+                m_released = true;
+                subscriptions = new ArrayList<Subscription>( m_bundleSubscriptions );
+                m_bundleSubscriptions.clear();
+            }
+            for ( Subscription subscription : subscriptions )
+            {
+                subscription.close();
+            }
+        }
+    }
+
+
+    private class Subscription implements ComponentStateSubscription
+    {
+
+        private final ArrayBlockingQueue<ComponentStateEvent> m_buffer;
+
+        private final BundleStateEvents m_owner;
+
+        private final AtomicLong m_dropped = new AtomicLong();
+
+        private volatile boolean m_closed;
+
+
+        Subscription( final int bufferSize, final BundleStateEvents owner )
+        {
+            m_buffer = new ArrayBlockingQueue<ComponentStateEvent>( bufferSize );
+            m_owner = owner;
+        }
+
+
+        void offer( final ComponentStateEvent event )
+        {
+            if ( m_closed )
+            {
+                return;
+            }
+            if ( !m_buffer.offer( event ) )
+            {
+                m_dropped.incrementAndGet();
+            }
+        }
+
+
+        public ComponentStateEvent poll()
+        {
+            return unmark( m_buffer.poll() );
+        }
+
+
+        public ComponentStateEvent poll( final long timeout, final TimeUnit unit ) throws InterruptedException
+        {
+            if ( m_closed )
+            {
+                return poll();
+            }
+            return unmark( m_buffer.poll( timeout, unit ) );
+        }
+
+
+        public int drainTo( final Collection<? super ComponentStateEvent> events )
+        {
+            final List<ComponentStateEvent> drained = new ArrayList<ComponentStateEvent>();
+            m_buffer.drainTo( drained );
+            if ( drained.remove( CLOSED ) )
+            {
+                m_buffer.offer( CLOSED );
+            }
+            events.addAll( drained );
+            return drained.size();
+        }
+
+
+        public long getDroppedCount()
+        {
+            return m_dropped.get();
+        }
+
+
+        public boolean isClosed()
+        {
+            return m_closed;
+        }
+
+
+        public void close()
+        {
+            m_closed = true;
+            m_subscriptions.remove( this );
+            if ( m_owner != null )
+            {
+                m_owner.removed( this );
+            }
+            // wake up a caller waiting for an event, a full buffer does not block
+            m_buffer.offer( CLOSED );
+        }
+
+
+        // keeps the closing marker for further callers
+        private ComponentStateEvent unmark( final ComponentStateEvent event )
+        {
+            if ( event == CLOSED )
+            {
+                m_buffer.offer( CLOSED );
+                return null;
+            }
+            return event;
+        }
+    }
+}
@@ -0,0 +1,466 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.runtime;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.felix.scr.impl.ComponentRegistry;
+import org.apache.felix.scr.impl.config.ComponentHolder;
+import org.apache.felix.scr.impl.config.ComponentManager;
+import org.apache.felix.scr.impl.config.ReferenceManager;
+import org.apache.felix.scr.impl.manager.AbstractComponentManager;
+import org.apache.felix.scr.impl.metadata.ComponentMetadata;
+import org.apache.felix.scr.impl.metadata.ServiceMetadata;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.component.runtime.dto.ComponentConfigurationDTO;
+
+/**
+ * The <code>RuntimeStateWriter</code> writes the state of the component
+ * configurations directly from the component registry, one component
+ * configuration at a time, without creating the runtime DTOs.
+ * <p>
+ * In the line format each component configuration is written as one line of
+ * space separated fields: the component id, the bundle id, the state, the
+ * component name and, for each reference, the reference name and the number
+ * of bound services, followed by <code>!</code> if the reference is not
+ * satisfied. The JSON format writes an array of objects with the same
+ * information plus the implementation class, the component properties and
+ * the ids of the bound services.
+ * <p>
+ * Filtering by state and by service interface uses the indexes of the
+ * component registry instead of walking all components.
+ */
+public class RuntimeStateWriter
+{
+
+    // orders the component configurations of the state index by id
+    private static final Comparator<ComponentManager<?>> ID_ORDER = new Comparator<ComponentManager<?>>()
+    {
+        public int compare( final ComponentManager<?> m1, final ComponentManager<?> m2 )
+        {
+            final long id1 = m1.getId();
+            final long id2 = m2.getId();
+            return ( id1 < id2 ) ? -1 : ( ( id1 == id2 ) ? 0 : 1 );
+        }
+    };
+
+    private final ComponentRegistry m_componentRegistry;
+
+    private final boolean m_json;
+
+    private final Bundle m_bundle;
+
+    private final int m_state;
+
+    private final String m_serviceInterface;
+
+    private final Pattern m_namePattern;
+
+
+    /**
+     * @param componentRegistry the registry providing the components
+     * @param json whether to write JSON instead of the line format
+     * @param bundle only write components of this bundle, or all if <code>null</code>
+     * @param state only write component configurations in this state, or all
+     *      if <code>-1</code>
+     * @param serviceInterface only write components providing this service
+     *      interface, or all if <code>null</code>
+     * @param namePattern only write components whose name matches, or all if
+     *      <code>null</code>
+     */
+    public RuntimeStateWriter( final ComponentRegistry componentRegistry, final boolean json, final Bundle bundle,
+        final int state, final String serviceInterface, final Pattern namePattern )
+    {
+        m_componentRegistry = componentRegistry;
+        m_json = json;
+        m_bundle = bundle;
+        m_state = state;
+        m_serviceInterface = serviceInterface;
+        m_namePattern = namePattern;
+    }
+
+
+    /**
+     * Writes the matching component configurations and returns their number.
+     */
+    public int write( final Writer out ) throws IOException
+    {
+        if ( m_json )
+        {
+            out.write( '[' );
+        }
+        int count = 0;
+        if ( m_state != -1 && m_state != ComponentManager.STATE_DISABLED && m_state != ComponentManager.STATE_DISPOSED )
+        {
+            // enabled component configurations are indexed by their state
+            final List<AbstractComponentManager<?>> managers = m_componentRegistry.getComponentManagers( m_state );
+            Collections.sort( managers, ID_ORDER );
+            for ( AbstractComponentManager<?> manager : managers )
+            {
+                final Bundle bundle = manager.getBundle();
+                if ( bundle != null && matches( manager.getComponentMetadata(), bundle.getBundleId() ) )
+                {
+                    count = write( out, manager.getComponentMetadata(), bundle.getBundleId(), manager, count );
+                }
+            }
+        }
+        else
+        {
+            final List<ComponentHolder<?>> holders;
+            if ( m_serviceInterface != null )
+            {
+                holders = m_componentRegistry.getComponentHoldersByService( m_serviceInterface );
+            }
+            else if ( m_bundle != null )
+            {
+                holders = m_componentRegistry.getComponentHolders( m_bundle );
+            }
+            else
+            {
+                holders = m_componentRegistry.getComponentHolders();
+            }
+            for ( ComponentHolder<?> holder : holders )
+            {
+                final ComponentMetadata metadata = holder.getComponentMetadata();
+                final Bundle bundle = holder.getActivator().getBundleContext().getBundle();
+                final long bundleId = ( bundle == null ) ? -1 : bundle.getBundleId();
+                if ( !matches( metadata, bundleId ) )
+                {
+                    continue;
+                }
+                for ( ComponentManager<?> manager : holder.getComponents() )
+                {
+                    count = write( out, metadata, bundleId, manager, count );
+                }
+            }
+        }
+        if ( m_json )
+        {
+            out.write( ']' );
+            out.write( '\n' );
+        }
+        out.flush();
+        return count;
+    }
+
+
+    /**
+     * Returns whether the component matches the bundle, service interface
+     * and name filters.
+     */
+    private boolean matches( final ComponentMetadata metadata, final long bundleId )
+    {
+        if ( m_bundle != null && m_bundle.getBundleId() != bundleId )
+        {
+            return false;
+        }
+        if ( m_serviceInterface != null )
+        {
+            final ServiceMetadata serviceMetadata = metadata.getServiceMetadata();
+            if ( serviceMetadata == null || !Arrays.asList( serviceMetadata.getProvides() ).contains( m_serviceInterface ) )
+            {
+                return false;
+            }
+        }
+        return m_namePattern == null || m_namePattern.matcher( metadata.getName() ).matches();
+    }
+
+
+    /**
+     * Writes the component configuration if it is in the requested state and
+     * returns the number of component configurations written so far.
+     */
+    private int write( final Writer out, final ComponentMetadata metadata, final long bundleId,
+        final ComponentManager<?> manager, final int count ) throws IOException
+    {
+        final int state = manager.getState();
+        if ( m_state != -1 && state != m_state )
+        {
+            return count;
+        }
+        if ( m_json )
+        {
+            if ( count > 0 )
+            {
+                out.write( ',' );
+            }
+            writeJson( out, metadata, bundleId, manager, state );
+        }
+        else
+        {
+            writeLine( out, metadata, bundleId, manager, state );
+        }
+        return count + 1;
+    }
+
+
+    private void writeLine( final Writer out, final ComponentMetadata metadata, final long bundleId,
+        final ComponentManager<?> manager, final int state ) throws IOException
+    {
+        out.write( String.valueOf( manager.getId() ) );
+        out.write( ' ' );
+        out.write( String.valueOf( bundleId ) );
+        out.write( ' ' );
+        out.write( toStateName( state ) );
+        out.write( ' ' );
+        out.write( metadata.getName() );
+        for ( ReferenceManager<?, ?> ref : manager.getReferenceManagers() )
+        {
+            out.write( ' ' );
+            out.write( ref.getName() );
+            out.write( '=' );
+            out.write( String.valueOf( ref.getServiceReferences().size() ) );
+            if ( !ref.isSatisfied() )
+            {
+                out.write( '!' );
+            }
+        }
+        out.write( '\n' );
+    }
+
+
+    private void writeJson( final Writer out, final ComponentMetadata metadata, final long bundleId,
+        final ComponentManager<?> manager, final int state ) throws IOException
+    {
+        out.write( "\n{\"id\":" );
+        out.write( String.valueOf( manager.getId() ) );
+        out.write( ",\"bundle\":" );
+        out.write( String.valueOf( bundleId ) );
+        out.write( ",\"name\":" );
+        writeJsonValue( out, metadata.getName() );
+        out.write( ",\"state\":" );
+        writeJsonValue( out, toStateName( state ) );
+        out.write( ",\"implementationClass\":" );
+        writeJsonValue( out, metadata.getImplementationClassName() );
+        out.write( ",\"properties\":" );
+        writeJsonValue( out, manager.getProperties() );
+        out.write( ",\"references\":[" );
+        boolean first = true;
+        for ( ReferenceManager<?, ?> ref : manager.getReferenceManagers() )
+        {
+            if ( !first )
+            {
+                out.write( ',' );
+            }
+            first = false;
+            out.write( "{\"name\":" );
+            writeJsonValue( out, ref.getName() );
+            out.write( ",\"target\":" );
+            writeJsonValue( out, ref.getTarget() );
+            out.write( ",\"satisfied\":" );
+            out.write( String.valueOf( ref.isSatisfied() ) );
+            out.write( ",\"bound\":[" );
+            boolean firstService = true;
+            for ( ServiceReference<?> serviceRef : ref.getServiceReferences() )
+            {
+                if ( !firstService )
+                {
+                    out.write( ',' );
+                }
+                firstService = false;
+                writeJsonValue( out, serviceRef.getProperty( Constants.SERVICE_ID ) );
+            }
+            out.write( "]}" );
+        }
+        out.write( "]}" );
+    }
+
+
+    private static void writeJsonValue( final Writer out, final Object value ) throws IOException
+    {
+        if ( value == null )
+        {
+            out.write( "null" );
+        }
+        else if ( isNonFinite( value ) )
+        {
+            // JSON has no literals for NaN and infinity
+            writeJsonString( out, value.toString() );
+        }
+        else if ( value instanceof Number || value instanceof Boolean )
+        {
+            out.write( value.toString() );
+        }
+        else if ( value instanceof Map )
+        {
+            out.write( '{' );
+            boolean first = true;
+            for ( Map.Entry<?, ?> entry : ( ( Map<?, ?> ) value ).entrySet() )
+            {
+                if ( !first )
+                {
+                    out.write( ',' );
+                }
+                first = false;
+                writeJsonValue( out, String.valueOf( entry.getKey() ) );
+                out.write( ':' );
+                writeJsonValue( out, entry.getValue() );
+            }
+            out.write( '}' );
+        }
+        else if ( value instanceof Collection )
+        {
+            out.write( '[' );
+            boolean first = true;
+            for ( Object element : ( Collection<?> ) value )
+            {
+                if ( !first )
+                {
+                    out.write( ',' );
+                }
+                first = false;
+                writeJsonValue( out, element );
+            }
+            out.write( ']' );
+        }
+        else if ( value.getClass().isArray() )
+        {
+            out.write( '[' );
+            final int length = Array.getLength( value );
+            for ( int i = 0; i < length; i++ )
+            {
+                if ( i > 0 )
+                {
+                    out.write( ',' );
+                }
+                writeJsonValue( out, Array.get( value, i ) );
+            }
+            out.write( ']' );
+        }
+        else
+        {
+            writeJsonString( out, value.toString() );
+        }
+    }
+
+
+    private static boolean isNonFinite( final Object value )
+    {
+        if ( value instanceof Double )
+        {
+            return ( ( Double ) value ).isNaN() || ( ( Double ) value ).isInfinite();
+        }
+        if ( value instanceof Float )
+        {
+            return ( ( Float ) value ).isNaN() || ( ( Float ) value ).isInfinite();
+        }
+        return false;
+    }
+
+
+    static void writeJsonString( final Writer out, final String value ) throws IOException
+    {
+        out.write( '"' );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            final char c = value.charAt( i );
+            switch ( c )
+            {
+                case '"':
+                    out.write( "\\\"" );
+                    break;
+                case '\\':
+                    out.write( "\\\\" );
+                    break;
+                case '\n':
+                    out.write( "\\n" );
+                    break;
+                case '\r':
+                    out.write( "\\r" );
+                    break;
+                case '\t':
+                    out.write( "\\t" );
+                    break;
+                default:
+                    if ( c < 0x20 )
+                    {
+                        out.write( String.format( "\\u%04x", ( int ) c ) );
+                    }
+                    else
+                    {
+                        out.write( c );
+                    }
+            }
+        }
+        out.write( '"' );
+    }
+
+
+    /**
+     * Returns the name of the state as used in the export, which is also
+     * accepted by {@link #toState(String)}.
+     */
+    public static String toStateName( final int state )
+    {
+        switch ( state )
+        {
+            case ComponentConfigurationDTO.UNSATISFIED_CONFIGURATION:
+                return "unsatisfied-configuration";
+            case ComponentConfigurationDTO.UNSATISFIED_REFERENCE:
+                return "unsatisfied-reference";
+            case ComponentConfigurationDTO.SATISFIED:
+                return "satisfied";
+            case ComponentConfigurationDTO.ACTIVE:
+                return "active";
+            case ComponentManager.STATE_DISPOSED:
+                return "disposed";
+            case ComponentManager.STATE_DISABLED:
+                return "disabled";
+            default:
+                return String.valueOf( state );
+        }
+    }
+
+
+    /**
+     * Returns the state of the given state name or <code>-1</code> if the
+     * name is <code>null</code>.
+     *
+     * @throws IllegalArgumentException if the name is not a known state name
+     */
+    public static int toState( final String name )
+    {
+        if ( name == null )
+        {
+            return -1;
+        }
+        final int[] states = { ComponentConfigurationDTO.UNSATISFIED_CONFIGURATION,
+            ComponentConfigurationDTO.UNSATISFIED_REFERENCE, ComponentConfigurationDTO.SATISFIED,
+            ComponentConfigurationDTO.ACTIVE, ComponentManager.STATE_DISPOSED, ComponentManager.STATE_DISABLED };
+        for ( int state : states )
+        {
+            if ( toStateName( state ).equals( name ) )
+            {
+                return state;
+            }
+        }
+        throw new IllegalArgumentException( "Unknown component state " + name );
+    }
+}
@@ -18,17 +18,26 @@
  */
 package org.apache.felix.scr.impl.runtime;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
 
+import org.apache.felix.scr.impl.BundleComponentActivator;
 import org.apache.felix.scr.impl.ComponentRegistry;
 import org.apache.felix.scr.impl.config.ComponentHolder;
 import org.apache.felix.scr.impl.config.ComponentManager;
 import org.apache.felix.scr.impl.config.ReferenceManager;
+import org.apache.felix.scr.impl.manager.AbstractComponentManager;
 import org.apache.felix.scr.impl.metadata.ComponentMetadata;
 import org.apache.felix.scr.impl.metadata.ReferenceMetadata;
 import org.osgi.dto.DTO;
@@ -46,6 +55,13 @@ import org.osgi.service.component.runtime.dto.SatisfiedReferenceDTO;
 import org.osgi.service.component.runtime.dto.UnsatisfiedReferenceDTO;
 import org.osgi.util.promise.Promise;
 
+/**
+ * The <code>ServiceComponentRuntimeImpl</code> provides the DTOs describing
+ * the components. The DTOs are cached and shared between calls: description
+ * DTOs are built once per component holder and configuration DTOs are only
+ * rebuilt when the change count of their component manager changes. Callers
+ * receive copies of the cached DTOs such that they may modify them freely.
+ */
 public class ServiceComponentRuntimeImpl implements ServiceComponentRuntime
 {
 
@@ -54,6 +70,17 @@ public class ServiceComponentRuntimeImpl implements ServiceComponentRuntime
 	private final BundleContext context;
 	private final ComponentRegistry componentRegistry;
 
+	// cached description DTOs by holder
+	private final ConcurrentMap<ComponentHolder<?>, ComponentDescriptionDTO> descriptions = new ConcurrentHashMap<ComponentHolder<?>, ComponentDescriptionDTO>();
+
+	// cached configuration DTOs by holder and component manager
+	private final ConcurrentMap<ComponentHolder<?>, ConcurrentMap<ComponentManager<?>, CachedConfiguration>> configurations = new ConcurrentHashMap<ComponentHolder<?>, ConcurrentMap<ComponentManager<?>, CachedConfiguration>>();
+
+	// the description DTOs of all components and the registry version they were built for
+	private volatile List<ComponentDescriptionDTO> allDescriptions;
+	private volatile long allDescriptionsVersion;
+	private volatile long cachedVersion = -1;
+
 
 	public ServiceComponentRuntimeImpl(BundleContext context,ComponentRegistry componentRegistry)
 	{
@@ -66,13 +93,27 @@ public class ServiceComponentRuntimeImpl implements ServiceComponentRuntime
 		List<ComponentHolder<?>> holders;
 		if (bundles == null || bundles.length == 0)
 		{
+			long version = componentRegistry.getComponentHoldersVersion();
+			List<ComponentDescriptionDTO> all = allDescriptions;
+			if (all != null && allDescriptionsVersion == version && isCurrent(all))
+			{
+				return copyDescriptions(all);
+			}
 			holders = componentRegistry.getComponentHolders();
+			all = Collections.unmodifiableList(holdersToDescriptions(holders));
+			allDescriptions = all;
+			allDescriptionsVersion = version;
+			return copyDescriptions(all);
 		}
 		else
 		{
 			holders = componentRegistry.getComponentHolders(bundles);
 		}
+		return copyDescriptions(holdersToDescriptions(holders));
+	}
 
+	private List<ComponentDescriptionDTO> holdersToDescriptions(List<ComponentHolder<?>> holders)
+	{
 		List<ComponentDescriptionDTO> result = new ArrayList<ComponentDescriptionDTO>(holders.size());
 		for (ComponentHolder<?> holder: holders)
 		{
@@ -81,12 +122,24 @@ public class ServiceComponentRuntimeImpl implements ServiceComponentRuntime
 		return result;
 	}
 
+	private boolean isCurrent(List<ComponentDescriptionDTO> dtos)
+	{
+		for (ComponentDescriptionDTO dto: dtos)
+		{
+			if (!isCurrent(dto))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
 	public ComponentDescriptionDTO getComponentDescriptionDTO(Bundle bundle, String name)
 	{
 	    ComponentHolder<?> holder = componentRegistry.getComponentHolder(bundle, name);
 		if ( holder != null )
 		{
-			return holderToDescription(holder);
+			return copy(holderToDescription(holder));
 		}
 		else
 		{
@@ -103,11 +156,18 @@ public class ServiceComponentRuntimeImpl implements ServiceComponentRuntime
 		ComponentHolder<?> holder = getHolderFromDescription( description);
 		//Get a fully filled out valid description DTO
 		description = holderToDescription(holder);
+		ComponentDescriptionDTO descriptionCopy = copy(description);
 		List<? extends ComponentManager<?>> managers = holder.getComponents();
 		List<ComponentConfigurationDTO> result = new ArrayList<ComponentConfigurationDTO>(managers.size());
 		for (ComponentManager<?> manager: managers)
 		{
-			result.add(managerToConfiguration(manager, description));
+			result.add(copy(managerToConfiguration(holder, manager, description), descriptionCopy));
+		}
+		// drop the cached configurations of disposed components
+		ConcurrentMap<ComponentManager<?>, CachedConfiguration> cached = configurations.get(holder);
+		if (cached != null && cached.size() > managers.size())
+		{
+			cached.keySet().retainAll(managers);
 		}
 		return result;
 	}
@@ -130,6 +190,134 @@ public class ServiceComponentRuntimeImpl implements ServiceComponentRuntime
 		return holder.disableComponents(true); //synchronous
 	}
 
+	/**
+	 * Returns the descriptions of the components providing the given service
+	 * interface.
+	 */
+	public Collection<ComponentDescriptionDTO> getComponentDescriptionDTOsByService(String serviceInterface)
+	{
+		return copyDescriptions(holdersToDescriptions(componentRegistry.getComponentHoldersByService(serviceInterface)));
+	}
+
+	/**
+	 * Returns the configurations of the enabled components currently in the
+	 * given state, one of the <code>ComponentConfigurationDTO</code> state
+	 * constants.
+	 */
+	public Collection<ComponentConfigurationDTO> getComponentConfigurationDTOs(int state)
+	{
+		List<AbstractComponentManager<?>> managers = componentRegistry.getComponentManagers(state);
+		List<ComponentConfigurationDTO> result = new ArrayList<ComponentConfigurationDTO>(managers.size());
+		// configurations of the same component share the copy of their description
+		Map<ComponentDescriptionDTO, ComponentDescriptionDTO> descriptionCopies = new IdentityHashMap<ComponentDescriptionDTO, ComponentDescriptionDTO>();
+		for (AbstractComponentManager<?> manager: managers)
+		{
+			ComponentConfigurationDTO dto = managerToConfiguration(manager);
+			if (dto != null)
+			{
+				ComponentDescriptionDTO descriptionCopy = descriptionCopies.get(dto.description);
+				if (descriptionCopy == null)
+				{
+					descriptionCopy = copy(dto.description);
+					descriptionCopies.put(dto.description, descriptionCopy);
+				}
+				result.add(copy(dto, descriptionCopy));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the configuration of the component with the given component id
+	 * or <code>null</code> if no such component is enabled.
+	 */
+	public ComponentConfigurationDTO getComponentConfigurationDTO(long id)
+	{
+		AbstractComponentManager<?> manager = componentRegistry.getComponentManager(id);
+		ComponentConfigurationDTO dto = manager == null ? null : managerToConfiguration(manager);
+		return dto == null ? null : copy(dto, copy(dto.description));
+	}
+
+	/**
+	 * Writes the state of the matching component configurations directly
+	 * from the component registry without creating DTOs.
+	 *
+	 * @return the number of component configurations written
+	 * @see RuntimeStateWriter
+	 */
+	public int writeRuntimeState(Writer out, boolean json, Bundle bundle, int state, String serviceInterface,
+		Pattern namePattern) throws IOException
+	{
+		return new RuntimeStateWriter(componentRegistry, json, bundle, state, serviceInterface, namePattern).write(out);
+	}
+
+	/**
+	 * Returns the component managers of the components whose name matches
+	 * the pattern, or of all components if the pattern is <code>null</code>.
+	 */
+	public List<AbstractComponentManager<?>> getComponentManagers(Pattern namePattern)
+	{
+		List<AbstractComponentManager<?>> result = new ArrayList<AbstractComponentManager<?>>();
+		for (ComponentHolder<?> holder: componentRegistry.getComponentHolders())
+		{
+			if (namePattern == null || namePattern.matcher(holder.getComponentMetadata().getName()).matches())
+			{
+				for (ComponentManager<?> manager: holder.getComponents())
+				{
+					if (manager instanceof AbstractComponentManager)
+					{
+						result.add((AbstractComponentManager<?>) manager);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	private ComponentConfigurationDTO managerToConfiguration(AbstractComponentManager<?> manager)
+	{
+		BundleComponentActivator activator = manager.getActivator();
+		Bundle bundle = activator == null ? null : activator.getBundleContext().getBundle();
+		ComponentHolder<?> holder = bundle == null ? null : componentRegistry.getComponentHolder(bundle, manager.getComponentMetadata().getName());
+		if (holder == null)
+		{
+			return null;
+		}
+		return managerToConfiguration(holder, manager, holderToDescription(holder));
+	}
+
+	/**
+	 * Returns the configuration DTO of the component manager, reusing the
+	 * cached DTO if neither the component nor its description changed since
+	 * it was built.
+	 */
+	private ComponentConfigurationDTO managerToConfiguration(ComponentHolder<?> holder, ComponentManager<?> manager, ComponentDescriptionDTO description)
+	{
+		if (!(manager instanceof AbstractComponentManager))
+		{
+			return managerToConfiguration(manager, description);
+		}
+		ConcurrentMap<ComponentManager<?>, CachedConfiguration> cached = configurations.get(holder);
+		if (cached == null)
+		{
+			cached = new ConcurrentHashMap<ComponentManager<?>, CachedConfiguration>();
+			ConcurrentMap<ComponentManager<?>, CachedConfiguration> existing = configurations.putIfAbsent(holder, cached);
+			if (existing != null)
+			{
+				cached = existing;
+			}
+		}
+		// read the change count before building the DTO such that concurrent changes invalidate it
+		long changeCount = ((AbstractComponentManager<?>) manager).getChangeCount();
+		CachedConfiguration configuration = cached.get(manager);
+		if (configuration == null || configuration.changeCount != changeCount || configuration.dto.description != description)
+		{
+			configuration = new CachedConfiguration(changeCount, managerToConfiguration(manager, description));
+			cached.put(manager, configuration);
+		}
+		return configuration.dto;
+	}
+
 	private ComponentConfigurationDTO managerToConfiguration(ComponentManager<?> manager, ComponentDescriptionDTO description)
 	{
 		ComponentConfigurationDTO dto = new ComponentConfigurationDTO();
@@ -233,7 +421,51 @@ public class ServiceComponentRuntimeImpl implements ServiceComponentRuntime
 		return componentRegistry.getComponentHolder(b, name);
 	}
 
+	/**
+	 * Returns the description DTO of the holder, which is built once and
+	 * shared as the component metadata does not change. A cached DTO is only
+	 * rebuilt if the state of the bundle changed, for example when a lazily
+	 * activated bundle completes starting.
+	 */
 	private ComponentDescriptionDTO holderToDescription( ComponentHolder<?> holder )
+	{
+		pruneCaches();
+		ComponentDescriptionDTO dto = descriptions.get(holder);
+		if (dto == null || !isCurrent(dto))
+		{
+			dto = newDescription(holder);
+			descriptions.put(holder, dto);
+		}
+		return dto;
+	}
+
+	/**
+	 * Drops the cached DTOs of unregistered holders whenever the set of
+	 * registered holders changed.
+	 */
+	private void pruneCaches()
+	{
+		long version = componentRegistry.getComponentHoldersVersion();
+		if (cachedVersion != version)
+		{
+			cachedVersion = version;
+			List<ComponentHolder<?>> holders = componentRegistry.getComponentHolders();
+			descriptions.keySet().retainAll(holders);
+			configurations.keySet().retainAll(holders);
+		}
+	}
+
+	private boolean isCurrent(ComponentDescriptionDTO dto)
+	{
+		if (dto.bundle == null || context == null)
+		{
+			return true;
+		}
+		Bundle bundle = context.getBundle(dto.bundle.id);
+		return bundle != null && bundle.getState() == dto.bundle.state && bundle.getLastModified() == dto.bundle.lastModified;
+	}
+
+	private ComponentDescriptionDTO newDescription( ComponentHolder<?> holder )
 	{
 		ComponentDescriptionDTO dto = new ComponentDescriptionDTO();
 		ComponentMetadata m = holder.getComponentMetadata();
@@ -355,4 +587,180 @@ public class ServiceComponentRuntimeImpl implements ServiceComponentRuntime
 		b.version = bundle.getVersion().toString();
 		return b;
 	}
+
+	private List<ComponentDescriptionDTO> copyDescriptions(List<ComponentDescriptionDTO> dtos)
+	{
+		List<ComponentDescriptionDTO> result = new ArrayList<ComponentDescriptionDTO>(dtos.size());
+		for (ComponentDescriptionDTO dto: dtos)
+		{
+			result.add(copy(dto));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a copy of the cached description DTO which does not share any
+	 * mutable state with it.
+	 */
+	ComponentDescriptionDTO copy(ComponentDescriptionDTO source)
+	{
+		ComponentDescriptionDTO dto = new ComponentDescriptionDTO();
+		dto.activate = source.activate;
+		dto.bundle = copy(source.bundle);
+		dto.configurationPid = copy(source.configurationPid);
+		dto.configurationPolicy = source.configurationPolicy;
+		dto.deactivate = source.deactivate;
+		dto.defaultEnabled = source.defaultEnabled;
+		dto.factory = source.factory;
+		dto.immediate = source.immediate;
+		dto.implementationClass = source.implementationClass;
+		dto.modified = source.modified;
+		dto.name = source.name;
+		dto.properties = copy(source.properties);
+		if (source.references != null)
+		{
+			dto.references = new ReferenceDTO[source.references.length];
+			for (int i = 0; i < source.references.length; i++)
+			{
+				dto.references[i] = copy(source.references[i]);
+			}
+		}
+		dto.scope = source.scope;
+		dto.serviceInterfaces = copy(source.serviceInterfaces);
+		return dto;
+	}
+
+	/**
+	 * Returns a copy of the cached configuration DTO referring to the given
+	 * copy of its description.
+	 */
+	ComponentConfigurationDTO copy(ComponentConfigurationDTO source, ComponentDescriptionDTO description)
+	{
+		ComponentConfigurationDTO dto = new ComponentConfigurationDTO();
+		dto.description = description;
+		dto.id = source.id;
+		dto.properties = copy(source.properties);
+		dto.state = source.state;
+		if (source.satisfiedReferences != null)
+		{
+			dto.satisfiedReferences = new SatisfiedReferenceDTO[source.satisfiedReferences.length];
+			for (int i = 0; i < source.satisfiedReferences.length; i++)
+			{
+				SatisfiedReferenceDTO ref = new SatisfiedReferenceDTO();
+				ref.name = source.satisfiedReferences[i].name;
+				ref.target = source.satisfiedReferences[i].target;
+				ref.boundServices = copy(source.satisfiedReferences[i].boundServices);
+				dto.satisfiedReferences[i] = ref;
+			}
+		}
+		if (source.unsatisfiedReferences != null)
+		{
+			dto.unsatisfiedReferences = new UnsatisfiedReferenceDTO[source.unsatisfiedReferences.length];
+			for (int i = 0; i < source.unsatisfiedReferences.length; i++)
+			{
+				UnsatisfiedReferenceDTO ref = new UnsatisfiedReferenceDTO();
+				ref.name = source.unsatisfiedReferences[i].name;
+				ref.target = source.unsatisfiedReferences[i].target;
+				ref.targetServices = copy(source.unsatisfiedReferences[i].targetServices);
+				dto.unsatisfiedReferences[i] = ref;
+			}
+		}
+		return dto;
+	}
+
+	private ServiceReferenceDTO[] copy(ServiceReferenceDTO[] source)
+	{
+		if (source == null)
+		{
+			return null;
+		}
+		ServiceReferenceDTO[] result = new ServiceReferenceDTO[source.length];
+		for (int i = 0; i < source.length; i++)
+		{
+			if (source[i] != null)
+			{
+				ServiceReferenceDTO dto = new ServiceReferenceDTO();
+				dto.bundle = source[i].bundle;
+				dto.id = source[i].id;
+				dto.properties = copy(source[i].properties);
+				dto.usingBundles = source[i].usingBundles == null ? null : source[i].usingBundles.clone();
+				result[i] = dto;
+			}
+		}
+		return result;
+	}
+
+	private ReferenceDTO copy(ReferenceDTO source)
+	{
+		ReferenceDTO dto = new ReferenceDTO();
+		dto.bind = source.bind;
+		dto.cardinality = source.cardinality;
+		dto.field = source.field;
+		dto.fieldOption = source.fieldOption;
+		dto.interfaceName = source.interfaceName;
+		dto.name = source.name;
+		dto.policy = source.policy;
+		dto.policyOption = source.policyOption;
+		dto.scope = source.scope;
+		dto.target = source.target;
+		dto.unbind = source.unbind;
+		dto.updated = source.updated;
+		return dto;
+	}
+
+	private BundleDTO copy(BundleDTO source)
+	{
+		if (source == null)
+		{
+			return null;
+		}
+		BundleDTO dto = new BundleDTO();
+		dto.id = source.id;
+		dto.lastModified = source.lastModified;
+		dto.state = source.state;
+		dto.symbolicName = source.symbolicName;
+		dto.version = source.version;
+		return dto;
+	}
+
+	private String[] copy(String[] source)
+	{
+		return source == null ? null : source.clone();
+	}
+
+	/**
+	 * Copies the properties map and the array values in it.
+	 */
+	private Map<String, Object> copy(Map<String, Object> source)
+	{
+		if (source == null)
+		{
+			return null;
+		}
+		Map<String, Object> result = new HashMap<String, Object>(source);
+		for (Map.Entry<String, Object> entry: result.entrySet())
+		{
+			Object value = entry.getValue();
+			if (value != null && value.getClass().isArray())
+			{
+				int length = Array.getLength(value);
+				Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+				System.arraycopy(value, 0, copy, 0, length);
+				entry.setValue(copy);
+			}
+		}
+		return result;
+	}
+
+	private static final class CachedConfiguration
+	{
+		final long changeCount;
+		final ComponentConfigurationDTO dto;
+
+		CachedConfiguration(long changeCount, ComponentConfigurationDTO dto)
+		{
+			this.changeCount = changeCount;
+			this.dto = dto;
+		}
+	}
 }
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.info;
+
+/**
+ * A state transition of a component configuration as delivered to a
+ * {@link ComponentStateSubscription}. The states are the state constants of
+ * <code>ComponentConfigurationDTO</code> or {@link #STATE_DISPOSED} and
+ * {@link #STATE_DISABLED}.
+ * <p>
+ * The reason codes {@link #REASON_UNSPECIFIED} to
+ * {@link #REASON_BUNDLE_STOPPED} have the same values as the deactivation
+ * reasons of <code>ComponentConstants</code>.
+ */
+public final class ComponentStateEvent
+{
+
+    /** The component configuration has been disposed */
+    public static final int STATE_DISPOSED = 32;
+
+    /** The component configuration has been disabled */
+    public static final int STATE_DISABLED = 64;
+
+    /** No specific reason is known, for example a delayed component is no longer used */
+    public static final int REASON_UNSPECIFIED = 0;
+
+    /** The component has been disabled */
+    public static final int REASON_DISABLED = 1;
+
+    /** A reference became satisfied or unsatisfied */
+    public static final int REASON_REFERENCE = 2;
+
+    /** The configuration of the component has been modified */
+    public static final int REASON_CONFIGURATION_MODIFIED = 3;
+
+    /** The configuration of the component has been deleted */
+    public static final int REASON_CONFIGURATION_DELETED = 4;
+
+    /** The component configuration has been disposed */
+    public static final int REASON_DISPOSED = 5;
+
+    /** The bundle providing the component has been stopped */
+    public static final int REASON_BUNDLE_STOPPED = 6;
+
+    /** The component has been enabled */
+    public static final int REASON_ENABLED = 7;
+
+    /** The component instance has been created, for example on first use of its service */
+    public static final int REASON_ACTIVATION = 8;
+
+    private final long m_componentId;
+    private final String m_componentName;
+    private final long m_bundleId;
+    private final int m_oldState;
+    private final int m_newState;
+    private final int m_reason;
+    private final long m_timestamp;
+
+
+    public ComponentStateEvent( final long componentId, final String componentName, final long bundleId,
+        final int oldState, final int newState, final int reason, final long timestamp )
+    {
+        m_componentId = componentId;
+        m_componentName = componentName;
+        m_bundleId = bundleId;
+        m_oldState = oldState;
+        m_newState = newState;
+        m_reason = reason;
+        m_timestamp = timestamp;
+    }
+
+
+    /**
+     * Returns the component id of the component configuration, which is
+     * <code>-1</code> if the component is not enabled.
+     */
+    public long getComponentId()
+    {
+        return m_componentId;
+    }
+
+
+    public String getComponentName()
+    {
+        return m_componentName;
+    }
+
+
+    /**
+     * Returns the id of the bundle declaring the component or <code>-1</code>
+     * if the bundle is not known any more.
+     */
+    public long getBundleId()
+    {
+        return m_bundleId;
+    }
+
+
+    public int getOldState()
+    {
+        return m_oldState;
+    }
+
+
+    public int getNewState()
+    {
+        return m_newState;
+    }
+
+
+    /**
+     * Returns one of the <code>REASON_</code> constants.
+     */
+    public int getReason()
+    {
+        return m_reason;
+    }
+
+
+    /**
+     * Returns the time of the transition in milliseconds since the epoch.
+     */
+    public long getTimestamp()
+    {
+        return m_timestamp;
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return "ComponentStateEvent[id=" + m_componentId + ", name=" + m_componentName + ", bundle=" + m_bundleId
+            + ", " + m_oldState + "->" + m_newState + ", reason=" + m_reason + ", timestamp=" + m_timestamp + "]";
+    }
+}
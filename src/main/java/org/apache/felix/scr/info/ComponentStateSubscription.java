@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.info;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A subscription to the component state events created by
+ * {@link ComponentStateEvents#subscribe(int)}. Events are buffered in a
+ * bounded buffer which never blocks the Service Component Runtime: events
+ * arriving while the buffer is full are dropped and counted.
+ */
+public interface ComponentStateSubscription
+{
+
+    /**
+     * Returns and removes the oldest buffered event or <code>null</code> if
+     * no event is buffered.
+     */
+    ComponentStateEvent poll();
+
+    /**
+     * Returns and removes the oldest buffered event, waiting up to the given
+     * time for an event to arrive. Returns <code>null</code> if no event
+     * arrived in time.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    ComponentStateEvent poll( long timeout, TimeUnit unit ) throws InterruptedException;
+
+    /**
+     * Removes all buffered events and adds them to the given collection.
+     *
+     * @return the number of events added
+     */
+    int drainTo( Collection<? super ComponentStateEvent> events );
+
+    /**
+     * Returns the number of events dropped because the buffer was full.
+     */
+    long getDroppedCount();
+
+    /**
+     * Returns <code>true</code> if this subscription has been closed, either
+     * by {@link #close()}, because the subscribing bundle released the
+     * service or because the Service Component Runtime stopped. Events
+     * buffered before can still be polled; polling with a timeout does not
+     * wait on a closed subscription.
+     */
+    boolean isClosed();
+
+    /**
+     * Ends this subscription. No further events are buffered.
+     */
+    void close();
+
+}
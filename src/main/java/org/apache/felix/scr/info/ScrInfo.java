@@ -50,4 +50,45 @@ public interface ScrInfo
      */
     void config(PrintWriter out);
 
+    /**
+     * Write the state of the component configurations, one component configuration at a time, without
+     * collecting the complete runtime state first.
+     * @param format <code>json</code> for a JSON array or <code>line</code> or null for one line per
+     * component configuration
+     * @param bundleIdentifier symbolic name or ID of the bundle the components are in or null for all components
+     * @param state name of the state of the component configurations to write, for example <code>active</code>
+     * or <code>unsatisfied-reference</code>, or null for all states
+     * @param serviceInterface name of a service interface the components provide or null for all components
+     * @param namePattern regexp to match for component name or null for all components
+     * @param out PrintWriter for output
+     * @throws IllegalArgumentException if the format, bundle or state is unknown
+     * @since 1.1
+     */
+    void export(String format, String bundleIdentifier, String state, String serviceInterface, String namePattern,
+        PrintWriter out);
+
+    /**
+     * List in text the performance statistics of the component configurations: the number of activations with
+     * their total, average and maximum duration, the number of bind and unbind calls, the time spent unsatisfied
+     * and the number of reactivations caused by static references.
+     * @param namePattern regexp to match for component name or null for all components
+     * @param sortColumn column to sort by, one of <code>id</code>, <code>name</code>, <code>activations</code>,
+     * <code>total</code>, <code>avg</code>, <code>max</code>, <code>binds</code>, <code>unbinds</code>,
+     * <code>unsatisfied</code> or <code>reactivations</code>, or null to sort by component ID. Numeric columns
+     * are sorted in descending order.
+     * @param out PrintWriter for output
+     * @throws IllegalArgumentException if the sort column is unknown
+     * @since 1.1
+     */
+    void stats(String namePattern, String sortColumn, PrintWriter out);
+
+    /**
+     * List in text the runtime wide counters of the Service Component Runtime, one counter per line as name and
+     * value, for example the class lookup cache hits and misses, the coalesced configuration updates and the
+     * skipped reconfigurations. The counters are reset when the Service Component Runtime is stopped.
+     * @param out PrintWriter for output
+     * @since 1.1
+     */
+    void metrics(PrintWriter out);
+
 }
\ No newline at end of file
@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl;
+
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.scr.impl.config.ComponentHolder;
+import org.apache.felix.scr.impl.config.ComponentManager;
+import org.apache.felix.scr.impl.config.ScrConfiguration;
+import org.apache.felix.scr.impl.manager.AbstractComponentManager;
+import org.apache.felix.scr.impl.metadata.ComponentMetadata;
+import org.apache.felix.scr.impl.metadata.ServiceMetadata;
+import org.apache.felix.scr.info.ComponentStateEvent;
+import org.mockito.Mockito;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.service.component.ComponentException;
+
+
+public class ComponentRegistryTest extends TestCase
+{
+
+    private Bundle bundle;
+
+    private ComponentRegistry registry;
+
+
+    @Override
+    protected void setUp()
+    {
+        bundle = Mockito.mock( Bundle.class );
+        Mockito.when( bundle.getBundleId() ).thenReturn( 5L );
+        Mockito.when( bundle.getSymbolicName() ).thenReturn( "bsn" );
+        Mockito.when( bundle.getLocation() ).thenReturn( "loc" );
+        final Hashtable<String, String> headers = new Hashtable<String, String>();
+        headers.put( Constants.BUNDLE_VERSION, "1.0" );
+        Mockito.when( bundle.getHeaders() ).thenReturn( headers );
+
+        registry = new ComponentRegistry( Mockito.mock( BundleContext.class ), Mockito.mock( ScrConfiguration.class ) );
+    }
+
+
+    public void test_indexes()
+    {
+        final ComponentHolder<?> holder = holder( "comp", "pid", "foo.Service" );
+        final ComponentRegistryKey key = registry.checkComponentName( bundle, "comp" );
+        assertTrue( registry.getComponentHolders().isEmpty() );
+        registry.registerComponentHolder( key, holder );
+
+        final Bundle other = Mockito.mock( Bundle.class );
+        Mockito.when( other.getBundleId() ).thenReturn( 6L );
+        assertEquals( Collections.singletonList( holder ), registry.getComponentHolders() );
+        assertEquals( Collections.singletonList( holder ), registry.getComponentHolders( bundle ) );
+        assertTrue( registry.getComponentHolders( other ).isEmpty() );
+        assertEquals( Collections.singletonList( holder ), registry.getComponentHoldersByService( "foo.Service" ) );
+        assertTrue( registry.getComponentHoldersByService( "bar.Service" ).isEmpty() );
+
+        final long version = registry.getComponentHoldersVersion();
+        registry.unregisterComponentHolder( key );
+        assertTrue( registry.getComponentHoldersVersion() > version );
+        assertTrue( registry.getComponentHolders().isEmpty() );
+        assertTrue( registry.getComponentHolders( bundle ).isEmpty() );
+        assertTrue( registry.getComponentHoldersByService( "foo.Service" ).isEmpty() );
+    }
+
+
+    public void test_componentHoldersSnapshot()
+    {
+        final List<ComponentHolder<?>> empty = registry.getComponentHolders();
+        assertSame( empty, registry.getComponentHolders() );
+        final long version = registry.getComponentHoldersVersion();
+
+        // a reservation is not listed and does not change the holders
+        final ComponentRegistryKey key = registry.checkComponentName( bundle, "comp" );
+        assertSame( empty, registry.getComponentHolders() );
+        assertEquals( version, registry.getComponentHoldersVersion() );
+        assertTrue( registry.getComponentHolders( bundle ).isEmpty() );
+
+        // the reservation blocks a duplicate name
+        try
+        {
+            registry.checkComponentName( bundle, "comp" );
+            fail( "Expected ComponentException for a reserved name" );
+        }
+        catch ( ComponentException ce )
+        {
+            // expected
+        }
+
+        final ComponentHolder<?> holder = holder( "comp", "pid", "foo.Service" );
+        registry.registerComponentHolder( key, holder );
+        assertEquals( version + 1, registry.getComponentHoldersVersion() );
+        final List<ComponentHolder<?>> registered = registry.getComponentHolders();
+        assertNotSame( empty, registered );
+        assertEquals( Collections.singletonList( holder ), registered );
+        assertSame( registered, registry.getComponentHolders() );
+        try
+        {
+            registered.add( holder );
+            fail( "Expected UnsupportedOperationException" );
+        }
+        catch ( UnsupportedOperationException uoe )
+        {
+            // expected
+        }
+
+        // dropping a reservation neither changes the holders nor the version
+        final ComponentRegistryKey reserved = registry.checkComponentName( bundle, "other" );
+        registry.unregisterComponentHolder( reserved );
+        assertSame( registered, registry.getComponentHolders() );
+        assertEquals( version + 1, registry.getComponentHoldersVersion() );
+        registry.unregisterComponentHolder( registry.checkComponentName( bundle, "other" ) );
+
+        registry.unregisterComponentHolder( key );
+        assertEquals( version + 2, registry.getComponentHoldersVersion() );
+        assertTrue( registry.getComponentHolders().isEmpty() );
+        assertSame( registry.getComponentHolders(), registry.getComponentHolders() );
+    }
+
+
+    public void test_targetedPidIndex()
+    {
+        final ComponentHolder<?> holder = holder( "comp", "pid", "foo.Service" );
+        final ComponentRegistryKey key = registry.checkComponentName( bundle, "comp" );
+        registry.registerComponentHolder( key, holder );
+
+        assertEquals( Collections.singleton( holder ), registry.getComponentHoldersByPid( TargetedPID.valueOf( "pid" ) ) );
+        assertEquals( Collections.singleton( holder ), registry.getComponentHoldersByPid( TargetedPID.valueOf( "pid|bsn" ) ) );
+        assertEquals( Collections.singleton( holder ), registry.getComponentHoldersByPid( TargetedPID.valueOf( "pid|bsn|1.0.0" ) ) );
+        assertEquals( Collections.singleton( holder ), registry.getComponentHoldersByPid( TargetedPID.valueOf( "pid|bsn|1.0.0|loc" ) ) );
+        assertTrue( registry.getComponentHoldersByPid( TargetedPID.valueOf( "pid|bsn|2.0.0" ) ).isEmpty() );
+        assertTrue( registry.getComponentHoldersByPid( TargetedPID.valueOf( "pid|bsn|1.0.0|other" ) ).isEmpty() );
+        assertTrue( registry.getComponentHoldersByPid( TargetedPID.valueOf( "pid|other" ) ).isEmpty() );
+        assertTrue( registry.getComponentHoldersByPid( TargetedPID.valueOf( "other|bsn" ) ).isEmpty() );
+
+        // the index agrees with matching the target against the holder
+        final String[] pids = { "pid", "pid|bsn", "pid|bsn|1.0.0", "pid|bsn|1.0", "pid|bsn|1.0.0|loc",
+            "pid|bsn|2.0.0", "pid|bsn|2.0.0|loc", "pid|bsn|1.0.0|other", "pid|other", "pid|other|1.0.0" };
+        for ( String pid : pids )
+        {
+            final TargetedPID targetedPid = TargetedPID.valueOf( pid );
+            assertEquals( pid, targetedPid.matchesTarget( holder ),
+                registry.getComponentHoldersByPid( targetedPid ).contains( holder ) );
+        }
+
+        registry.unregisterComponentHolder( key );
+        for ( String pid : pids )
+        {
+            assertTrue( pid, registry.getComponentHoldersByPid( TargetedPID.valueOf( pid ) ).isEmpty() );
+        }
+    }
+
+
+    public void test_targetedPidIndexBundleGone()
+    {
+        final ComponentHolder<?> holder = holder( "comp", "pid", "foo.Service" );
+        final ComponentRegistryKey key = registry.checkComponentName( bundle, "comp" );
+        registry.registerComponentHolder( key, holder );
+
+        // holders of a bundle concurrently stopped are not returned
+        final BundleContext context = holder.getActivator().getBundleContext();
+        Mockito.when( context.getBundle() ).thenReturn( null );
+        assertTrue( registry.getComponentHoldersByPid( TargetedPID.valueOf( "pid" ) ).isEmpty() );
+        assertTrue( registry.getComponentHoldersByPid( TargetedPID.valueOf( "pid|bsn|1.0.0" ) ).isEmpty() );
+
+        // the targeted pids are removed without asking the bundle
+        registry.unregisterComponentHolder( key );
+        Mockito.when( context.getBundle() ).thenReturn( bundle );
+        assertTrue( registry.getComponentHoldersByPid( TargetedPID.valueOf( "pid" ) ).isEmpty() );
+        assertTrue( registry.getComponentHoldersByPid( TargetedPID.valueOf( "pid|bsn" ) ).isEmpty() );
+        assertTrue( registry.getComponentHoldersByPid( TargetedPID.valueOf( "pid|bsn|1.0.0" ) ).isEmpty() );
+        assertTrue( registry.getComponentHoldersByPid( TargetedPID.valueOf( "pid|bsn|1.0.0|loc" ) ).isEmpty() );
+    }
+
+
+    public void test_targetedPidValueOf()
+    {
+        final TargetedPID pid = TargetedPID.valueOf( "pid|bsn|1.0.0" );
+        assertSame( pid, TargetedPID.valueOf( "pid|bsn|1.0.0" ) );
+        assertEquals( "pid|bsn|1.0.0", pid.getRawPid() );
+        assertEquals( "pid", pid.getServicePid() );
+        assertTrue( pid.isTargeted() );
+        assertFalse( TargetedPID.valueOf( "pid" ).isTargeted() );
+
+        TargetedPID.clearCache();
+        final TargetedPID parsed = TargetedPID.valueOf( "pid|bsn|1.0.0" );
+        assertNotSame( pid, parsed );
+        assertEquals( pid, parsed );
+    }
+
+
+    public void test_stateIndex()
+    {
+        final AbstractComponentManager<?> manager = Mockito.mock( AbstractComponentManager.class );
+        final long id = registry.registerComponentId( manager );
+        assertSame( manager, registry.getComponentManager( id ) );
+
+        Mockito.when( manager.getState() ).thenReturn( ComponentManager.STATE_ACTIVE );
+        registry.componentStateChanged( manager, ComponentManager.STATE_DISABLED, ComponentManager.STATE_ACTIVE, ComponentStateEvent.REASON_ACTIVATION );
+        assertEquals( Arrays.asList( manager ), registry.getComponentManagers( ComponentManager.STATE_ACTIVE ) );
+        assertTrue( registry.getComponentManagers( ComponentManager.STATE_SATISFIED ).isEmpty() );
+
+        Mockito.when( manager.getState() ).thenReturn( ComponentManager.STATE_DISPOSED );
+        registry.componentStateChanged( manager, ComponentManager.STATE_ACTIVE, ComponentManager.STATE_DISPOSED, ComponentStateEvent.REASON_DISPOSED );
+        assertTrue( registry.getComponentManagers( ComponentManager.STATE_ACTIVE ).isEmpty() );
+
+        registry.unregisterComponentId( id );
+        assertNull( registry.getComponentManager( id ) );
+    }
+
+
+    private ComponentHolder<?> holder( final String name, final String pid, final String service )
+    {
+        final ServiceMetadata serviceMetadata = Mockito.mock( ServiceMetadata.class );
+        Mockito.when( serviceMetadata.getProvides() ).thenReturn( new String[] { service } );
+        final ComponentMetadata metadata = Mockito.mock( ComponentMetadata.class );
+        Mockito.when( metadata.getName() ).thenReturn( name );
+        Mockito.when( metadata.getConfigurationPid() ).thenReturn( Collections.singletonList( pid ) );
+        Mockito.when( metadata.getServiceMetadata() ).thenReturn( serviceMetadata );
+
+        final BundleContext context = Mockito.mock( BundleContext.class );
+        Mockito.when( context.getBundle() ).thenReturn( bundle );
+        final BundleComponentActivator activator = Mockito.mock( BundleComponentActivator.class );
+        Mockito.when( activator.getBundleContext() ).thenReturn( context );
+
+        final ComponentHolder<?> holder = Mockito.mock( ComponentHolder.class );
+        Mockito.when( holder.getComponentMetadata() ).thenReturn( metadata );
+        Mockito.when( holder.getActivator() ).thenReturn( activator );
+        return holder;
+    }
+}
@@ -24,9 +24,20 @@ import java.lang.reflect.Array;
 import java.util.Arrays;
 import java.util.Collections;
 
+import org.apache.felix.scr.impl.config.ConfigurationSupport;
+import org.apache.felix.scr.impl.config.ScrConfiguration;
+import org.apache.felix.scr.impl.helper.ClassUtils;
+import org.apache.felix.scr.impl.helper.SimpleLogger;
+import org.apache.felix.scr.impl.manager.components.FakeService;
+import org.apache.felix.scr.impl.manager.components.T1;
+import org.mockito.Mockito;
 import org.osgi.dto.DTO;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
 import org.osgi.framework.dto.BundleDTO;
 import org.osgi.framework.dto.ServiceReferenceDTO;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
 
 import junit.framework.TestCase;
 
@@ -44,6 +55,69 @@ public class SCRCommandlTest extends TestCase
          check(scr, String.format("  Properties:%n    key = true%n"), true);
     }
 
+    public void testMetrics()
+    {
+        ScrCommand scr = new ScrCommand(null, null, null);
+        ClassUtils.clearClassCache(false);
+        long hits = metric(scr, ScrMetrics.Counter.CLASS_LOOKUP_CACHE_HITS);
+        long misses = metric(scr, ScrMetrics.Counter.CLASS_LOOKUP_CACHE_MISSES);
+
+        SimpleLogger logger = new SimpleLogger()
+        {
+            public void log(int level, String message, Throwable ex)
+            {
+            }
+
+            public void log(int level, String message, Object[] arguments, Throwable ex)
+            {
+            }
+
+            public boolean isLogEnabled(int level)
+            {
+                return false;
+            }
+        };
+        ClassUtils.getClassFromComponentClassLoader(T1.class, FakeService.class.getName(), logger);
+        ClassUtils.getClassFromComponentClassLoader(T1.class, FakeService.class.getName(), logger);
+        assertEquals(hits + 1, metric(scr, ScrMetrics.Counter.CLASS_LOOKUP_CACHE_HITS));
+        assertEquals(misses + 1, metric(scr, ScrMetrics.Counter.CLASS_LOOKUP_CACHE_MISSES));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testConfigurationMetrics()
+    {
+        ScrCommand scr = new ScrCommand(null, null, null);
+        long events = metric(scr, ScrMetrics.Counter.CONFIG_EVENTS);
+        long coalesced = metric(scr, ScrMetrics.Counter.CONFIG_UPDATES_COALESCED);
+
+        ScrConfiguration configuration = Mockito.mock(ScrConfiguration.class);
+        Mockito.when(configuration.configCoalesce()).thenReturn(60000L);
+        ConfigurationSupport support = new ConfigurationSupport(Mockito.mock(BundleContext.class), null, configuration);
+        ServiceReference<ConfigurationAdmin> ref = Mockito.mock(ServiceReference.class);
+        support.configurationEvent(new ConfigurationEvent(ref, ConfigurationEvent.CM_UPDATED, null, "pid"));
+        support.configurationEvent(new ConfigurationEvent(ref, ConfigurationEvent.CM_UPDATED, null, "pid"));
+        support.dispose();
+
+        assertEquals(events + 2, metric(scr, ScrMetrics.Counter.CONFIG_EVENTS));
+        assertEquals(coalesced + 1, metric(scr, ScrMetrics.Counter.CONFIG_UPDATES_COALESCED));
+    }
+
+    private long metric(ScrCommand scr, ScrMetrics.Counter counter)
+    {
+        StringWriter sw = new StringWriter();
+        scr.metrics(new PrintWriter(sw));
+        for (String line: sw.toString().split("\\r?\\n"))
+        {
+            String[] fields = line.trim().split("\\s+");
+            if (fields.length == 2 && fields[0].equals(counter.getName()))
+            {
+                return Long.parseLong(fields[1]);
+            }
+        }
+        fail("Missing counter " + counter.getName() + " in " + sw);
+        return -1;
+    }
+
     private PrintWriter check(ScrCommand scr, String expected, Object o)
     {
         StringWriter sw = new StringWriter();
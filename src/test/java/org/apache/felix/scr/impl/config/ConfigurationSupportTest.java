@@ -18,8 +18,24 @@
  */
 package org.apache.felix.scr.impl.config;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import junit.framework.TestCase;
 
+import org.apache.felix.scr.impl.ScrMetrics;
+import org.easymock.EasyMock;
+import org.mockito.Mockito;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.Version;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
+
 public class ConfigurationSupportTest extends TestCase
 {
 
@@ -27,5 +43,153 @@ public class ConfigurationSupportTest extends TestCase
     {
         assertEquals("foo \\(&\\)", ConfigurationSupport.escape("foo (&)"));
     }
+
+    public void testConfigurationIndex()
+    {
+        Bundle b = EasyMock.createMock(Bundle.class);
+        EasyMock.expect(b.getSymbolicName()).andReturn("bsn").anyTimes();
+        EasyMock.expect(b.getVersion()).andReturn(new Version("1.0.0")).anyTimes();
+        EasyMock.expect(b.getLocation()).andReturn("loc(1)").anyTimes();
+        EasyMock.replay(b);
+
+        Configuration singleton = config("pid", null);
+        Configuration targeted = config("pid|bsn|1.0.0", null);
+        Configuration other = config("pid|other", null);
+        Configuration factory1 = config("fpid.1", "fpid");
+        Configuration factory2 = config("fpid.2", "fpid|bsn|1.0.0|loc(1)");
+
+        ConfigurationSupport.ConfigurationIndex index = new ConfigurationSupport.ConfigurationIndex(
+            new Configuration[] { singleton, targeted, other, factory1, factory2 });
+
+        assertEquals(Arrays.asList(singleton, targeted), Arrays.asList(index.getConfigurations("pid", b)));
+        assertEquals(Arrays.asList(factory1, factory2), Arrays.asList(index.getFactoryConfigurations("fpid", b)));
+        assertNull(index.getConfigurations("fpid", b));
+        assertNull(index.getFactoryConfigurations("pid", b));
+    }
+
+    public void testCoalesceReplacesPendingUpdate() throws Exception
+    {
+        RecordingSupport support = new RecordingSupport(DELAY);
+        ConfigurationEvent first = event(ConfigurationEvent.CM_UPDATED);
+        ConfigurationEvent second = event(ConfigurationEvent.CM_UPDATED);
+        long coalesced = ScrMetrics.get(ScrMetrics.Counter.CONFIG_UPDATES_COALESCED);
+
+        support.configurationEvent(first);
+        support.configurationEvent(second);
+        assertTrue(support.handled.isEmpty());
+        assertEquals(coalesced + 1, ScrMetrics.get(ScrMetrics.Counter.CONFIG_UPDATES_COALESCED));
+
+        support.await(1);
+        assertEquals(Collections.singletonList(second), support.handled);
+        support.dispose();
+    }
+
+    public void testCoalesceDeleteDropsPendingUpdate() throws Exception
+    {
+        RecordingSupport support = new RecordingSupport(DELAY);
+        ConfigurationEvent update = event(ConfigurationEvent.CM_UPDATED);
+        ConfigurationEvent delete = event(ConfigurationEvent.CM_DELETED);
+        long coalesced = ScrMetrics.get(ScrMetrics.Counter.CONFIG_UPDATES_COALESCED);
+
+        support.configurationEvent(update);
+        support.configurationEvent(delete);
+        assertEquals(Collections.singletonList(delete), support.handled);
+        assertEquals(coalesced + 1, ScrMetrics.get(ScrMetrics.Counter.CONFIG_UPDATES_COALESCED));
+
+        Thread.sleep(4 * DELAY);
+        assertEquals(Collections.singletonList(delete), support.handled);
+        support.dispose();
+    }
+
+    public void testCoalesceLocationChangeFlushesPendingUpdate() throws Exception
+    {
+        RecordingSupport support = new RecordingSupport(DELAY);
+        ConfigurationEvent update = event(ConfigurationEvent.CM_UPDATED);
+        ConfigurationEvent location = event(ConfigurationEvent.CM_LOCATION_CHANGED);
+        long coalesced = ScrMetrics.get(ScrMetrics.Counter.CONFIG_UPDATES_COALESCED);
+
+        support.configurationEvent(update);
+        support.configurationEvent(location);
+        assertEquals(Arrays.asList(update, location), support.handled);
+        assertEquals(coalesced, ScrMetrics.get(ScrMetrics.Counter.CONFIG_UPDATES_COALESCED));
+
+        Thread.sleep(4 * DELAY);
+        assertEquals(Arrays.asList(update, location), support.handled);
+        support.dispose();
+    }
+
+    public void testDisposeCancelsPendingUpdate() throws Exception
+    {
+        RecordingSupport support = new RecordingSupport(DELAY);
+        support.configurationEvent(event(ConfigurationEvent.CM_UPDATED));
+        support.dispose();
+
+        Thread.sleep(4 * DELAY);
+        assertTrue(support.handled.isEmpty());
+    }
+
+    public void testNoCoalescing()
+    {
+        RecordingSupport support = new RecordingSupport(0);
+        ConfigurationEvent first = event(ConfigurationEvent.CM_UPDATED);
+        ConfigurationEvent second = event(ConfigurationEvent.CM_UPDATED);
+        support.configurationEvent(first);
+        support.configurationEvent(second);
+        assertEquals(Arrays.asList(first, second), support.handled);
+        support.dispose();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConfigurationEvent event(int type)
+    {
+        ServiceReference<ConfigurationAdmin> ref = Mockito.mock(ServiceReference.class);
+        return new ConfigurationEvent(ref, type, null, "pid");
+    }
+
+    private static final long DELAY = 50;
+
+    /**
+     * Records the configuration events handled instead of configuring
+     * components.
+     */
+    private static class RecordingSupport extends ConfigurationSupport
+    {
+        final List<ConfigurationEvent> handled = Collections.synchronizedList(new ArrayList<ConfigurationEvent>());
+
+        RecordingSupport(long delay)
+        {
+            super(Mockito.mock(BundleContext.class), null, configuration(delay));
+        }
+
+        private static ScrConfiguration configuration(long delay)
+        {
+            ScrConfiguration configuration = Mockito.mock(ScrConfiguration.class);
+            Mockito.when(configuration.configCoalesce()).thenReturn(delay);
+            return configuration;
+        }
+
+        @Override
+        void handleConfigurationEvent(ConfigurationEvent event)
+        {
+            handled.add(event);
+        }
+
+        void await(int count) throws InterruptedException
+        {
+            for (int i = 0; i < 100 && handled.size() < count; i++)
+            {
+                Thread.sleep(DELAY);
+            }
+        }
+    }
+
+    private Configuration config(String pid, String factoryPid)
+    {
+        Configuration config = EasyMock.createMock(Configuration.class);
+        EasyMock.expect(config.getPid()).andReturn(pid).anyTimes();
+        EasyMock.expect(config.getFactoryPid()).andReturn(factoryPid).anyTimes();
+        EasyMock.replay(config);
+        return config;
+    }
     
 }
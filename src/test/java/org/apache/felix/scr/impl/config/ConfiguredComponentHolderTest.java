@@ -162,6 +162,63 @@ public class ConfiguredComponentHolderTest extends TestCase
     }
 
 
+    public void test_factory_concurrent_updates() throws Exception
+    {
+        final String name = "test.factory.concurrent";
+        final ComponentMetadata cm = createComponentMetadata( name );
+        final TestingConfiguredComponentHolder holder = new TestingConfiguredComponentHolder( cm );
+        holder.enableComponents( false );
+
+        final TargetedPID targetedFactoryPid = new TargetedPID( name );
+        final int threads = 4;
+        final int updates = 200;
+        final Thread[] updaters = new Thread[threads];
+        final Throwable[] failure = new Throwable[1];
+        for ( int t = 0; t < threads; t++ )
+        {
+            final TargetedPID targetedPid = new TargetedPID( name + "." + t );
+            updaters[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for ( int i = 0; i < updates; i++ )
+                        {
+                            final Dictionary config = new Hashtable();
+                            config.put( "value", i );
+                            holder.configurationUpdated( targetedPid, targetedFactoryPid, config, i );
+                        }
+                    }
+                    catch ( Throwable e )
+                    {
+                        failure[0] = e;
+                    }
+                }
+            };
+            updaters[t].start();
+        }
+        for ( Thread updater : updaters )
+        {
+            updater.join();
+        }
+        assertNull( failure[0] );
+
+        // one component per configuration with the latest configuration
+        final List<SingleComponentManager> managers = getComponentManagers( holder );
+        assertEquals( threads, managers.size() );
+        for ( SingleComponentManager manager : managers )
+        {
+            assertEquals( updates - 1, ( ( MockImmediateComponentManager ) manager ).getConfiguration().get( "value" ) );
+        }
+        for ( int t = 0; t < threads; t++ )
+        {
+            assertEquals( updates - 1, holder.getChangeCount( new TargetedPID( name + "." + t ), targetedFactoryPid ) );
+        }
+    }
+
+
     private static ComponentMetadata createComponentMetadata( String name )
     {
         final ComponentMetadata metadata = new ComponentMetadata( DSVersion.DS11 );
@@ -19,6 +19,9 @@
 package org.apache.felix.scr.impl.helper;
 
 import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -27,6 +30,7 @@ import java.util.Map;
 
 import org.easymock.EasyMock;
 import org.osgi.framework.Bundle;
+import org.osgi.service.component.ComponentException;
 
 import junit.framework.TestCase;
 
@@ -520,4 +524,91 @@ public class AnnotationTest extends TestCase
         
     }
 
+    public void testCachedType() throws Exception
+    {
+        Map<String, Object> values = b1Values();
+        
+        BI1 b1 = Annotations.toObject( BI1.class, values, mockBundle(), true);
+        Object info = typeInfo(b1);
+        b1 = null;
+        System.gc();
+        values.put("integer", "4");
+        BI1 b2 = Annotations.toObject( BI1.class, values, mockBundle(), true);
+        assertSame(info, typeInfo(b2));
+        b1 = Annotations.toObject( BI1.class, b1Values(), mockBundle(), true);
+        assertSame(b1.getClass(), b2.getClass());
+        assertEquals(3, b1.integer());
+        assertEquals(4, b2.integer());
+        checkBI1(b2);
+    }
+
+    public void testMissingNested() throws Exception
+    {
+        BI1 b = Annotations.toObject( BI1.class, allValues(), mockBundle(), true);
+        assertEquals(3, b.integer());
+        assertNull(b.a1());
+        assertEquals(0, b.a1array().length);
+    }
+
+    public void testLazy() throws Exception
+    {
+        final List<Object> accessed = new ArrayList<Object>();
+        Map<String, Object> values = new HashMap<String, Object>(b1Values())
+        {
+            @Override
+            public Object get(Object key)
+            {
+                accessed.add(key);
+                return super.get(key);
+            }
+        };
+        values.put("integer", "not a number");
+        
+        BI1 b = Annotations.toObject( BI1.class, values, mockBundle(), true, true);
+        assertTrue(accessed.isEmpty());
+        assertEquals(3.14d, b.doubl());
+        assertEquals(Arrays.asList("doubl"), accessed);
+        assertEquals(3.14d, b.doubl());
+        assertEquals(1, accessed.size());
+        for (int i = 0; i < 2; i++)
+        {
+            try
+            {
+                b.integer();
+                fail("expected ComponentException");
+            }
+            catch (ComponentException ce)
+            {
+                // expected
+            }
+        }
+        checkAI1(b.a1());
+        assertEquals(3, b.a1array().length);
+        checkAI1(b.a1array()[2]);
+    }
+
+    public void testLazyReleasesProperties() throws Exception
+    {
+        BI1 b = Annotations.toObject( BI1.class, b1Values(), mockBundle(), true, true);
+        Object handler = Proxy.getInvocationHandler(b);
+        Field props = handler.getClass().getDeclaredField("props");
+        props.setAccessible(true);
+        Method[] methods = BI1.class.getMethods();
+        for (int i = 0; i < methods.length; i++)
+        {
+            assertNotNull(props.get(handler));
+            methods[i].invoke(b);
+        }
+        assertNull(props.get(handler));
+        checkBI1(b);
+    }
+
+    private static Object typeInfo(Object config) throws Exception
+    {
+        Object handler = Proxy.getInvocationHandler(config);
+        Field info = handler.getClass().getDeclaredField("info");
+        info.setAccessible(true);
+        return info.get(handler);
+    }
+
 }
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.helper;
+
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.apache.felix.scr.impl.BundleComponentActivator;
+import org.apache.felix.scr.impl.MockBundle;
+import org.apache.felix.scr.impl.config.ComponentContainer;
+import org.apache.felix.scr.impl.manager.ComponentContextImpl;
+import org.apache.felix.scr.impl.manager.RefPair;
+import org.apache.felix.scr.impl.manager.SingleComponentManager;
+import org.apache.felix.scr.impl.manager.SingleRefPair;
+import org.apache.felix.scr.impl.manager.components.FakeService;
+import org.apache.felix.scr.impl.manager.components.T1;
+import org.apache.felix.scr.impl.manager.components.T1MapSR;
+import org.apache.felix.scr.impl.manager.components.T1SO;
+import org.apache.felix.scr.impl.metadata.ComponentMetadata;
+import org.apache.felix.scr.impl.metadata.DSVersion;
+import org.easymock.EasyMock;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceObjects;
+import org.osgi.framework.ServiceReference;
+
+
+/**
+ * Simple benchmark of bind method calls for each supported bind method
+ * signature, reporting the time and, where the JVM can count the bytes
+ * allocated per thread, the bytes allocated per call. The allocation depends
+ * on the JIT and escape analysis, so this is not run as part of the build;
+ * launch it with the test class path:
+ * <pre>
+ * java -cp target/classes:target/test-classes:... org.apache.felix.scr.impl.helper.BindMethodBenchmark
+ * </pre>
+ */
+public class BindMethodBenchmark
+{
+
+    private static final int WARMUP = 20000;
+
+    private static final int ITERATIONS = 200000;
+
+    private static final SimpleLogger QUIET_LOGGER = new SimpleLogger()
+    {
+        public void log( int level, String message, Throwable ex )
+        {
+        }
+
+        public void log( int level, String message, Object[] arguments, Throwable ex )
+        {
+        }
+
+        public boolean isLogEnabled( int level )
+        {
+            return false;
+        }
+    };
+
+    private final ServiceReference<?> m_serviceReference;
+
+    private final BundleContext m_context;
+
+    private final com.sun.management.ThreadMXBean m_threadBean;
+
+
+    public static void main( String[] args )
+    {
+        final BindMethodBenchmark benchmark = new BindMethodBenchmark();
+        benchmark.run( "privateT1SR", new T1(), DSVersion.DS11 );
+        benchmark.run( "privateT1SI", new T1(), DSVersion.DS11 );
+        benchmark.run( "privateT1SSI", new T1(), DSVersion.DS11 );
+        benchmark.run( "privateT1SIMap", new T1(), DSVersion.DS11 );
+        benchmark.run( "privateT1SSIMap", new T1(), DSVersion.DS11 );
+        benchmark.run( "packageT1Map", new T1(), DSVersion.DS13 );
+        benchmark.run( "packageT1MapSR", new T1MapSR(), DSVersion.DS13 );
+        benchmark.run( "packageT1SO", new T1SO(), DSVersion.DS13 );
+        benchmark.run( "packageT1SOSIMapSR", new T1SO(), DSVersion.DS13 );
+    }
+
+
+    private BindMethodBenchmark()
+    {
+        m_serviceReference = EasyMock.createNiceMock( ServiceReference.class );
+        m_context = EasyMock.createNiceMock( BundleContext.class );
+        final ServiceObjects serviceObjects = EasyMock.createNiceMock( ServiceObjects.class );
+        EasyMock.expect( m_context.getService( ( ServiceReference ) m_serviceReference ) )
+            .andReturn( EasyMock.createNiceMock( FakeService.class ) ).anyTimes();
+        EasyMock.expect( m_context.getServiceObjects( ( ServiceReference ) m_serviceReference ) )
+            .andReturn( serviceObjects ).anyTimes();
+        EasyMock.expect( m_serviceReference.getPropertyKeys() ).andReturn( new String[] { Constants.SERVICE_ID } )
+            .anyTimes();
+        EasyMock.expect( m_serviceReference.getProperty( Constants.SERVICE_ID ) ).andReturn( "Fake Service" )
+            .anyTimes();
+        EasyMock.replay( new Object[] { m_serviceReference, m_context } );
+
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if ( bean instanceof com.sun.management.ThreadMXBean
+            && ( ( com.sun.management.ThreadMXBean ) bean ).isThreadAllocatedMemorySupported()
+            && ( ( com.sun.management.ThreadMXBean ) bean ).isThreadAllocatedMemoryEnabled() )
+        {
+            m_threadBean = ( com.sun.management.ThreadMXBean ) bean;
+        }
+        else
+        {
+            m_threadBean = null;
+        }
+    }
+
+
+    private void run( final String methodName, final T1 component, final DSVersion dsVersion )
+    {
+        final SingleComponentManager<T1> icm = new SingleComponentManager<T1>( newContainer(), new ComponentMethods() );
+        final BindMethod bm = new BindMethod( methodName, component.getClass(), FakeService.class.getName(),
+            dsVersion, false );
+        final RefPair refPair = new SingleRefPair( m_serviceReference );
+        final ComponentContextImpl<T1> cc = new ComponentContextImpl<T1>( icm, new MockBundle()
+        {
+            @Override
+            public BundleContext getBundleContext()
+            {
+                return m_context;
+            }
+        } );
+        bm.getServiceObject( cc, refPair, m_context, QUIET_LOGGER );
+        final BindParameters bp = new BindParameters( cc, refPair );
+
+        // resolve the method and let reflection settle on its final accessor
+        for ( int i = 0; i < WARMUP; i++ )
+        {
+            bm.invoke( component, bp, null, QUIET_LOGGER );
+        }
+        if ( !methodName.equals( component.callPerformed ) )
+        {
+            System.out.println( methodName + " (" + dsVersion + "): not called, " + component.callPerformed );
+            return;
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        final long allocated = ( m_threadBean == null ) ? 0 : m_threadBean.getThreadAllocatedBytes( threadId );
+        final long start = System.nanoTime();
+        for ( int i = 0; i < ITERATIONS; i++ )
+        {
+            bm.invoke( component, bp, null, QUIET_LOGGER );
+        }
+        final long duration = System.nanoTime() - start;
+        final String bytes = ( m_threadBean == null ) ? "n/a"
+            : String.valueOf( ( m_threadBean.getThreadAllocatedBytes( threadId ) - allocated ) / ITERATIONS );
+        System.out.println( methodName + " (" + dsVersion + "): " + ( duration / ITERATIONS ) + " ns/op, " + bytes
+            + " bytes/op" );
+    }
+
+
+    private static ComponentContainer<T1> newContainer()
+    {
+        final ComponentMetadata metadata = new ComponentMetadata( DSVersion.DS11 );
+        metadata.setName( "foo" );
+        metadata.setImplementationClassName( Object.class.getName() );
+        metadata.validate( null );
+        return new ComponentContainer<T1>()
+        {
+            public BundleComponentActivator getActivator()
+            {
+                return null;
+            }
+
+            public ComponentMetadata getComponentMetadata()
+            {
+                return metadata;
+            }
+
+            public void disposed( SingleComponentManager<T1> component )
+            {
+            }
+        };
+    }
+}
@@ -31,6 +31,7 @@ import org.apache.felix.scr.impl.manager.SingleRefPair;
 import org.apache.felix.scr.impl.manager.components.FakeService;
 import org.apache.felix.scr.impl.manager.components.T1;
 import org.apache.felix.scr.impl.manager.components.T1MapSR;
+import org.apache.felix.scr.impl.manager.components.T1SO;
 import org.apache.felix.scr.impl.manager.components.T1a;
 import org.apache.felix.scr.impl.manager.components.T3;
 import org.apache.felix.scr.impl.manager.components2.T2;
@@ -40,6 +41,7 @@ import org.apache.felix.scr.impl.metadata.ReferenceMetadata;
 import org.easymock.EasyMock;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceObjects;
 import org.osgi.framework.ServiceReference;
 
 
@@ -57,9 +59,12 @@ public class BindMethodTest extends TestCase
         m_serviceReference = EasyMock.createNiceMock( ServiceReference.class );
         m_serviceInstance = EasyMock.createNiceMock( FakeService.class );
         m_context = EasyMock.createNiceMock( BundleContext.class );
+        final ServiceObjects serviceObjects = EasyMock.createNiceMock( ServiceObjects.class );
 
         EasyMock.expect( m_context.getService( m_serviceReference ) ).andReturn( m_serviceInstance )
                 .anyTimes();
+        EasyMock.expect( m_context.getServiceObjects( m_serviceReference ) ).andReturn( serviceObjects )
+                .anyTimes();
 
         EasyMock.expect( m_serviceReference.getPropertyKeys() ).andReturn( new String[]
             { Constants.SERVICE_ID } ).anyTimes();
@@ -441,6 +446,87 @@ public class BindMethodTest extends TestCase
         //map, sr
         testMethod( "packageT1MapSR", new T1MapSR(), DSVersion.DS12, null);
         testMethod( "packageT1MapSR", new T1MapSR(), DSVersion.DS13, "packageT1MapSR");
+
+        //service objects
+        testMethod( "packageT1SO", new T1SO(), DSVersion.DS12, null);
+        testMethod( "packageT1SO", new T1SO(), DSVersion.DS13, "packageT1SO");
+
+        //service objects, service, map, sr
+        testMethod( "packageT1SOSIMapSR", new T1SO(), DSVersion.DS12, null);
+        testMethod( "packageT1SOSIMapSR", new T1SO(), DSVersion.DS13, "packageT1SOSIMapSR");
+    }
+
+
+    public void test_cachedResolution()
+    {
+        MethodCache.clear();
+
+        BindMethod bm = new BindMethod( "privateT1SR", T1.class, FakeService.class.getName(), DSVersion.DS11, false );
+        testMethod( "privateT1SR", new T1(), DSVersion.DS11, "privateT1SR" );
+        MethodCache.Entry entry = MethodCache.get( T1.class, bm.getMethodSpec() );
+        assertNotNull( entry );
+        assertFalse( entry.isNegative() );
+
+        // keep the method strongly reachable, the cache only holds it weakly
+        final Object method = entry.getMember();
+        assertNotNull( method );
+
+        // a second resolution must restore the parameter types from the cache
+        testMethod( "privateT1SR", new T1(), DSVersion.DS11, "privateT1SR" );
+        assertSame( entry, MethodCache.get( T1.class, bm.getMethodSpec() ) );
+        assertSame( method, entry.getMember() );
+
+        // negative results are cached as well
+        bm = new BindMethod( "privateT1SR", T1.class, FakeService.class.getName(), DSVersion.DS10, false );
+        testMethod( "privateT1SR", new T1(), DSVersion.DS10, null );
+        entry = MethodCache.get( T1.class, bm.getMethodSpec() );
+        assertNotNull( entry );
+        assertTrue( entry.isNegative() );
+
+        MethodCache.clear();
+        assertNull( MethodCache.get( T1.class, bm.getMethodSpec() ) );
+    }
+
+
+    public void test_accessor()
+    {
+        ComponentContainer container = newContainer();
+        SingleComponentManager icm = new SingleComponentManager( container, new ComponentMethods() );
+        BindMethod bm = new BindMethod( "protectedT1SR", T3.class, FakeService.class.getName(), DSVersion.DS11, false );
+        bm.setAccessor( new ComponentAccessor<T1>()
+        {
+            public T1 newInstance()
+            {
+                return new T1();
+            }
+
+            public Object invoke( T1 instance, Class<?> declaringClass, String methodName, Class<?>[] parameterTypes, Object[] parameters )
+            {
+                // the method is inherited, dispatch by the declaring class
+                assertSame( T1.class, declaringClass );
+                assertEquals( 1, parameterTypes.length );
+                assertSame( ServiceReference.class, parameterTypes[0] );
+                assertSame( m_serviceReference, parameters[0] );
+                instance.callPerformed = "accessor " + methodName;
+                return null;
+            }
+
+            public void setField( T1 instance, Class<?> declaringClass, String fieldName, Object value )
+            {
+            }
+
+            public Object getField( T1 instance, Class<?> declaringClass, String fieldName )
+            {
+                return null;
+            }
+        } );
+
+        T1 component = new T3();
+        RefPair refPair = new SingleRefPair( m_serviceReference );
+        ComponentContextImpl<T1> cc = new ComponentContextImpl(icm, new MockBundle());
+        assertTrue( bm.getServiceObject( cc, refPair, m_context, icm ) );
+        bm.invoke( component, new BindParameters( cc, refPair ), null, icm );
+        assertEquals( "accessor protectedT1SR", component.callPerformed );
     }
 
 
@@ -452,13 +538,25 @@ public class BindMethodTest extends TestCase
         BindMethod bm = new BindMethod( methodName, component.getClass(),
                 FakeService.class.getName(), dsVersion, false );
         RefPair refPair = new SingleRefPair( m_serviceReference );
-        ComponentContextImpl<T1> cc = new ComponentContextImpl(icm, new MockBundle());
+        ComponentContextImpl<T1> cc = new ComponentContextImpl(icm, newBundle());
         assertTrue( bm.getServiceObject( cc, refPair, m_context, icm ) );
         BindParameters bp = new BindParameters(cc, refPair);
         bm.invoke( component, bp, null, icm );
         assertEquals( expectCallPerformed, component.callPerformed );
     }
 
+    private MockBundle newBundle()
+    {
+        return new MockBundle()
+        {
+            @Override
+            public BundleContext getBundleContext()
+            {
+                return m_context;
+            }
+        };
+    }
+
     private ComponentContainer newContainer()
     {
         final ComponentMetadata metadata = newMetadata();
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.helper;
+
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.scr.impl.ScrMetrics;
+import org.apache.felix.scr.impl.manager.components.FakeService;
+import org.apache.felix.scr.impl.manager.components.T1;
+
+
+public class ClassUtilsTest extends TestCase
+{
+
+    private static final SimpleLogger LOGGER = new SimpleLogger()
+    {
+        public void log( int level, String message, Throwable ex )
+        {
+        }
+
+        public void log( int level, String message, Object[] arguments, Throwable ex )
+        {
+        }
+
+        public boolean isLogEnabled( int level )
+        {
+            return false;
+        }
+    };
+
+
+    @Override
+    protected void setUp()
+    {
+        ClassUtils.clearClassCache( false );
+    }
+
+
+    public void test_cachedLookup()
+    {
+        final long hits = ScrMetrics.get( ScrMetrics.Counter.CLASS_LOOKUP_CACHE_HITS );
+
+        assertSame( FakeService.class,
+            ClassUtils.getClassFromComponentClassLoader( T1.class, FakeService.class.getName(), LOGGER ) );
+        assertEquals( hits, ScrMetrics.get( ScrMetrics.Counter.CLASS_LOOKUP_CACHE_HITS ) );
+
+        assertSame( FakeService.class,
+            ClassUtils.getClassFromComponentClassLoader( T1.class, FakeService.class.getName(), LOGGER ) );
+        assertEquals( hits + 1, ScrMetrics.get( ScrMetrics.Counter.CLASS_LOOKUP_CACHE_HITS ) );
+    }
+
+
+    public void test_clearCache()
+    {
+        final long hits = ScrMetrics.get( ScrMetrics.Counter.CLASS_LOOKUP_CACHE_HITS );
+        ClassUtils.getClassFromComponentClassLoader( T1.class, FakeService.class.getName(), LOGGER );
+
+        // dropping negative entries keeps the classes found
+        ClassUtils.clearClassCache( true );
+        ClassUtils.getClassFromComponentClassLoader( T1.class, FakeService.class.getName(), LOGGER );
+        assertEquals( hits + 1, ScrMetrics.get( ScrMetrics.Counter.CLASS_LOOKUP_CACHE_HITS ) );
+
+        ClassUtils.clearClassCache( false );
+        ClassUtils.getClassFromComponentClassLoader( T1.class, FakeService.class.getName(), LOGGER );
+        assertEquals( hits + 1, ScrMetrics.get( ScrMetrics.Counter.CLASS_LOOKUP_CACHE_HITS ) );
+    }
+
+
+    public void test_cacheReleasesClassLoader() throws Exception
+    {
+        // the service class is loaded by the class loader of the component class
+        final URL classes = FakeService.class.getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader loader = new URLClassLoader( new URL[] { classes }, null );
+        Class<?> componentClass = loader.loadClass( FakeService.class.getName() );
+        assertSame( componentClass,
+            ClassUtils.getClassFromComponentClassLoader( componentClass, FakeService.class.getName(), LOGGER ) );
+
+        final WeakReference<ClassLoader> ref = new WeakReference<ClassLoader>( loader );
+        loader = null;
+        componentClass = null;
+        for ( int i = 0; i < 10 && ref.get() != null; i++ )
+        {
+            System.gc();
+            Thread.sleep( 10 );
+        }
+        assertNull( ref.get() );
+    }
+}
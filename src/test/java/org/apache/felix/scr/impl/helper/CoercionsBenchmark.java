@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.helper;
+
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Simple benchmark of the common conversions of configuration values to
+ * component property type members. This is not run as part of the build;
+ * launch it with the test class path:
+ * <pre>
+ * java -cp target/classes:target/test-classes:... org.apache.felix.scr.impl.helper.CoercionsBenchmark
+ * </pre>
+ */
+public class CoercionsBenchmark
+{
+
+    private static final int WARMUP = 200000;
+
+    private static final int ITERATIONS = 2000000;
+
+    private static volatile Object sink;
+
+
+    public static void main( String[] args )
+    {
+        final String[] strings = new String[] { "1", "2", "3", "4", "5", "6", "7", "8" };
+        final List<String> list = Arrays.asList( strings );
+        final Coercions.Converter intConverter = Coercions.getConverter( int.class );
+        final Coercions.Converter longConverter = Coercions.getConverter( long.class );
+        final Coercions.Converter booleanConverter = Coercions.getConverter( boolean.class );
+
+        for ( int round = 0; round < 2; round++ )
+        {
+            final boolean report = round > 0;
+            final int iterations = report ? ITERATIONS : WARMUP;
+
+            run( "String -> int", report, iterations, new Runnable()
+            {
+                public void run()
+                {
+                    sink = intConverter.convert( "42", null );
+                }
+            } );
+            run( "String -> long", report, iterations, new Runnable()
+            {
+                public void run()
+                {
+                    sink = longConverter.convert( "42", null );
+                }
+            } );
+            run( "String -> boolean", report, iterations, new Runnable()
+            {
+                public void run()
+                {
+                    sink = booleanConverter.convert( "true", null );
+                }
+            } );
+            run( "String[8] -> int[]", report, iterations, new Runnable()
+            {
+                public void run()
+                {
+                    sink = intConverter.convertArray( strings, null );
+                }
+            } );
+            run( "List<String>(8) -> int[]", report, iterations, new Runnable()
+            {
+                public void run()
+                {
+                    sink = intConverter.convertArray( list, null );
+                }
+            } );
+            run( "String[8] -> Integer[] (Coercions.coerce per element)", report, iterations, new Runnable()
+            {
+                public void run()
+                {
+                    final Integer[] result = new Integer[strings.length];
+                    for ( int i = 0; i < strings.length; i++ )
+                    {
+                        result[i] = ( Integer ) Coercions.coerce( Integer.class, strings[i], null );
+                    }
+                    sink = result;
+                }
+            } );
+        }
+    }
+
+
+    private static void run( final String name, final boolean report, final int iterations, final Runnable op )
+    {
+        final long start = System.nanoTime();
+        for ( int i = 0; i < iterations; i++ )
+        {
+            op.run();
+        }
+        final long duration = System.nanoTime() - start;
+        if ( report )
+        {
+            System.out.println( name + ": " + ( duration / iterations ) + " ns/op" );
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.helper;
+
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.osgi.service.component.ComponentException;
+
+
+public class CoercionsTest extends TestCase
+{
+
+    public enum E { a, b }
+
+
+    public void test_primitiveArrays()
+    {
+        final Coercions.Converter converter = Coercions.getConverter( int.class );
+        assertTrue( Arrays.equals( new int[] { 1, 2, 3 },
+            ( int[] ) converter.convertArray( new String[] { "1", "2", "3" }, null ) ) );
+        assertTrue( Arrays.equals( new int[] { 1, 2 },
+            ( int[] ) converter.convertArray( Arrays.asList( "1", Long.valueOf( 2 ) ), null ) ) );
+        assertTrue( Arrays.equals( new int[] { 7 }, ( int[] ) converter.convertArray( "7", null ) ) );
+        assertTrue( Arrays.equals( new int[] { 1, 0 },
+            ( int[] ) converter.convertArray( new boolean[] { true, false }, null ) ) );
+        assertNull( converter.convertArray( null, null ) );
+
+        final int[] source = new int[] { 4, 5 };
+        final int[] copy = ( int[] ) converter.convertArray( source, null );
+        assertNotSame( source, copy );
+        assertTrue( Arrays.equals( source, copy ) );
+
+        assertTrue( Arrays.equals( new double[] { 1.5d },
+            ( double[] ) Coercions.getConverter( double.class ).convertArray( new Object[] { "1.5" }, null ) ) );
+        assertTrue( Arrays.equals( new char[] { 'x', 'y' },
+            ( char[] ) Coercions.getConverter( char.class ).convertArray( new String[] { "x", "y" }, null ) ) );
+    }
+
+
+    public void test_objectArrays()
+    {
+        final Integer[] integers = ( Integer[] ) Coercions.getConverter( Integer.class ).convertArray(
+            new String[] { "1", "2" }, null );
+        assertTrue( Arrays.equals( new Integer[] { 1, 2 }, integers ) );
+
+        final E[] enums = ( E[] ) Coercions.getConverter( E.class ).convertArray( Arrays.asList( "b", "a" ), null );
+        assertTrue( Arrays.equals( new E[] { E.b, E.a }, enums ) );
+
+        final String[] strings = ( String[] ) Coercions.getConverter( String.class ).convertArray( 12, null );
+        assertTrue( Arrays.equals( new String[] { "12" }, strings ) );
+    }
+
+
+    public void test_scalars()
+    {
+        assertEquals( Integer.valueOf( 3 ), Coercions.coerce( int.class, "3", null ) );
+        assertEquals( Long.valueOf( 3 ), Coercions.coerce( Long.class, new String[] { "3", "4" }, null ) );
+        assertEquals( Boolean.TRUE, Coercions.coerce( boolean.class, "true", null ) );
+        assertEquals( E.b, Coercions.coerce( E.class, "b", null ) );
+
+        try
+        {
+            Coercions.coerce( int.class, "x", null );
+            fail( "expected ComponentException" );
+        }
+        catch ( ComponentException ce )
+        {
+            // expected
+        }
+
+        try
+        {
+            Coercions.getConverter( Object.class ).convert( "x", null );
+            fail( "expected ComponentException" );
+        }
+        catch ( ComponentException ce )
+        {
+            // expected
+        }
+    }
+}
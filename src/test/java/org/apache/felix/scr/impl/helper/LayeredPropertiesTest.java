@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.helper;
+
+
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+
+public class LayeredPropertiesTest extends TestCase
+{
+
+    public void test_layering()
+    {
+        final Map<String, Object> metadata = new HashMap<String, Object>();
+        metadata.put( "a", "metadata" );
+        metadata.put( "b", "metadata" );
+        final Hashtable<String, Object> config = new Hashtable<String, Object>();
+        config.put( "b", "config" );
+        config.put( "c", "config" );
+
+        final LayeredProperties base = new LayeredProperties( metadata );
+        final LayeredProperties props = base.with( config ).with( "c", "override" );
+
+        assertEquals( "metadata", props.get( "a" ) );
+        assertEquals( "config", props.get( "b" ) );
+        assertEquals( "override", props.get( "c" ) );
+        assertNull( props.get( "d" ) );
+        assertFalse( props.containsKey( "d" ) );
+        assertEquals( 3, props.size() );
+
+        final Map<String, Object> expected = new HashMap<String, Object>();
+        expected.put( "a", "metadata" );
+        expected.put( "b", "config" );
+        expected.put( "c", "override" );
+        assertEquals( expected, props );
+        assertEquals( expected, new HashMap<String, Object>( props ) );
+
+        // lower layers are not affected
+        assertEquals( 2, base.size() );
+        assertEquals( "metadata", base.get( "b" ) );
+
+        // layering layered properties reuses their layers
+        assertEquals( expected, new LayeredProperties( props ) );
+        assertSame( base, base.with( new HashMap<String, Object>() ) );
+    }
+
+
+    public void test_readOnly()
+    {
+        final Map<String, Object> metadata = new HashMap<String, Object>();
+        metadata.put( "a", "metadata" );
+        final LayeredProperties props = new LayeredProperties( metadata );
+        try
+        {
+            props.put( "a", "b" );
+            fail( "Expected UnsupportedOperationException" );
+        }
+        catch ( UnsupportedOperationException e )
+        {
+            // expected
+        }
+        try
+        {
+            props.keySet().remove( "a" );
+            fail( "Expected UnsupportedOperationException" );
+        }
+        catch ( UnsupportedOperationException e )
+        {
+            // expected
+        }
+        assertTrue( new LayeredProperties().isEmpty() );
+        assertEquals( "metadata", new ReadOnlyDictionary<String, Object>( props ).get( "a" ) );
+    }
+
+
+    public void test_contentEquals()
+    {
+        final Map<String, Object> config = new HashMap<String, Object>();
+        config.put( "a", "1" );
+        config.put( "b", new String[] { "x", "y" } );
+        config.put( "c", new int[] { 1, 2 } );
+        final Hashtable<String, Object> same = new Hashtable<String, Object>();
+        same.put( "a", "1" );
+        same.put( "b", new String[] { "x", "y" } );
+        same.put( "c", new int[] { 1, 2 } );
+
+        final LayeredProperties props = new LayeredProperties( config ).with( "d", "2" );
+        final LayeredProperties other = new LayeredProperties( same ).with( "d", "2" );
+        assertEquals( props.fingerprint(), other.fingerprint() );
+        assertTrue( LayeredProperties.contentEquals( props, other ) );
+        assertEquals( LayeredProperties.fingerprint( config ), LayeredProperties.fingerprint( same ) );
+        assertTrue( LayeredProperties.contentEquals( config, same ) );
+
+        same.put( "c", new int[] { 1, 3 } );
+        assertFalse( LayeredProperties.contentEquals( config, same ) );
+        assertFalse( LayeredProperties.contentEquals( props, new LayeredProperties( same ).with( "d", "2" ) ) );
+        assertFalse( LayeredProperties.contentEquals( props, props.with( "d", "3" ) ) );
+        assertFalse( LayeredProperties.contentEquals( props, null ) );
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.helper;
+
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.scr.impl.manager.RefPair;
+import org.apache.felix.scr.impl.manager.SingleRefPair;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceReference;
+
+
+public class RankedValuesTest extends TestCase
+{
+
+    public void test_ordering()
+    {
+        final RankedValues values = new RankedValues();
+        final RefPair<?, ?> r1 = refPair( 1, 0 );
+        final RefPair<?, ?> r2 = refPair( 2, 10 );
+        final RefPair<?, ?> r3 = refPair( 3, 0 );
+
+        values.put( r3, "3" );
+        values.put( r1, "1" );
+        values.put( r2, "2" );
+        assertEquals( 3, values.size() );
+
+        // lower ranking first, same ranking: higher service id first
+        assertEquals( Arrays.asList( "3", "1", "2" ), values.toList() );
+
+        assertEquals( "1", values.put( r1, "1a" ) );
+        assertEquals( Arrays.asList( "3", "1a", "2" ), values.toList() );
+
+        assertEquals( "3", values.remove( r3 ) );
+        assertNull( values.remove( r3 ) );
+        assertEquals( Arrays.asList( "1a", "2" ), values.toList() );
+    }
+
+
+    public void test_rankingChange()
+    {
+        final RankedValues values = new RankedValues();
+        final TestReference ref = new TestReference( 1, 0 );
+        final RefPair<?, ?> r1 = new SingleRefPair<Object, Object>( ref );
+        final RefPair<?, ?> r2 = refPair( 2, 5 );
+
+        values.put( r1, "1" );
+        values.put( r2, "2" );
+        assertEquals( Arrays.asList( "1", "2" ), values.toList() );
+
+        // the value is moved according to the new ranking
+        ref.ranking = 10;
+        assertEquals( "1", values.put( r1, "1a" ) );
+        assertEquals( Arrays.asList( "2", "1a" ), values.toList() );
+
+        ref.ranking = -10;
+        assertEquals( "1a", values.remove( r1 ) );
+        assertEquals( Arrays.asList( "2" ), values.toList() );
+    }
+
+
+    private RefPair<?, ?> refPair( final long id, final int ranking )
+    {
+        return new SingleRefPair<Object, Object>( new TestReference( id, ranking ) );
+    }
+
+    private static class TestReference implements ServiceReference<Object>
+    {
+        private final long id;
+        int ranking;
+
+
+        TestReference( final long id, final int ranking )
+        {
+            this.id = id;
+            this.ranking = ranking;
+        }
+
+
+        public Object getProperty( String key )
+        {
+            return null;
+        }
+
+
+        public String[] getPropertyKeys()
+        {
+            return new String[0];
+        }
+
+
+        public Bundle getBundle()
+        {
+            return null;
+        }
+
+
+        public Bundle[] getUsingBundles()
+        {
+            return null;
+        }
+
+
+        public boolean isAssignableTo( Bundle bundle, String className )
+        {
+            return true;
+        }
+
+
+        // same ordering as defined by ServiceReference.compareTo
+        public int compareTo( Object reference )
+        {
+            final TestReference other = ( TestReference ) reference;
+            if ( id == other.id )
+            {
+                return 0;
+            }
+            if ( ranking != other.ranking )
+            {
+                return ( ranking < other.ranking ) ? -1 : 1;
+            }
+            return ( id > other.id ) ? -1 : 1;
+        }
+    }
+}
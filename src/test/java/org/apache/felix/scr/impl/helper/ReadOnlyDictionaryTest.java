@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.helper;
+
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceReference;
+
+
+public class ReadOnlyDictionaryTest extends TestCase
+{
+
+    public void test_referenceView()
+    {
+        final TestReference ref = new TestReference();
+        ref.properties.put( "a", "1" );
+        final ReadOnlyDictionary<String, Object> view = new ReadOnlyDictionary<String, Object>( ref );
+        final ReadOnlyDictionary<String, Object> snapshot = view.snapshot();
+
+        assertEquals( "1", view.get( "a" ) );
+        assertEquals( 1, view.size() );
+        assertEquals( "1", snapshot.get( "a" ) );
+
+        // lookups read through to the reference without collecting the properties
+        final int keysCalls = ref.keysCalls;
+        assertTrue( view.containsKey( "a" ) );
+        assertFalse( view.containsKey( "x" ) );
+        assertEquals( keysCalls, ref.keysCalls );
+        assertEquals( 1, view.keySet().size() );
+        assertEquals( 1, view.entrySet().size() );
+        assertEquals( keysCalls + 1, ref.keysCalls );
+
+        // lookups see a modification at once, iteration once reset
+        ref.properties.put( "a", "2" );
+        ref.properties.put( "b", "3" );
+        assertEquals( "2", view.get( "a" ) );
+        assertEquals( "3", view.get( "b" ) );
+        assertTrue( view.containsKey( "b" ) );
+        assertEquals( 2, view.size() );
+        assertFalse( view.keySet().contains( "b" ) );
+        view.reset();
+        assertTrue( view.keySet().contains( "b" ) );
+        assertEquals( "3", view.snapshot().get( "b" ) );
+
+        // the snapshot is stable
+        assertEquals( "1", snapshot.get( "a" ) );
+        assertNull( snapshot.get( "b" ) );
+        assertEquals( 1, snapshot.size() );
+
+        assertEquals( 0, view.compareTo( snapshot ) );
+        try
+        {
+            view.put( "c", "4" );
+            fail( "Expected UnsupportedOperationException" );
+        }
+        catch ( UnsupportedOperationException e )
+        {
+            // expected
+        }
+    }
+
+
+    public void test_mapView()
+    {
+        final Map<String, Object> map = new HashMap<String, Object>();
+        map.put( "a", "1" );
+        final ReadOnlyDictionary<String, Object> view = new ReadOnlyDictionary<String, Object>( map );
+        final ReadOnlyDictionary<String, Object> snapshot = view.snapshot();
+        map.put( "a", "2" );
+        assertEquals( "2", view.get( "a" ) );
+        assertEquals( "1", snapshot.get( "a" ) );
+        assertSame( snapshot, snapshot.snapshot() );
+
+        // layered properties are immutable and need no copy
+        final ReadOnlyDictionary<String, Object> layered = new ReadOnlyDictionary<String, Object>( new LayeredProperties( snapshot ) );
+        assertSame( layered, layered.snapshot() );
+    }
+
+
+    private static class TestReference implements ServiceReference<Object>
+    {
+        final Map<String, Object> properties = new HashMap<String, Object>();
+
+        int keysCalls;
+
+
+        public Object getProperty( String key )
+        {
+            return properties.get( key );
+        }
+
+
+        public String[] getPropertyKeys()
+        {
+            keysCalls++;
+            return properties.keySet().toArray( new String[properties.size()] );
+        }
+
+
+        public Bundle getBundle()
+        {
+            return null;
+        }
+
+
+        public Bundle[] getUsingBundles()
+        {
+            return null;
+        }
+
+
+        public boolean isAssignableTo( Bundle bundle, String className )
+        {
+            return true;
+        }
+
+
+        public int compareTo( Object reference )
+        {
+            return 0;
+        }
+    }
+}
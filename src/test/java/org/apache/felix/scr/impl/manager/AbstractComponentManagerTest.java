@@ -18,11 +18,27 @@
  */
 package org.apache.felix.scr.impl.manager;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 
 import junit.framework.TestCase;
 
+import org.apache.felix.scr.impl.BundleComponentActivator;
+import org.apache.felix.scr.impl.config.ComponentContainer;
+import org.apache.felix.scr.impl.config.ComponentManager;
+import org.apache.felix.scr.impl.helper.ComponentMethods;
+import org.apache.felix.scr.impl.metadata.ComponentMetadata;
+import org.apache.felix.scr.impl.metadata.DSVersion;
+import org.apache.felix.scr.info.ComponentStateEvent;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
 public class AbstractComponentManagerTest extends TestCase
 {
 
@@ -53,4 +69,96 @@ public class AbstractComponentManagerTest extends TestCase
         assertEquals( "Value for key p.2", "v2", dict.get( "p.2" ) );
     }
 
+    @SuppressWarnings("unchecked")
+    public void test_stateChanged_concurrentTransitions() throws Exception
+    {
+        final ComponentMetadata metadata = new ComponentMetadata( DSVersion.DS13 );
+        metadata.setImplementationClassName( "foo.bar.SomeClass" );
+        metadata.validate( null );
+
+        // records the reported transitions in the order they are reported
+        final List<int[]> reports = Collections.synchronizedList( new ArrayList<int[]>() );
+        final BundleComponentActivator activator = Mockito.mock( BundleComponentActivator.class );
+        Mockito.doAnswer( new Answer<Object>()
+        {
+            public Object answer( InvocationOnMock invocation )
+            {
+                final Object[] args = invocation.getArguments();
+                reports.add( new int[] { ( Integer ) args[1], ( Integer ) args[2] } );
+                return null;
+            }
+        } ).when( activator ).componentStateChanged( Mockito.any( AbstractComponentManager.class ), Mockito.anyInt(),
+            Mockito.anyInt(), Mockito.anyInt() );
+        final ComponentContainer<Object> container = Mockito.mock( ComponentContainer.class );
+        Mockito.when( container.getComponentMetadata() ).thenReturn( metadata );
+        Mockito.when( container.getActivator() ).thenReturn( activator );
+
+        final int[] states = { ComponentManager.STATE_UNSATISFIED_REFERENCE, ComponentManager.STATE_SATISFIED,
+            ComponentManager.STATE_ACTIVE };
+        final TransitioningComponentManager manager = new TransitioningComponentManager( container );
+
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final List<Thread> threads = new ArrayList<Thread>();
+        for ( int t = 0; t < 4; t++ )
+        {
+            final Random random = new Random( t );
+            final Thread thread = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        return;
+                    }
+                    for ( int i = 0; i < 5000; i++ )
+                    {
+                        manager.state = states[random.nextInt( states.length )];
+                        manager.stateChanged( ComponentStateEvent.REASON_UNSPECIFIED );
+                    }
+                }
+            };
+            threads.add( thread );
+            thread.start();
+        }
+        start.countDown();
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        // each transition starts from the previously reported state and the
+        // last reported state is the current state
+        int reported = ComponentManager.STATE_DISABLED;
+        for ( int[] report : reports )
+        {
+            assertEquals( reported, report[0] );
+            assertTrue( report[0] != report[1] );
+            reported = report[1];
+        }
+        assertEquals( manager.getState(), reported );
+    }
+
+
+    private static class TransitioningComponentManager extends SingleComponentManager<Object>
+    {
+        volatile int state = ComponentManager.STATE_DISABLED;
+
+
+        TransitioningComponentManager( final ComponentContainer<Object> container )
+        {
+            super( container, new ComponentMethods() );
+        }
+
+
+        @Override
+        public int getState()
+        {
+            return state;
+        }
+    }
+
 }
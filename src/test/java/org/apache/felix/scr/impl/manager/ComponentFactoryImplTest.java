@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.manager;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.scr.component.ExtComponentFactory;
+import org.apache.felix.scr.impl.BundleComponentActivator;
+import org.apache.felix.scr.impl.config.ComponentContainer;
+import org.apache.felix.scr.impl.config.ScrConfiguration;
+import org.apache.felix.scr.impl.metadata.ComponentMetadata;
+import org.apache.felix.scr.impl.metadata.DSVersion;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.ComponentConstants;
+import org.osgi.service.component.ComponentInstance;
+
+
+public class ComponentFactoryImplTest extends TestCase
+{
+
+    private BundleComponentActivator activator;
+
+    private ComponentFactoryImpl<Object> factory;
+
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        factory = createFactory( createMetadata() );
+    }
+
+
+    private static ComponentMetadata createMetadata()
+    {
+        final ComponentMetadata metadata = new ComponentMetadata( DSVersion.DS13 );
+        metadata.setName( "factory.component" );
+        metadata.setFactoryIdentifier( "factory" );
+        metadata.setImplementationClassName( FactoryComponent.class.getName() );
+        return metadata;
+    }
+
+
+    private static ComponentMetadata createPoolMetadata( final String modified, final long idleTimeout )
+    {
+        final ComponentMetadata metadata = createMetadata();
+        metadata.setModified( modified );
+        metadata.setFactoryInstancePoolSize( 1 );
+        metadata.setFactoryInstancePoolIdleTimeout( idleTimeout );
+        return metadata;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private ComponentFactoryImpl<Object> createFactory( final ComponentMetadata metadata ) throws Exception
+    {
+        metadata.validate( null );
+
+        final Bundle bundle = Mockito.mock( Bundle.class );
+        Mockito.doReturn( FactoryComponent.class ).when( bundle ).loadClass( FactoryComponent.class.getName() );
+        final BundleContext context = Mockito.mock( BundleContext.class );
+        Mockito.when( context.getBundle() ).thenReturn( bundle );
+        Mockito.when( bundle.getBundleContext() ).thenReturn( context );
+
+        final ScrConfiguration configuration = Mockito.mock( ScrConfiguration.class );
+        Mockito.when( configuration.lockTimeout() ).thenReturn( 5000L );
+        activator = Mockito.mock( BundleComponentActivator.class );
+        Mockito.when( activator.isActive() ).thenReturn( true );
+        Mockito.when( activator.getBundleContext() ).thenReturn( context );
+        Mockito.when( activator.getConfiguration() ).thenReturn( configuration );
+
+        final ComponentContainer<Object> container = Mockito.mock( ComponentContainer.class );
+        Mockito.when( container.getComponentMetadata() ).thenReturn( metadata );
+        Mockito.when( container.getActivator() ).thenReturn( activator );
+
+        return new ComponentFactoryImpl<Object>( container );
+    }
+
+
+    public void test_newInstances()
+    {
+        final List<ExtComponentFactory.Result> results = factory.newInstances( Arrays.asList(
+            properties( "first", false ), properties( "failing", true ), null ) );
+
+        assertEquals( 3, results.size() );
+        assertNull( results.get( 0 ).getException() );
+        assertEquals( "first", ( ( FactoryComponent ) results.get( 0 ).getComponentInstance().getInstance() ).name );
+        assertNull( results.get( 1 ).getComponentInstance() );
+        assertNotNull( results.get( 1 ).getException() );
+        assertNull( results.get( 2 ).getException() );
+        assertNotNull( results.get( 2 ).getComponentInstance().getInstance() );
+
+        // only the activated instances are kept by the factory
+        assertEquals( 2, getComponentManagers().size() );
+
+        results.get( 0 ).getComponentInstance().dispose();
+        assertEquals( 1, getComponentManagers().size() );
+    }
+
+
+    public void test_pool_reuse() throws Exception
+    {
+        factory = createFactory( createPoolMetadata( "modified", 60000L ) );
+
+        final ComponentInstance first = factory.newInstance( properties( "first", false ) );
+        final FactoryComponent component = ( FactoryComponent ) first.getInstance();
+        first.dispose();
+        assertNull( first.getInstance() );
+        assertFalse( component.deactivated );
+
+        // the pooled instance is still an active component of the factory
+        assertEquals( 1, getComponentManagers().size() );
+
+        final ComponentInstance second = factory.newInstance( properties( "second", false ) );
+        assertSame( component, second.getInstance() );
+        assertEquals( "second", component.name );
+        assertEquals( 1, component.modifications );
+        assertEquals( 1, getComponentManagers().size() );
+    }
+
+
+    public void test_pool_modified_failure() throws Exception
+    {
+        // the modified method cannot be found, so the pooled instance cannot be reused
+        factory = createFactory( createPoolMetadata( "missing", 60000L ) );
+
+        final ComponentInstance first = factory.newInstance( properties( "first", false ) );
+        final FactoryComponent component = ( FactoryComponent ) first.getInstance();
+        first.dispose();
+
+        final ComponentInstance second = factory.newInstance( properties( "second", false ) );
+        assertNotSame( component, second.getInstance() );
+        assertEquals( "second", ( ( FactoryComponent ) second.getInstance() ).name );
+        assertTrue( component.deactivated );
+        assertEquals( 1, getComponentManagers().size() );
+    }
+
+
+    public void test_pool_idle_eviction() throws Exception
+    {
+        factory = createFactory( createPoolMetadata( "modified", 1L ) );
+
+        final ComponentInstance first = factory.newInstance( properties( "first", false ) );
+        final FactoryComponent component = ( FactoryComponent ) first.getInstance();
+        first.dispose();
+        assertFalse( component.deactivated );
+
+        // the eviction is scheduled with the idle timeout on the component actor
+        final ArgumentCaptor<Runnable> eviction = ArgumentCaptor.forClass( Runnable.class );
+        Mockito.verify( activator ).schedule( eviction.capture(), Mockito.eq( 1L ) );
+
+        Thread.sleep( 10 );
+        eviction.getValue().run();
+        assertTrue( component.deactivated );
+        assertEquals( 0, getComponentManagers().size() );
+    }
+
+
+    public void test_pool_dispose_while_pooled() throws Exception
+    {
+        factory = createFactory( createPoolMetadata( "modified", 60000L ) );
+
+        final ComponentInstance first = factory.newInstance( properties( "first", false ) );
+        final FactoryComponent component = ( FactoryComponent ) first.getInstance();
+        first.dispose();
+
+        // disposing the pooled component manager removes it from the pool
+        getComponentManagers().get( 0 ).dispose();
+        assertTrue( component.deactivated );
+        assertEquals( 0, getComponentManagers().size() );
+
+        final ComponentInstance second = factory.newInstance( properties( "second", false ) );
+        final FactoryComponent other = ( FactoryComponent ) second.getInstance();
+        assertNotSame( component, other );
+
+        // disposing the factory disposes the pooled instances
+        second.dispose();
+        factory.dispose( ComponentConstants.DEACTIVATION_REASON_DISPOSED );
+        assertTrue( other.deactivated );
+        assertEquals( 0, getComponentManagers().size() );
+    }
+
+
+    private List<AbstractComponentManager<Object>> getComponentManagers()
+    {
+        final List<AbstractComponentManager<Object>> cms = new ArrayList<AbstractComponentManager<Object>>();
+        factory.getComponentManagers( cms );
+        return cms;
+    }
+
+
+    private static Dictionary<String, Object> properties( final String name, final boolean fail )
+    {
+        final Dictionary<String, Object> properties = new Hashtable<String, Object>();
+        properties.put( "name", name );
+        properties.put( "fail", fail );
+        return properties;
+    }
+
+
+    public static class FactoryComponent
+    {
+        String name;
+
+        int modifications;
+
+        boolean deactivated;
+
+
+        protected void activate( final Map<String, Object> properties )
+        {
+            if ( Boolean.TRUE.equals( properties.get( "fail" ) ) )
+            {
+                throw new IllegalStateException( "failing activation" );
+            }
+            name = ( String ) properties.get( "name" );
+        }
+
+
+        protected void modified( final Map<String, Object> properties )
+        {
+            name = ( String ) properties.get( "name" );
+            modifications++;
+        }
+
+
+        protected void deactivate()
+        {
+            deactivated = true;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.manager;
+
+
+import junit.framework.TestCase;
+
+import org.apache.felix.scr.impl.ScrMetrics;
+
+
+public class ComponentStatisticsTest extends TestCase
+{
+
+    public void test_statistics()
+    {
+        ScrMetrics.reset();
+        final ComponentStatistics stats = new ComponentStatistics();
+        stats.activated( 10 );
+        stats.activated( 30 );
+        stats.deactivated();
+        stats.bound();
+        stats.bound();
+        stats.unbound();
+        stats.staticReactivation();
+
+        assertEquals( 2, stats.getActivationCount() );
+        assertEquals( 40, stats.getTotalActivationTime() );
+        assertEquals( 20, stats.getAverageActivationTime() );
+        assertEquals( 30, stats.getMaxActivationTime() );
+        assertEquals( 1, stats.getDeactivationCount() );
+        assertEquals( 2, stats.getBindCount() );
+        assertEquals( 1, stats.getUnbindCount() );
+        assertEquals( 1, stats.getStaticReactivationCount() );
+        assertEquals( 2, ScrMetrics.get( ScrMetrics.Counter.COMPONENT_ACTIVATIONS ) );
+        assertEquals( 1, ScrMetrics.get( ScrMetrics.Counter.COMPONENT_DEACTIVATIONS ) );
+        assertEquals( 2, ScrMetrics.get( ScrMetrics.Counter.REFERENCE_BINDS ) );
+        assertEquals( 1, ScrMetrics.get( ScrMetrics.Counter.REFERENCE_UNBINDS ) );
+        assertEquals( 1, ScrMetrics.get( ScrMetrics.Counter.STATIC_REACTIVATIONS ) );
+    }
+
+
+    public void test_unsatisfiedTime() throws Exception
+    {
+        final ComponentStatistics stats = new ComponentStatistics();
+        assertEquals( 0, stats.getUnsatisfiedTime() );
+
+        stats.unsatisfied( true );
+        Thread.sleep( 5 );
+        // repeated reports do not restart the period
+        stats.unsatisfied( true );
+        final long ongoing = stats.getUnsatisfiedTime();
+        assertTrue( ongoing >= 5000000L );
+
+        stats.unsatisfied( false );
+        final long total = stats.getUnsatisfiedTime();
+        assertTrue( total >= ongoing );
+        Thread.sleep( 2 );
+        assertEquals( total, stats.getUnsatisfiedTime() );
+    }
+
+
+    public void test_enableToActiveTime() throws Exception
+    {
+        final ComponentStatistics stats = new ComponentStatistics();
+        assertEquals( -1, stats.getEnableToActiveTime() );
+        stats.active();
+        assertEquals( -1, stats.getEnableToActiveTime() );
+
+        stats.enabled();
+        Thread.sleep( 2 );
+        stats.active();
+        final long time = stats.getEnableToActiveTime();
+        assertTrue( time >= 2000000L );
+        // only the first activation after enabling counts
+        Thread.sleep( 2 );
+        stats.active();
+        assertEquals( time, stats.getEnableToActiveTime() );
+
+        stats.enabled();
+        assertEquals( -1, stats.getEnableToActiveTime() );
+    }
+
+
+    public void test_satisfiedTimestamp() throws Exception
+    {
+        final ComponentStatistics stats = new ComponentStatistics();
+        assertEquals( -1, stats.getSatisfiedTimestamp() );
+
+        stats.enabled();
+        stats.satisfied();
+        final long satisfiedAt = stats.getSatisfiedTimestamp();
+        assertTrue( satisfiedAt >= stats.getEnabledTimestamp() );
+        // a delayed component becomes active later, the first satisfaction counts
+        Thread.sleep( 2 );
+        stats.satisfied();
+        stats.active();
+        assertEquals( satisfiedAt, stats.getSatisfiedTimestamp() );
+        assertTrue( stats.getActiveTimestamp() - satisfiedAt >= 2000000L );
+
+        stats.enabled();
+        assertEquals( -1, stats.getSatisfiedTimestamp() );
+    }
+}
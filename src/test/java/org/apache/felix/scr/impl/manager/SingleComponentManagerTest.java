@@ -19,20 +19,31 @@
 package org.apache.felix.scr.impl.manager;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.lang.reflect.Field;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.felix.scr.impl.ScrMetrics;
 import org.apache.felix.scr.impl.config.ComponentContainer;
 import org.apache.felix.scr.impl.helper.ComponentMethods;
+import org.apache.felix.scr.impl.helper.MethodResult;
 import org.apache.felix.scr.impl.metadata.ComponentMetadata;
 import org.apache.felix.scr.impl.metadata.DSVersion;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
 
 public class SingleComponentManagerTest
 {
@@ -103,4 +114,103 @@ public class SingleComponentManagerTest
         AtomicInteger use = (AtomicInteger) u.get(scm);
         assertEquals(0, use.get());
     }
+
+    @Test
+    public void testServicePropertiesMatches() throws Exception
+    {
+        // a registered service reference carries the framework properties
+        ServiceReference<?> ref = Mockito.mock(ServiceReference.class);
+        Mockito.when(ref.getPropertyKeys()).thenReturn(new String[] {Constants.OBJECTCLASS, Constants.SERVICE_ID,
+            Constants.SERVICE_BUNDLEID, Constants.SERVICE_SCOPE, "component.name", "component.id", "ports"});
+        Mockito.when(ref.getProperty(Constants.OBJECTCLASS)).thenReturn(new String[] {"foo.Service"});
+        Mockito.when(ref.getProperty(Constants.SERVICE_ID)).thenReturn(12L);
+        Mockito.when(ref.getProperty(Constants.SERVICE_BUNDLEID)).thenReturn(3L);
+        Mockito.when(ref.getProperty(Constants.SERVICE_SCOPE)).thenReturn(Constants.SCOPE_SINGLETON);
+        Mockito.when(ref.getProperty("component.name")).thenReturn("foo");
+        Mockito.when(ref.getProperty("component.id")).thenReturn(5L);
+        Mockito.when(ref.getProperty("ports")).thenReturn(new int[] {80, 443});
+
+        Dictionary<String, Object> props = new Hashtable<String, Object>();
+        props.put("component.name", "foo");
+        props.put("component.id", 5L);
+        props.put("ports", new int[] {80, 443});
+        assertTrue(SingleComponentManager.servicePropertiesMatches(ref, props));
+
+        // framework properties of the component are overwritten on registration
+        props.put(Constants.SERVICE_ID, 7L);
+        assertTrue(SingleComponentManager.servicePropertiesMatches(ref, props));
+        props.remove(Constants.SERVICE_ID);
+
+        props.put("ports", new int[] {80});
+        assertFalse(SingleComponentManager.servicePropertiesMatches(ref, props));
+        props.put("ports", new int[] {80, 443});
+
+        props.put("added", "value");
+        assertFalse(SingleComponentManager.servicePropertiesMatches(ref, props));
+        props.remove("added");
+
+        props.remove("component.id");
+        assertFalse(SingleComponentManager.servicePropertiesMatches(ref, props));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testReconfigureUnchangedConfiguration() throws Exception
+    {
+        ComponentMetadata cm = new ComponentMetadata(DSVersion.DS13);
+        cm.setImplementationClassName("foo.bar.SomeClass");
+        cm.setModified("modified");
+        cm.validate(null);
+
+        ComponentContainer<Object> cc = Mockito.mock(ComponentContainer.class);
+        Mockito.when(cc.getComponentMetadata()).thenReturn(cm);
+
+        final AtomicInteger modified = new AtomicInteger();
+        SingleComponentManager<Object> scm = new SingleComponentManager<Object>(cc, new ComponentMethods()) {
+            @Override
+            protected MethodResult invokeModifiedMethod()
+            {
+                modified.incrementAndGet();
+                return MethodResult.VOID;
+            }
+        };
+        scm.m_internalEnabled = true;
+        Field satisfied = AbstractComponentManager.class.getDeclaredField("m_satisfied");
+        satisfied.setAccessible(true);
+        satisfied.set(scm, true);
+
+        ServiceReference<Object> ref = Mockito.mock(ServiceReference.class);
+        Mockito.when(ref.getPropertyKeys()).thenReturn(new String[0]);
+        ServiceRegistration<Object> reg = Mockito.mock(ServiceRegistration.class);
+        Mockito.when(reg.getReference()).thenReturn(ref);
+        Field rm = AbstractComponentManager.class.getDeclaredField("registrationManager");
+        rm.setAccessible(true);
+        Object registrationManager = rm.get(scm);
+        Field sr = RegistrationManager.class.getDeclaredField("m_serviceRegistration");
+        sr.setAccessible(true);
+        sr.set(registrationManager, reg);
+
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put("key", new int[] {1, 2});
+        scm.reconfigure(config, false);
+        assertEquals(1, modified.get());
+        Mockito.verify(reg).setProperties(Mockito.<Dictionary<String, ?>>any());
+
+        // an equal configuration neither calls modified nor updates the registration
+        long skipped = ScrMetrics.get(ScrMetrics.Counter.RECONFIGURATIONS_SKIPPED);
+        long changeCount = scm.getChangeCount();
+        Map<String, Object> equal = new HashMap<String, Object>();
+        equal.put("key", new int[] {1, 2});
+        scm.reconfigure(equal, false);
+        assertEquals(1, modified.get());
+        Mockito.verify(reg).setProperties(Mockito.<Dictionary<String, ?>>any());
+        assertEquals(changeCount, scm.getChangeCount());
+        assertEquals(skipped + 1, ScrMetrics.get(ScrMetrics.Counter.RECONFIGURATIONS_SKIPPED));
+
+        // a changed configuration calls modified again
+        equal.put("key", new int[] {1, 3});
+        scm.reconfigure(equal, false);
+        assertEquals(2, modified.get());
+        assertEquals(skipped + 1, ScrMetrics.get(ScrMetrics.Counter.RECONFIGURATIONS_SKIPPED));
+    }
 }
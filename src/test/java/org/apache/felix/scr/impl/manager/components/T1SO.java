@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.manager.components;
+
+import java.util.Map;
+
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.component.ComponentServiceObjects;
+
+public class T1SO extends T1
+{
+
+    void packageT1SO( ComponentServiceObjects so )
+    {
+        if ( so != null )
+        {
+            callPerformed = "packageT1SO";
+        }
+        else
+        {
+            callPerformed = "packageT1SO with null service objects";
+        }
+    }
+
+
+    void packageT1SOSIMapSR( ComponentServiceObjects so, FakeService si, Map props, ServiceReference sr )
+    {
+        if ( so != null && si != null && props != null && !props.isEmpty() && sr != null )
+        {
+            callPerformed = "packageT1SOSIMapSR";
+        }
+        else
+        {
+            callPerformed = "packageT1SOSIMapSR error: so: " + so + " si: " + si + " props: " + props + " SR " + sr;
+        }
+    }
+
+
+}
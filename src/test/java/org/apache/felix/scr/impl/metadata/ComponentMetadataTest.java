@@ -354,6 +354,31 @@ public class ComponentMetadataTest extends TestCase
     }
 
 
+    public void test_factory_instance_pool()
+    {
+        final ComponentMetadata cm1 = createComponentMetadata11( null, "factory" );
+        cm1.setModified( "modified" );
+        cm1.setFactoryInstancePoolSize( 5 );
+        cm1.validate( logger );
+        assertEquals( 5, cm1.getFactoryInstancePoolSize() );
+        assertEquals( ComponentMetadata.DEFAULT_FACTORY_INSTANCE_POOL_IDLE_TIMEOUT, cm1.getFactoryInstancePoolIdleTimeout() );
+
+        final ComponentMetadata cm2 = createComponentMetadata11( null, null );
+        cm2.setModified( "modified" );
+        cm2.setFactoryInstancePoolSize( 5 );
+        failDS10Validation( cm2, "factory component", logger );
+
+        final ComponentMetadata cm3 = createComponentMetadata11( null, "factory" );
+        cm3.setFactoryInstancePoolSize( 5 );
+        failDS10Validation( cm3, "modified method", logger );
+
+        final ComponentMetadata cm4 = createComponentMetadata11( null, "factory" );
+        cm4.setModified( "modified" );
+        cm4.setFactoryInstancePoolIdleTimeout( -1 );
+        failDS10Validation( cm4, "negative", logger );
+    }
+
+
     public void test_component_configuration_policy_ds10()
     {
         final ComponentMetadata cm1 = createComponentMetadata( Boolean.TRUE, null );
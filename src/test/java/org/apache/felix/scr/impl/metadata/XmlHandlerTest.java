@@ -154,6 +154,56 @@ public class XmlHandlerTest extends TestCase
     }
 
 
+    public void test_factory_instance_pool_attributes() throws Exception
+    {
+        final List metadataList = readMetadataFromString( factoryInstancePoolComponent( "2", "500" ) );
+        assertEquals( "1 Descriptor expected", 1, metadataList.size() );
+        final ComponentMetadata metadata = ( ComponentMetadata ) metadataList.get( 0 );
+        assertEquals( "Pool size", 2, metadata.getFactoryInstancePoolSize() );
+        assertEquals( "Pool idle timeout", 500L, metadata.getFactoryInstancePoolIdleTimeout() );
+
+        try
+        {
+            readMetadataFromString( factoryInstancePoolComponent( "two", "500" ) );
+            fail( "ParseException expected for non-numeric pool size" );
+        }
+        catch ( ParseException pe )
+        {
+            assertTrue( pe.getMessage(), pe.getMessage().indexOf( XmlHandler.FACTORY_INSTANCE_POOL_SIZE ) >= 0 );
+        }
+
+        try
+        {
+            readMetadataFromString( factoryInstancePoolComponent( "2", "99999999999999999999" ) );
+            fail( "ParseException expected for out of range idle timeout" );
+        }
+        catch ( ParseException pe )
+        {
+            assertTrue( pe.getMessage(), pe.getMessage().indexOf( XmlHandler.FACTORY_INSTANCE_POOL_IDLE_TIMEOUT ) >= 0 );
+        }
+
+        try
+        {
+            readMetadataFromString( factoryInstancePoolComponent( "4294967296", "500" ) );
+            fail( "ParseException expected for out of range pool size" );
+        }
+        catch ( ParseException pe )
+        {
+            assertTrue( pe.getMessage(), pe.getMessage().indexOf( XmlHandler.FACTORY_INSTANCE_POOL_SIZE ) >= 0 );
+        }
+    }
+
+
+    private static String factoryInstancePoolComponent( final String size, final String idleTimeout )
+    {
+        return "<scr:component xmlns:scr=\"http://www.osgi.org/xmlns/scr/v1.1.0\" xmlns:felix=\""
+            + XmlHandler.NAMESPACE_URI_1_0_FELIX_EXTENSIONS + "\" name=\"n\" factory=\"f\" modified=\"modified\" felix:"
+            + XmlHandler.FACTORY_INSTANCE_POOL_SIZE + "=\"" + size + "\" felix:"
+            + XmlHandler.FACTORY_INSTANCE_POOL_IDLE_TIMEOUT + "=\"" + idleTimeout
+            + "\"><implementation class=\"n\"/></scr:component>";
+    }
+
+
     public void test_component_attributes_11() throws Exception
     {
         final List metadataList10 = readMetadata( "/components_activate_10.xml" );
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.runtime;
+
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.scr.impl.config.ReferenceManager;
+import org.apache.felix.scr.impl.manager.AbstractComponentManager;
+import org.apache.felix.scr.impl.manager.ComponentStatistics;
+import org.apache.felix.scr.impl.metadata.ComponentMetadata;
+import org.apache.felix.scr.impl.metadata.DSVersion;
+import org.apache.felix.scr.impl.metadata.ReferenceMetadata;
+import org.mockito.Mockito;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.component.ComponentConstants;
+import org.osgi.service.component.runtime.dto.ComponentConfigurationDTO;
+
+public class ComponentGraphTest extends TestCase
+{
+
+    private final List<AbstractComponentManager<?>> managers = new ArrayList<AbstractComponentManager<?>>();
+
+
+    public void test_construction() throws Exception
+    {
+        final AbstractComponentManager<?> a = manager( 1, "a", 0, 50, 70 );
+        final AbstractComponentManager<?> b = manager( 2, "b", 0, 20, 60 );
+        manager( -1, "disposed", 0, -1, -1 );
+        reference( a, "b", true, b );
+        reference( a, "log", false );
+
+        final ComponentGraph graph = new ComponentGraph( managers );
+        final StringWriter json = new StringWriter();
+        graph.writeJson( json );
+        assertTrue( json.toString(), json.toString().contains(
+            "{\"id\":1,\"name\":\"a\",\"state\":\"active\",\"enableToActiveMillis\":70,\"references\":["
+                + "{\"name\":\"b\",\"interface\":\"b.Service\",\"satisfied\":true,\"component\":2},"
+                + "{\"name\":\"log\",\"interface\":\"log.Service\",\"satisfied\":false,\"component\":null}]}" ) );
+        assertTrue( json.toString(), json.toString().contains( "\"references\":[]" ) );
+        assertFalse( json.toString(), json.toString().contains( "disposed" ) );
+
+        final StringWriter dot = new StringWriter();
+        graph.writeDot( dot );
+        assertTrue( dot.toString(), dot.toString().contains( "c1 -> c2 [label=\"b\", color=red, penwidth=2];" ) );
+        assertTrue( dot.toString(), dot.toString().contains( "c1 -> \"log.Service\" [label=\"log\", style=dashed];" ) );
+    }
+
+
+    public void test_criticalPath_satisfiedDependencies() throws Exception
+    {
+        // b is delayed: registered early, activated while a is activated
+        final AbstractComponentManager<?> a = manager( 1, "a", 0, 50, 70 );
+        final AbstractComponentManager<?> b = manager( 2, "b", 0, 20, 60 );
+        final AbstractComponentManager<?> c = manager( 3, "c", 0, 40, 45 );
+        final AbstractComponentManager<?> d = manager( 4, "d", 5, 30, 35 );
+        reference( a, "b", true, b );
+        reference( a, "c", true, c );
+        reference( c, "d", true, d );
+        reference( d, "log", true );
+
+        final List<List<ComponentGraph.Node>> paths = new ComponentGraph( managers ).getCriticalPaths();
+        assertEquals( 1, paths.size() );
+        assertEquals( Arrays.asList( 1L, 3L, 4L ), getIds( paths.get( 0 ) ) );
+
+        final StringWriter json = new StringWriter();
+        new ComponentGraph( managers ).writeJson( json );
+        assertTrue( json.toString(), json.toString().contains( "{\"component\":1,\"millis\":65,\"path\":[1,3,4]}" ) );
+    }
+
+
+    public void test_criticalPath_ignoresLaterDependencies() throws Exception
+    {
+        // b was bound dynamically after a became satisfied
+        final AbstractComponentManager<?> a = manager( 1, "a", 0, 50, 70 );
+        final AbstractComponentManager<?> b = manager( 2, "b", 0, 80, 90 );
+        final AbstractComponentManager<?> c = manager( 3, "c", 0, -1, -1 );
+        reference( a, "b", true, b );
+        reference( a, "c", true, c );
+
+        final List<List<ComponentGraph.Node>> paths = new ComponentGraph( managers ).getCriticalPaths();
+        assertEquals( 1, paths.size() );
+        assertEquals( Collections.singletonList( 1L ), getIds( paths.get( 0 ) ) );
+    }
+
+
+    public void test_criticalPath_cycle() throws Exception
+    {
+        final AbstractComponentManager<?> e = manager( 5, "e", 0, 80, 85 );
+        final AbstractComponentManager<?> f = manager( 6, "f", 0, 80, 85 );
+        final AbstractComponentManager<?> g = manager( 7, "g", 0, 90, 95 );
+        reference( e, "f", true, f );
+        reference( f, "e", true, e );
+        reference( g, "e", true, e );
+
+        // the components of the cycle depend on each other, only g is top-level
+        final List<List<ComponentGraph.Node>> paths = new ComponentGraph( managers ).getCriticalPaths();
+        assertEquals( 1, paths.size() );
+        assertEquals( Arrays.asList( 7L, 5L, 6L ), getIds( paths.get( 0 ) ) );
+
+        // a cycle without a top-level component has no critical path
+        managers.remove( g );
+        assertTrue( new ComponentGraph( managers ).getCriticalPaths().isEmpty() );
+    }
+
+
+    private static List<Long> getIds( final List<ComponentGraph.Node> path )
+    {
+        final List<Long> ids = new ArrayList<Long>();
+        for ( ComponentGraph.Node node : path )
+        {
+            ids.add( node.getId() );
+        }
+        return ids;
+    }
+
+
+    /**
+     * Creates a component manager with the given timestamps in milliseconds,
+     * <code>-1</code> if not satisfied or active since enabled.
+     */
+    private AbstractComponentManager<?> manager( final long id, final String name, final long enabledAt,
+        final long satisfiedAt, final long activeAt ) throws Exception
+    {
+        final ComponentMetadata metadata = new ComponentMetadata( DSVersion.DS13 );
+        metadata.setName( name );
+
+        final ComponentStatistics statistics = new ComponentStatistics();
+        setField( ComponentStatistics.class, statistics, "m_enabledAt", Long.valueOf( nanos( enabledAt ) ) );
+        if ( satisfiedAt != -1 )
+        {
+            ( ( AtomicLong ) getField( statistics, "m_satisfiedAt" ) ).set( nanos( satisfiedAt ) );
+        }
+        if ( activeAt != -1 )
+        {
+            ( ( AtomicLong ) getField( statistics, "m_activeAt" ) ).set( nanos( activeAt ) );
+        }
+
+        final AbstractComponentManager<?> manager = Mockito.mock( AbstractComponentManager.class );
+        // the statistics accessor is final, provide its field instead
+        setField( AbstractComponentManager.class, manager, "m_statistics", statistics );
+        Mockito.when( manager.getId() ).thenReturn( id );
+        Mockito.when( manager.getComponentMetadata() ).thenReturn( metadata );
+        Mockito.when( manager.getState() ).thenReturn( activeAt != -1 ? ComponentConfigurationDTO.ACTIVE
+            : satisfiedAt != -1 ? ComponentConfigurationDTO.SATISFIED : ComponentConfigurationDTO.UNSATISFIED_REFERENCE );
+        Mockito.doReturn( new ArrayList<ReferenceManager<?, ?>>() ).when( manager ).getReferenceManagers();
+        managers.add( manager );
+        return manager;
+    }
+
+
+    /**
+     * Adds a reference of the component to the given providing components,
+     * the reference interface is the reference name with a
+     * <code>.Service</code> suffix.
+     */
+    @SuppressWarnings("unchecked")
+    private static void reference( final AbstractComponentManager<?> manager, final String name,
+        final boolean satisfied, final AbstractComponentManager<?>... providers )
+    {
+        final ReferenceMetadata metadata = new ReferenceMetadata();
+        metadata.setName( name );
+        metadata.setInterface( name + ".Service" );
+        manager.getComponentMetadata().addDependency( metadata );
+
+        final List<ServiceReference<?>> serviceReferences = new ArrayList<ServiceReference<?>>();
+        for ( AbstractComponentManager<?> provider : providers )
+        {
+            final Long id = provider.getId();
+            final ServiceReference<?> serviceReference = Mockito.mock( ServiceReference.class );
+            Mockito.when( serviceReference.getProperty( ComponentConstants.COMPONENT_ID ) ).thenReturn( id );
+            serviceReferences.add( serviceReference );
+        }
+
+        final ReferenceManager<?, ?> ref = Mockito.mock( ReferenceManager.class );
+        Mockito.when( ref.getName() ).thenReturn( name );
+        Mockito.when( ref.isSatisfied() ).thenReturn( satisfied );
+        Mockito.when( ref.getServiceReferences() ).thenReturn( serviceReferences );
+        ( ( List<ReferenceManager<?, ?>> ) manager.getReferenceManagers() ).add( ref );
+    }
+
+
+    private static long nanos( final long millis )
+    {
+        return TimeUnit.MILLISECONDS.toNanos( millis );
+    }
+
+
+    private static Object getField( final Object target, final String name ) throws Exception
+    {
+        final Field field = target.getClass().getDeclaredField( name );
+        field.setAccessible( true );
+        return field.get( target );
+    }
+
+
+    private static void setField( final Class<?> type, final Object target, final String name, final Object value )
+        throws Exception
+    {
+        final Field field = type.getDeclaredField( name );
+        field.setAccessible( true );
+        field.set( target, value );
+    }
+}
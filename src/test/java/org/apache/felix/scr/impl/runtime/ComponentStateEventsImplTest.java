@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.scr.info.ComponentStateEvent;
+import org.apache.felix.scr.info.ComponentStateEvents;
+import org.apache.felix.scr.info.ComponentStateSubscription;
+import org.osgi.service.component.runtime.dto.ComponentConfigurationDTO;
+
+public class ComponentStateEventsImplTest extends TestCase
+{
+
+    public void testSubscription()
+    {
+        ComponentStateEventsImpl events = new ComponentStateEventsImpl();
+        assertFalse(events.hasSubscriptions());
+        events.publish(1, "ignored", 5, ComponentConfigurationDTO.SATISFIED, ComponentConfigurationDTO.ACTIVE,
+            ComponentStateEvent.REASON_ACTIVATION);
+
+        ComponentStateSubscription subscription = events.subscribe(2);
+        assertTrue(events.hasSubscriptions());
+        assertNull(subscription.poll());
+
+        events.publish(1, "a", 5, ComponentConfigurationDTO.SATISFIED, ComponentConfigurationDTO.ACTIVE,
+            ComponentStateEvent.REASON_ACTIVATION);
+        ComponentStateEvent event = subscription.poll();
+        assertEquals(1, event.getComponentId());
+        assertEquals("a", event.getComponentName());
+        assertEquals(5, event.getBundleId());
+        assertEquals(ComponentConfigurationDTO.SATISFIED, event.getOldState());
+        assertEquals(ComponentConfigurationDTO.ACTIVE, event.getNewState());
+        assertEquals(ComponentStateEvent.REASON_ACTIVATION, event.getReason());
+        assertTrue(event.getTimestamp() > 0);
+
+        // a full buffer drops events instead of blocking
+        for (int i = 0; i < 3; i++)
+        {
+            events.publish(i, "b", 5, ComponentConfigurationDTO.ACTIVE, ComponentConfigurationDTO.SATISFIED,
+                ComponentStateEvent.REASON_REFERENCE);
+        }
+        List<ComponentStateEvent> received = new ArrayList<ComponentStateEvent>();
+        assertEquals(2, subscription.drainTo(received));
+        assertEquals(0, received.get(0).getComponentId());
+        assertEquals(1, received.get(1).getComponentId());
+        assertEquals(1, subscription.getDroppedCount());
+
+        subscription.close();
+        assertFalse(events.hasSubscriptions());
+        events.publish(1, "c", 5, ComponentConfigurationDTO.ACTIVE, ComponentConfigurationDTO.SATISFIED,
+            ComponentStateEvent.REASON_DISABLED);
+        assertNull(subscription.poll());
+    }
+
+    public void testUngetServiceClosesBundleSubscriptions()
+    {
+        ComponentStateEventsImpl events = new ComponentStateEventsImpl();
+        ComponentStateEvents first = events.getService(null, null);
+        ComponentStateEvents second = events.getService(null, null);
+        ComponentStateSubscription firstSubscription = first.subscribe(2);
+        ComponentStateSubscription secondSubscription = second.subscribe(2);
+
+        events.ungetService(null, null, first);
+        assertTrue(firstSubscription.isClosed());
+        assertFalse(secondSubscription.isClosed());
+
+        events.publish(1, "a", 5, ComponentConfigurationDTO.SATISFIED, ComponentConfigurationDTO.ACTIVE,
+            ComponentStateEvent.REASON_ACTIVATION);
+        assertNull(firstSubscription.poll());
+        assertEquals(1, secondSubscription.poll().getComponentId());
+
+        // subscribing through a released service object yields a closed subscription
+        assertTrue(first.subscribe(2).isClosed());
+        secondSubscription.close();
+        assertFalse(events.hasSubscriptions());
+    }
+
+    public void testDisposeClosesSubscriptions() throws Exception
+    {
+        final ComponentStateEventsImpl events = new ComponentStateEventsImpl();
+        final ComponentStateSubscription subscription = events.subscribe(2);
+        events.publish(1, "a", 5, ComponentConfigurationDTO.SATISFIED, ComponentConfigurationDTO.ACTIVE,
+            ComponentStateEvent.REASON_ACTIVATION);
+        assertEquals(1, subscription.poll().getComponentId());
+
+        // a caller waiting for events returns when the runtime stops
+        final ComponentStateEvent[] polled = new ComponentStateEvent[1];
+        Thread poller = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    polled[0] = subscription.poll(1, TimeUnit.MINUTES);
+                }
+                catch (InterruptedException e)
+                {
+                    // ignore
+                }
+            }
+        };
+        poller.start();
+        Thread.sleep(50);
+        final long start = System.nanoTime();
+        events.dispose();
+        poller.join(10000);
+        assertFalse(poller.isAlive());
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 10);
+        assertNull(polled[0]);
+        assertTrue(subscription.isClosed());
+        assertNull(subscription.poll(1, TimeUnit.MINUTES));
+        assertEquals(0, subscription.drainTo(new ArrayList<ComponentStateEvent>()));
+        assertFalse(events.hasSubscriptions());
+        assertTrue(events.subscribe(2).isClosed());
+    }
+
+    public void testInvalidBufferSize()
+    {
+        try
+        {
+            new ComponentStateEventsImpl().subscribe(0);
+            fail("Expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.runtime;
+
+
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.scr.impl.BundleComponentActivator;
+import org.apache.felix.scr.impl.ComponentRegistry;
+import org.apache.felix.scr.impl.config.ComponentHolder;
+import org.apache.felix.scr.impl.config.ComponentManager;
+import org.apache.felix.scr.impl.config.ReferenceManager;
+import org.apache.felix.scr.impl.config.ScrConfiguration;
+import org.apache.felix.scr.impl.manager.AbstractComponentManager;
+import org.apache.felix.scr.impl.metadata.ComponentMetadata;
+import org.apache.felix.scr.impl.metadata.ServiceMetadata;
+import org.apache.felix.scr.info.ComponentStateEvent;
+import org.mockito.Mockito;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+
+
+public class RuntimeStateWriterTest extends TestCase
+{
+
+    private Bundle bundle;
+
+    private ComponentRegistry registry;
+
+    private ComponentHolder<?> holder;
+
+    private AbstractComponentManager<?> manager;
+
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        bundle = Mockito.mock( Bundle.class );
+        Mockito.when( bundle.getBundleId() ).thenReturn( 5L );
+        Mockito.when( bundle.getSymbolicName() ).thenReturn( "bsn" );
+        final Hashtable<String, String> headers = new Hashtable<String, String>();
+        headers.put( Constants.BUNDLE_VERSION, "1.0" );
+        Mockito.when( bundle.getHeaders() ).thenReturn( headers );
+
+        registry = new ComponentRegistry( Mockito.mock( BundleContext.class ), Mockito.mock( ScrConfiguration.class ) )
+        {
+        };
+
+        holder = holder( "comp" );
+        manager = Mockito.mock( AbstractComponentManager.class );
+        Mockito.when( manager.getId() ).thenReturn( 3L );
+        Mockito.when( manager.getState() ).thenReturn( ComponentManager.STATE_ACTIVE );
+        Mockito.when( manager.getBundle() ).thenReturn( bundle );
+        final ComponentMetadata metadata = holder.getComponentMetadata();
+        Mockito.when( manager.getComponentMetadata() ).thenReturn( metadata );
+        Mockito.doReturn( Collections.singletonList( manager ) ).when( holder ).getComponents();
+        register( "comp", holder );
+        activate( manager );
+    }
+
+
+    public void test_writeRuntimeState() throws Exception
+    {
+        final ServiceReference<?> serviceRef = Mockito.mock( ServiceReference.class );
+        Mockito.when( serviceRef.getProperty( Constants.SERVICE_ID ) ).thenReturn( 12L );
+        final ReferenceManager<?, ?> ref = Mockito.mock( ReferenceManager.class );
+        Mockito.when( ref.getName() ).thenReturn( "ref" );
+        Mockito.when( ref.isSatisfied() ).thenReturn( true );
+        Mockito.doReturn( Collections.singletonList( serviceRef ) ).when( ref ).getServiceReferences();
+        Mockito.doReturn( Collections.singletonMap( "key", new String[] { "a\"b" } ) ).when( manager ).getProperties();
+        Mockito.doReturn( Collections.singletonList( ref ) ).when( manager ).getReferenceManagers();
+
+        StringWriter out = new StringWriter();
+        assertEquals( 1, new RuntimeStateWriter( registry, false, null, -1, null, null ).write( out ) );
+        assertEquals( "3 5 active comp ref=1\n", out.toString() );
+
+        out = new StringWriter();
+        assertEquals( 1, new RuntimeStateWriter( registry, true, bundle, ComponentManager.STATE_ACTIVE, null, Pattern.compile( "c.*" ) ).write( out ) );
+        assertEquals( "[\n{\"id\":3,\"bundle\":5,\"name\":\"comp\",\"state\":\"active\",\"implementationClass\":null,"
+            + "\"properties\":{\"key\":[\"a\\\"b\"]},"
+            + "\"references\":[{\"name\":\"ref\",\"target\":null,\"satisfied\":true,\"bound\":[12]}]}]\n", out.toString() );
+
+        out = new StringWriter();
+        assertEquals( 0, new RuntimeStateWriter( registry, false, null, ComponentManager.STATE_SATISFIED, null, null ).write( out ) );
+        assertEquals( 0, new RuntimeStateWriter( registry, false, null, -1, null, Pattern.compile( "other" ) ).write( out ) );
+        assertEquals( "", out.toString() );
+        assertEquals( ComponentManager.STATE_ACTIVE, RuntimeStateWriter.toState( "active" ) );
+    }
+
+
+    public void test_writeNonFiniteNumbers() throws Exception
+    {
+        final Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put( "nan", Double.NaN );
+        properties.put( "inf", new Float[] { Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, 1.5f } );
+        Mockito.doReturn( properties ).when( manager ).getProperties();
+        Mockito.doReturn( Collections.emptyList() ).when( manager ).getReferenceManagers();
+
+        final StringWriter out = new StringWriter();
+        assertEquals( 1, new RuntimeStateWriter( registry, true, null, -1, null, null ).write( out ) );
+        assertTrue( out.toString(), out.toString().contains( "\"nan\":\"NaN\"" ) );
+        assertTrue( out.toString(), out.toString().contains( "\"inf\":[\"Infinity\",\"-Infinity\",1.5]" ) );
+    }
+
+
+    public void test_writeByIndex() throws Exception
+    {
+        Mockito.doReturn( Collections.emptyList() ).when( manager ).getReferenceManagers();
+
+        // the state filter reads the state index, not the holders
+        StringWriter out = new StringWriter();
+        assertEquals( 1, new RuntimeStateWriter( registry, false, null, ComponentManager.STATE_ACTIVE, null, null ).write( out ) );
+        assertEquals( 1, new RuntimeStateWriter( registry, false, null, ComponentManager.STATE_ACTIVE, "foo.Service", null ).write( out ) );
+        assertEquals( 0, new RuntimeStateWriter( registry, false, null, ComponentManager.STATE_ACTIVE, "bar.Service", null ).write( out ) );
+        assertEquals( 0, new RuntimeStateWriter( registry, false, null, ComponentManager.STATE_ACTIVE, null, Pattern.compile( "other" ) ).write( out ) );
+        Mockito.verify( holder, Mockito.never() ).getComponents();
+        assertEquals( "3 5 active comp\n3 5 active comp\n", out.toString() );
+
+        // the service filter reads the service index
+        out = new StringWriter();
+        assertEquals( 1, new RuntimeStateWriter( registry, false, bundle, -1, "foo.Service", null ).write( out ) );
+        assertEquals( 0, new RuntimeStateWriter( registry, false, null, -1, "bar.Service", null ).write( out ) );
+        assertEquals( "3 5 active comp\n", out.toString() );
+
+        // disabled component configurations are not indexed by state
+        Mockito.when( manager.getState() ).thenReturn( ComponentManager.STATE_DISABLED );
+        out = new StringWriter();
+        assertEquals( 1, new RuntimeStateWriter( registry, false, null, ComponentManager.STATE_DISABLED, null, null ).write( out ) );
+        assertEquals( "3 5 disabled comp\n", out.toString() );
+    }
+
+
+    private void activate( final AbstractComponentManager<?> manager ) throws Exception
+    {
+        // the state index is maintained by the component managers
+        final Method registerId = ComponentRegistry.class.getDeclaredMethod( "registerComponentId", AbstractComponentManager.class );
+        registerId.setAccessible( true );
+        registerId.invoke( registry, manager );
+        final Method stateChanged = ComponentRegistry.class.getDeclaredMethod( "componentStateChanged",
+            AbstractComponentManager.class, int.class, int.class, int.class );
+        stateChanged.setAccessible( true );
+        stateChanged.invoke( registry, manager, ComponentManager.STATE_DISABLED, ComponentManager.STATE_ACTIVE,
+            ComponentStateEvent.REASON_ACTIVATION );
+    }
+
+
+    private void register( final String name, final ComponentHolder<?> holder ) throws Exception
+    {
+        // the registration methods are only visible to the bundle activator
+        final Method check = ComponentRegistry.class.getDeclaredMethod( "checkComponentName", Bundle.class, String.class );
+        check.setAccessible( true );
+        final Object key = check.invoke( registry, bundle, name );
+        final Method register = ComponentRegistry.class.getDeclaredMethod( "registerComponentHolder", check.getReturnType(),
+            ComponentHolder.class );
+        register.setAccessible( true );
+        register.invoke( registry, key, holder );
+    }
+
+
+    private ComponentHolder<?> holder( final String name )
+    {
+        final ComponentMetadata metadata = Mockito.mock( ComponentMetadata.class );
+        Mockito.when( metadata.getName() ).thenReturn( name );
+        Mockito.when( metadata.getConfigurationPid() ).thenReturn( Collections.singletonList( name ) );
+        final ServiceMetadata serviceMetadata = Mockito.mock( ServiceMetadata.class );
+        Mockito.when( serviceMetadata.getProvides() ).thenReturn( new String[] { "foo.Service" } );
+        Mockito.when( metadata.getServiceMetadata() ).thenReturn( serviceMetadata );
+
+        final BundleContext context = Mockito.mock( BundleContext.class );
+        Mockito.when( context.getBundle() ).thenReturn( bundle );
+        final BundleComponentActivator activator = Mockito.mock( BundleComponentActivator.class );
+        Mockito.when( activator.getBundleContext() ).thenReturn( context );
+
+        final ComponentHolder<?> holder = Mockito.mock( ComponentHolder.class );
+        Mockito.when( holder.getComponentMetadata() ).thenReturn( metadata );
+        Mockito.when( holder.getActivator() ).thenReturn( activator );
+        return holder;
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.felix.scr.impl.runtime;
 
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.HashMap;
 
 import junit.framework.TestCase;
 
@@ -30,6 +31,11 @@ import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.dto.BundleDTO;
 import org.osgi.framework.dto.ServiceReferenceDTO;
+import org.osgi.service.component.runtime.dto.ComponentConfigurationDTO;
+import org.osgi.service.component.runtime.dto.ComponentDescriptionDTO;
+import org.osgi.service.component.runtime.dto.ReferenceDTO;
+import org.osgi.service.component.runtime.dto.SatisfiedReferenceDTO;
+import org.osgi.service.component.runtime.dto.UnsatisfiedReferenceDTO;
 
 public class ServiceComponentRuntimeImplTest extends TestCase
 {
@@ -106,6 +112,54 @@ public class ServiceComponentRuntimeImplTest extends TestCase
         equalsToString(Arrays.asList(new String[] {"foo", "bar"}), scr);
     }
 
+    public void testCopyDTOs()
+    {
+        ServiceComponentRuntimeImpl scr = new ServiceComponentRuntimeImpl(null, null);
+        ComponentDescriptionDTO description = new ComponentDescriptionDTO();
+        description.name = "comp";
+        description.bundle = new BundleDTO();
+        description.bundle.id = 5;
+        description.serviceInterfaces = new String[] {"foo.Service"};
+        description.properties = new HashMap<String, Object>();
+        description.properties.put("key", new String[] {"a", "b"});
+        description.references = new ReferenceDTO[] {new ReferenceDTO()};
+        description.references[0].name = "ref";
+
+        ComponentDescriptionDTO descriptionCopy = scr.copy(description);
+        assertNotSame(description, descriptionCopy);
+        assertEquals("comp", descriptionCopy.name);
+        assertEquals(5, descriptionCopy.bundle.id);
+        descriptionCopy.bundle.id = 6;
+        descriptionCopy.serviceInterfaces[0] = "bar.Service";
+        ((String[]) descriptionCopy.properties.get("key"))[0] = "c";
+        descriptionCopy.properties.put("other", "value");
+        descriptionCopy.references[0].name = "other";
+        assertEquals(5, description.bundle.id);
+        assertEquals("foo.Service", description.serviceInterfaces[0]);
+        assertEquals("a", ((String[]) description.properties.get("key"))[0]);
+        assertFalse(description.properties.containsKey("other"));
+        assertEquals("ref", description.references[0].name);
+
+        ComponentConfigurationDTO configuration = new ComponentConfigurationDTO();
+        configuration.description = description;
+        configuration.id = 3;
+        configuration.properties = new HashMap<String, Object>();
+        configuration.properties.put("key", new int[] {1});
+        configuration.satisfiedReferences = new SatisfiedReferenceDTO[] {new SatisfiedReferenceDTO()};
+        configuration.satisfiedReferences[0].boundServices = new ServiceReferenceDTO[] {new ServiceReferenceDTO()};
+        configuration.satisfiedReferences[0].boundServices[0].id = 12;
+        configuration.unsatisfiedReferences = new UnsatisfiedReferenceDTO[0];
+
+        ComponentConfigurationDTO configurationCopy = scr.copy(configuration, descriptionCopy);
+        assertSame(descriptionCopy, configurationCopy.description);
+        assertEquals(3, configurationCopy.id);
+        ((int[]) configurationCopy.properties.get("key"))[0] = 2;
+        configurationCopy.satisfiedReferences[0].boundServices[0].id = 13;
+        assertEquals(1, ((int[]) configuration.properties.get("key"))[0]);
+        assertEquals(12, configuration.satisfiedReferences[0].boundServices[0].id);
+        assertEquals(0, configurationCopy.unsatisfiedReferences.length);
+    }
+
     private void equalsToString(Object o, ServiceComponentRuntimeImpl scr)
     {
         assertEquals(String.valueOf(o), scr.convert(o));